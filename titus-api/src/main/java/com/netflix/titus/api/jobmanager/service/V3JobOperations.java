@@ -17,6 +17,7 @@
 package com.netflix.titus.api.jobmanager.service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -91,6 +92,16 @@ public interface V3JobOperations {
      */
     Completable recordTaskPlacement(String taskId, Function<Task, Task> changeFunction);
 
+    /**
+     * Batch version of {@link #recordTaskPlacement(String, Function)}, which submits all placements of a scheduling
+     * iteration at once. Store updates of the tasks are written concurrently. A result is emitted for each task as soon
+     * as its store update completes, with an error if its placement could not be recorded. The results are emitted in
+     * no particular order, and do not wait for the results of other tasks.
+     *
+     * @param changeFunctions task update functions, keyed by task id
+     */
+    Observable<Pair<String, Optional<Throwable>>> recordTaskPlacements(Map<String, Function<Task, Task>> changeFunctions);
+
     Observable<JobManagerEvent<?>> observeJobs();
 
     Observable<JobManagerEvent<?>> observeJob(String jobId);
@@ -36,7 +36,8 @@ public interface JobStore {
 
     /**
      * Retrieve all jobs. The result contains also number of records that could not be loaded from the database or
-     * which were corrupted and could not be mapped to {@link Job} instance.
+     * which were corrupted and could not be mapped to {@link Job} instance. A store may emit the jobs in multiple
+     * batches as they are loaded, in which case the error counts of all batches must be added up.
      *
      * @return all the jobs.
      */
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.api.jobmanager.model.job.sanitizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.archaius.ConfigProxyFactory;
+import com.netflix.archaius.DefaultDecoder;
+import com.netflix.archaius.DefaultPropertyFactory;
+import com.netflix.archaius.config.MapConfig;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.api.jobmanager.model.job.sanitizer.JobConfiguration;
+import com.netflix.titus.api.jobmanager.model.job.sanitizer.JobSanitizerBuilder;
+import com.netflix.titus.api.model.ResourceDimension;
+import com.netflix.titus.common.model.sanitizer.EntitySanitizer;
+import com.netflix.titus.common.model.sanitizer.VerifierMode;
+import com.netflix.titus.testkit.model.job.JobDescriptorGenerator;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput (validated entities per second) of the job bootstrap validation, which runs the strict and
+ * the permissive sanitizers on each restored job and task. The parallelism parameter corresponds to
+ * the bootstrap validation parallelism of the job manager (1 means validation on the calling thread). The cost of
+ * the interpreted Spring EL evaluation is measured by running this benchmark against a revision that does not
+ * compile the expressions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobSanitizerBenchmark {
+
+    private static final int ENTITY_COUNT = 1_000;
+
+    private static final ResourceDimension MAX_CONTAINER_SIZE = new ResourceDimension(64, 16, 256_000, 256_000, 10_000);
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private EntitySanitizer strictSanitizer;
+    private EntitySanitizer permissiveSanitizer;
+    private List<Object> entities;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        MapConfig config = MapConfig.from(Collections.emptyMap());
+        JobConfiguration jobConfiguration = new ConfigProxyFactory(config, new DefaultDecoder(), new DefaultPropertyFactory(config))
+                .newProxy(JobConfiguration.class);
+        this.strictSanitizer = newSanitizer(jobConfiguration, VerifierMode.Strict);
+        this.permissiveSanitizer = newSanitizer(jobConfiguration, VerifierMode.Permissive);
+
+        this.entities = new ArrayList<>(ENTITY_COUNT);
+        List<Job<BatchJobExt>> jobs = JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).toList(ENTITY_COUNT / 2);
+        for (Job<BatchJobExt> job : jobs) {
+            entities.add(job);
+            entities.add(JobGenerator.batchTasks(job).getValue());
+        }
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITY_COUNT)
+    public long validate() throws Exception {
+        if (pool == null) {
+            return entities.stream().filter(this::isValid).count();
+        }
+        return pool.submit(() -> entities.parallelStream().filter(this::isValid).count()).get();
+    }
+
+    private boolean isValid(Object entity) {
+        return strictSanitizer.validate(entity).isEmpty() & permissiveSanitizer.validate(entity).isEmpty();
+    }
+
+    private static EntitySanitizer newSanitizer(JobConfiguration jobConfiguration, VerifierMode verifierMode) {
+        return new JobSanitizerBuilder()
+                .withVerifierMode(verifierMode)
+                .withJobConstrainstConfiguration(jobConfiguration)
+                .withMaxContainerSizeResolver(capacityGroup -> MAX_CONTAINER_SIZE)
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.common.framework.reconciler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of a single task update in a job with the given number of tasks. The copy-on-write variant
+ * reproduces the original {@link EntityHolder} child update strategy (full {@link HashMap} copy and children list
+ * rebuild), and serves as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityHolderBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int taskCount;
+
+    private EntityHolder jobHolder;
+    private CopyOnWriteHolder copyOnWriteHolder;
+    private EntityHolder[] taskUpdates;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.jobHolder = EntityHolder.newRoot("job", "job");
+        this.copyOnWriteHolder = new CopyOnWriteHolder(new HashMap<>());
+        this.taskUpdates = new EntityHolder[taskCount];
+        for (int i = 0; i < taskCount; i++) {
+            EntityHolder task = EntityHolder.newRoot("task#" + i, "task");
+            jobHolder = jobHolder.addChild(task);
+            copyOnWriteHolder = copyOnWriteHolder.addChild(task);
+            taskUpdates[i] = task.setEntity("taskUpdate");
+        }
+    }
+
+    @Benchmark
+    public EntityHolder persistentTaskUpdate() {
+        return jobHolder.addChild(nextTaskUpdate());
+    }
+
+    @Benchmark
+    public CopyOnWriteHolder copyOnWriteTaskUpdate() {
+        return copyOnWriteHolder.addChild(nextTaskUpdate());
+    }
+
+    private EntityHolder nextTaskUpdate() {
+        EntityHolder taskUpdate = taskUpdates[next];
+        next = (next + 1) % taskCount;
+        return taskUpdate;
+    }
+
+    public static class CopyOnWriteHolder {
+
+        private final Map<String, EntityHolder> childrenById;
+        private final List<EntityHolder> children;
+
+        private CopyOnWriteHolder(Map<String, EntityHolder> childrenById) {
+            this.childrenById = childrenById;
+            this.children = new ArrayList<>(childrenById.values());
+        }
+
+        private CopyOnWriteHolder addChild(EntityHolder child) {
+            Map<String, EntityHolder> newChildrenById = new HashMap<>(childrenById);
+            newChildrenById.put(child.getId(), child);
+            return new CopyOnWriteHolder(newChildrenById);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.common.framework.reconciler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.titus.common.framework.reconciler.ChangeAction;
+import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import com.netflix.titus.common.framework.reconciler.ModelAction;
+import com.netflix.titus.common.framework.reconciler.ModelActionHolder;
+import com.netflix.titus.common.framework.reconciler.ReconcileEventFactory;
+import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
+import com.netflix.titus.common.framework.reconciler.internal.DefaultReconciliationEngine;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.common.util.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rx.Observable;
+
+/**
+ * Change action throughput of a single {@link DefaultReconciliationEngine}. Each invocation submits a burst of
+ * task updates to a job, and runs the engine loop until all of them are applied to the reference model.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReconciliationEngineThroughputBenchmark {
+
+    private static final int BURST_SIZE = 1_000;
+
+    @Param({"100", "1000"})
+    private int tasksPerJob;
+
+    private DefaultReconciliationEngine<Object> engine;
+    private String[] taskIds;
+    private final AtomicInteger completed = new AtomicInteger();
+    private long nextValue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        EntityHolder jobHolder = EntityHolder.newRoot("job#0", "job#0");
+        this.taskIds = new String[tasksPerJob];
+        for (int t = 0; t < tasksPerJob; t++) {
+            String taskId = "job#0-task#" + t;
+            jobHolder = jobHolder.addChild(EntityHolder.newRoot(taskId, 0L));
+            taskIds[t] = taskId;
+        }
+        this.engine = new DefaultReconciliationEngine<>(
+                jobHolder,
+                false,
+                e -> Collections.emptyList(),
+                Collections.emptyMap(),
+                new NoOpEventFactory(),
+                changeAction -> Collections.emptyList(),
+                event -> Collections.emptyList(),
+                TitusRuntimes.internal()
+        );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public int changeActionBurst() {
+        completed.set(0);
+        for (int i = 0; i < BURST_SIZE; i++) {
+            engine.changeReferenceModel(new TaskUpdateAction(taskIds[i % taskIds.length], nextValue++))
+                    .subscribe(ignore -> {
+                    }, e -> completed.incrementAndGet(), completed::incrementAndGet);
+        }
+        while (completed.get() < BURST_SIZE) {
+            engine.applyModelUpdates();
+            engine.triggerEvents();
+        }
+        // Apply the model updates of the last action
+        engine.applyModelUpdates();
+        return engine.getReferenceView().getChildren().size();
+    }
+
+    private static class TaskUpdateAction implements ChangeAction {
+
+        private final String taskId;
+        private final long value;
+
+        private TaskUpdateAction(String taskId, long value) {
+            this.taskId = taskId;
+            this.value = value;
+        }
+
+        @Override
+        public Observable<List<ModelActionHolder>> apply() {
+            ModelAction modelAction = rootHolder -> rootHolder.findChildById(taskId).map(taskHolder -> {
+                EntityHolder updated = taskHolder.setEntity(value);
+                return Pair.of(rootHolder.addChild(updated), updated);
+            });
+            return Observable.just(ModelActionHolder.referenceList(modelAction));
+        }
+    }
+
+    private static class NoOpEventFactory implements ReconcileEventFactory<Object> {
+
+        private static final Object EVENT = new Object();
+
+        @Override
+        public Object newBeforeChangeEvent(ReconciliationEngine<Object> engine, ChangeAction changeAction, long transactionId) {
+            return EVENT;
+        }
+
+        @Override
+        public Object newAfterChangeEvent(ReconciliationEngine<Object> engine, ChangeAction changeAction, long executionTimeMs, long transactionId) {
+            return EVENT;
+        }
+
+        @Override
+        public Object newChangeErrorEvent(ReconciliationEngine<Object> engine, ChangeAction changeAction, Throwable error, long executionTimeMs, long transactionId) {
+            return EVENT;
+        }
+
+        @Override
+        public Object newModelEvent(ReconciliationEngine<Object> engine, EntityHolder newRoot) {
+            return EVENT;
+        }
+
+        @Override
+        public Object newModelUpdateEvent(ReconciliationEngine<Object> engine,
+                                          ChangeAction changeAction,
+                                          ModelActionHolder modelActionHolder,
+                                          EntityHolder changedEntityHolder,
+                                          Optional<EntityHolder> previousEntityHolder,
+                                          long transactionId) {
+            return EVENT;
+        }
+
+        @Override
+        public Object newModelUpdateErrorEvent(ReconciliationEngine<Object> engine,
+                                               ChangeAction changeAction,
+                                               ModelActionHolder modelActionHolder,
+                                               EntityHolder previousEntityHolder,
+                                               Throwable error,
+                                               long transactionId) {
+            return EVENT;
+        }
+    }
+}
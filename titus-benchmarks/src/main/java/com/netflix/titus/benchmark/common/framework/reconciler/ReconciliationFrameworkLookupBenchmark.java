@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.common.framework.reconciler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.titus.common.framework.reconciler.ChangeAction;
+import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
+import com.netflix.titus.common.framework.reconciler.internal.DefaultReconciliationFramework;
+import com.netflix.titus.common.util.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rx.Observable;
+
+/**
+ * Per-lookup latency of {@link DefaultReconciliationFramework#findEngineByRootId(String)} and
+ * {@link DefaultReconciliationFramework#findEngineByChildId(String)}, with 20k jobs and 500k tasks by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ReconciliationFrameworkLookupBenchmark {
+
+    @Param({"20000"})
+    private int jobCount;
+
+    @Param({"25"})
+    private int tasksPerJob;
+
+    private DefaultReconciliationFramework<Object> framework;
+
+    private String[] jobIds;
+    private String[] taskIds;
+    private int nextJob;
+    private int nextTask;
+
+    @Setup
+    public void setUp() {
+        List<ReconciliationEngine<Object>> engines = new ArrayList<>(jobCount);
+        this.jobIds = new String[jobCount];
+        this.taskIds = new String[jobCount * tasksPerJob];
+        for (int j = 0; j < jobCount; j++) {
+            String jobId = "job#" + j;
+            EntityHolder jobHolder = EntityHolder.newRoot(jobId, jobId);
+            for (int t = 0; t < tasksPerJob; t++) {
+                String taskId = jobId + "-task#" + t;
+                jobHolder = jobHolder.addChild(EntityHolder.newRoot(taskId, taskId));
+                taskIds[j * tasksPerJob + t] = taskId;
+            }
+            jobIds[j] = jobId;
+            engines.add(new StaticEngine(jobHolder));
+        }
+        this.framework = new DefaultReconciliationFramework<>(
+                engines,
+                bootstrapModel -> new StaticEngine(bootstrapModel),
+                1_000,
+                1_000,
+                Collections.emptyMap(),
+                new DefaultRegistry(),
+                Optional.empty()
+        );
+    }
+
+    @TearDown
+    public void tearDown() {
+        framework.stop(1_000);
+    }
+
+    @Benchmark
+    public Optional<ReconciliationEngine<Object>> findEngineByRootId() {
+        String jobId = jobIds[nextJob];
+        nextJob = (nextJob + 1) % jobIds.length;
+        return framework.findEngineByRootId(jobId);
+    }
+
+    @Benchmark
+    public Optional<Pair<ReconciliationEngine<Object>, EntityHolder>> findEngineByChildId() {
+        String taskId = taskIds[nextTask];
+        nextTask = (nextTask + 1) % taskIds.length;
+        return framework.findEngineByChildId(taskId);
+    }
+
+    @Benchmark
+    public Optional<Pair<ReconciliationEngine<Object>, EntityHolder>> findEngineByUnknownChildId() {
+        return framework.findEngineByChildId("unknownTask");
+    }
+
+    private static class StaticEngine implements ReconciliationEngine<Object> {
+
+        private final EntityHolder model;
+
+        private StaticEngine(EntityHolder model) {
+            this.model = model;
+        }
+
+        @Override
+        public boolean applyModelUpdates() {
+            return false;
+        }
+
+        @Override
+        public boolean triggerEvents() {
+            return false;
+        }
+
+        @Override
+        public Observable<Void> changeReferenceModel(ChangeAction changeAction) {
+            return Observable.empty();
+        }
+
+        @Override
+        public EntityHolder getReferenceView() {
+            return model;
+        }
+
+        @Override
+        public EntityHolder getRunningView() {
+            return model;
+        }
+
+        @Override
+        public EntityHolder getStoreView() {
+            return model;
+        }
+
+        @Override
+        public <ORDER_BY> List<EntityHolder> orderedView(ORDER_BY orderingCriteria) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Observable<Object> events() {
+            return Observable.never();
+        }
+    }
+}
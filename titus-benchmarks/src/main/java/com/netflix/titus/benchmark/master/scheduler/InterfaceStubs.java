@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.master.scheduler;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.netflix.archaius.api.annotations.DefaultValue;
+
+/**
+ * Lightweight interface stubs for benchmarks. Mockito stubs record each invocation, and their overhead would dominate
+ * the cost of the measured code.
+ */
+public final class InterfaceStubs {
+
+    private InterfaceStubs() {
+    }
+
+    /**
+     * Creates an interface stub, with the given method handlers. Calling a method without a handler results in
+     * {@link UnsupportedOperationException}.
+     */
+    public static <T> T newStub(Class<T> type, Map<String, Function<Object[], Object>> handlers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> handler = handlers.get(method.getName());
+            if (handler != null) {
+                return handler.apply(args);
+            }
+            switch (method.getName()) {
+                case "toString":
+                    return type.getSimpleName() + "Stub";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException("Method not stubbed: " + method.getName());
+            }
+        }));
+    }
+
+    /**
+     * Creates an archaius configuration interface instance, returning the given overrides (keyed by method name), or
+     * {@link DefaultValue} annotation values.
+     */
+    public static <T> T newConfiguration(Class<T> configurationType, Map<String, Object> overrides) {
+        Map<String, Function<Object[], Object>> handlers = new HashMap<>();
+        for (Method method : configurationType.getMethods()) {
+            Object value = overrides.containsKey(method.getName())
+                    ? overrides.get(method.getName())
+                    : parseDefaultValue(method);
+            handlers.put(method.getName(), args -> value);
+        }
+        return newStub(configurationType, handlers);
+    }
+
+    private static Object parseDefaultValue(Method method) {
+        DefaultValue defaultValue = method.getAnnotation(DefaultValue.class);
+        if (defaultValue == null) {
+            return null;
+        }
+        String text = defaultValue.value();
+        Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class || returnType == Boolean.class) {
+            return Boolean.valueOf(text);
+        }
+        if (returnType == int.class || returnType == Integer.class) {
+            return Integer.valueOf(text);
+        }
+        if (returnType == long.class || returnType == Long.class) {
+            return Long.valueOf(text);
+        }
+        if (returnType == double.class || returnType == Double.class) {
+            return Double.valueOf(text);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.master.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.netflix.fenzo.ConstraintEvaluator;
+import com.netflix.fenzo.PreferentialNamedConsumableResourceSet;
+import com.netflix.fenzo.TaskAssignmentResult;
+import com.netflix.fenzo.TaskRequest;
+import com.netflix.fenzo.VMTaskFitnessCalculator;
+import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.fenzo.VirtualMachineLease;
+import com.netflix.titus.api.agent.model.AgentInstance;
+import com.netflix.titus.api.agent.model.AgentInstanceGroup;
+import com.netflix.titus.api.agent.model.monitor.AgentStatus;
+import com.netflix.titus.api.agent.service.AgentManagementService;
+import com.netflix.titus.api.agent.service.AgentStatusMonitor;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.JobFunctions;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
+import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.api.model.ResourceDimension;
+import com.netflix.titus.api.model.Tier;
+import com.netflix.titus.common.aws.AwsInstanceType;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.master.jobmanager.service.common.V3QueueableTask;
+import com.netflix.titus.master.scheduler.SchedulerConfiguration;
+import com.netflix.titus.master.scheduler.constraint.ConstraintEvaluatorTransformer;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCache;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheFunctions;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheImage;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheInstance;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheNetworkInterface;
+import com.netflix.titus.testkit.model.agent.AgentGenerator;
+import org.apache.mesos.Protos;
+
+import static com.netflix.titus.testkit.model.job.JobDescriptorGenerator.batchJobDescriptors;
+import static com.netflix.titus.testkit.model.job.JobDescriptorGenerator.serviceJobDescriptors;
+import static com.netflix.titus.testkit.model.job.JobGenerator.batchJobs;
+import static com.netflix.titus.testkit.model.job.JobGenerator.batchTasks;
+import static com.netflix.titus.testkit.model.job.JobGenerator.serviceJobs;
+import static com.netflix.titus.testkit.model.job.JobGenerator.serviceTasks;
+
+/**
+ * Simulated agent cluster and job population for scheduler benchmarks. Agents, jobs and tasks are created with
+ * the testkit generators, and exposed as Fenzo {@link VirtualMachineCurrentState} and {@link TaskRequest} objects,
+ * together with stubs of the services consulted by the Fenzo plugins.
+ */
+public class SimulatedCluster {
+
+    public static final String INSTANCE_GROUP_ATTRIBUTE = "asg";
+    public static final String INSTANCE_ATTRIBUTE = "id";
+    public static final String INSTANCE_TYPE_ATTRIBUTE = "itype";
+
+    private static final int JOB_COUNT = 100;
+    private static final int NETWORK_INTERFACES_PER_AGENT = 8;
+    private static final int AGENTS_PER_INSTANCE_GROUP = 500;
+
+    private static final AwsInstanceType[] INSTANCE_TYPES = {AwsInstanceType.M4_4XLarge, AwsInstanceType.R3_8XLarge, AwsInstanceType.P2_8XLarge};
+
+    private static final ConstraintEvaluatorTransformer<Pair<String, String>> NO_CONSTRAINTS = new ConstraintEvaluatorTransformer<Pair<String, String>>() {
+        @Override
+        public Optional<ConstraintEvaluator> hardConstraint(Pair<String, String> constraint, Supplier<Set<String>> activeTasksGetter) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<VMTaskFitnessCalculator> softConstraint(Pair<String, String> constraint, Supplier<Set<String>> activeTasksGetter) {
+            return Optional.empty();
+        }
+    };
+
+    private final List<Job<?>> jobs = new ArrayList<>();
+    private final List<VirtualMachineCurrentState> agents = new ArrayList<>();
+    private final List<TaskRequest> pendingTaskRequests = new ArrayList<>();
+
+    private final Map<String, AgentInstanceGroup> instanceGroups = new HashMap<>();
+    private final Map<String, AgentInstance> instances = new HashMap<>();
+    private final Map<String, Pair<Job<?>, Task>> tasks = new HashMap<>();
+    private final Map<String, AgentResourceCacheInstance> resourceCacheInstances = new HashMap<>();
+
+    private final SchedulerConfiguration schedulerConfiguration;
+    private final AgentManagementService agentManagementService;
+    private final AgentStatusMonitor agentStatusMonitor;
+    private final V3JobOperations v3JobOperations;
+    private final AgentResourceCache agentResourceCache;
+
+    private long nextTaskId;
+
+    public SimulatedCluster(int agentCount, int tasksPerAgent) {
+        this(agentCount, tasksPerAgent, Collections.emptyMap());
+    }
+
+    public SimulatedCluster(int agentCount, int tasksPerAgent, Map<String, Object> configurationOverrides) {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("getInstanceGroupAttributeName", INSTANCE_GROUP_ATTRIBUTE);
+        overrides.put("getInstanceAttributeName", INSTANCE_ATTRIBUTE);
+        overrides.putAll(configurationOverrides);
+        this.schedulerConfiguration = InterfaceStubs.newConfiguration(SchedulerConfiguration.class, overrides);
+
+        batchJobDescriptors().toList(JOB_COUNT / 2).forEach(descriptor -> jobs.add(batchJobs(descriptor).getValue()));
+        serviceJobDescriptors().toList(JOB_COUNT / 2).forEach(descriptor -> jobs.add(serviceJobs(descriptor).getValue()));
+
+        int taskIdx = 0;
+        int groupIdx = 0;
+        while (agents.size() < agentCount) {
+            int groupSize = Math.min(AGENTS_PER_INSTANCE_GROUP, agentCount - agents.size());
+            AwsInstanceType instanceType = INSTANCE_TYPES[groupIdx % INSTANCE_TYPES.length];
+            Tier tier = groupIdx % 2 == 0 ? Tier.Flex : Tier.Critical;
+            AgentInstanceGroup instanceGroup = AgentGenerator.agentServerGroups(tier, groupSize, instanceType).getValue().toBuilder()
+                    .withId("instanceGroup#" + groupIdx)
+                    .build();
+            instanceGroups.put(instanceGroup.getId(), instanceGroup);
+
+            for (AgentInstance generated : AgentGenerator.agentInstances(instanceGroup).toList(groupSize)) {
+                AgentInstance instance = generated.toBuilder()
+                        .withHostname(generated.getId().replace('#', '-') + ".titus.netflix.dev")
+                        .build();
+                instances.put(instance.getId(), instance);
+
+                List<TaskRequest> runningTasks = new ArrayList<>(tasksPerAgent);
+                for (int t = 0; t < tasksPerAgent; t++) {
+                    runningTasks.add(newTaskRequest(jobs.get(taskIdx++ % jobs.size()), tier));
+                }
+                resourceCacheInstances.put(instance.getHostname(), newResourceCacheInstance(instance.getHostname(), runningTasks));
+                agents.add(new SimulatedAgent(instanceGroup, instance, runningTasks));
+            }
+            groupIdx++;
+        }
+
+        for (Job<?> job : jobs) {
+            pendingTaskRequests.add(newTaskRequest(job, Tier.Flex));
+            pendingTaskRequests.add(newTaskRequest(job, Tier.Critical));
+        }
+
+        this.agentManagementService = newAgentManagementService();
+        this.agentStatusMonitor = newAgentStatusMonitor();
+        this.v3JobOperations = newV3JobOperations();
+        this.agentResourceCache = newAgentResourceCache();
+    }
+
+    public List<VirtualMachineCurrentState> getAgents() {
+        return agents;
+    }
+
+    public List<TaskRequest> getPendingTaskRequests() {
+        return pendingTaskRequests;
+    }
+
+    public SchedulerConfiguration getSchedulerConfiguration() {
+        return schedulerConfiguration;
+    }
+
+    public AgentManagementService getAgentManagementService() {
+        return agentManagementService;
+    }
+
+    public AgentStatusMonitor getAgentStatusMonitor() {
+        return agentStatusMonitor;
+    }
+
+    public V3JobOperations getV3JobOperations() {
+        return v3JobOperations;
+    }
+
+    public AgentResourceCache getAgentResourceCache() {
+        return agentResourceCache;
+    }
+
+    @SuppressWarnings("unchecked")
+    private TaskRequest newTaskRequest(Job<?> job, Tier tier) {
+        String taskId = job.getId() + "-task#" + nextTaskId++;
+        Task task = JobFunctions.isBatchJob(job)
+                ? batchTasks((Job<BatchJobExt>) job).getValue().toBuilder().withId(taskId).build()
+                : serviceTasks((Job<ServiceJobExt>) job).getValue().toBuilder().withId(taskId).build();
+        tasks.put(taskId, Pair.of(job, task));
+        return new V3QueueableTask(tier, job.getJobDescriptor().getCapacityGroup(), job, task, Collections::emptySet, NO_CONSTRAINTS, null, null);
+    }
+
+    private AgentResourceCacheInstance newResourceCacheInstance(String hostname, List<TaskRequest> runningTasks) {
+        Set<AgentResourceCacheImage> images = new HashSet<>();
+        Map<Integer, AgentResourceCacheNetworkInterface> networkInterfaces = new HashMap<>();
+        for (int i = 0; i < runningTasks.size(); i++) {
+            V3QueueableTask taskRequest = (V3QueueableTask) runningTasks.get(i);
+            images.add(AgentResourceCacheFunctions.createImage(taskRequest.getJob()));
+            int eniIndex = i % NETWORK_INTERFACES_PER_AGENT;
+            networkInterfaces.put(eniIndex, AgentResourceCacheFunctions.createNetworkInterface(
+                    taskRequest.getJob(), taskRequest.getTask(), eniIndex, System.currentTimeMillis()
+            ));
+        }
+        return AgentResourceCacheFunctions.createInstance(hostname, images, networkInterfaces);
+    }
+
+    private AgentManagementService newAgentManagementService() {
+        Map<String, Function<Object[], Object>> handlers = new HashMap<>();
+        handlers.put("getInstanceGroup", args -> {
+            AgentInstanceGroup instanceGroup = instanceGroups.get((String) args[0]);
+            if (instanceGroup == null) {
+                throw new IllegalArgumentException("Unknown instance group " + args[0]);
+            }
+            return instanceGroup;
+        });
+        handlers.put("getAgentInstance", args -> {
+            AgentInstance instance = instances.get((String) args[0]);
+            if (instance == null) {
+                throw new IllegalArgumentException("Unknown agent instance " + args[0]);
+            }
+            return instance;
+        });
+        handlers.put("getInstanceGroups", args -> new ArrayList<>(instanceGroups.values()));
+        return InterfaceStubs.newStub(AgentManagementService.class, handlers);
+    }
+
+    private AgentStatusMonitor newAgentStatusMonitor() {
+        Map<String, AgentStatus> statuses = new HashMap<>();
+        instances.forEach((id, instance) -> statuses.put(id, AgentStatus.healthy("benchmark", instance, "healthy", System.currentTimeMillis())));
+        return InterfaceStubs.newStub(AgentStatusMonitor.class, Collections.singletonMap("getStatus", args -> {
+            AgentStatus status = statuses.get((String) args[0]);
+            if (status == null) {
+                throw new IllegalArgumentException("Unknown agent instance " + args[0]);
+            }
+            return status;
+        }));
+    }
+
+    private V3JobOperations newV3JobOperations() {
+        return InterfaceStubs.newStub(V3JobOperations.class, Collections.singletonMap("findTaskById", args -> Optional.ofNullable(tasks.get((String) args[0]))));
+    }
+
+    private AgentResourceCache newAgentResourceCache() {
+        return new AgentResourceCache() {
+            @Override
+            public void createOrUpdate(String hostname, Function<Optional<AgentResourceCacheInstance>, AgentResourceCacheInstance> function) {
+                resourceCacheInstances.put(hostname, function.apply(Optional.ofNullable(resourceCacheInstances.get(hostname))));
+            }
+
+            @Override
+            public Optional<AgentResourceCacheInstance> get(String hostname) {
+                return Optional.ofNullable(resourceCacheInstances.get(hostname));
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+    }
+
+    private static Protos.Attribute textAttribute(String name, String value) {
+        return Protos.Attribute.newBuilder()
+                .setName(name)
+                .setType(Protos.Value.Type.TEXT)
+                .setText(Protos.Value.Text.newBuilder().setValue(value))
+                .build();
+    }
+
+    private static class SimulatedAgent implements VirtualMachineCurrentState {
+
+        private final String hostname;
+        private final List<TaskRequest> runningTasks;
+        private final VirtualMachineLease lease;
+
+        private SimulatedAgent(AgentInstanceGroup instanceGroup, AgentInstance instance, List<TaskRequest> runningTasks) {
+            this.hostname = instance.getHostname();
+            this.runningTasks = runningTasks;
+
+            Map<String, Protos.Attribute> attributes = new HashMap<>();
+            attributes.put(INSTANCE_GROUP_ATTRIBUTE, textAttribute(INSTANCE_GROUP_ATTRIBUTE, instanceGroup.getId()));
+            attributes.put(INSTANCE_ATTRIBUTE, textAttribute(INSTANCE_ATTRIBUTE, instance.getId()));
+            attributes.put(INSTANCE_TYPE_ATTRIBUTE, textAttribute(INSTANCE_TYPE_ATTRIBUTE, instanceGroup.getInstanceType()));
+            this.lease = new SimulatedLease(hostname, instanceGroup.getResourceDimension(), attributes);
+        }
+
+        @Override
+        public String getHostname() {
+            return hostname;
+        }
+
+        @Override
+        public Map<String, PreferentialNamedConsumableResourceSet> getResourceSets() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public VirtualMachineLease getCurrAvailableResources() {
+            return lease;
+        }
+
+        @Override
+        public Collection<Protos.Offer> getAllCurrentOffers() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<TaskAssignmentResult> getTasksCurrentlyAssigned() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<TaskRequest> getRunningTasks() {
+            return runningTasks;
+        }
+
+        @Override
+        public long getDisabledUntil() {
+            return 0;
+        }
+    }
+
+    private static class SimulatedLease implements VirtualMachineLease {
+
+        private final String hostname;
+        private final ResourceDimension resources;
+        private final Map<String, Protos.Attribute> attributes;
+        private final Map<String, Double> scalars;
+        private final long offeredTime = System.currentTimeMillis();
+
+        private SimulatedLease(String hostname, ResourceDimension resources, Map<String, Protos.Attribute> attributes) {
+            this.hostname = hostname;
+            this.resources = resources;
+            this.attributes = attributes;
+            this.scalars = Collections.singletonMap("gpu", (double) resources.getGpu());
+        }
+
+        @Override
+        public String getId() {
+            return hostname + "-lease";
+        }
+
+        @Override
+        public long getOfferedTime() {
+            return offeredTime;
+        }
+
+        @Override
+        public String hostname() {
+            return hostname;
+        }
+
+        @Override
+        public String getVMID() {
+            return hostname;
+        }
+
+        @Override
+        public double cpuCores() {
+            return resources.getCpu();
+        }
+
+        @Override
+        public double memoryMB() {
+            return resources.getMemoryMB();
+        }
+
+        @Override
+        public double networkMbps() {
+            return resources.getNetworkMbs();
+        }
+
+        @Override
+        public double diskMB() {
+            return resources.getDiskMB();
+        }
+
+        @Override
+        public List<Range> portRanges() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Protos.Offer getOffer() {
+            return null;
+        }
+
+        @Override
+        public Map<String, Protos.Attribute> getAttributeMap() {
+            return attributes;
+        }
+
+        @Override
+        public Double getScalarValue(String name) {
+            return scalars.get(name);
+        }
+
+        @Override
+        public Map<String, Double> getScalarValues() {
+            return scalars;
+        }
+    }
+}
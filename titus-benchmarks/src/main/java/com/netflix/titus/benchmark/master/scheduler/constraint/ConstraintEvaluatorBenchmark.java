@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.master.scheduler.constraint;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.fenzo.ConstraintEvaluator;
+import com.netflix.fenzo.TaskRequest;
+import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.titus.benchmark.master.scheduler.SimulatedCluster;
+import com.netflix.titus.master.scheduler.constraint.GlobalAgentClusterConstraint;
+import com.netflix.titus.master.scheduler.constraint.GlobalTaskLaunchingConstraintEvaluator;
+import com.netflix.titus.master.scheduler.constraint.GlobalTaskResubmitConstraintEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single task/agent evaluation of the global Fenzo constraint evaluators. Each invocation evaluates the
+ * next pending task against the next agent of a {@link SimulatedCluster}. Run with the GC profiler (the default in
+ * the jmh Gradle task) to get the allocation rate per evaluation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstraintEvaluatorBenchmark {
+
+    @Param({"1000"})
+    private int agentCount;
+
+    @Param({"10", "50"})
+    private int tasksPerAgent;
+
+    private List<VirtualMachineCurrentState> agents;
+    private List<TaskRequest> taskRequests;
+
+    private GlobalAgentClusterConstraint agentClusterConstraint;
+    private GlobalTaskLaunchingConstraintEvaluator taskLaunchingConstraintEvaluator;
+    private GlobalTaskResubmitConstraintEvaluator taskResubmitConstraintEvaluator;
+
+    private int nextAgent;
+    private int nextRequest;
+
+    @Setup
+    public void setUp() {
+        SimulatedCluster cluster = new SimulatedCluster(agentCount, tasksPerAgent);
+        this.agents = cluster.getAgents();
+        this.taskRequests = cluster.getPendingTaskRequests();
+
+        this.agentClusterConstraint = new GlobalAgentClusterConstraint(
+                cluster.getSchedulerConfiguration(), cluster.getAgentManagementService(), cluster.getAgentStatusMonitor()
+        );
+        agentClusterConstraint.prepare();
+        this.taskLaunchingConstraintEvaluator = new GlobalTaskLaunchingConstraintEvaluator(
+                cluster.getSchedulerConfiguration(), cluster.getV3JobOperations()
+        );
+        this.taskResubmitConstraintEvaluator = new GlobalTaskResubmitConstraintEvaluator();
+    }
+
+    @Benchmark
+    public ConstraintEvaluator.Result globalAgentClusterConstraint() {
+        return agentClusterConstraint.evaluate(nextTaskRequest(), nextAgent(), null);
+    }
+
+    @Benchmark
+    public ConstraintEvaluator.Result globalTaskLaunchingConstraintEvaluator() {
+        return taskLaunchingConstraintEvaluator.evaluate(nextTaskRequest(), nextAgent(), null);
+    }
+
+    @Benchmark
+    public ConstraintEvaluator.Result globalTaskResubmitConstraintEvaluator() {
+        return taskResubmitConstraintEvaluator.evaluate(nextTaskRequest(), nextAgent(), null);
+    }
+
+    private TaskRequest nextTaskRequest() {
+        TaskRequest taskRequest = taskRequests.get(nextRequest);
+        nextRequest = (nextRequest + 1) % taskRequests.size();
+        return taskRequest;
+    }
+
+    private VirtualMachineCurrentState nextAgent() {
+        VirtualMachineCurrentState agent = agents.get(nextAgent);
+        nextAgent = (nextAgent + 1) % agents.size();
+        return agent;
+    }
+}
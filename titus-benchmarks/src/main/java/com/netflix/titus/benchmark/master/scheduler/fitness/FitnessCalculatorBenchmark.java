@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.master.scheduler.fitness;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.fenzo.TaskRequest;
+import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.titus.benchmark.master.scheduler.SimulatedCluster;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex;
+import com.netflix.titus.master.scheduler.fitness.CachedImageFitnessCalculator;
+import com.netflix.titus.master.scheduler.fitness.CachedSecurityGroupFitnessCalculator;
+import com.netflix.titus.master.scheduler.fitness.FitnessCalculatorFunctions;
+import com.netflix.titus.master.scheduler.fitness.TitusFitnessCalculator;
+import com.netflix.titus.master.scheduler.fitness.networkinterface.TitusNetworkInterfaceFitnessEvaluator;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheFunctions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single task/agent evaluation of the Titus fitness calculators. Each invocation evaluates the next pending
+ * task against the next agent of a {@link SimulatedCluster}. Run with the GC profiler (the default in the jmh Gradle
+ * task) to get the allocation rate per evaluation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FitnessCalculatorBenchmark {
+
+    private static final int NETWORK_INTERFACE_COUNT = 8;
+    private static final int NETWORK_INTERFACE_LIMIT = 50;
+
+    @Param({"1000"})
+    private int agentCount;
+
+    @Param({"10", "50"})
+    private int tasksPerAgent;
+
+    private List<VirtualMachineCurrentState> agents;
+    private List<TaskRequest> taskRequests;
+    private String[] requestSecurityGroups;
+
+    private CachedImageFitnessCalculator cachedImageFitnessCalculator;
+    private CachedSecurityGroupFitnessCalculator cachedSecurityGroupFitnessCalculator;
+    private TitusFitnessCalculator titusFitnessCalculator;
+    private TitusNetworkInterfaceFitnessEvaluator networkInterfaceFitnessEvaluator;
+
+    private int nextAgent;
+    private int nextRequest;
+
+    @Setup
+    public void setUp() {
+        SimulatedCluster cluster = new SimulatedCluster(agentCount, tasksPerAgent);
+        this.agents = cluster.getAgents();
+        this.taskRequests = cluster.getPendingTaskRequests();
+        this.requestSecurityGroups = taskRequests.stream()
+                .map(FitnessCalculatorFunctions::getJoinedSecurityGroupIds)
+                .toArray(String[]::new);
+
+        AgentTaskSignatureIndex signatureIndex = new AgentTaskSignatureIndex();
+        for (VirtualMachineCurrentState agent : agents) {
+            agent.getRunningTasks().forEach(taskRequest -> signatureIndex.addTask(taskRequest, agent.getHostname()));
+        }
+
+        this.cachedImageFitnessCalculator = new CachedImageFitnessCalculator(cluster.getAgentResourceCache());
+        this.cachedSecurityGroupFitnessCalculator = new CachedSecurityGroupFitnessCalculator(cluster.getAgentResourceCache());
+        this.titusFitnessCalculator = new TitusFitnessCalculator(cluster.getSchedulerConfiguration(), cluster.getAgentResourceCache(), signatureIndex);
+        this.networkInterfaceFitnessEvaluator = new TitusNetworkInterfaceFitnessEvaluator(
+                cluster.getSchedulerConfiguration(), cluster.getAgentResourceCache(), TitusRuntimes.internal()
+        );
+    }
+
+    @Benchmark
+    public double cachedImageFitnessCalculator() {
+        return cachedImageFitnessCalculator.calculateFitness(nextTaskRequest(), nextAgent(), null);
+    }
+
+    @Benchmark
+    public double cachedSecurityGroupFitnessCalculator() {
+        return cachedSecurityGroupFitnessCalculator.calculateFitness(nextTaskRequest(), nextAgent(), null);
+    }
+
+    @Benchmark
+    public double titusFitnessCalculator() {
+        return titusFitnessCalculator.calculateFitness(nextTaskRequest(), nextAgent(), null);
+    }
+
+    @Benchmark
+    public double networkInterfaceFitnessEvaluatorIdle() {
+        int requestIndex = nextRequest;
+        TaskRequest taskRequest = nextTaskRequest();
+        return networkInterfaceFitnessEvaluator.evaluateIdle(
+                nextAgent().getHostname(),
+                AgentResourceCacheFunctions.EMPTY_JOINED_SECURITY_GROUP_IDS,
+                requestIndex % NETWORK_INTERFACE_COUNT,
+                taskRequest.getNetworkMbps(),
+                NETWORK_INTERFACE_LIMIT
+        );
+    }
+
+    @Benchmark
+    public double networkInterfaceFitnessEvaluator() {
+        int requestIndex = nextRequest;
+        TaskRequest taskRequest = nextTaskRequest();
+        return networkInterfaceFitnessEvaluator.evaluate(
+                nextAgent().getHostname(),
+                requestSecurityGroups[requestIndex],
+                requestIndex % NETWORK_INTERFACE_COUNT,
+                taskRequest.getNetworkMbps(),
+                taskRequest.getNetworkMbps(),
+                NETWORK_INTERFACE_LIMIT
+        );
+    }
+
+    private TaskRequest nextTaskRequest() {
+        TaskRequest taskRequest = taskRequests.get(nextRequest);
+        nextRequest = (nextRequest + 1) % taskRequests.size();
+        return taskRequest;
+    }
+
+    private VirtualMachineCurrentState nextAgent() {
+        VirtualMachineCurrentState agent = agents.get(nextAgent);
+        nextAgent = (nextAgent + 1) % agents.size();
+        return agent;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.master.scheduler.fitness;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.fenzo.TaskRequest;
+import com.netflix.fenzo.VMTaskFitnessCalculator;
+import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.titus.benchmark.master.scheduler.SimulatedCluster;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex;
+import com.netflix.titus.master.scheduler.fitness.FitnessCalculatorFunctions;
+import com.netflix.titus.master.scheduler.fitness.ImageSpreadingFitnessCalculator;
+import com.netflix.titus.master.scheduler.fitness.JobTypeFitnessCalculator;
+import com.netflix.titus.master.scheduler.fitness.SecurityGroupSpreadingFitnessCalculator;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheFunctions;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of evaluating the spreading fitness calculators (image, security group and job type) of a single task against
+ * all agents of a simulated cluster. The 'indexed' benchmark uses {@link AgentTaskSignatureIndex}, and the 'scan'
+ * benchmark recomputes attributes of all tasks running on each agent, as the calculators did before the index was
+ * introduced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpreadingFitnessCalculatorBenchmark {
+
+    @Param({"5000"})
+    private int agentCount;
+
+    @Param({"10", "50"})
+    private int tasksPerAgent;
+
+    private List<VirtualMachineCurrentState> agents;
+    private List<TaskRequest> taskRequests;
+    private List<VMTaskFitnessCalculator> indexedCalculators;
+    private int nextRequest;
+
+    @Setup
+    public void setUp() {
+        SimulatedCluster cluster = new SimulatedCluster(agentCount, tasksPerAgent);
+        this.agents = cluster.getAgents();
+        this.taskRequests = cluster.getPendingTaskRequests();
+
+        AgentTaskSignatureIndex signatureIndex = new AgentTaskSignatureIndex();
+        for (VirtualMachineCurrentState agent : agents) {
+            agent.getRunningTasks().forEach(taskRequest -> signatureIndex.addTask(taskRequest, agent.getHostname()));
+        }
+
+        this.indexedCalculators = new ArrayList<>();
+        indexedCalculators.add(new ImageSpreadingFitnessCalculator(signatureIndex));
+        indexedCalculators.add(new SecurityGroupSpreadingFitnessCalculator(signatureIndex));
+        indexedCalculators.add(new JobTypeFitnessCalculator(signatureIndex));
+    }
+
+    @Benchmark
+    public double indexed() {
+        TaskRequest taskRequest = nextTaskRequest();
+        double total = 0;
+        for (VirtualMachineCurrentState agent : agents) {
+            for (VMTaskFitnessCalculator calculator : indexedCalculators) {
+                total += calculator.calculateFitness(taskRequest, agent, null);
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double scan() {
+        TaskRequest taskRequest = nextTaskRequest();
+        double total = 0;
+        for (VirtualMachineCurrentState agent : agents) {
+            List<TaskRequest> tasksOnAgent = FitnessCalculatorFunctions.getAllTasksOnAgent(agent);
+
+            AgentResourceCacheImage image = AgentResourceCacheFunctions.getImage(taskRequest);
+            total += FitnessCalculatorFunctions.countMatchingTasks(tasksOnAgent, t -> image.equals(AgentResourceCacheFunctions.getImage(t)));
+
+            String securityGroups = FitnessCalculatorFunctions.getJoinedSecurityGroupIds(taskRequest);
+            total += FitnessCalculatorFunctions.countMatchingTasks(tasksOnAgent, t -> securityGroups.equals(FitnessCalculatorFunctions.getJoinedSecurityGroupIds(t)));
+
+            boolean serviceJob = FitnessCalculatorFunctions.isServiceJob(taskRequest);
+            total += FitnessCalculatorFunctions.countMatchingTasks(tasksOnAgent, t -> serviceJob == FitnessCalculatorFunctions.isServiceJob(t));
+        }
+        return total;
+    }
+
+    private TaskRequest nextTaskRequest() {
+        return taskRequests.get(nextRequest++ % taskRequests.size());
+    }
+}
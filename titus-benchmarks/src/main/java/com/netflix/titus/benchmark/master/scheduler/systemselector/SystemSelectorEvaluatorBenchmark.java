@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.master.scheduler.systemselector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.titus.master.scheduler.systemselector.SystemSelectorEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single system selector expression evaluation, with the native expression compiler and with the
+ * script engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemSelectorEvaluatorBenchmark {
+
+    private static final String SIMPLE_EXPRESSION = "job.applicationName == 'myApp'";
+    private static final String COMPOSITE_EXPRESSION = "job.applicationName.startsWith('my') && (job.capacity > 5 || instance.attributes['zone'] != 'zoneA')";
+
+    @Param({"true", "false"})
+    private boolean nativeEvaluation;
+
+    @Param({"simple", "composite"})
+    private String expressionType;
+
+    private SystemSelectorEvaluator evaluator;
+    private String expression;
+    private Map<String, Object> context;
+
+    @Setup
+    public void setUp() {
+        this.evaluator = new SystemSelectorEvaluator(1, nativeEvaluation, new DefaultRegistry());
+        this.expression = expressionType.equals("simple") ? SIMPLE_EXPRESSION : COMPOSITE_EXPRESSION;
+        this.context = new HashMap<>();
+        context.put("job", new BenchmarkJob("myApp", 10));
+        context.put("instance", ImmutableMap.of("attributes", ImmutableMap.of("zone", "zoneA")));
+    }
+
+    @Benchmark
+    public boolean evaluate() {
+        return evaluator.evaluate(expression, context);
+    }
+
+    public static class BenchmarkJob {
+
+        private final String applicationName;
+        private final int capacity;
+
+        public BenchmarkJob(String applicationName, int capacity) {
+            this.applicationName = applicationName;
+            this.capacity = capacity;
+        }
+
+        public String getApplicationName() {
+            return applicationName;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+    }
+}
@@ -16,19 +16,24 @@
 
 package com.netflix.titus.common.framework.reconciler;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import com.netflix.titus.common.util.collections.PersistentHashMap;
 import com.netflix.titus.common.util.tuple.Pair;
 
 /**
  * Composite entity hierarchy. The parent-child association runs from parent to child only. {@link EntityHolder} instances
  * are immutable, thus each change produces a new version of an entity. Also each child update requires update of a parent
  * entity, when the reference to the child changes (a new version is created).
+ * <p>
+ * Children are kept in a {@link PersistentHashMap}, so adding, replacing or removing a child is O(log n), and all
+ * versions of an entity (for example reference, running and store models) share the unchanged part of the child set.
  */
 public class EntityHolder {
 
@@ -36,14 +41,14 @@ public class EntityHolder {
     private final Object entity;
 
     private final List<EntityHolder> children;
-    private final Map<String, EntityHolder> childrenById;
+    private final PersistentHashMap<String, EntityHolder> childrenById;
     private final Map<String, Object> attributes;
 
-    private EntityHolder(String id, Object entity, Map<String, EntityHolder> childrenById, Map<String, Object> attributes) {
+    private EntityHolder(String id, Object entity, PersistentHashMap<String, EntityHolder> childrenById, Map<String, Object> attributes) {
         this.id = id;
         this.entity = entity;
         this.childrenById = childrenById;
-        this.children = new ArrayList<>(childrenById.values());
+        this.children = childrenById.isEmpty() ? Collections.emptyList() : new ChildrenView(childrenById);
         this.attributes = attributes;
     }
 
@@ -87,18 +92,28 @@ public class EntityHolder {
         return Optional.empty();
     }
 
+    /**
+     * Reports the direct children which were added, removed or replaced in this entity version, when compared to the
+     * previous one. Only the changed part of the children collection is visited.
+     */
+    public void diffChildren(EntityHolder previous, PersistentHashMap.DiffConsumer<String, EntityHolder> consumer) {
+        childrenById.diff(previous.childrenById, consumer);
+    }
+
     public EntityHolder addChild(EntityHolder child) {
-        Map<String, EntityHolder> newChildrenById = new HashMap<>(childrenById);
-        newChildrenById.put(child.getId(), child);
+        PersistentHashMap<String, EntityHolder> newChildrenById = childrenById.plus(child.getId(), child);
+        if (newChildrenById == childrenById) {
+            return this;
+        }
         return new EntityHolder(id, entity, newChildrenById, attributes);
     }
 
     public Pair<EntityHolder, Optional<EntityHolder>> removeChild(String id) {
-        if (!childrenById.containsKey(id)) {
+        EntityHolder removedChild = childrenById.get(id);
+        if (removedChild == null) {
             return Pair.of(this, Optional.empty());
         }
-        Map<String, EntityHolder> newChildrenById = new HashMap<>(childrenById);
-        EntityHolder removedChild = newChildrenById.remove(id);
+        PersistentHashMap<String, EntityHolder> newChildrenById = childrenById.minus(id);
 
         EntityHolder newRoot = new EntityHolder(this.id, this.entity, newChildrenById, this.attributes);
         return Pair.of(newRoot, Optional.of(removedChild));
@@ -124,6 +139,40 @@ public class EntityHolder {
     }
 
     public static <E> EntityHolder newRoot(String id, E entity) {
-        return new EntityHolder(id, entity, Collections.emptyMap(), Collections.emptyMap());
+        return new EntityHolder(id, entity, PersistentHashMap.empty(), Collections.emptyMap());
+    }
+
+    /**
+     * Immutable list view of the children map. Iteration and size are served directly from the map. Indexed access
+     * is rare, so the array backing it is materialized lazily on first use.
+     */
+    private static class ChildrenView extends AbstractList<EntityHolder> {
+
+        private final PersistentHashMap<String, EntityHolder> childrenById;
+        private volatile Object[] materialized;
+
+        private ChildrenView(PersistentHashMap<String, EntityHolder> childrenById) {
+            this.childrenById = childrenById;
+        }
+
+        @Override
+        public EntityHolder get(int index) {
+            Object[] current = materialized;
+            if (current == null) {
+                current = childrenById.values().toArray();
+                materialized = current;
+            }
+            return (EntityHolder) current[index];
+        }
+
+        @Override
+        public int size() {
+            return childrenById.size();
+        }
+
+        @Override
+        public Iterator<EntityHolder> iterator() {
+            return childrenById.values().iterator();
+        }
     }
 }
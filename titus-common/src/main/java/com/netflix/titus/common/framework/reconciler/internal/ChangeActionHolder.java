@@ -16,18 +16,32 @@
 
 package com.netflix.titus.common.framework.reconciler.internal;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 import com.netflix.titus.common.framework.reconciler.ChangeAction;
+import rx.Subscriber;
 
 final class ChangeActionHolder {
 
+    private static final AtomicIntegerFieldUpdater<ChangeActionHolder> FINISHED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ChangeActionHolder.class, "finished");
+
     private final ChangeAction changeAction;
     private final long transactionId;
     private final long createTimeMs;
+    private final Subscriber<Void> subscriber;
+
+    private volatile int finished;
 
     ChangeActionHolder(ChangeAction changeAction, long transactionId, long createTimeMs) {
+        this(changeAction, transactionId, createTimeMs, null);
+    }
+
+    ChangeActionHolder(ChangeAction changeAction, long transactionId, long createTimeMs, Subscriber<Void> subscriber) {
         this.changeAction = changeAction;
         this.transactionId = transactionId;
         this.createTimeMs = createTimeMs;
+        this.subscriber = subscriber;
     }
 
     ChangeAction getChangeAction() {
@@ -41,4 +55,19 @@ final class ChangeActionHolder {
     long getCreateTimeMs() {
         return createTimeMs;
     }
+
+    /**
+     * Subscriber of a reference change action, or null for a reconcile action.
+     */
+    Subscriber<Void> getSubscriber() {
+        return subscriber;
+    }
+
+    /**
+     * Returns true only for the first invocation, so the action completion is recorded only once, no matter if it was
+     * completed, failed or unsubscribed.
+     */
+    boolean markFinished() {
+        return FINISHED_UPDATER.compareAndSet(this, 0, 1);
+    }
 }
@@ -22,10 +22,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
@@ -36,6 +33,7 @@ import com.netflix.titus.common.framework.reconciler.ModelActionHolder;
 import com.netflix.titus.common.framework.reconciler.ReconcileEventFactory;
 import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
 import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.util.collections.MpscQueue;
 import com.netflix.titus.common.util.rx.ObservableExt;
 import com.netflix.titus.common.util.time.Clock;
 import com.netflix.titus.common.util.tuple.Pair;
@@ -54,17 +52,29 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultReconciliationEngine.class);
 
+    private static final long UNRESOLVED_MODEL_VERSION = -1;
+
     private final AtomicLong nextTransactionId = new AtomicLong();
 
     private final ReconcileEventFactory<EVENT> eventFactory;
     private final ModelHolder<EVENT> modelHolder;
 
-    private final BlockingQueue<EVENT> changeActionEventQueue = new LinkedBlockingQueue<>();
-    private final BlockingQueue<Pair<ChangeActionHolder, Subscriber<Void>>> referenceChangeActions = new LinkedBlockingQueue<>();
-    private final BlockingQueue<Pair<ChangeActionHolder, List<ModelActionHolder>>> modelActionHolders = new LinkedBlockingQueue<>();
+    /*
+     * Queues written from change action callbacks (any thread), and drained by the reconciliation loop thread.
+     */
+    private final MpscQueue<EVENT> changeActionEventQueue = new MpscQueue<>();
+    private final MpscQueue<ChangeActionHolder> referenceChangeActions = new MpscQueue<>();
+    private final MpscQueue<Pair<ChangeActionHolder, List<ModelActionHolder>>> modelActionHolders = new MpscQueue<>();
+
+    /**
+     * Change action events drained from {@link #changeActionEventQueue}, but not emitted yet. Reused between iterations.
+     */
+    private final List<EVENT> pendingChangeActionEvents = new ArrayList<>();
+
     private final ReconciliationEngineMetrics<EVENT> metrics;
     private final TitusRuntime titusRuntime;
     private final Clock clock;
+    private final long forcedResolveIntervalMs;
 
     private IndexSet<EntityHolder> indexSet;
 
@@ -76,6 +86,30 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
 
     private boolean firstTrigger;
 
+    private long resolvedModelVersion = UNRESOLVED_MODEL_VERSION;
+    private long lastResolveTimestamp;
+
+    private volatile Runnable readyListener = () -> {
+    };
+
+    public DefaultReconciliationEngine(EntityHolder bootstrapModel,
+                                       boolean newlyCreated,
+                                       DifferenceResolver<EVENT> runningDifferenceResolver,
+                                       Map<Object, Comparator<EntityHolder>> indexComparators,
+                                       ReconcileEventFactory<EVENT> eventFactory,
+                                       Function<ChangeAction, List<Tag>> extraChangeActionTags,
+                                       Function<EVENT, List<Tag>> extraModelActionTags,
+                                       TitusRuntime titusRuntime) {
+        this(bootstrapModel, newlyCreated, runningDifferenceResolver, indexComparators, eventFactory, extraChangeActionTags,
+                extraModelActionTags, 0, titusRuntime);
+    }
+
+    /**
+     * @param forcedResolveIntervalMs the difference resolver is not called if the model has not changed since its last
+     *                                evaluation which returned no actions, unless this amount of time has passed. This
+     *                                interval bounds the reaction time to time-driven rules, like retry delays or timeouts.
+     *                                If set to 0, the difference is resolved on each invocation.
+     */
     public DefaultReconciliationEngine(EntityHolder bootstrapModel,
                                        boolean newlyCreated,
                                        DifferenceResolver<EVENT> runningDifferenceResolver,
@@ -83,16 +117,18 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
                                        ReconcileEventFactory<EVENT> eventFactory,
                                        Function<ChangeAction, List<Tag>> extraChangeActionTags,
                                        Function<EVENT, List<Tag>> extraModelActionTags,
+                                       long forcedResolveIntervalMs,
                                        TitusRuntime titusRuntime) {
         this.eventFactory = eventFactory;
-        this.indexSet = IndexSet.newIndexSet(indexComparators);
+        this.indexSet = IndexSet.newIndexSet(indexComparators, EntityHolder::getId);
         this.titusRuntime = titusRuntime;
         this.clock = titusRuntime.getClock();
+        this.forcedResolveIntervalMs = forcedResolveIntervalMs;
         this.eventObservable = ObservableExt.protectFromMissingExceptionHandlers(eventSubject, logger);
         this.modelHolder = new ModelHolder<>(this, bootstrapModel, runningDifferenceResolver);
         this.firstTrigger = newlyCreated;
         this.metrics = new ReconciliationEngineMetrics<>(bootstrapModel.getId(), extraChangeActionTags, extraModelActionTags, titusRuntime.getRegistry(), clock);
-        indexEntityHolder(bootstrapModel);
+        this.indexSet = indexSet.apply(bootstrapModel.getChildren());
     }
 
     @Override
@@ -127,18 +163,20 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
                 firstTrigger = false;
                 emitEvent(eventFactory.newModelEvent(this, modelHolder.getReference()));
             }
-            if (!changeActionEventQueue.isEmpty()) {
-                List<EVENT> drainQueue = new ArrayList<>();
-                changeActionEventQueue.drainTo(drainQueue);
+            if (!changeActionEventQueue.isEmpty() || !pendingChangeActionEvents.isEmpty()) {
+                changeActionEventQueue.drainTo(pendingChangeActionEvents);
 
                 // Due to concurrent updates, we have to drain the queue first, and only after check if there are any
                 // new model updates. If there are we have to abandon this iteration, and start from the beginning later.
+                // The drained events are kept in order, and emitted in the next iteration.
                 if (!isOkToProcessNextChangeAction()) {
-                    changeActionEventQueue.addAll(drainQueue);
                     return false;
                 }
 
-                drainQueue.forEach(this::emitEvent);
+                for (EVENT event : pendingChangeActionEvents) {
+                    emitEvent(event);
+                }
+                pendingChangeActionEvents.clear();
             }
 
             // If there are pending changes (user triggered or reconciliation) do nothing.
@@ -156,13 +194,25 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
                 return true;
             }
 
+            // Nothing changed since the last evaluation, which found no difference.
+            if (!isResolveRequired()) {
+                metrics.resolveSkipped();
+                return false;
+            }
+
             // Compute the current difference between the reference and persistent/runtime models, and create a list
             // of actions to correct that. The returned action set can be run in parallel.
+            metrics.resolveEvaluated();
             List<ChangeAction> reconcileActions = modelHolder.resolveDifference();
             if (!reconcileActions.isEmpty()) {
+                // A reconcile action may complete without changing the model (for example on an error), so the difference
+                // must be resolved again once the actions are done.
+                resolvedModelVersion = UNRESOLVED_MODEL_VERSION;
                 startReconcileAction(reconcileActions);
                 return true;
             }
+            resolvedModelVersion = modelHolder.getVersion();
+            lastResolveTimestamp = clock.wallTime();
             return false;
         } catch (Exception e) {
             metrics.evaluated(clock.nanoTime() - startTimeNs, e);
@@ -191,13 +241,17 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
         return false;
     }
 
+    private boolean isResolveRequired() {
+        return resolvedModelVersion != modelHolder.getVersion() || clock.wallTime() - lastResolveTimestamp >= forcedResolveIntervalMs;
+    }
+
     @Override
     public Observable<Void> changeReferenceModel(ChangeAction referenceUpdate) {
         return Observable.unsafeCreate(subscriber -> {
             long transactionId = nextTransactionId.getAndIncrement();
-            changeActionEventQueue.add(eventFactory.newBeforeChangeEvent(this, referenceUpdate, transactionId));
-            referenceChangeActions.add(Pair.of(new ChangeActionHolder(referenceUpdate, transactionId, clock.wallTime()), (Subscriber<Void>) subscriber));
-            metrics.updateChangeActionQueueSize(referenceChangeActions.size());
+            changeActionEventQueue.offer(eventFactory.newBeforeChangeEvent(this, referenceUpdate, transactionId));
+            referenceChangeActions.offer(new ChangeActionHolder(referenceUpdate, transactionId, clock.wallTime(), (Subscriber<Void>) subscriber));
+            readyListener.run();
         });
     }
 
@@ -226,6 +280,14 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
         return eventObservable;
     }
 
+    /**
+     * Sets a callback invoked (from any thread) each time this engine has new work for the event loop: a queued
+     * reference change action, a completed change action, or pending model updates.
+     */
+    void setReadyListener(Runnable readyListener) {
+        this.readyListener = readyListener;
+    }
+
     void shutdown() {
         startedReferenceChangeActionSubscription.ifPresent(Subscription::unsubscribe);
         startedReferenceChangeActionSubscription = Optional.empty();
@@ -267,7 +329,7 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
                                 previousHolder = getPrevious(modelHolder.getReference(), changedItem);
                                 modelHolder.setReference(newRoot);
                                 if (changedItem != newRoot || rootHolder.getChildren().size() != newRoot.getChildren().size()) {
-                                    indexEntityHolder(newRoot);
+                                    indexEntityHolder(rootHolder, newRoot, changedItem);
                                 }
                                 break;
                             case Running:
@@ -306,38 +368,37 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
 
     private boolean startNextReferenceChangeAction() {
         try {
-            Pair<ChangeActionHolder, Subscriber<Void>> next;
+            ChangeActionHolder next;
             while ((next = referenceChangeActions.poll()) != null) {
-                Subscriber<Void> subscriber = next.getRight();
+                Subscriber<Void> subscriber = next.getSubscriber();
                 if (!subscriber.isUnsubscribed()) {
-                    ChangeActionHolder actionHolder = next.getLeft();
+                    ChangeActionHolder actionHolder = next;
                     long startTimeNs = clock.nanoTime();
                     metrics.changeActionStarted(actionHolder);
 
-                    final Pair<ChangeActionHolder, Subscriber<Void>> finalNext = next;
-                    AtomicBoolean metricsNotUpdated = new AtomicBoolean(true);
                     Subscription subscription = actionHolder.getChangeAction().apply()
                             .doOnUnsubscribe(() -> {
-                                if (metricsNotUpdated.getAndSet(false)) {
+                                if (actionHolder.markFinished()) {
                                     metrics.changeActionUnsubscribed(actionHolder, clock.nanoTime() - startTimeNs);
                                 }
                                 subscriber.unsubscribe();
+                                readyListener.run();
                             })
                             .subscribe(
                                     modelActionHolderList -> {
-                                        changeActionEventQueue.add(eventFactory.newAfterChangeEvent(this, actionHolder.getChangeAction(), passedMs(startTimeNs), actionHolder.getTransactionId()));
-                                        registerModelUpdateRequest(finalNext.getLeft(), modelActionHolderList);
+                                        changeActionEventQueue.offer(eventFactory.newAfterChangeEvent(this, actionHolder.getChangeAction(), passedMs(startTimeNs), actionHolder.getTransactionId()));
+                                        registerModelUpdateRequest(actionHolder, modelActionHolderList);
                                     },
                                     e -> {
-                                        if (metricsNotUpdated.getAndSet(false)) {
+                                        if (actionHolder.markFinished()) {
                                             metrics.changeActionFinished(actionHolder, clock.nanoTime() - startTimeNs, e);
                                         }
-                                        changeActionEventQueue.add(eventFactory.newChangeErrorEvent(this, actionHolder.getChangeAction(), e, passedMs(startTimeNs), actionHolder.getTransactionId()));
+                                        changeActionEventQueue.offer(eventFactory.newChangeErrorEvent(this, actionHolder.getChangeAction(), e, passedMs(startTimeNs), actionHolder.getTransactionId()));
                                         subscriber.onError(e);
                                     },
                                     // TODO Make sure always one element is emitted
                                     () -> {
-                                        if (metricsNotUpdated.getAndSet(false)) {
+                                        if (actionHolder.markFinished()) {
                                             metrics.changeActionFinished(actionHolder, clock.nanoTime() - startTimeNs);
                                         }
                                         subscriber.onCompleted();
@@ -355,7 +416,8 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
     }
 
     private void registerModelUpdateRequest(ChangeActionHolder changeActionHolder, List<ModelActionHolder> stateChange) {
-        modelActionHolders.add(Pair.of(changeActionHolder, stateChange));
+        modelActionHolders.offer(Pair.of(changeActionHolder, stateChange));
+        readyListener.run();
     }
 
     private boolean hasRunningReconciliationActions() {
@@ -379,27 +441,27 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
             metrics.reconcileActionStarted(changeActionHolder);
 
             emitEvent(eventFactory.newBeforeChangeEvent(this, action, transactionId));
-            AtomicBoolean metricsNotUpdated = new AtomicBoolean(true);
             Subscription subscription = action.apply()
                     .doOnUnsubscribe(() -> {
-                        if (metricsNotUpdated.getAndSet(false)) {
+                        if (changeActionHolder.markFinished()) {
                             metrics.reconcileActionUnsubscribed(changeActionHolder, clock.nanoTime() - startTimeNs);
                         }
+                        readyListener.run();
                     })
                     .subscribe(
                             modelActionHolders -> {
                                 registerModelUpdateRequest(changeActionHolder, modelActionHolders);
-                                changeActionEventQueue.add(eventFactory.newAfterChangeEvent(this, action, passedMs(startTimeNs), transactionId));
+                                changeActionEventQueue.offer(eventFactory.newAfterChangeEvent(this, action, passedMs(startTimeNs), transactionId));
                             },
                             e -> {
-                                if (metricsNotUpdated.getAndSet(false)) {
+                                if (changeActionHolder.markFinished()) {
                                     metrics.reconcileActionFinished(changeActionHolder, clock.nanoTime() - startTimeNs, e);
                                 }
-                                changeActionEventQueue.add(eventFactory.newChangeErrorEvent(this, action, e, passedMs(startTimeNs), transactionId));
+                                changeActionEventQueue.offer(eventFactory.newChangeErrorEvent(this, action, e, passedMs(startTimeNs), transactionId));
                                 logger.debug("Action execution error", e);
                             },
                             () -> {
-                                if (metricsNotUpdated.getAndSet(false)) {
+                                if (changeActionHolder.markFinished()) {
                                     metrics.reconcileActionFinished(changeActionHolder, clock.nanoTime() - startTimeNs);
                                 }
                             }
@@ -409,8 +471,19 @@ public class DefaultReconciliationEngine<EVENT> implements ReconciliationEngine<
         this.startedReconciliationActionSubscriptions = subscriptions;
     }
 
-    private void indexEntityHolder(EntityHolder entityHolder) {
-        indexSet = indexSet.apply(entityHolder.getChildren());
+    /**
+     * A single child update is applied directly to the index set. In other cases the index set is reconciled with the
+     * full child set, which still re-indexes only the children that were added, changed or removed.
+     */
+    private void indexEntityHolder(EntityHolder previousRoot, EntityHolder newRoot, EntityHolder changedItem) {
+        boolean singleChildUpdate = changedItem != newRoot
+                && previousRoot.getChildren().size() == newRoot.getChildren().size()
+                && indexSet.contains(changedItem.getId());
+        if (singleChildUpdate) {
+            indexSet = indexSet.add(Collections.singletonList(changedItem));
+        } else {
+            indexSet = indexSet.apply(newRoot.getChildren());
+        }
     }
 
     private void emitEvent(EVENT event) {
@@ -17,8 +17,11 @@
 package com.netflix.titus.common.framework.reconciler.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -30,11 +33,13 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import com.google.common.base.Preconditions;
+import com.netflix.spectator.api.BasicTag;
 import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.Tag;
 import com.netflix.spectator.api.Timer;
 import com.netflix.spectator.api.patterns.PolledMeter;
 import com.netflix.titus.common.framework.reconciler.EntityHolder;
@@ -70,6 +75,25 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
 
     private final Set<ReconciliationEngine<EVENT>> engines = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+    /**
+     * Root id and child id indexes, updated by the event loop together with the {@link #indexSet}. Only engines
+     * whose reference model changed are re-indexed. The child id index may be shared by multiple frameworks
+     * (see {@link ShardedReconciliationFramework}), so its entries are always removed together with the owning engine.
+     */
+    private final Map<String, ReconciliationEngine<EVENT>> enginesByRootId = new ConcurrentHashMap<>();
+    private final Map<String, ReconciliationEngine<EVENT>> enginesByChildId;
+
+    /**
+     * Reference model versions from which the child id index was last built. Accessed by the event loop only.
+     */
+    private final Map<ReconciliationEngine<EVENT>, EntityHolder> indexedReferenceModels = new HashMap<>();
+
+    /**
+     * Engines that signalled new work (see {@link DefaultReconciliationEngine#setReadyListener(Runnable)}), or were
+     * just added. A wake-up iteration processes these engines only, and a periodic iteration processes all of them.
+     */
+    private final Set<ReconciliationEngine<EVENT>> readyEngines = ConcurrentHashMap.newKeySet();
+
     private final BlockingQueue<Pair<ReconciliationEngine<EVENT>, Subscriber<ReconciliationEngine>>> enginesAdded = new LinkedBlockingQueue<>();
     private final BlockingQueue<Pair<ReconciliationEngine<EVENT>, Subscriber<Void>>> enginesToRemove = new LinkedBlockingQueue<>();
 
@@ -80,6 +104,12 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
     private volatile boolean runnable = true;
     private volatile boolean started = false;
 
+    /**
+     * Set when an immediate loop iteration is scheduled in response to {@link #wakeUp()}, and cleared when the
+     * iteration begins, so at most one extra iteration is pending at a time.
+     */
+    private final AtomicBoolean wakeUpRequested = new AtomicBoolean();
+
     private final PublishSubject<Observable<EVENT>> eventsMergeSubject = PublishSubject.create();
     private final Observable<EVENT> eventsObservable;
     private final Subscription internalEventSubscription;
@@ -94,11 +124,42 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
                                           Map<Object, Comparator<EntityHolder>> indexComparators,
                                           Registry registry,
                                           Optional<Scheduler> optionalScheduler) {
+        this(bootstrapEngines, engineFactory, idleTimeoutMs, activeTimeoutMs, indexComparators, registry, optionalScheduler, Optional.empty());
+    }
+
+    /**
+     * @param shardId if set, the event loop thread name and the framework metrics are tagged with it. Used when
+     *                multiple frameworks run side by side (see {@link ShardedReconciliationFramework}).
+     */
+    public DefaultReconciliationFramework(List<ReconciliationEngine<EVENT>> bootstrapEngines,
+                                          Function<EntityHolder, ReconciliationEngine<EVENT>> engineFactory,
+                                          long idleTimeoutMs,
+                                          long activeTimeoutMs,
+                                          Map<Object, Comparator<EntityHolder>> indexComparators,
+                                          Registry registry,
+                                          Optional<Scheduler> optionalScheduler,
+                                          Optional<String> shardId) {
+        this(bootstrapEngines, engineFactory, idleTimeoutMs, activeTimeoutMs, indexComparators, registry, optionalScheduler, shardId, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param enginesByChildId child id index, shared by all shards of a {@link ShardedReconciliationFramework}
+     */
+    DefaultReconciliationFramework(List<ReconciliationEngine<EVENT>> bootstrapEngines,
+                                   Function<EntityHolder, ReconciliationEngine<EVENT>> engineFactory,
+                                   long idleTimeoutMs,
+                                   long activeTimeoutMs,
+                                   Map<Object, Comparator<EntityHolder>> indexComparators,
+                                   Registry registry,
+                                   Optional<Scheduler> optionalScheduler,
+                                   Optional<String> shardId,
+                                   Map<String, ReconciliationEngine<EVENT>> enginesByChildId) {
         Preconditions.checkArgument(idleTimeoutMs > 0, "idleTimeout <= 0 (%s)", idleTimeoutMs);
         Preconditions.checkArgument(activeTimeoutMs <= idleTimeoutMs, "activeTimeout(%s) > idleTimeout(%s)", activeTimeoutMs, idleTimeoutMs);
 
         this.engineFactory = engineFactory;
-        this.indexSet = IndexSet.newIndexSet(indexComparators);
+        this.enginesByChildId = enginesByChildId;
+        this.indexSet = IndexSet.newIndexSet(indexComparators, EntityHolder::getId);
 
         this.idleTimeoutMs = idleTimeoutMs;
         this.activeTimeoutMs = activeTimeoutMs;
@@ -108,7 +169,7 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
             this.executor = null;
         } else {
             this.executor = Executors.newSingleThreadExecutor(runnable -> {
-                Thread thread = new Thread(runnable, "TitusReconciliationFramework");
+                Thread thread = new Thread(runnable, shardId.map(id -> "TitusReconciliationFramework-" + id).orElse("TitusReconciliationFramework"));
                 thread.setDaemon(true);
                 return thread;
             });
@@ -121,14 +182,17 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
         // To keep eventsObservable permanently active.
         this.internalEventSubscription = eventsObservable.subscribe(ObservableExt.silentSubscriber());
 
-        this.loopExecutionTime = registry.timer(LOOP_EXECUTION_TIME_METRIC);
+        List<Tag> tags = shardId.<List<Tag>>map(id -> Collections.singletonList(new BasicTag("shard", id))).orElse(Collections.emptyList());
+        this.loopExecutionTime = registry.timer(registry.createId(LOOP_EXECUTION_TIME_METRIC, tags));
         this.lastExecutionTimeMs = scheduler.now();
-        PolledMeter.using(registry).withName(LAST_EXECUTION_TIME_METRIC).monitorValue(this, self -> scheduler.now() - self.lastExecutionTimeMs);
+        PolledMeter.using(registry).withName(LAST_EXECUTION_TIME_METRIC).withTags(tags).monitorValue(this, self -> scheduler.now() - self.lastExecutionTimeMs);
 
         engines.addAll(bootstrapEngines);
-        bootstrapEngines.forEach(engine -> eventsMergeSubject.onNext(engine.events()));
-
-        updateIndexSet();
+        bootstrapEngines.forEach(engine -> {
+            registerReadyListener(engine);
+            addToIndexes(engine);
+            eventsMergeSubject.onNext(engine.events());
+        });
     }
 
     @Override
@@ -173,7 +237,12 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
                 ((DefaultReconciliationEngine) e).shutdown();
             }
         });
+        // The child id index may be shared with other shards, so only entries of the engines of this framework are removed
+        indexedReferenceModels.forEach((engine, model) -> model.getChildren().forEach(child -> removeAllChildIds(engine, child)));
         engines.clear();
+        readyEngines.clear();
+        enginesByRootId.clear();
+        indexedReferenceModels.clear();
     }
 
     @Override
@@ -185,6 +254,7 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
             }
             ReconciliationEngine newEngine = engineFactory.apply(bootstrapModel);
             enginesAdded.add(Pair.of(newEngine, (Subscriber<ReconciliationEngine>) subscriber));
+            wakeUp();
         });
     }
 
@@ -196,6 +266,7 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
                 return;
             }
             enginesToRemove.add(Pair.of(engine, (Subscriber<Void>) subscriber));
+            wakeUp();
         }).toCompletable();
     }
 
@@ -206,19 +277,18 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
 
     @Override
     public Optional<ReconciliationEngine<EVENT>> findEngineByRootId(String id) {
-        return engines.stream().filter(e -> e.getReferenceView().getId().equals(id)).findFirst();
+        return Optional.ofNullable(enginesByRootId.get(id));
     }
 
     @Override
     public Optional<Pair<ReconciliationEngine<EVENT>, EntityHolder>> findEngineByChildId(String childId) {
-        for (ReconciliationEngine engine : engines) {
-            EntityHolder rootHolder = engine.getReferenceView();
-            Optional<EntityHolder> childHolder = rootHolder.findChildById(childId);
-            if (childHolder.isPresent()) {
-                return Optional.of(Pair.of(engine, childHolder.get()));
-            }
+        ReconciliationEngine<EVENT> engine = enginesByChildId.get(childId);
+        if (engine == null) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        // The index may briefly point to an engine from which the child was just removed, so we resolve the child
+        // from the current reference model.
+        return engine.getReferenceView().findChildById(childId).map(childHolder -> Pair.of(engine, childHolder));
     }
 
     @Override
@@ -226,45 +296,77 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
         return indexSet.getOrdered(orderingCriteria);
     }
 
+    private void onEngineReady(ReconciliationEngine<EVENT> engine) {
+        readyEngines.add(engine);
+        wakeUp();
+    }
+
+    /**
+     * Requests an immediate loop iteration. Called when there is new work for the framework (engine added/removed),
+     * or when an engine has queued reference changes, completed change actions or pending model updates. Without
+     * this, such work would wait until the next periodic iteration. The wake-up iteration does not replace
+     * the periodic one, which runs the difference resolution on all engines.
+     */
+    private void wakeUp() {
+        if (!runnable || !started || !wakeUpRequested.compareAndSet(false, true)) {
+            return;
+        }
+        worker.schedule(() -> runLoop(false));
+    }
+
     private void doSchedule(long delayMs) {
         if (!runnable) {
             return;
         }
-        worker.schedule(() -> {
-            long startTimeMs = worker.now();
-            try {
-                long nextDelayMs = doLoop();
+        worker.schedule(() -> runLoop(true), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void runLoop(boolean fullSweep) {
+        if (!runnable) {
+            return;
+        }
+        if (!fullSweep) {
+            wakeUpRequested.set(false);
+        }
+        long startTimeMs = worker.now();
+        try {
+            long nextDelayMs = doLoop(fullSweep);
+            if (fullSweep) {
                 doSchedule(nextDelayMs);
-            } catch (Exception e) {
-                logger.warn("Unexpected error in the reconciliation loop", e);
+            }
+        } catch (Exception e) {
+            logger.warn("Unexpected error in the reconciliation loop", e);
+            if (fullSweep) {
                 doSchedule(idleTimeoutMs);
-            } finally {
-                long now = worker.now();
-                lastExecutionTimeMs = now;
-                loopExecutionTime.record(now - startTimeMs, TimeUnit.MILLISECONDS);
             }
-        }, delayMs, TimeUnit.MILLISECONDS);
+        } finally {
+            long now = worker.now();
+            lastExecutionTimeMs = now;
+            loopExecutionTime.record(now - startTimeMs, TimeUnit.MILLISECONDS);
+        }
     }
 
-    private long doLoop() {
+    /**
+     * @param fullSweep if true, all engines are processed, otherwise only the ones in {@link #readyEngines}
+     * @return delay of the next periodic iteration
+     */
+    private long doLoop(boolean fullSweep) {
         // Add new engines.
         List<Pair<ReconciliationEngine<EVENT>, Subscriber<ReconciliationEngine>>> recentlyAdded = new ArrayList<>();
         enginesAdded.drainTo(recentlyAdded);
-        recentlyAdded.forEach(pair -> engines.add(pair.getLeft()));
+        recentlyAdded.forEach(pair -> {
+            registerReadyListener(pair.getLeft());
+            engines.add(pair.getLeft());
+            readyEngines.add(pair.getLeft());
+            addToIndexes(pair.getLeft());
+        });
 
         // Remove engines.
         List<Pair<ReconciliationEngine<EVENT>, Subscriber<Void>>> recentlyRemoved = new ArrayList<>();
         enginesToRemove.drainTo(recentlyRemoved);
         shutdownEnginesToRemove(recentlyRemoved);
 
-        boolean engineSetUpdate = !recentlyAdded.isEmpty() || !recentlyRemoved.isEmpty();
-
-        // Update indexes to reflect engine collection update, before completing engine add/remove subscribers.
-        if (engines.isEmpty()) {
-            indexSet = indexSet.apply(Collections.emptyList());
-        } else if (engineSetUpdate) {
-            updateIndexSet();
-        }
+        // Indexes are updated above to reflect engine collection update, before completing engine add/remove subscribers.
 
         // Complete engine add/remove subscribers.
         recentlyAdded.forEach(pair -> {
@@ -278,33 +380,48 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
         });
         recentlyRemoved.forEach(pair -> pair.getRight().onCompleted());
 
-        // Apply pending model updates/send events
-        boolean modelUpdates = false;
-        for (ReconciliationEngine engine : engines) {
+        // An engine signalling while it is processed below is queued again for the next wake-up iteration.
+        Collection<ReconciliationEngine<EVENT>> enginesToProcess = fullSweep ? engines : takeReadyEngines();
+        if (fullSweep) {
+            readyEngines.clear();
+        }
+
+        // Apply pending model updates/send events, and update indexes if there are model changes.
+        for (ReconciliationEngine<EVENT> engine : enginesToProcess) {
             try {
-                boolean anyChange = engine.applyModelUpdates();
-                modelUpdates = modelUpdates || anyChange;
+                if (engine.applyModelUpdates()) {
+                    updateIndexes(engine);
+                }
             } catch (Exception e) {
                 logger.warn("Unexpected error from reconciliation engine 'triggerEvents' method", e);
             }
         }
 
-        // Update indexes if there are model changes.
-        if (modelUpdates) {
-            updateIndexSet();
-        }
-
-        // Trigger events on engines.
-        boolean pendingChangeActions = false;
-        for (ReconciliationEngine engine : engines) {
+        // Trigger events on engines. Engines that signal when they are ready for processing (see wakeUp) do not need
+        // the more frequent polling, when they have change actions running.
+        boolean pollingRequired = false;
+        for (ReconciliationEngine engine : enginesToProcess) {
             try {
                 boolean anythingRunning = engine.triggerEvents();
-                pendingChangeActions = pendingChangeActions || anythingRunning;
+                pollingRequired = pollingRequired || (anythingRunning && !(engine instanceof DefaultReconciliationEngine));
             } catch (Exception e) {
                 logger.warn("Unexpected error from reconciliation engine 'triggerEvents' method", e);
             }
         }
-        return pendingChangeActions ? activeTimeoutMs : idleTimeoutMs;
+        return pollingRequired ? activeTimeoutMs : idleTimeoutMs;
+    }
+
+    private List<ReconciliationEngine<EVENT>> takeReadyEngines() {
+        List<ReconciliationEngine<EVENT>> ready = new ArrayList<>(readyEngines.size());
+        for (Iterator<ReconciliationEngine<EVENT>> it = readyEngines.iterator(); it.hasNext(); ) {
+            ReconciliationEngine<EVENT> engine = it.next();
+            it.remove();
+            // The engine may have signalled after it was removed
+            if (engines.contains(engine)) {
+                ready.add(engine);
+            }
+        }
+        return ready;
     }
 
     private void shutdownEnginesToRemove(List<Pair<ReconciliationEngine<EVENT>, Subscriber<Void>>> toRemove) {
@@ -314,10 +431,70 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
                 ((DefaultReconciliationEngine) e).shutdown();
             }
             engines.remove(e);
+            readyEngines.remove(e);
+            removeFromIndexes(e);
+        });
+    }
+
+    private void registerReadyListener(ReconciliationEngine<EVENT> engine) {
+        if (engine instanceof DefaultReconciliationEngine) {
+            ((DefaultReconciliationEngine) engine).setReadyListener(() -> onEngineReady(engine));
+        }
+    }
+
+    private void addToIndexes(ReconciliationEngine<EVENT> engine) {
+        enginesByRootId.put(engine.getReferenceView().getId(), engine);
+        updateIndexes(engine);
+    }
+
+    private void removeFromIndexes(ReconciliationEngine<EVENT> engine) {
+        EntityHolder indexed = indexedReferenceModels.remove(engine);
+        if (indexed != null) {
+            if (enginesByRootId.remove(indexed.getId(), engine)) {
+                indexSet = indexSet.remove(Collections.singletonList(indexed.getId()));
+            }
+            indexed.getChildren().forEach(child -> removeAllChildIds(engine, child));
+        }
+    }
+
+    /**
+     * Updates the ordered index set and the child id index to match the current reference model of the given engine.
+     * Only the children added, removed or replaced since the last update are visited, not the whole child set.
+     */
+    private void updateIndexes(ReconciliationEngine<EVENT> engine) {
+        EntityHolder current = engine.getReferenceView();
+        EntityHolder previous = indexedReferenceModels.put(engine, current);
+        if (previous == current) {
+            return;
+        }
+        indexSet = indexSet.add(Collections.singletonList(current));
+        if (previous == null) {
+            current.getChildren().forEach(child -> addChildIds(engine, child));
+            return;
+        }
+
+        // Removals are applied first, so a child id present in both versions stays indexed.
+        List<EntityHolder> removedChildren = new ArrayList<>();
+        List<EntityHolder> addedChildren = new ArrayList<>();
+        current.diffChildren(previous, (childId, previousChild, currentChild) -> {
+            if (previousChild != null) {
+                removedChildren.add(previousChild);
+            }
+            if (currentChild != null) {
+                addedChildren.add(currentChild);
+            }
         });
+        removedChildren.forEach(child -> removeAllChildIds(engine, child));
+        addedChildren.forEach(child -> addChildIds(engine, child));
+    }
+
+    private void addChildIds(ReconciliationEngine<EVENT> engine, EntityHolder holder) {
+        enginesByChildId.put(holder.getId(), engine);
+        holder.getChildren().forEach(child -> addChildIds(engine, child));
     }
 
-    private void updateIndexSet() {
-        indexSet = indexSet.apply(engines.stream().map(ReconciliationEngine::getReferenceView).collect(Collectors.toList()));
+    private void removeAllChildIds(ReconciliationEngine<EVENT> engine, EntityHolder holder) {
+        enginesByChildId.remove(holder.getId(), engine);
+        holder.getChildren().forEach(child -> removeAllChildIds(engine, child));
     }
 }
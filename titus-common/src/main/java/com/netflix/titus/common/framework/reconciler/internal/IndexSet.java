@@ -16,31 +16,115 @@
 
 package com.netflix.titus.common.framework.reconciler.internal;
 
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import com.netflix.titus.common.util.collections.PersistentHashMap;
 
 /**
- * TODO Optimize. This is expensive and inefficient implementation.
+ * Immutable collection of ordered indexes over a set of elements, each element uniquely identified by an id.
+ * Each index is a persistent (path copying) balanced binary tree, so a single element update costs O(log n), and
+ * all versions of an index share the unchanged part of the tree. The ordered views returned by {@link #getOrdered(Object)}
+ * are immutable snapshots, which are created in O(1) time.
  */
 public class IndexSet<T> {
 
-    private static final IndexSet<?> EMPTY = new IndexSet<>(Collections.emptyMap());
-
     private final Map<Object, Index<T>> indexes;
+    private final Function<T, String> idExtractor;
+    private final PersistentHashMap<String, T> elementsById;
 
-    private IndexSet(Map<Object, Index<T>> indexes) {
+    private IndexSet(Map<Object, Index<T>> indexes, Function<T, String> idExtractor, PersistentHashMap<String, T> elementsById) {
         this.indexes = indexes;
+        this.idExtractor = idExtractor;
+        this.elementsById = elementsById;
+    }
+
+    /**
+     * Replaces the current content of the index set with the given elements. Only elements that were added, changed
+     * (a different instance) or removed are re-indexed.
+     */
+    public IndexSet<T> apply(Collection<T> elements) {
+        Set<String> newIds = new HashSet<>();
+        elements.forEach(element -> newIds.add(idExtractor.apply(element)));
+
+        IndexSet<T> result = add(elements);
+        if (newIds.size() == result.elementsById.size()) {
+            return result;
+        }
+        List<String> removedIds = new ArrayList<>();
+        result.elementsById.keySet().forEach(id -> {
+            if (!newIds.contains(id)) {
+                removedIds.add(id);
+            }
+        });
+        return result.remove(removedIds);
+    }
+
+    /**
+     * Adds new elements or replaces existing elements with the same ids.
+     */
+    public IndexSet<T> add(Collection<T> addedOrChanged) {
+        Map<Object, Index<T>> newIndexes = null;
+        PersistentHashMap<String, T> newElementsById = elementsById;
+        for (T element : addedOrChanged) {
+            String id = idExtractor.apply(element);
+            T previous = newElementsById.get(id);
+            if (previous == element) {
+                continue;
+            }
+            if (newIndexes == null) {
+                newIndexes = new HashMap<>(indexes);
+            }
+            newElementsById = newElementsById.plus(id, element);
+            for (Map.Entry<Object, Index<T>> entry : newIndexes.entrySet()) {
+                Index<T> index = entry.getValue();
+                if (previous != null) {
+                    index = index.remove(previous);
+                }
+                entry.setValue(index.add(element));
+            }
+        }
+        return newIndexes == null ? this : new IndexSet<>(newIndexes, idExtractor, newElementsById);
+    }
+
+    /**
+     * Removes elements with the given ids. Ids not present in the index set are ignored.
+     */
+    public IndexSet<T> remove(Collection<String> ids) {
+        Map<Object, Index<T>> newIndexes = null;
+        PersistentHashMap<String, T> newElementsById = elementsById;
+        for (String id : ids) {
+            T previous = newElementsById.get(id);
+            if (previous == null) {
+                continue;
+            }
+            if (newIndexes == null) {
+                newIndexes = new HashMap<>(indexes);
+            }
+            newElementsById = newElementsById.minus(id);
+            for (Map.Entry<Object, Index<T>> entry : newIndexes.entrySet()) {
+                entry.setValue(entry.getValue().remove(previous));
+            }
+        }
+        return newIndexes == null ? this : new IndexSet<>(newIndexes, idExtractor, newElementsById);
     }
 
-    public IndexSet<T> apply(Collection<T> added) {
-        Map<Object, Index<T>> copy = new HashMap<>();
-        indexes.forEach((k, v) -> copy.put(k, v.apply(added)));
-        return new IndexSet<>(copy);
+    public boolean contains(String id) {
+        return elementsById.containsKey(id);
     }
 
     public List<T> getOrdered(Object indexId) {
@@ -51,38 +135,187 @@ public class IndexSet<T> {
         return result.getOrdered();
     }
 
-    public static <T> IndexSet<T> empty() {
-        return (IndexSet<T>) EMPTY;
-    }
-
-    public static <T> IndexSet<T> newIndexSet(Map<Object, Comparator<T>> comparators) {
+    public static <T> IndexSet<T> newIndexSet(Map<Object, Comparator<T>> comparators, Function<T, String> idExtractor) {
         Map<Object, Index<T>> indexes = new HashMap<>();
-        comparators.forEach((k, v) -> indexes.put(k, Index.newIndex(v)));
-        return new IndexSet<>(indexes);
+        comparators.forEach((k, v) -> indexes.put(k, Index.newIndex(v, idExtractor)));
+        return new IndexSet<>(indexes, idExtractor, PersistentHashMap.empty());
     }
 
+    /**
+     * Randomized balanced binary search tree (treap). Elements equal according to the index comparator are
+     * ordered by their ids, so each element has a unique position in the tree.
+     */
     static class Index<T> {
 
         private final Comparator<T> comparator;
-        private final List<T> ordered;
+        private final Node<T> root;
+
+        private volatile List<T> ordered;
 
-        private Index(Comparator<T> comparator, List<T> ordered) {
+        private Index(Comparator<T> comparator, Node<T> root) {
             this.comparator = comparator;
-            this.ordered = ordered;
+            this.root = root;
         }
 
-        Index<T> apply(Collection<T> added) {
-            List<T> copy = new ArrayList<>(added);
-            copy.sort(comparator);
-            return new Index<>(comparator, copy);
+        Index<T> add(T element) {
+            return new Index<>(comparator, insert(root, element, ThreadLocalRandom.current().nextInt()));
+        }
+
+        Index<T> remove(T element) {
+            Node<T> newRoot = delete(root, element);
+            return newRoot == root ? this : new Index<>(comparator, newRoot);
         }
 
         List<T> getOrdered() {
-            return ordered;
+            List<T> current = ordered;
+            if (current == null) {
+                current = root == null ? Collections.emptyList() : new OrderedView<>(root);
+                ordered = current;
+            }
+            return current;
+        }
+
+        private Node<T> insert(Node<T> node, T element, int priority) {
+            if (node == null) {
+                return new Node<>(element, priority, null, null);
+            }
+            if (comparator.compare(element, node.value) < 0) {
+                Node<T> left = insert(node.left, element, priority);
+                return left.priority > node.priority
+                        ? left.with(left.left, node.with(left.right, node.right))
+                        : node.with(left, node.right);
+            }
+            Node<T> right = insert(node.right, element, priority);
+            return right.priority > node.priority
+                    ? right.with(node.with(node.left, right.left), right.right)
+                    : node.with(node.left, right);
+        }
+
+        private Node<T> delete(Node<T> node, T element) {
+            if (node == null) {
+                return null;
+            }
+            int result = comparator.compare(element, node.value);
+            if (result == 0) {
+                return merge(node.left, node.right);
+            }
+            if (result < 0) {
+                Node<T> left = delete(node.left, element);
+                return left == node.left ? node : node.with(left, node.right);
+            }
+            Node<T> right = delete(node.right, element);
+            return right == node.right ? node : node.with(node.left, right);
         }
 
-        static <T> Index<T> newIndex(Comparator<T> comparator) {
-            return new Index<>(comparator, Collections.emptyList());
+        /**
+         * Merges two trees, with all elements in the first tree preceding all elements in the second tree.
+         */
+        private Node<T> merge(Node<T> first, Node<T> second) {
+            if (first == null) {
+                return second;
+            }
+            if (second == null) {
+                return first;
+            }
+            if (first.priority > second.priority) {
+                return first.with(first.left, merge(first.right, second));
+            }
+            return second.with(merge(first, second.left), second.right);
+        }
+
+        static <T> Index<T> newIndex(Comparator<T> comparator, Function<T, String> idExtractor) {
+            return new Index<>(comparator.thenComparing(idExtractor), null);
+        }
+    }
+
+    private static class Node<T> {
+
+        private final T value;
+        private final int priority;
+        private final Node<T> left;
+        private final Node<T> right;
+        private final int size;
+
+        private Node(T value, int priority, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        private Node<T> with(Node<T> left, Node<T> right) {
+            return new Node<>(value, priority, left, right);
+        }
+
+        private static int sizeOf(Node<?> node) {
+            return node == null ? 0 : node.size;
+        }
+    }
+
+    private static class OrderedView<T> extends AbstractList<T> {
+
+        private final Node<T> root;
+
+        private OrderedView(Node<T> root) {
+            this.root = root;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= root.size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range [0, " + root.size + ')');
+            }
+            Node<T> node = root;
+            int position = index;
+            while (true) {
+                int leftSize = Node.sizeOf(node.left);
+                if (position < leftSize) {
+                    node = node.left;
+                } else if (position == leftSize) {
+                    return node.value;
+                } else {
+                    position -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return root.size;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private final Deque<Node<T>> stack = new ArrayDeque<>();
+
+                {
+                    pushLeft(root);
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return !stack.isEmpty();
+                }
+
+                @Override
+                public T next() {
+                    if (stack.isEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    Node<T> node = stack.pop();
+                    pushLeft(node.right);
+                    return node.value;
+                }
+
+                private void pushLeft(Node<T> node) {
+                    for (Node<T> next = node; next != null; next = next.left) {
+                        stack.push(next);
+                    }
+                }
+            };
         }
     }
 }
@@ -33,6 +33,8 @@ class ModelHolder<EVENT> {
     private EntityHolder running;
     private EntityHolder store;
 
+    private long version;
+
     ModelHolder(ReconciliationEngine<EVENT> engine, EntityHolder bootstrapModel, ReconciliationEngine.DifferenceResolver<EVENT> differenceResolver) {
         this.engine = engine;
         this.differenceResolver = differenceResolver;
@@ -53,16 +55,26 @@ class ModelHolder<EVENT> {
         return running;
     }
 
+    /**
+     * Model version, incremented on each update of any of the reference, running or store views.
+     */
+    long getVersion() {
+        return version;
+    }
+
     void setReference(EntityHolder reference) {
         this.reference = reference;
+        version++;
     }
 
     void setRunning(EntityHolder running) {
         this.running = running;
+        version++;
     }
 
     void setStore(EntityHolder store) {
         this.store = store;
+        version++;
     }
 
     List<ChangeAction> resolveDifference() {
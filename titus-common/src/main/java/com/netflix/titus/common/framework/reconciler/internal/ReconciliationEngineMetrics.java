@@ -41,6 +41,7 @@ class ReconciliationEngineMetrics<EVENT> {
     private static final String STARTED_CHANGE_ACTIONS = ROOT_NAME + "startedChangeActions";
     private static final String FINISHED_CHANGE_ACTIONS = ROOT_NAME + "finishedChangeActions";
     private static final String EMITTED_EVENTS = ROOT_NAME + "emittedEvents";
+    private static final String DIFFERENCE_RESOLUTIONS = ROOT_NAME + "differenceResolutions";
 
     private final Function<ChangeAction, List<Tag>> extraChangeActionTags;
     private final Function<EVENT, List<Tag>> extraModelActionTags;
@@ -56,6 +57,8 @@ class ReconciliationEngineMetrics<EVENT> {
     private final AtomicLong pendingChangeActions = new AtomicLong();
     private final Gauge changeActionQueueSize;
     private final Counter abandonedIteration;
+    private final Counter resolveEvaluated;
+    private final Counter resolveSkipped;
 
     ReconciliationEngineMetrics(String rootHolderId,
                                 Function<ChangeAction, List<Tag>> extraChangeActionTags,
@@ -75,6 +78,10 @@ class ReconciliationEngineMetrics<EVENT> {
         this.emittedEventId = registry.createId(EMITTED_EVENTS, commonTags);
         this.abandonedIteration = registry.counter(ROOT_NAME + "abandonedIteration");
 
+        Id differenceResolutionsId = registry.createId(DIFFERENCE_RESOLUTIONS, commonTags);
+        this.resolveEvaluated = registry.counter(differenceResolutionsId.withTag("status", "evaluated"));
+        this.resolveSkipped = registry.counter(differenceResolutionsId.withTag("status", "skipped"));
+
         this.changeActionQueueSize = registry.gauge(registry.createId(ROOT_NAME + "changeActionQueueSize", commonTags));
         PolledMeter.using(registry).withName(PENDING_CHANGE_ACTIONS).withTags(commonTags).monitorValue(pendingChangeActions);
     }
@@ -155,6 +162,14 @@ class ReconciliationEngineMetrics<EVENT> {
         abandonedIteration.increment();
     }
 
+    void resolveEvaluated() {
+        resolveEvaluated.increment();
+    }
+
+    void resolveSkipped() {
+        resolveSkipped.increment();
+    }
+
     private void changeActionStarted(ChangeActionHolder actionHolder, String actionType) {
         pendingChangeActions.incrementAndGet();
         registry.timer(startedChangeActionsId
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.framework.reconciler.internal;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.google.common.base.Preconditions;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
+import com.netflix.titus.common.framework.reconciler.ReconciliationFramework;
+import com.netflix.titus.common.util.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Completable;
+import rx.Observable;
+import rx.Scheduler;
+
+/**
+ * {@link ReconciliationFramework} implementation which partitions engines by their root id hash into multiple
+ * {@link DefaultReconciliationFramework} shards. Each shard runs its own event loop, so the single writer guarantee
+ * holds for each engine, but engines in different shards are processed in parallel. All shards update a single
+ * child id index, so a child lookup does not depend on the number of shards.
+ */
+public class ShardedReconciliationFramework<EVENT> implements ReconciliationFramework<EVENT> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedReconciliationFramework.class);
+
+    private final List<DefaultReconciliationFramework<EVENT>> shards;
+    private final Map<Object, Comparator<EntityHolder>> indexComparators;
+    private final Map<String, ReconciliationEngine<EVENT>> enginesByChildId = new ConcurrentHashMap<>();
+
+    private final Observable<EVENT> eventsObservable;
+
+    /**
+     * Merged ordered views, keyed by the ordering criteria. A view is reused as long as all shard views are the same
+     * instances. A new view is merged lazily, so after a shard change only the elements accessed are merged again.
+     */
+    private final Map<Object, Pair<List<List<EntityHolder>>, List<EntityHolder>>> mergedViews = new ConcurrentHashMap<>();
+
+    public ShardedReconciliationFramework(int shardCount,
+                                          List<ReconciliationEngine<EVENT>> bootstrapEngines,
+                                          Function<EntityHolder, ReconciliationEngine<EVENT>> engineFactory,
+                                          long idleTimeoutMs,
+                                          long activeTimeoutMs,
+                                          Map<Object, Comparator<EntityHolder>> indexComparators,
+                                          Registry registry,
+                                          Optional<Scheduler> optionalScheduler) {
+        Preconditions.checkArgument(shardCount > 0, "shardCount <= 0 (%s)", shardCount);
+
+        this.indexComparators = indexComparators;
+
+        List<List<ReconciliationEngine<EVENT>>> partitions = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        bootstrapEngines.forEach(engine -> partitions.get(shardOf(engine.getReferenceView().getId(), shardCount)).add(engine));
+
+        List<DefaultReconciliationFramework<EVENT>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new DefaultReconciliationFramework<>(
+                    partitions.get(i),
+                    engineFactory,
+                    idleTimeoutMs,
+                    activeTimeoutMs,
+                    indexComparators,
+                    registry,
+                    optionalScheduler,
+                    Optional.of(Integer.toString(i)),
+                    enginesByChildId
+            ));
+        }
+        this.shards = Collections.unmodifiableList(shards);
+
+        List<Observable<EVENT>> shardEvents = new ArrayList<>(shardCount);
+        shards.forEach(shard -> shardEvents.add(shard.events()));
+        this.eventsObservable = Observable.merge(shardEvents).share();
+    }
+
+    @Override
+    public void start() {
+        shards.forEach(DefaultReconciliationFramework::start);
+    }
+
+    @Override
+    public boolean stop(long timeoutMs) {
+        boolean allStopped = true;
+        for (DefaultReconciliationFramework<EVENT> shard : shards) {
+            if (!shard.stop(timeoutMs)) {
+                logger.warn("Reconciliation framework shard not stopped in {}ms", timeoutMs);
+                allStopped = false;
+            }
+        }
+        return allStopped;
+    }
+
+    @Override
+    public Observable<EVENT> events() {
+        return eventsObservable;
+    }
+
+    @Override
+    public Optional<ReconciliationEngine<EVENT>> findEngineByRootId(String id) {
+        return shardOf(id).findEngineByRootId(id);
+    }
+
+    @Override
+    public Optional<Pair<ReconciliationEngine<EVENT>, EntityHolder>> findEngineByChildId(String childId) {
+        ReconciliationEngine<EVENT> engine = enginesByChildId.get(childId);
+        if (engine == null) {
+            return Optional.empty();
+        }
+        // The index may briefly point to an engine from which the child was just removed, so we resolve the child
+        // from the current reference model.
+        return engine.getReferenceView().findChildById(childId).map(childHolder -> Pair.of(engine, childHolder));
+    }
+
+    @Override
+    public <ORDER_BY> List<EntityHolder> orderedView(ORDER_BY orderingCriteria) {
+        Comparator<EntityHolder> comparator = indexComparators.get(orderingCriteria);
+        if (comparator == null) {
+            throw new IllegalArgumentException("Unknown index id " + orderingCriteria);
+        }
+
+        List<List<EntityHolder>> shardViews = new ArrayList<>(shards.size());
+        shards.forEach(shard -> shardViews.add(shard.orderedView(orderingCriteria)));
+
+        Pair<List<List<EntityHolder>>, List<EntityHolder>> cached = mergedViews.get(orderingCriteria);
+        if (cached != null && isSameInstances(cached.getLeft(), shardViews)) {
+            return cached.getRight();
+        }
+        List<EntityHolder> merged = new MergedOrderedView(shardViews, comparator);
+        mergedViews.put(orderingCriteria, Pair.of(shardViews, merged));
+        return merged;
+    }
+
+    @Override
+    public Observable<ReconciliationEngine<EVENT>> newEngine(EntityHolder bootstrapModel) {
+        return shardOf(bootstrapModel.getId()).newEngine(bootstrapModel);
+    }
+
+    @Override
+    public Completable removeEngine(ReconciliationEngine<EVENT> engine) {
+        return shardOf(engine.getReferenceView().getId()).removeEngine(engine);
+    }
+
+    private DefaultReconciliationFramework<EVENT> shardOf(String rootId) {
+        return shards.get(shardOf(rootId, shards.size()));
+    }
+
+    private static int shardOf(String rootId, int shardCount) {
+        return Math.floorMod(rootId.hashCode(), shardCount);
+    }
+
+    private static boolean isSameInstances(List<List<EntityHolder>> first, List<List<EntityHolder>> second) {
+        for (int i = 0; i < first.size(); i++) {
+            if (first.get(i) != second.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * K-way merge of ordered shard views, advanced only as far as the elements accessed. Elements equal according to
+     * the comparator are ordered by id, to match the ordering of a single {@link IndexSet}. The shard views are
+     * immutable, so the merged view is immutable as well, and can be shared by concurrent readers.
+     */
+    private static class MergedOrderedView extends AbstractList<EntityHolder> implements RandomAccess {
+
+        private final int size;
+        private final PriorityQueue<Pair<EntityHolder, Iterator<EntityHolder>>> heads;
+        private final List<EntityHolder> merged;
+
+        private MergedOrderedView(List<List<EntityHolder>> shardViews, Comparator<EntityHolder> comparator) {
+            Comparator<EntityHolder> fullComparator = comparator.thenComparing(EntityHolder::getId);
+            this.heads = new PriorityQueue<>(
+                    Math.max(1, shardViews.size()),
+                    (first, second) -> fullComparator.compare(first.getLeft(), second.getLeft())
+            );
+            int size = 0;
+            for (List<EntityHolder> view : shardViews) {
+                size += view.size();
+                Iterator<EntityHolder> it = view.iterator();
+                if (it.hasNext()) {
+                    heads.add(Pair.of(it.next(), it));
+                }
+            }
+            this.size = size;
+            this.merged = new ArrayList<>(size);
+        }
+
+        @Override
+        public synchronized EntityHolder get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            while (merged.size() <= index) {
+                Pair<EntityHolder, Iterator<EntityHolder>> head = heads.poll();
+                merged.add(head.getLeft());
+                if (head.getRight().hasNext()) {
+                    heads.add(Pair.of(head.getRight().next(), head.getRight()));
+                }
+            }
+            return merged.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
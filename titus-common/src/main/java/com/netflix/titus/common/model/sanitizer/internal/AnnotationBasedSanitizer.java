@@ -27,8 +27,6 @@ import com.netflix.titus.common.model.sanitizer.FieldSanitizer;
 import com.netflix.titus.common.util.ReflectionExt;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 
 import static com.netflix.titus.common.util.ReflectionExt.isNumeric;
 import static java.lang.String.format;
@@ -41,7 +39,6 @@ public class AnnotationBasedSanitizer extends AbstractFieldSanitizer<Object> {
 
     private final static ConcurrentMap<Field, SanitizerInfo> FIELD_SANITIZER_INFOS = new ConcurrentHashMap<>();
 
-    private final ExpressionParser parser = new SpelExpressionParser();
     private final EvaluationContext spelContext;
     private final Function<Class<?>, Boolean> innerEntityPredicate;
 
@@ -169,7 +166,7 @@ public class AnnotationBasedSanitizer extends AbstractFieldSanitizer<Object> {
         }
         Preconditions.checkArgument(!(hasSanitizer && hasAdjuster), "Sanitizer and adjuster cannot be used at the same time in field: " + field);
 
-        Expression adjusterExpression = !hasAdjuster ? null : parser.parseExpression(annotation.adjuster());
+        Expression adjusterExpression = !hasAdjuster ? null : SpELExpressions.parse(annotation.adjuster());
         return new SanitizerInfo(numeric, serializer, Optional.ofNullable(adjusterExpression), annotation.atLeast(), annotation.atMost());
     }
 
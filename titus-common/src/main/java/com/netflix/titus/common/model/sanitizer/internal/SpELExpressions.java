@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.model.sanitizer.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import org.springframework.expression.Expression;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+/**
+ * Parses each Spring EL expression once, and shares it between all sanitizer and validator instances. Expressions
+ * are created in the mixed compiler mode, so an expression evaluated frequently is compiled to bytecode, and
+ * falls back to the interpreter if the compiled version cannot handle an input. Expressions are evaluated with
+ * an explicit evaluation context and root object, so sharing them between threads is safe.
+ * <p>
+ * Expressions come from annotations only, so their number is bounded. Message templates may include values of
+ * the validated entities (for example the unknown scheduling constraint names), so the template cache is bounded
+ * in size, and the least recently used templates are evicted.
+ */
+final class SpELExpressions {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, SpELExpressions.class.getClassLoader())
+    );
+
+    private static final TemplateParserContext TEMPLATE_PARSER_CONTEXT = new TemplateParserContext();
+
+    @VisibleForTesting
+    static final int MAX_CACHED_TEMPLATES = 1000;
+
+    private static final ConcurrentMap<String, Expression> EXPRESSIONS = new ConcurrentHashMap<>();
+    private static final Cache<String, Expression> TEMPLATES = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_TEMPLATES)
+            .executor(Runnable::run)
+            .build();
+
+    private SpELExpressions() {
+    }
+
+    static Expression parse(String expression) {
+        return EXPRESSIONS.computeIfAbsent(expression, PARSER::parseExpression);
+    }
+
+    static Expression parseTemplate(String template) {
+        return TEMPLATES.get(template, t -> PARSER.parseExpression(t, TEMPLATE_PARSER_CONTEXT));
+    }
+
+    @VisibleForTesting
+    static long getCachedTemplateCount() {
+        TEMPLATES.cleanUp();
+        return TEMPLATES.estimatedSize();
+    }
+}
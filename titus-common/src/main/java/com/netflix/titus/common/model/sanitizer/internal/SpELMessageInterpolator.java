@@ -23,13 +23,9 @@ import javax.validation.MessageInterpolator;
 import com.netflix.titus.common.model.sanitizer.FieldInvariant;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.common.TemplateParserContext;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 
 public class SpELMessageInterpolator implements MessageInterpolator {
 
-    private final ExpressionParser parser = new SpelExpressionParser();
     private final Supplier<EvaluationContext> spelContextFactory;
 
     public SpELMessageInterpolator(Supplier<EvaluationContext> spelContextFactory) {
@@ -38,7 +34,7 @@ public class SpELMessageInterpolator implements MessageInterpolator {
 
     @Override
     public String interpolate(String messageTemplate, Context context) {
-        Expression expression = parser.parseExpression(messageTemplate, new TemplateParserContext());
+        Expression expression = SpELExpressions.parseTemplate(messageTemplate);
 
         Object effectiveValue = context.getValidatedValue();
         if (context.getConstraintDescriptor().getAnnotation() instanceof FieldInvariant) {
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util.collections;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Unbounded, lock-free, multiple producer / single consumer FIFO queue (based on the Dmitry Vyukov's MPSC linked queue).
+ * {@link #offer(Object)} can be called concurrently from any thread, and costs an atomic exchange and an atomic
+ * increment of the size counter. {@link #size()} can be called from any thread. All other operations may be called only
+ * from the consumer thread.
+ * <p>
+ * An element offered by a producer becomes visible to the consumer once the producer links it into the queue. Until then
+ * the consumer may observe the queue as empty, even though the producer's {@link #offer(Object)} call is in progress.
+ */
+public final class MpscQueue<T> {
+
+    private static final AtomicReferenceFieldUpdater<MpscQueue, Node> TAIL_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(MpscQueue.class, Node.class, "tail");
+
+    private static final AtomicIntegerFieldUpdater<MpscQueue> SIZE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(MpscQueue.class, "size");
+
+    /**
+     * Consumer side only. Always points to the node before the first element.
+     */
+    private Node<T> head;
+
+    private volatile Node<T> tail;
+
+    private volatile int size;
+
+    public MpscQueue() {
+        Node<T> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = stub;
+    }
+
+    /**
+     * Adds an element at the end of the queue. Can be called from any thread.
+     */
+    public void offer(T value) {
+        Preconditions.checkNotNull(value, "null values not allowed");
+        Node<T> node = new Node<>(value);
+        SIZE_UPDATER.incrementAndGet(this);
+        Node<T> previous = TAIL_UPDATER.getAndSet(this, node);
+        previous.next = node;
+    }
+
+    /**
+     * Consumer thread only.
+     *
+     * @return the first element in the queue or null if the queue is empty
+     */
+    public T poll() {
+        Node<T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        T value = next.value;
+        next.value = null;
+        head = next;
+        SIZE_UPDATER.decrementAndGet(this);
+        return value;
+    }
+
+    /**
+     * Consumer thread only. Moves all currently visible elements to the given collection, in the queue order.
+     *
+     * @return number of elements moved
+     */
+    public int drainTo(Collection<? super T> collection) {
+        int count = 0;
+        T value;
+        while ((value = poll()) != null) {
+            collection.add(value);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Consumer thread only.
+     */
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+
+    /**
+     * Returns the number of elements in the queue, in O(1) time. The count includes elements which are being offered
+     * concurrently, and may not be visible to the consumer yet.
+     */
+    public int size() {
+        return size;
+    }
+
+    private static final class Node<T> {
+
+        private T value;
+        private volatile Node<T> next;
+
+        private Node(T value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,518 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable map implemented as a hash array mapped trie (HAMT). Each update ({@link #plus(Object, Object)},
+ * {@link #minus(Object)}) returns a new map instance, which shares all unchanged trie nodes with the original one.
+ * An update costs O(log32(n)) time and allocation, as opposed to O(n) for copying a {@link java.util.HashMap}.
+ * <p>
+ * The {@link Map} mutation methods are not supported, and throw {@link UnsupportedOperationException}.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * Maximum trie depth is ceil(32 / 5) bitmap levels, plus one collision level.
+     */
+    private static final int MAX_DEPTH = 8;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(new BitmapNode(0, new Object[0]), 0);
+
+    private final BitmapNode root;
+    private final int size;
+
+    private Set<Entry<K, V>> entrySet;
+
+    private PersistentHashMap(BitmapNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findLeaf(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Leaf leaf = findLeaf(key);
+        return leaf == null ? null : (V) leaf.getValue();
+    }
+
+    /**
+     * Returns a new map with the given key/value pair added, or replaced if the key is already present. If the key is
+     * already mapped to the same value instance, this map is returned.
+     */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        boolean[] added = new boolean[1];
+        BitmapNode newRoot = (BitmapNode) root.put(0, hash(key), key, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a new map with the given key removed. If the key is not present, this map is returned.
+     */
+    public PersistentHashMap<K, V> minus(Object key) {
+        Object newRoot = root.remove(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty();
+        }
+        return new PersistentHashMap<>((BitmapNode) newRoot, size - 1);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Reports each entry that was added, removed or replaced (by a different value instance) in this map, when
+     * compared to the previous one. Trie nodes shared by both versions are skipped, so comparing two versions
+     * that differ by k updates costs O(k * log32(n)), not O(n).
+     */
+    public void diff(PersistentHashMap<K, V> previous, DiffConsumer<K, V> consumer) {
+        diffSlots(previous.root, root, (DiffConsumer<Object, Object>) consumer);
+    }
+
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> PersistentHashMap<K, V> of(Map<K, V> map) {
+        if (map instanceof PersistentHashMap) {
+            return (PersistentHashMap<K, V>) map;
+        }
+        PersistentHashMap<K, V> result = empty();
+        for (Entry<K, V> entry : map.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static void diffSlots(Object previous, Object current, DiffConsumer<Object, Object> consumer) {
+        if (previous == current) {
+            return;
+        }
+        if (previous instanceof BitmapNode && current instanceof BitmapNode) {
+            BitmapNode previousNode = (BitmapNode) previous;
+            BitmapNode currentNode = (BitmapNode) current;
+            int remaining = previousNode.bitmap | currentNode.bitmap;
+            while (remaining != 0) {
+                int bit = Integer.lowestOneBit(remaining);
+                remaining &= ~bit;
+                diffSlots(previousNode.slot(bit), currentNode.slot(bit), consumer);
+            }
+            return;
+        }
+        if (previous instanceof Leaf && current instanceof Leaf) {
+            Leaf previousLeaf = (Leaf) previous;
+            Leaf currentLeaf = (Leaf) current;
+            if (previousLeaf.matches(currentLeaf.hash, currentLeaf.getKey())) {
+                if (previousLeaf.getValue() != currentLeaf.getValue()) {
+                    consumer.accept(currentLeaf.getKey(), previousLeaf.getValue(), currentLeaf.getValue());
+                }
+                return;
+            }
+        }
+
+        // The trie shape differs at this position (for example a leaf was split into a node), so compare the
+        // entries directly. Such subtrees hold only the few entries which share the hash prefix.
+        Map<Object, Object> previousEntries = new HashMap<>();
+        Map<Object, Object> currentEntries = new HashMap<>();
+        collectEntries(previous, previousEntries);
+        collectEntries(current, currentEntries);
+        previousEntries.forEach((key, previousValue) -> {
+            if (!currentEntries.containsKey(key)) {
+                consumer.accept(key, previousValue, null);
+            } else {
+                Object currentValue = currentEntries.remove(key);
+                if (currentValue != previousValue) {
+                    consumer.accept(key, previousValue, currentValue);
+                }
+            }
+        });
+        currentEntries.forEach((key, currentValue) -> consumer.accept(key, null, currentValue));
+    }
+
+    private static void collectEntries(Object slot, Map<Object, Object> result) {
+        if (slot instanceof Leaf) {
+            Leaf leaf = (Leaf) slot;
+            result.put(leaf.getKey(), leaf.getValue());
+        } else if (slot instanceof Node) {
+            for (Object child : ((Node) slot).array) {
+                collectEntries(child, result);
+            }
+        }
+    }
+
+    private Leaf findLeaf(Object key) {
+        int hash = hash(key);
+        Node node = root;
+        int shift = 0;
+        while (true) {
+            Object slot = node.find(shift, hash, key);
+            if (slot == null || slot instanceof Leaf) {
+                return (Leaf) slot;
+            }
+            node = (Node) slot;
+            shift += BITS;
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        // Spread the higher bits, in the same way as java.util.HashMap does.
+        return h ^ (h >>> 16);
+    }
+
+    private static int fragment(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    /**
+     * Receives the differences found by {@link #diff(PersistentHashMap, DiffConsumer)}.
+     */
+    public interface DiffConsumer<K, V> {
+
+        /**
+         * @param previousValue the value in the previous map, or null if the entry was added
+         * @param currentValue  the value in the current map, or null if the entry was removed
+         */
+        void accept(K key, V previousValue, V currentValue);
+    }
+
+    private static final class Leaf extends SimpleImmutableEntry<Object, Object> {
+
+        private final int hash;
+
+        private Leaf(int hash, Object key, Object value) {
+            super(key, value);
+            this.hash = hash;
+        }
+
+        private boolean matches(int hash, Object key) {
+            return this.hash == hash && Objects.equals(getKey(), key);
+        }
+    }
+
+    private static abstract class Node {
+
+        /**
+         * Node slots. Each slot holds either a {@link Leaf}, or a child {@link Node}.
+         */
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        /**
+         * Returns the matching {@link Leaf}, a child {@link Node} to continue the lookup in, or null if there is no match.
+         */
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * Returns this node if nothing changed, or a new node with the key/value pair added or replaced.
+         */
+        abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * Returns this node if the key was not found, a new node (or a single {@link Leaf}) without the key,
+         * or null if the node became empty.
+         */
+        abstract Object remove(int shift, int hash, Object key);
+    }
+
+    private static final class BitmapNode extends Node {
+
+        private final int bitmap;
+
+        private BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = 1 << fragment(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = array[index(bit)];
+            if (slot instanceof Leaf) {
+                return ((Leaf) slot).matches(hash, key) ? slot : null;
+            }
+            return slot;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << fragment(hash, shift);
+            int idx = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 1];
+                System.arraycopy(array, 0, newArray, 0, idx);
+                newArray[idx] = new Leaf(hash, key, value);
+                System.arraycopy(array, idx, newArray, idx + 1, array.length - idx);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            Object slot = array[idx];
+            Object newSlot;
+            if (slot instanceof Leaf) {
+                Leaf leaf = (Leaf) slot;
+                if (leaf.matches(hash, key)) {
+                    if (leaf.getValue() == value) {
+                        return this;
+                    }
+                    newSlot = new Leaf(hash, key, value);
+                } else {
+                    newSlot = merge(shift + BITS, leaf, new Leaf(hash, key, value));
+                    added[0] = true;
+                }
+            } else {
+                Node child = (Node) slot;
+                newSlot = child.put(shift + BITS, hash, key, value, added);
+                if (newSlot == child) {
+                    return this;
+                }
+            }
+            return new BitmapNode(bitmap, replace(idx, newSlot));
+        }
+
+        @Override
+        Object remove(int shift, int hash, Object key) {
+            int bit = 1 << fragment(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object slot = array[idx];
+            Object newSlot;
+            if (slot instanceof Leaf) {
+                if (!((Leaf) slot).matches(hash, key)) {
+                    return this;
+                }
+                newSlot = null;
+            } else {
+                newSlot = ((Node) slot).remove(shift + BITS, hash, key);
+                if (newSlot == slot) {
+                    return this;
+                }
+            }
+            if (newSlot != null) {
+                return new BitmapNode(bitmap, replace(idx, newSlot));
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 1];
+            System.arraycopy(array, 0, newArray, 0, idx);
+            System.arraycopy(array, idx + 1, newArray, idx, array.length - idx - 1);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private Object slot(int bit) {
+            return (bitmap & bit) == 0 ? null : array[index(bit)];
+        }
+
+        private Object[] replace(int idx, Object newSlot) {
+            Object[] newArray = array.clone();
+            newArray[idx] = newSlot;
+            return newArray;
+        }
+
+        private static Node merge(int shift, Leaf first, Leaf second) {
+            if (first.hash == second.hash) {
+                return new CollisionNode(first.hash, new Object[]{first, second});
+            }
+            int firstFragment = fragment(first.hash, shift);
+            int secondFragment = fragment(second.hash, shift);
+            if (firstFragment == secondFragment) {
+                return new BitmapNode(1 << firstFragment, new Object[]{merge(shift + BITS, first, second)});
+            }
+            Object[] array = firstFragment < secondFragment ? new Object[]{first, second} : new Object[]{second, first};
+            return new BitmapNode((1 << firstFragment) | (1 << secondFragment), array);
+        }
+    }
+
+    /**
+     * Holds entries with keys which have the same hash value, but are not equal.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+
+        private CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int idx = indexOf(hash, key);
+            return idx < 0 ? null : array[idx];
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Nest this node in a bitmap node, so the new entry can be placed next to it.
+                BitmapNode parent = new BitmapNode(1 << fragment(this.hash, shift), new Object[]{this});
+                return parent.put(shift, hash, key, value, added);
+            }
+            int idx = indexOf(hash, key);
+            if (idx >= 0) {
+                if (((Leaf) array[idx]).getValue() == value) {
+                    return this;
+                }
+                Object[] newArray = array.clone();
+                newArray[idx] = new Leaf(hash, key, value);
+                return new CollisionNode(hash, newArray);
+            }
+            Object[] newArray = new Object[array.length + 1];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = new Leaf(hash, key, value);
+            added[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Object remove(int shift, int hash, Object key) {
+            int idx = indexOf(hash, key);
+            if (idx < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return array[1 - idx];
+            }
+            Object[] newArray = new Object[array.length - 1];
+            System.arraycopy(array, 0, newArray, 0, idx);
+            System.arraycopy(array, idx + 1, newArray, idx, array.length - idx - 1);
+            return new CollisionNode(hash, newArray);
+        }
+
+        private int indexOf(int hash, Object key) {
+            if (hash != this.hash) {
+                return -1;
+            }
+            for (int i = 0; i < array.length; i++) {
+                if (((Leaf) array[i]).matches(hash, key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Leaf next;
+
+        private EntryIterator(Node root) {
+            this.arrays[0] = root.array;
+            this.depth = 0;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf result = next;
+            advance();
+            return (Entry<K, V>) (Entry) result;
+        }
+
+        private void advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int position = positions[depth];
+                if (position >= array.length) {
+                    arrays[depth] = null;
+                    depth--;
+                    continue;
+                }
+                positions[depth] = position + 1;
+                Object slot = array[position];
+                if (slot instanceof Leaf) {
+                    next = (Leaf) slot;
+                    return;
+                }
+                depth++;
+                arrays[depth] = ((Node) slot).array;
+                positions[depth] = 0;
+            }
+            next = null;
+        }
+    }
+}
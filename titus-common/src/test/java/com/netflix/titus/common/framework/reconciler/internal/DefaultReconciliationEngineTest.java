@@ -25,15 +25,19 @@ import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableMap;
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Registry;
 import com.netflix.titus.common.framework.reconciler.ChangeAction;
 import com.netflix.titus.common.framework.reconciler.EntityHolder;
 import com.netflix.titus.common.framework.reconciler.ModelAction;
 import com.netflix.titus.common.framework.reconciler.ModelActionHolder;
 import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
 import com.netflix.titus.common.framework.reconciler.internal.SimpleReconcilerEvent.EventType;
+import com.netflix.titus.common.runtime.TitusRuntime;
 import com.netflix.titus.common.runtime.TitusRuntimes;
 import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.testkit.rx.ExtTestSubscriber;
@@ -49,6 +53,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 public class DefaultReconciliationEngineTest {
 
+    private static final long FORCED_RESOLVE_INTERVAL_MS = 10_000;
+
     private final TestScheduler testScheduler = Schedulers.test();
 
     private final Map<Object, Comparator<EntityHolder>> indexComparators = ImmutableMap.<Object, Comparator<EntityHolder>>builder()
@@ -139,6 +145,69 @@ public class DefaultReconciliationEngineTest {
         );
     }
 
+    @Test
+    public void testReadyListenerIsNotified() {
+        AtomicInteger readyCounter = new AtomicInteger();
+        engine.setReadyListener(readyCounter::incrementAndGet);
+
+        // Queued reference change action
+        engine.changeReferenceModel(new SlowChangeAction()).subscribe();
+        assertThat(readyCounter.get()).isEqualTo(1);
+
+        // Nothing completed yet
+        engine.triggerEvents();
+        assertThat(readyCounter.get()).isEqualTo(1);
+
+        // Model update and action completion
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(readyCounter.get()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    public void testDifferenceResolutionSkippedIfModelNotChanged() {
+        TitusRuntime titusRuntime = TitusRuntimes.test(testScheduler);
+        AtomicInteger resolveCounter = new AtomicInteger();
+        DefaultReconciliationEngine<SimpleReconcilerEvent> trackingEngine = new DefaultReconciliationEngine<>(
+                EntityHolder.newRoot("myRoot", "myEntity"),
+                false,
+                e -> {
+                    resolveCounter.incrementAndGet();
+                    return Collections.emptyList();
+                },
+                indexComparators,
+                new SimpleReconcilerEventFactory(),
+                changeAction -> Collections.emptyList(),
+                event -> Collections.emptyList(),
+                FORCED_RESOLVE_INTERVAL_MS,
+                titusRuntime
+        );
+
+        // First evaluation always resolves the difference
+        assertThat(trackingEngine.triggerEvents()).isFalse();
+        assertThat(resolveCounter.get()).isEqualTo(1);
+
+        // No model change
+        assertThat(trackingEngine.triggerEvents()).isFalse();
+        assertThat(resolveCounter.get()).isEqualTo(1);
+
+        // Model change
+        trackingEngine.changeReferenceModel(new AddChildAction("child1")).subscribe();
+        assertThat(trackingEngine.triggerEvents()).isTrue();
+        assertThat(trackingEngine.applyModelUpdates()).isTrue();
+        assertThat(trackingEngine.triggerEvents()).isFalse();
+        assertThat(resolveCounter.get()).isEqualTo(2);
+
+        // Forced resolution after the configured interval
+        testScheduler.advanceTimeBy(FORCED_RESOLVE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        assertThat(trackingEngine.triggerEvents()).isFalse();
+        assertThat(resolveCounter.get()).isEqualTo(3);
+
+        Registry registry = titusRuntime.getRegistry();
+        Id resolutionsId = registry.createId("titus.reconciliation.engine.differenceResolutions", "rootHolderId", "myRoot");
+        assertThat(registry.counter(resolutionsId.withTag("status", "evaluated")).count()).isEqualTo(3);
+        assertThat(registry.counter(resolutionsId.withTag("status", "skipped")).count()).isEqualTo(1);
+    }
+
     @Test
     public void testChangeActionCancellation() {
         SlowChangeAction action = new SlowChangeAction();
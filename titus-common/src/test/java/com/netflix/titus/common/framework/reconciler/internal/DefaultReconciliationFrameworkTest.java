@@ -26,12 +26,16 @@ import java.util.function.Function;
 import com.google.common.collect.ImmutableMap;
 import com.netflix.spectator.api.DefaultRegistry;
 import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import com.netflix.titus.common.framework.reconciler.ModelActionHolder;
 import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
 import com.netflix.titus.common.framework.reconciler.internal.SimpleReconcilerEvent.EventType;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.testkit.rx.ExtTestSubscriber;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import rx.Observable;
 import rx.observers.AssertableSubscriber;
 import rx.schedulers.Schedulers;
 import rx.schedulers.TestScheduler;
@@ -39,7 +43,9 @@ import rx.subjects.PublishSubject;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -97,6 +103,7 @@ public class DefaultReconciliationFrameworkTest {
         ReconciliationEngine<SimpleReconcilerEvent> bootstrapEngine = mock(ReconciliationEngine.class);
         PublishSubject<SimpleReconcilerEvent> eventSubject = PublishSubject.create();
         when(bootstrapEngine.events()).thenReturn(eventSubject);
+        when(bootstrapEngine.getReferenceView()).thenReturn(EntityHolder.newRoot("myRoot", "myEntity"));
         when(bootstrapEngine.triggerEvents()).thenReturn(true);
 
         DefaultReconciliationFramework<SimpleReconcilerEvent> framework = new DefaultReconciliationFramework<>(
@@ -130,6 +137,69 @@ public class DefaultReconciliationFrameworkTest {
         verify(engine, times(1)).triggerEvents();
     }
 
+    @Test
+    public void testEngineReadySignalTriggersImmediateLoop() {
+        DefaultReconciliationEngine<SimpleReconcilerEvent> engine = new DefaultReconciliationEngine<>(
+                EntityHolder.newRoot("myRoot", "myEntity"),
+                false,
+                e -> Collections.emptyList(),
+                indexComparators,
+                new SimpleReconcilerEventFactory(),
+                changeAction -> Collections.emptyList(),
+                event -> Collections.emptyList(),
+                TitusRuntimes.test(testScheduler)
+        );
+        when(engineFactory.apply(any())).thenReturn(engine);
+
+        framework.newEngine(EntityHolder.newRoot("myRoot", "myEntity")).subscribe();
+        testScheduler.triggerActions();
+
+        // Reference change is processed without waiting for the idle timeout.
+        ExtTestSubscriber<Void> changeSubscriber = new ExtTestSubscriber<>();
+        engine.changeReferenceModel(() -> Observable.just(ModelActionHolder.referenceList(
+                new SimpleModelUpdateAction(EntityHolder.newRoot("myChild", "myChildEntity"), false)
+        ))).subscribe(changeSubscriber);
+        testScheduler.triggerActions();
+
+        assertThat(changeSubscriber.isUnsubscribed()).isTrue();
+        assertThat(framework.findEngineByChildId("myChild")).isPresent();
+    }
+
+    @Test
+    public void testWakeUpProcessesOnlySignallingEngine() {
+        DefaultReconciliationEngine<SimpleReconcilerEvent> engine = new DefaultReconciliationEngine<>(
+                EntityHolder.newRoot("myRoot", "myEntity"),
+                false,
+                e -> Collections.emptyList(),
+                indexComparators,
+                new SimpleReconcilerEventFactory(),
+                changeAction -> Collections.emptyList(),
+                event -> Collections.emptyList(),
+                TitusRuntimes.test(testScheduler)
+        );
+        when(engineFactory.apply(any())).thenReturn(engine1, engine);
+
+        framework.newEngine(EntityHolder.newRoot("myRoot1", "myEntity1")).subscribe();
+        framework.newEngine(EntityHolder.newRoot("myRoot", "myEntity")).subscribe();
+        testScheduler.triggerActions();
+        clearInvocations(engine1);
+
+        // The ready engine is processed immediately, without visiting the other one.
+        ExtTestSubscriber<Void> changeSubscriber = new ExtTestSubscriber<>();
+        engine.changeReferenceModel(() -> Observable.just(ModelActionHolder.referenceList(
+                new SimpleModelUpdateAction(EntityHolder.newRoot("myChild", "myChildEntity"), false)
+        ))).subscribe(changeSubscriber);
+        testScheduler.triggerActions();
+
+        assertThat(changeSubscriber.isUnsubscribed()).isTrue();
+        verify(engine1, never()).applyModelUpdates();
+        verify(engine1, never()).triggerEvents();
+
+        // The periodic iteration still processes all engines.
+        testScheduler.advanceTimeBy(ACTIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        verify(engine1, times(1)).triggerEvents();
+    }
+
     @Test
     public void testIndexes() {
         framework.newEngine(EntityHolder.newRoot("myRoot1", "myEntity1")).subscribe();
@@ -140,6 +210,68 @@ public class DefaultReconciliationFrameworkTest {
         assertThat(framework.orderedView("descending").stream().map(EntityHolder::getEntity)).containsExactly("myEntity2", "myEntity1");
     }
 
+    @Test
+    public void testFindEngineById() {
+        EntityHolder rootV1 = EntityHolder.newRoot("myRoot1", "myEntity1").addChild(EntityHolder.newRoot("myChild1", "a1"));
+        when(engine1.getReferenceView()).thenReturn(rootV1);
+
+        framework.newEngine(rootV1).subscribe();
+        framework.newEngine(EntityHolder.newRoot("myRoot2", "myEntity2")).subscribe();
+        testScheduler.triggerActions();
+
+        assertThat(framework.findEngineByRootId("myRoot1")).contains(engine1);
+        assertThat(framework.findEngineByRootId("myRoot2")).contains(engine2);
+        assertThat(framework.findEngineByChildId("myChild1").map(Pair::getLeft)).contains(engine1);
+
+        // Replace child in the reference model
+        EntityHolder rootV2 = rootV1.removeChild("myChild1").getLeft().addChild(EntityHolder.newRoot("myChild2", "a2"));
+        when(engine1.getReferenceView()).thenReturn(rootV2);
+        when(engine1.applyModelUpdates()).thenReturn(true);
+        testScheduler.advanceTimeBy(ACTIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertThat(framework.findEngineByChildId("myChild1")).isEmpty();
+        assertThat(framework.findEngineByChildId("myChild2").map(Pair::getRight).map(EntityHolder::getId)).contains("myChild2");
+
+        // Remove engine
+        framework.removeEngine(engine1).subscribe();
+        testScheduler.advanceTimeBy(ACTIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertThat(framework.findEngineByRootId("myRoot1")).isEmpty();
+        assertThat(framework.findEngineByChildId("myChild2")).isEmpty();
+    }
+
+    @Test
+    public void testChildIndexIsUpdatedFromModelDelta() {
+        EntityHolder rootV1 = EntityHolder.newRoot("myRoot1", "myEntity1");
+        for (int i = 0; i < 1_000; i++) {
+            rootV1 = rootV1.addChild(EntityHolder.newRoot("myChild" + i, "a" + i));
+        }
+        when(engine1.getReferenceView()).thenReturn(rootV1);
+        framework.newEngine(rootV1).subscribe();
+        testScheduler.triggerActions();
+
+        // Replace one child, remove another one, and add a new one with a nested child
+        EntityHolder rootV2 = rootV1.addChild(EntityHolder.newRoot("myChild1", "a1_v2"))
+                .removeChild("myChild2").getLeft()
+                .addChild(EntityHolder.newRoot("myChildNew", "new").addChild(EntityHolder.newRoot("myNested", "nested")));
+        when(engine1.getReferenceView()).thenReturn(rootV2);
+        when(engine1.applyModelUpdates()).thenReturn(true);
+        testScheduler.advanceTimeBy(ACTIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertThat(framework.findEngineByChildId("myChild1").map(p -> p.getRight().<String>getEntity())).contains("a1_v2");
+        assertThat(framework.findEngineByChildId("myChild2")).isEmpty();
+        assertThat(framework.findEngineByChildId("myChild3").map(Pair::getLeft)).contains(engine1);
+        assertThat(framework.findEngineByChildId("myNested").map(Pair::getLeft)).contains(engine1);
+
+        // Remove the child with the nested one
+        EntityHolder rootV3 = rootV2.removeChild("myChildNew").getLeft();
+        when(engine1.getReferenceView()).thenReturn(rootV3);
+        testScheduler.advanceTimeBy(ACTIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertThat(framework.findEngineByChildId("myChildNew")).isEmpty();
+        assertThat(framework.findEngineByChildId("myNested")).isEmpty();
+    }
+
     @Test
     public void testEventsPublishing() {
         framework.newEngine(EntityHolder.newRoot("myRoot1", "myEntity1")).subscribe();
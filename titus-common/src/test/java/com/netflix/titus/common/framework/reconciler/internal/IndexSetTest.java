@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.framework.reconciler.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableMap;
+import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexSetTest {
+
+    private final Map<Object, Comparator<EntityHolder>> indexComparators = ImmutableMap.<Object, Comparator<EntityHolder>>builder()
+            .put("ascending", Comparator.comparing(EntityHolder::getEntity))
+            .put("descending", Comparator.<EntityHolder, String>comparing(EntityHolder::getEntity).reversed())
+            .build();
+
+    private final IndexSet<EntityHolder> emptyIndexSet = IndexSet.newIndexSet(indexComparators, EntityHolder::getId);
+
+    @Test
+    public void testAddAndUpdate() throws Exception {
+        IndexSet<EntityHolder> indexSet = emptyIndexSet.add(Arrays.asList(holder("id1", "b"), holder("id2", "a"), holder("id3", "c")));
+        assertThat(entitiesOf(indexSet, "ascending")).containsExactly("a", "b", "c");
+        assertThat(entitiesOf(indexSet, "descending")).containsExactly("c", "b", "a");
+
+        IndexSet<EntityHolder> updated = indexSet.add(Collections.singletonList(holder("id2", "d")));
+        assertThat(entitiesOf(updated, "ascending")).containsExactly("b", "c", "d");
+
+        // Previous version is not affected
+        assertThat(entitiesOf(indexSet, "ascending")).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        IndexSet<EntityHolder> indexSet = emptyIndexSet.add(Arrays.asList(holder("id1", "b"), holder("id2", "a"), holder("id3", "c")));
+        IndexSet<EntityHolder> updated = indexSet.remove(Arrays.asList("id1", "unknownId"));
+
+        assertThat(entitiesOf(updated, "ascending")).containsExactly("a", "c");
+        assertThat(updated.contains("id1")).isFalse();
+        assertThat(updated.remove(Collections.singletonList("unknownId"))).isSameAs(updated);
+    }
+
+    @Test
+    public void testApplyFullSet() throws Exception {
+        EntityHolder holder1 = holder("id1", "b");
+        IndexSet<EntityHolder> indexSet = emptyIndexSet.apply(Arrays.asList(holder1, holder("id2", "a")));
+        IndexSet<EntityHolder> updated = indexSet.apply(Arrays.asList(holder1, holder("id3", "c")));
+
+        assertThat(entitiesOf(updated, "ascending")).containsExactly("b", "c");
+        assertThat(updated.getOrdered("ascending").get(0)).isSameAs(holder1);
+    }
+
+    @Test
+    public void testEqualElementsAreOrderedById() throws Exception {
+        IndexSet<EntityHolder> indexSet = emptyIndexSet.add(Arrays.asList(holder("id2", "a"), holder("id1", "a")));
+        List<EntityHolder> ordered = indexSet.getOrdered("ascending");
+
+        assertThat(ordered).hasSize(2);
+        assertThat(ordered.get(0).getId()).isEqualTo("id1");
+        assertThat(ordered.get(1).getId()).isEqualTo("id2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownIndex() throws Exception {
+        emptyIndexSet.getOrdered("unknown");
+    }
+
+    private static EntityHolder holder(String id, String entity) {
+        return EntityHolder.newRoot(id, entity);
+    }
+
+    private static List<String> entitiesOf(IndexSet<EntityHolder> indexSet, String indexId) {
+        return indexSet.getOrdered(indexId).stream().map(h -> (String) h.getEntity()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.framework.reconciler.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableMap;
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
+import com.netflix.titus.common.framework.reconciler.internal.SimpleReconcilerEvent.EventType;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.testkit.rx.ExtTestSubscriber;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ShardedReconciliationFrameworkTest {
+
+    private static final long IDLE_TIMEOUT_MS = 100;
+    private static final long ACTIVE_TIMEOUT_MS = 20;
+    private static final int STOP_TIMEOUT_MS = 1_000;
+    private static final int SHARD_COUNT = 4;
+    private static final int ENGINE_COUNT = 20;
+
+    private final TestScheduler testScheduler = Schedulers.test();
+
+    private final Map<Object, Comparator<EntityHolder>> indexComparators = ImmutableMap.<Object, Comparator<EntityHolder>>builder()
+            .put("ascending", Comparator.comparing(EntityHolder::getEntity))
+            .put("descending", Comparator.<EntityHolder, String>comparing(EntityHolder::getEntity).reversed())
+            .build();
+
+    private final Map<String, PublishSubject<SimpleReconcilerEvent>> engineEvents = new HashMap<>();
+
+    private final Function<EntityHolder, ReconciliationEngine<SimpleReconcilerEvent>> engineFactory = this::newEngine;
+
+    private ShardedReconciliationFramework<SimpleReconcilerEvent> framework;
+
+    @Before
+    public void setUp() {
+        framework = new ShardedReconciliationFramework<>(
+                SHARD_COUNT,
+                Collections.emptyList(),
+                engineFactory,
+                IDLE_TIMEOUT_MS,
+                ACTIVE_TIMEOUT_MS,
+                indexComparators,
+                new DefaultRegistry(),
+                Optional.of(testScheduler)
+        );
+        framework.start();
+    }
+
+    @After
+    public void tearDown() {
+        framework.stop(STOP_TIMEOUT_MS);
+    }
+
+    @Test
+    public void testEnginesAreDistributedAndFound() {
+        List<ReconciliationEngine<SimpleReconcilerEvent>> engines = addEngines();
+
+        for (ReconciliationEngine<SimpleReconcilerEvent> engine : engines) {
+            String rootId = engine.getReferenceView().getId();
+            assertThat(framework.findEngineByRootId(rootId)).contains(engine);
+            assertThat(framework.findEngineByChildId(rootId + "-child").map(Pair::getLeft)).contains(engine);
+        }
+        assertThat(framework.findEngineByRootId("unknown")).isEmpty();
+        assertThat(framework.findEngineByChildId("unknown")).isEmpty();
+    }
+
+    @Test
+    public void testOrderedViewMergesShards() {
+        addEngines();
+
+        List<EntityHolder> ascending = framework.orderedView("ascending");
+        assertThat(ascending).hasSize(ENGINE_COUNT);
+        for (int i = 1; i < ascending.size(); i++) {
+            String previous = ascending.get(i - 1).getEntity();
+            assertThat(previous.compareTo(ascending.get(i).getEntity())).isLessThan(0);
+        }
+        assertThat(framework.orderedView("ascending")).isSameAs(ascending);
+
+        List<EntityHolder> descending = framework.orderedView("descending");
+        assertThat(descending.get(0)).isSameAs(ascending.get(ENGINE_COUNT - 1));
+    }
+
+    @Test
+    public void testEventsAreMerged() {
+        addEngines();
+
+        ExtTestSubscriber<SimpleReconcilerEvent> eventSubscriber = new ExtTestSubscriber<>();
+        framework.events().subscribe(eventSubscriber);
+
+        engineEvents.values().forEach(subject -> subject.onNext(new SimpleReconcilerEvent(EventType.Changed, "event", Optional.empty())));
+        assertThat(eventSubscriber.takeNext(ENGINE_COUNT)).hasSize(ENGINE_COUNT);
+    }
+
+    @Test
+    public void testEngineRemoval() {
+        List<ReconciliationEngine<SimpleReconcilerEvent>> engines = addEngines();
+        ReconciliationEngine<SimpleReconcilerEvent> removed = engines.get(0);
+
+        framework.removeEngine(removed).subscribe();
+        testScheduler.triggerActions();
+
+        assertThat(framework.findEngineByRootId(removed.getReferenceView().getId())).isEmpty();
+        assertThat(framework.findEngineByChildId(removed.getReferenceView().getId() + "-child")).isEmpty();
+        assertThat(framework.orderedView("ascending")).hasSize(ENGINE_COUNT - 1);
+
+        // Child ids of the remaining engines, held by the other shards, must stay in the shared index
+        for (ReconciliationEngine<SimpleReconcilerEvent> engine : engines.subList(1, ENGINE_COUNT)) {
+            assertThat(framework.findEngineByChildId(engine.getReferenceView().getId() + "-child").map(Pair::getLeft)).contains(engine);
+        }
+    }
+
+    @Test
+    public void testOrderedViewIsMergedOnAccess() {
+        addEngines();
+
+        List<EntityHolder> ascending = framework.orderedView("ascending");
+        assertThat(ascending.get(ENGINE_COUNT - 1).getId()).isEqualTo(String.format("myRoot%02d", ENGINE_COUNT - 1));
+        assertThat(ascending.get(0).getId()).isEqualTo("myRoot00");
+
+        List<String> ids = new ArrayList<>();
+        ascending.forEach(holder -> ids.add(holder.getId()));
+        assertThat(ids).isSorted().hasSize(ENGINE_COUNT);
+
+        assertThatThrownBy(() -> ascending.get(ENGINE_COUNT)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    private List<ReconciliationEngine<SimpleReconcilerEvent>> addEngines() {
+        List<ReconciliationEngine<SimpleReconcilerEvent>> engines = new ArrayList<>();
+        for (int i = 0; i < ENGINE_COUNT; i++) {
+            String rootId = String.format("myRoot%02d", i);
+            EntityHolder root = EntityHolder.newRoot(rootId, "myEntity" + rootId).addChild(EntityHolder.newRoot(rootId + "-child", "child"));
+            framework.newEngine(root).subscribe(engines::add);
+        }
+        testScheduler.triggerActions();
+        assertThat(engines).hasSize(ENGINE_COUNT);
+        return engines;
+    }
+
+    private ReconciliationEngine<SimpleReconcilerEvent> newEngine(EntityHolder bootstrapModel) {
+        PublishSubject<SimpleReconcilerEvent> events = PublishSubject.create();
+        engineEvents.put(bootstrapModel.getId(), events);
+
+        ReconciliationEngine<SimpleReconcilerEvent> engine = mock(ReconciliationEngine.class);
+        when(engine.getReferenceView()).thenReturn(bootstrapModel);
+        when(engine.events()).thenReturn(events.asObservable());
+        return engine;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.model.sanitizer.internal;
+
+import org.junit.Test;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpELExpressionsTest {
+
+    @Test
+    public void testExpressionIsParsedOnce() {
+        assertThat(SpELExpressions.parse("value > 0")).isSameAs(SpELExpressions.parse("value > 0"));
+        assertThat(SpELExpressions.parseTemplate("#{value}")).isSameAs(SpELExpressions.parseTemplate("#{value}"));
+    }
+
+    @Test
+    public void testTemplateCacheIsBounded() {
+        for (int i = 0; i < 2 * SpELExpressions.MAX_CACHED_TEMPLATES; i++) {
+            SpELExpressions.parseTemplate("Unrecognized constraints [constraint" + i + "]");
+        }
+        assertThat(SpELExpressions.getCachedTemplateCount()).isLessThanOrEqualTo(SpELExpressions.MAX_CACHED_TEMPLATES);
+    }
+
+    @Test
+    public void testCompiledExpressionFallsBackToInterpreterOnRootTypeChange() {
+        Expression expression = SpELExpressions.parse("value.length() > 1");
+        StandardEvaluationContext context = new StandardEvaluationContext();
+
+        // Enough evaluations to trigger the compilation
+        for (int i = 0; i < 200; i++) {
+            assertThat(expression.getValue(context, new SpELFieldValidator.Root("ab"), Boolean.class)).isTrue();
+        }
+        assertThat(expression.getValue(context, new SpELFieldValidator.Root(new StringBuilder("a")), Boolean.class)).isFalse();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MpscQueueTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int ITEMS_PER_PRODUCER = 10_000;
+
+    private final MpscQueue<Integer> queue = new MpscQueue<>();
+
+    @Test
+    public void testFifoOrder() throws Exception {
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.poll()).isNull();
+
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+        assertThat(queue.size()).isEqualTo(3);
+        assertThat(queue.poll()).isEqualTo(1);
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(queue.drainTo(drained)).isEqualTo(2);
+        assertThat(drained).containsExactly(2, 3);
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullNotAllowed() throws Exception {
+        queue.offer(null);
+    }
+
+    @Test(timeout = 30_000)
+    public void testConcurrentProducers() throws Exception {
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producerId = p;
+            Thread producer = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException ignore) {
+                    return;
+                }
+                for (int i = 0; i < ITEMS_PER_PRODUCER; i++) {
+                    queue.offer(producerId * ITEMS_PER_PRODUCER + i);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        startLatch.countDown();
+
+        // Items from each producer must be received in the order they were offered
+        int[] lastSeen = new int[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            lastSeen[p] = -1;
+        }
+        int received = 0;
+        while (received < PRODUCERS * ITEMS_PER_PRODUCER) {
+            Integer next = queue.poll();
+            if (next == null) {
+                Thread.yield();
+                continue;
+            }
+            int producerId = next / ITEMS_PER_PRODUCER;
+            int item = next % ITEMS_PER_PRODUCER;
+            assertThat(item).isGreaterThan(lastSeen[producerId]);
+            lastSeen[producerId] = item;
+            received++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.size()).isZero();
+    }
+}
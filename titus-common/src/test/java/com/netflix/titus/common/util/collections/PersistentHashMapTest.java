@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util.collections;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class PersistentHashMapTest {
+
+    @Test
+    public void testPlusAndMinus() throws Exception {
+        PersistentHashMap<String, String> v1 = PersistentHashMap.<String, String>empty().plus("a", "1").plus("b", "2");
+        PersistentHashMap<String, String> v2 = v1.plus("a", "1_v2");
+        PersistentHashMap<String, String> v3 = v2.minus("b");
+
+        assertThat(v1).containsOnly(entry("a", "1"), entry("b", "2"));
+        assertThat(v2).containsOnly(entry("a", "1_v2"), entry("b", "2"));
+        assertThat(v3).containsOnly(entry("a", "1_v2"));
+        assertThat(v3.minus("a")).isEmpty();
+    }
+
+    @Test
+    public void testNoOpUpdatesReturnSameInstance() throws Exception {
+        String value = "1";
+        PersistentHashMap<String, String> map = PersistentHashMap.<String, String>empty().plus("a", value);
+
+        assertThat(map.plus("a", value)).isSameAs(map);
+        assertThat(map.minus("b")).isSameAs(map);
+    }
+
+    @Test
+    public void testHashCollisions() throws Exception {
+        CollidingKey k1 = new CollidingKey("k1");
+        CollidingKey k2 = new CollidingKey("k2");
+        CollidingKey k3 = new CollidingKey("k3");
+
+        PersistentHashMap<Object, String> map = PersistentHashMap.<Object, String>empty()
+                .plus(k1, "1")
+                .plus(k2, "2")
+                .plus(k3, "3")
+                .plus("other", "4");
+
+        assertThat(map).hasSize(4);
+        assertThat(map.get(k2)).isEqualTo("2");
+
+        PersistentHashMap<Object, String> reduced = map.minus(k1).minus(k2);
+        assertThat(reduced).hasSize(2);
+        assertThat(reduced.get(k3)).isEqualTo("3");
+        assertThat(reduced.containsKey(k1)).isFalse();
+    }
+
+    @Test
+    public void testConsistencyWithHashMap() throws Exception {
+        Random random = new Random(123);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentHashMap<Integer, Integer> actual = PersistentHashMap.empty();
+
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(10_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.minus(key);
+            } else {
+                expected.put(key, i);
+                actual = actual.plus(key, i);
+            }
+        }
+
+        assertThat(actual).hasSize(expected.size());
+        assertThat(actual).isEqualTo(expected);
+        for (Map.Entry<Integer, Integer> expectedEntry : expected.entrySet()) {
+            assertThat(actual.get(expectedEntry.getKey())).isEqualTo(expectedEntry.getValue());
+        }
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        Random random = new Random(123);
+        Map<Integer, Integer> initial = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            initial.put(i, i);
+        }
+        PersistentHashMap<Integer, Integer> previous = PersistentHashMap.of(initial);
+
+        PersistentHashMap<Integer, Integer> current = previous;
+        for (int i = 0; i < 100; i++) {
+            int key = random.nextInt(12_000);
+            current = random.nextBoolean() ? current.minus(key) : current.plus(key, -key);
+        }
+
+        Set<Integer> expectedChanges = new HashSet<>();
+        for (int key = 0; key < 12_000; key++) {
+            if (previous.get(key) != current.get(key)) {
+                expectedChanges.add(key);
+            }
+        }
+
+        Map<Integer, Integer> patched = new HashMap<>(previous);
+        Set<Integer> reportedChanges = new HashSet<>();
+        current.diff(previous, (key, previousValue, currentValue) -> {
+            assertThat(previousValue).isSameAs(previous.get(key));
+            reportedChanges.add(key);
+            if (currentValue == null) {
+                patched.remove(key);
+            } else {
+                patched.put(key, currentValue);
+            }
+        });
+
+        assertThat(reportedChanges).isEqualTo(expectedChanges);
+        assertThat(patched).isEqualTo(current);
+    }
+
+    @Test
+    public void testDiffWithHashCollisions() throws Exception {
+        CollidingKey k1 = new CollidingKey("k1");
+        CollidingKey k2 = new CollidingKey("k2");
+
+        PersistentHashMap<Object, String> previous = PersistentHashMap.<Object, String>empty().plus("other", "1");
+        PersistentHashMap<Object, String> current = previous.plus(k1, "2").plus(k2, "3").minus("other");
+
+        Map<Object, String> added = new HashMap<>();
+        Set<Object> removed = new HashSet<>();
+        current.diff(previous, (key, previousValue, currentValue) -> {
+            if (currentValue == null) {
+                removed.add(key);
+            } else {
+                added.put(key, currentValue);
+            }
+        });
+
+        assertThat(added).containsOnly(entry(k1, "2"), entry(k2, "3"));
+        assertThat(removed).containsOnly("other");
+    }
+
+    private static class CollidingKey {
+
+        private final String name;
+
+        private CollidingKey(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return "other".hashCode();
+        }
+    }
+}
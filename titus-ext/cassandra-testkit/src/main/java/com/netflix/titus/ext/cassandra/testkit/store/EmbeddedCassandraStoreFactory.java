@@ -65,6 +65,51 @@ public class EmbeddedCassandraStoreFactory {
         public int getConcurrencyLimit() {
             return 10;
         }
+
+        @Override
+        public boolean isBulkLoadEnabled() {
+            return false;
+        }
+
+        @Override
+        public int getBulkLoadPageSize() {
+            return 500;
+        }
+
+        @Override
+        public int getBulkLoadTokenRangeSplits() {
+            return 4;
+        }
+
+        @Override
+        public int getBulkLoadDeserializationThreads() {
+            return 4;
+        }
+
+        @Override
+        public boolean isCompressedRecordFormatEnabled() {
+            return false;
+        }
+
+        @Override
+        public long getTaskUpdateCoalescingWindowMs() {
+            return 0;
+        }
+
+        @Override
+        public String getJobSnapshotFile() {
+            return "";
+        }
+
+        @Override
+        public long getJobSnapshotIntervalMs() {
+            return 300_000;
+        }
+
+        @Override
+        public long getJobSnapshotMaxAgeMs() {
+            return 86_400_000;
+        }
     };
 
     private final Session session;
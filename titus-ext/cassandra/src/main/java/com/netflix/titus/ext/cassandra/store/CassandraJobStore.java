@@ -16,15 +16,27 @@
 
 package com.netflix.titus.ext.cassandra.store;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -39,6 +51,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Gauge;
+import com.netflix.spectator.api.Registry;
 import com.netflix.titus.api.jobmanager.model.job.Job;
 import com.netflix.titus.api.jobmanager.model.job.Task;
 import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
@@ -51,15 +66,21 @@ import com.netflix.titus.api.json.ObjectMappers;
 import com.netflix.titus.common.framework.fit.FitFramework;
 import com.netflix.titus.common.framework.fit.FitInjection;
 import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.util.StringExt;
 import com.netflix.titus.common.util.guice.annotation.ProxyConfiguration;
+import com.netflix.titus.common.util.time.Clock;
 import com.netflix.titus.common.util.tuple.Either;
 import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.ext.cassandra.store.JobStoreSnapshot.VersionedRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Completable;
 import rx.Emitter;
 import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
 import rx.exceptions.Exceptions;
+import rx.schedulers.Schedulers;
 
 import static com.netflix.titus.common.util.guice.ProxyType.Logging;
 import static com.netflix.titus.common.util.guice.ProxyType.Spectator;
@@ -73,6 +94,14 @@ public class CassandraJobStore implements JobStore {
     private static final int INITIAL_BUCKET_COUNT = 100;
     private static final int MAX_BUCKET_SIZE = 2_000;
     private static final String METRIC_NAME_ROOT = "titusMaster.jobManager.cassandra";
+    private static final String BULK_LOAD_METRIC_NAME_ROOT = METRIC_NAME_ROOT + ".bulkLoad.";
+
+    /**
+     * Tasks loaded in the bulk mode are handed over to {@link #retrieveTasksForJob(String)} callers once. Entries
+     * of jobs for which tasks were never requested (for example finished jobs skipped during bootstrap) are released
+     * after this time.
+     */
+    private static final long BULK_LOADED_TASKS_RETENTION_MS = 300_000;
 
     // SELECT Queries
     private static final String RETRIEVE_ACTIVE_JOB_ID_BUCKETS_STRING = "SELECT distinct bucket FROM active_job_ids";
@@ -123,12 +152,35 @@ public class CassandraJobStore implements JobStore {
 
     private final TitusRuntime titusRuntime;
     private final Session session;
-    private final ObjectMapper mapper;
+    private final StoreRecordCodec codec;
     private final BalancedBucketManager<String> activeJobIdsBucketManager;
     private final CassandraStoreConfiguration configuration;
     private final Optional<FitInjection> fitDriverInjection;
     private final Optional<FitInjection> fitBadDataInjection;
 
+    private final Clock clock;
+    private final Scheduler backgroundScheduler;
+    private final Optional<CassandraJobStoreBulkLoader> bulkLoader;
+    private final Counter bulkLoadedJobsCounter;
+    private final Counter bulkLoadedTasksCounter;
+    private final Counter bulkLoadedRecordErrorsCounter;
+    private final Gauge bulkLoadTimeToFirstJobGauge;
+    private final Gauge bulkLoadJobsTimeGauge;
+    private final Gauge bulkLoadTasksTimeGauge;
+    private final Optional<TaskUpdateCoalescer> taskUpdateCoalescer;
+    private final Optional<File> snapshotFile;
+    private final AtomicBoolean snapshotWriterStarted = new AtomicBoolean();
+    private final Counter snapshotRecordHitsCounter;
+    private final Counter snapshotRecordMissesCounter;
+    private final Gauge snapshotWriteTimeGauge;
+    private volatile Subscription snapshotWriterSubscription;
+
+    /**
+     * Tasks grouped by job id, loaded in the bulk mode together with jobs. Each entry is removed when tasks of its
+     * job are retrieved.
+     */
+    private volatile Observable<ConcurrentMap<String, List<Either<Task, Throwable>>>> bulkLoadedTasks;
+
     @Inject
     public CassandraJobStore(CassandraStoreConfiguration configuration, Session session, TitusRuntime titusRuntime) {
         this(configuration, session, titusRuntime, ObjectMappers.storeMapper(), INITIAL_BUCKET_COUNT, MAX_BUCKET_SIZE);
@@ -140,9 +192,20 @@ public class CassandraJobStore implements JobStore {
                       ObjectMapper mapper,
                       int initialBucketCount,
                       int maxBucketSize) {
+        this(configuration, session, titusRuntime, mapper, initialBucketCount, maxBucketSize, Schedulers.io());
+    }
+
+    CassandraJobStore(CassandraStoreConfiguration configuration,
+                      Session session,
+                      TitusRuntime titusRuntime,
+                      ObjectMapper mapper,
+                      int initialBucketCount,
+                      int maxBucketSize,
+                      Scheduler backgroundScheduler) {
         this.configuration = configuration;
         this.session = session;
         this.titusRuntime = titusRuntime;
+        this.backgroundScheduler = backgroundScheduler;
 
         FitFramework fit = titusRuntime.getFitFramework();
         if (fit.isActive()) {
@@ -164,7 +227,7 @@ public class CassandraJobStore implements JobStore {
             this.fitBadDataInjection = Optional.empty();
         }
 
-        this.mapper = mapper;
+        this.codec = new StoreRecordCodec(mapper, configuration.isCompressedRecordFormatEnabled());
         this.activeJobIdsBucketManager = new BalancedBucketManager<>(initialBucketCount, maxBucketSize, METRIC_NAME_ROOT, titusRuntime.getRegistry());
 
         retrieveActiveJobIdBucketsStatement = session.prepare(RETRIEVE_ACTIVE_JOB_ID_BUCKETS_STRING);
@@ -188,6 +251,31 @@ public class CassandraJobStore implements JobStore {
         deleteActiveJobStatement = session.prepare(DELETE_ACTIVE_JOB_STRING);
         deleteActiveTaskIdStatement = session.prepare(DELETE_ACTIVE_TASK_ID_STRING);
         deleteActiveTaskStatement = session.prepare(DELETE_ACTIVE_TASK_STRING);
+
+        this.clock = titusRuntime.getClock();
+        this.bulkLoader = configuration.isBulkLoadEnabled()
+                ? Optional.of(new CassandraJobStoreBulkLoader(session, configuration))
+                : Optional.empty();
+
+        Registry registry = titusRuntime.getRegistry();
+        this.bulkLoadedJobsCounter = registry.counter(BULK_LOAD_METRIC_NAME_ROOT + "jobs");
+        this.bulkLoadedTasksCounter = registry.counter(BULK_LOAD_METRIC_NAME_ROOT + "tasks");
+        this.bulkLoadedRecordErrorsCounter = registry.counter(BULK_LOAD_METRIC_NAME_ROOT + "recordErrors");
+        this.bulkLoadTimeToFirstJobGauge = registry.gauge(BULK_LOAD_METRIC_NAME_ROOT + "timeToFirstJobMs");
+        this.bulkLoadJobsTimeGauge = registry.gauge(BULK_LOAD_METRIC_NAME_ROOT + "jobsLoadTimeMs");
+        this.bulkLoadTasksTimeGauge = registry.gauge(BULK_LOAD_METRIC_NAME_ROOT + "tasksLoadTimeMs");
+
+        this.snapshotFile = bulkLoader.isPresent() && !StringExt.isEmpty(configuration.getJobSnapshotFile())
+                ? Optional.of(new File(configuration.getJobSnapshotFile()))
+                : Optional.empty();
+        this.snapshotRecordHitsCounter = registry.counter(BULK_LOAD_METRIC_NAME_ROOT + "snapshotRecordHits");
+        this.snapshotRecordMissesCounter = registry.counter(BULK_LOAD_METRIC_NAME_ROOT + "snapshotRecordMisses");
+        this.snapshotWriteTimeGauge = registry.gauge(BULK_LOAD_METRIC_NAME_ROOT + "snapshotWriteTimeMs");
+
+        long coalescingWindowMs = configuration.getTaskUpdateCoalescingWindowMs();
+        this.taskUpdateCoalescer = coalescingWindowMs > 0
+                ? Optional.of(new TaskUpdateCoalescer(this::writeTask, coalescingWindowMs, getConcurrencyLimit(), METRIC_NAME_ROOT, registry, Schedulers.computation()))
+                : Optional.empty();
     }
 
     @Override
@@ -228,6 +316,10 @@ public class CassandraJobStore implements JobStore {
 
     @Override
     public Observable<Pair<List<Job<?>>, Integer>> retrieveJobs() {
+        if (bulkLoader.isPresent()) {
+            return bulkRetrieveJobs(bulkLoader.get());
+        }
+
         Observable result = Observable.fromCallable(() -> {
             List<String> jobIds = activeJobIdsBucketManager.getItems();
             return jobIds.stream().map(retrieveActiveJobStatement::bind).map(this::execute).collect(Collectors.toList());
@@ -239,43 +331,7 @@ public class CassandraJobStore implements JobStore {
             }
             return allRows.stream()
                     .map(row -> row.getString(0))
-                    .map(value -> {
-                        String effectiveValue;
-                        if (fitBadDataInjection.isPresent()) {
-                            effectiveValue = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedRawJobRecords.name(), value);
-                        } else {
-                            effectiveValue = value;
-                        }
-
-                        Job<?> job;
-                        try {
-                            job = ObjectMappers.readValue(mapper, effectiveValue, Job.class);
-                        } catch (Exception e) {
-                            logger.error("Cannot map serialized job data to Job class: {}", effectiveValue, e);
-                            return Either.ofError(e);
-                        }
-
-                        // TODO Remove this code when there are no more jobs with missing migration data (caused by a bug in ServiceJobExt builder).
-                        if (job.getJobDescriptor().getExtensions() instanceof ServiceJobExt) {
-                            Job<ServiceJobExt> serviceJob = (Job<ServiceJobExt>) job;
-                            ServiceJobExt ext = serviceJob.getJobDescriptor().getExtensions();
-                            if (ext.getMigrationPolicy() == null) {
-                                titusRuntime.getCodePointTracker().markReachable("Corrupted task migration record in Cassandra: " + job.getId());
-                                ServiceJobExt fixedExt = ext.toBuilder().withMigrationPolicy(SystemDefaultMigrationPolicy.newBuilder().build()).build();
-                                logger.warn("Service job with no migration policy defined. Setting system default: {}", job.getId());
-                                job = serviceJob.toBuilder().withJobDescriptor(
-                                        serviceJob.getJobDescriptor().toBuilder().withExtensions(fixedExt).build()
-                                ).build();
-                            }
-                        }
-
-                        if (!fitBadDataInjection.isPresent()) {
-                            return Either.ofValue(job);
-                        }
-
-                        Job<?> effectiveJob = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedJobRecords.name(), job);
-                        return Either.ofValue(effectiveJob);
-                    })
+                    .map(this::deserializeJob)
                     .collect(Collectors.toList());
         })).toList().map(everything -> {
             List<Job> goodJobs = (List<Job>) everything.stream().filter(Either::hasValue).map(Either::getValue).collect(Collectors.toList());
@@ -286,6 +342,292 @@ public class CassandraJobStore implements JobStore {
         return result;
     }
 
+    /**
+     * Scans the active job table by token ranges, and emits jobs in batches as pages are loaded and deserialized.
+     * Tasks of all active jobs are loaded concurrently, and handed over later to {@link #retrieveTasksForJob(String)}.
+     */
+    private Observable<Pair<List<Job<?>>, Integer>> bulkRetrieveJobs(CassandraJobStoreBulkLoader loader) {
+        return Observable.defer(() -> {
+            long startTime = clock.wallTime();
+            Set<String> activeJobIds = new HashSet<>(activeJobIdsBucketManager.getItems());
+
+            Optional<JobStoreSnapshot> snapshot = snapshotFile.flatMap(JobStoreSnapshot::readFrom)
+                    .filter(s -> startTime - s.getCreatedAt() <= configuration.getJobSnapshotMaxAgeMs());
+            Observable<List<Pair<String, String>>> jobPages;
+            Observable<List<Pair<String, String>>> taskPages;
+            if (snapshot.isPresent()) {
+                logger.info("Loading jobs and tasks changed since the snapshot created at {}", snapshot.get().getCreatedAt());
+                jobPages = resolveRecords(loader.scanActiveJobVersions(), snapshot.get().getJobs(), retrieveActiveJobStatement);
+                taskPages = resolveRecords(loader.scanActiveTaskVersions(), snapshot.get().getTasks(), retrieveActiveTaskStatement);
+            } else {
+                jobPages = loader.scanActiveJobs();
+                taskPages = loader.scanActiveTasks();
+            }
+
+            ExecutorService executor = loader.newDeserializationExecutor();
+            Scheduler scheduler = Schedulers.from(executor);
+            AtomicInteger pendingLoads = new AtomicInteger(2);
+            Runnable onLoadTerminated = () -> {
+                if (pendingLoads.decrementAndGet() == 0) {
+                    executor.shutdown();
+                    startSnapshotWriter(loader);
+                }
+            };
+            // The job stream may be unsubscribed before it completes, so the executor release must be idempotent
+            AtomicBoolean jobsLoadTerminated = new AtomicBoolean();
+            Runnable onJobsLoadTerminated = () -> {
+                if (jobsLoadTerminated.compareAndSet(false, true)) {
+                    onLoadTerminated.run();
+                }
+            };
+
+            startBulkTaskLoad(loader, taskPages, scheduler, startTime, onLoadTerminated);
+
+            AtomicBoolean firstJobLoaded = new AtomicBoolean();
+            return jobPages
+                    .flatMap(page -> Observable.fromCallable(() -> deserializeJobPage(page, activeJobIds)).subscribeOn(scheduler),
+                            2 * loader.getDeserializationThreads()
+                    )
+                    .filter(jobsAndErrors -> !jobsAndErrors.getLeft().isEmpty() || jobsAndErrors.getRight() > 0)
+                    .doOnNext(jobsAndErrors -> {
+                        if (!jobsAndErrors.getLeft().isEmpty() && firstJobLoaded.compareAndSet(false, true)) {
+                            bulkLoadTimeToFirstJobGauge.set(clock.wallTime() - startTime);
+                        }
+                        bulkLoadedJobsCounter.increment(jobsAndErrors.getLeft().size());
+                        bulkLoadedRecordErrorsCounter.increment(jobsAndErrors.getRight());
+                    })
+                    .doOnCompleted(() -> {
+                        long elapsed = clock.wallTime() - startTime;
+                        bulkLoadJobsTimeGauge.set(elapsed);
+                        logger.info("Bulk loaded jobs in {}ms", elapsed);
+                    })
+                    .doOnTerminate(onJobsLoadTerminated::run)
+                    .doOnUnsubscribe(onJobsLoadTerminated::run)
+                    .defaultIfEmpty(Pair.of(Collections.emptyList(), 0));
+        });
+    }
+
+    private Pair<List<Job<?>>, Integer> deserializeJobPage(List<Pair<String, String>> page, Set<String> activeJobIds) {
+        List<Job<?>> jobs = new ArrayList<>(page.size());
+        int errors = 0;
+        for (Pair<String, String> jobIdAndValue : page) {
+            // Skip records with no id in active_job_ids, the same as when reading jobs one by one
+            if (!activeJobIds.contains(jobIdAndValue.getLeft())) {
+                logger.debug("Job record with no active job id: {}", jobIdAndValue.getLeft());
+                continue;
+            }
+            Either<Job<?>, Throwable> result = deserializeJob(jobIdAndValue.getRight());
+            if (result.hasValue()) {
+                jobs.add(result.getValue());
+            } else {
+                errors++;
+            }
+        }
+        return Pair.of(jobs, errors);
+    }
+
+    private void startBulkTaskLoad(CassandraJobStoreBulkLoader loader,
+                                   Observable<List<Pair<String, String>>> taskPages,
+                                   Scheduler scheduler,
+                                   long startTime,
+                                   Runnable onLoadTerminated) {
+        Observable<Map<String, String>> jobIdsByTaskId = loader.scanActiveTaskIds().collect(HashMap::new, (acc, page) -> {
+            for (Pair<String, String> jobIdAndTaskId : page) {
+                for (String taskId : getEffectiveTaskIds(jobIdAndTaskId.getRight())) {
+                    acc.put(taskId, jobIdAndTaskId.getLeft());
+                }
+            }
+        });
+        Observable<Map<String, Either<Task, Throwable>>> tasksById = taskPages
+                .flatMap(page -> Observable.fromCallable(() -> deserializeTaskPage(page)).subscribeOn(scheduler),
+                        2 * loader.getDeserializationThreads()
+                )
+                .collect(HashMap::new, Map::putAll);
+
+        Observable<ConcurrentMap<String, List<Either<Task, Throwable>>>> result = Observable.zip(jobIdsByTaskId, tasksById, (jobIds, tasks) -> {
+            ConcurrentMap<String, List<Either<Task, Throwable>>> tasksByJobId = new ConcurrentHashMap<>();
+            jobIds.forEach((taskId, jobId) -> {
+                // Task ids with no task record are ignored, the same as when reading tasks one by one
+                Either<Task, Throwable> task = tasks.get(taskId);
+                if (task != null) {
+                    tasksByJobId.computeIfAbsent(jobId, id -> new ArrayList<>()).add(task);
+                }
+            });
+            return tasksByJobId;
+        }).doOnNext(tasksByJobId -> {
+            long elapsed = clock.wallTime() - startTime;
+            bulkLoadTasksTimeGauge.set(elapsed);
+            logger.info("Bulk loaded tasks of {} jobs in {}ms", tasksByJobId.size(), elapsed);
+            // The zipped result is a single value, so the load is complete before the tasks are handed over
+            onLoadTerminated.run();
+        }).doOnError(e -> onLoadTerminated.run()).cache();
+
+        this.bulkLoadedTasks = result;
+        result.subscribe(
+                next -> Observable.timer(BULK_LOADED_TASKS_RETENTION_MS, TimeUnit.MILLISECONDS).subscribe(tick -> releaseBulkLoadedTasks(result)),
+                e -> {
+                    logger.warn("Bulk task load failed. Tasks will be retrieved one by one: {}", e.getMessage());
+                    releaseBulkLoadedTasks(result);
+                }
+        );
+    }
+
+    private Map<String, Either<Task, Throwable>> deserializeTaskPage(List<Pair<String, String>> page) {
+        Map<String, Either<Task, Throwable>> tasks = new HashMap<>();
+        for (Pair<String, String> taskIdAndValue : page) {
+            Either<Task, Throwable> result = deserializeTask(taskIdAndValue.getRight());
+            if (result.hasValue()) {
+                bulkLoadedTasksCounter.increment();
+            } else {
+                bulkLoadedRecordErrorsCounter.increment();
+            }
+            tasks.put(taskIdAndValue.getLeft(), result);
+        }
+        return tasks;
+    }
+
+    private synchronized void releaseBulkLoadedTasks(Observable<ConcurrentMap<String, List<Either<Task, Throwable>>>> loadedTasks) {
+        if (bulkLoadedTasks == loadedTasks) {
+            bulkLoadedTasks = null;
+        }
+    }
+
+    /**
+     * Task updates make the bulk loaded data stale. As they start only after the bootstrap is complete, any update
+     * releases all of it.
+     */
+    private void releaseBulkLoadedTasks() {
+        if (bulkLoadedTasks != null) {
+            bulkLoadedTasks = null;
+        }
+    }
+
+    /**
+     * Maps pages of record versions to pages of (id, value) pairs. Records with the same write time as in the snapshot
+     * are taken from the snapshot, and the other ones are fetched from Cassandra.
+     */
+    private Observable<List<Pair<String, String>>> resolveRecords(Observable<List<Pair<String, Long>>> versionPages,
+                                                                  Map<String, VersionedRecord> snapshotRecords,
+                                                                  PreparedStatement retrieveStatement) {
+        return versionPages.flatMap(page -> {
+            List<Pair<String, String>> unchanged = new ArrayList<>(page.size());
+            List<String> changedIds = new ArrayList<>();
+            for (Pair<String, Long> idAndWriteTime : page) {
+                VersionedRecord record = snapshotRecords.get(idAndWriteTime.getLeft());
+                if (record != null && record.getWriteTime() == idAndWriteTime.getRight()) {
+                    unchanged.add(Pair.of(idAndWriteTime.getLeft(), record.getValue()));
+                } else {
+                    changedIds.add(idAndWriteTime.getLeft());
+                }
+            }
+            snapshotRecordHitsCounter.increment(unchanged.size());
+            snapshotRecordMissesCounter.increment(changedIds.size());
+            if (changedIds.isEmpty()) {
+                return Observable.just(unchanged);
+            }
+            Observable<List<Pair<String, String>>> changed = Observable.from(changedIds)
+                    .flatMap(id -> execute(retrieveStatement.bind(id)).flatMap(resultSet -> {
+                        Row row = resultSet.one();
+                        return row == null ? Observable.<Pair<String, String>>empty() : Observable.just(Pair.of(id, row.getString(0)));
+                    }), getConcurrencyLimit())
+                    .toList();
+            return Observable.just(unchanged).concatWith(changed);
+        }, getConcurrencyLimit());
+    }
+
+    private void startSnapshotWriter(CassandraJobStoreBulkLoader loader) {
+        if (!snapshotFile.isPresent() || !snapshotWriterStarted.compareAndSet(false, true)) {
+            return;
+        }
+        long intervalMs = configuration.getJobSnapshotIntervalMs();
+        Scheduler.Worker worker = backgroundScheduler.createWorker();
+        this.snapshotWriterSubscription = worker;
+        worker.schedulePeriodically(
+                () -> writeSnapshot(loader, snapshotFile.get()),
+                intervalMs, intervalMs, TimeUnit.MILLISECONDS
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // The snapshot writer is not started if the bootstrap completes after the shutdown
+        snapshotWriterStarted.set(true);
+        Subscription subscription = snapshotWriterSubscription;
+        if (subscription != null) {
+            subscription.unsubscribe();
+            snapshotWriterSubscription = null;
+        }
+    }
+
+    private void writeSnapshot(CassandraJobStoreBulkLoader loader, File file) {
+        long startTime = clock.wallTime();
+        try (JobStoreSnapshot.Writer writer = JobStoreSnapshot.newWriter(file, startTime)) {
+            loader.scanActiveJobRecords().toBlocking().forEach(page -> {
+                for (Pair<String, VersionedRecord> record : page) {
+                    try {
+                        writer.addJob(record.getLeft(), record.getRight().getValue(), record.getRight().getWriteTime());
+                    } catch (IOException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                }
+            });
+            loader.scanActiveTaskRecords().toBlocking().forEach(page -> {
+                for (Pair<String, VersionedRecord> record : page) {
+                    try {
+                        writer.addTask(record.getLeft(), record.getRight().getValue(), record.getRight().getWriteTime());
+                    } catch (IOException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                }
+            });
+            writer.commit();
+
+            long elapsed = clock.wallTime() - startTime;
+            snapshotWriteTimeGauge.set(elapsed);
+            logger.info("Job store snapshot written to {} in {}ms", file, elapsed);
+        } catch (Exception e) {
+            logger.warn("Cannot write job store snapshot to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Either<Job<?>, Throwable> deserializeJob(String value) {
+        String effectiveValue;
+        if (fitBadDataInjection.isPresent()) {
+            effectiveValue = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedRawJobRecords.name(), value);
+        } else {
+            effectiveValue = value;
+        }
+
+        Job<?> job;
+        try {
+            job = codec.decode(effectiveValue, Job.class);
+        } catch (Exception e) {
+            logger.error("Cannot map serialized job data to Job class: {}", effectiveValue, e);
+            return Either.ofError(e);
+        }
+
+        // TODO Remove this code when there are no more jobs with missing migration data (caused by a bug in ServiceJobExt builder).
+        if (job.getJobDescriptor().getExtensions() instanceof ServiceJobExt) {
+            Job<ServiceJobExt> serviceJob = (Job<ServiceJobExt>) job;
+            ServiceJobExt ext = serviceJob.getJobDescriptor().getExtensions();
+            if (ext.getMigrationPolicy() == null) {
+                titusRuntime.getCodePointTracker().markReachable("Corrupted task migration record in Cassandra: " + job.getId());
+                ServiceJobExt fixedExt = ext.toBuilder().withMigrationPolicy(SystemDefaultMigrationPolicy.newBuilder().build()).build();
+                logger.warn("Service job with no migration policy defined. Setting system default: {}", job.getId());
+                job = serviceJob.toBuilder().withJobDescriptor(
+                        serviceJob.getJobDescriptor().toBuilder().withExtensions(fixedExt).build()
+                ).build();
+            }
+        }
+
+        if (!fitBadDataInjection.isPresent()) {
+            return Either.ofValue(job);
+        }
+
+        Job<?> effectiveJob = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedJobRecords.name(), job);
+        return Either.ofValue(effectiveJob);
+    }
+
     @Override
     public Observable<Job<?>> retrieveJob(String jobId) {
         return Observable.fromCallable((Callable<Statement>) () -> {
@@ -297,7 +639,7 @@ public class CassandraJobStore implements JobStore {
                 throw JobStoreException.jobDoesNotExist(jobId);
             }
             String value = row.getString(0);
-            return (Job<?>) ObjectMappers.readValue(mapper, value, Job.class);
+            return (Job<?>) codec.decode(value, Job.class);
         }));
     }
 
@@ -306,10 +648,10 @@ public class CassandraJobStore implements JobStore {
         return Observable.fromCallable((Callable<Statement>) () -> {
             String jobId = job.getId();
             checkIfJobAlreadyExists(jobId);
-            String jobJsonString = ObjectMappers.writeValueAsString(mapper, job);
+            String jobRecord = codec.encode(job);
             int bucket = activeJobIdsBucketManager.getNextBucket();
             activeJobIdsBucketManager.addItem(bucket, jobId);
-            Statement jobStatement = insertActiveJobStatement.bind(jobId, jobJsonString);
+            Statement jobStatement = insertActiveJobStatement.bind(jobId, jobRecord);
             Statement jobIdStatement = insertActiveJobIdStatement.bind(bucket, jobId);
 
             BatchStatement batchStatement = new BatchStatement();
@@ -325,8 +667,8 @@ public class CassandraJobStore implements JobStore {
         return Observable.fromCallable((Callable<Statement>) () -> {
             String jobId = job.getId();
             checkIfJobIsActive(jobId);
-            String jobJsonString = ObjectMappers.writeValueAsString(mapper, job);
-            return insertActiveJobStatement.bind(jobId, jobJsonString);
+            String jobRecord = codec.encode(job);
+            return insertActiveJobStatement.bind(jobId, jobRecord);
         }).flatMap(this::execute).toCompletable();
     }
 
@@ -357,27 +699,34 @@ public class CassandraJobStore implements JobStore {
 
     @Override
     public Observable<Pair<List<Task>, Integer>> retrieveTasksForJob(String jobId) {
+        Observable<ConcurrentMap<String, List<Either<Task, Throwable>>>> loadedTasks = bulkLoadedTasks;
+        if (loadedTasks == null) {
+            return retrieveTasksForJobOneByOne(jobId);
+        }
+        return Observable.fromCallable(() -> {
+            checkIfJobIsActive(jobId);
+            return jobId;
+        }).flatMap(id -> loadedTasks.onErrorReturn(e -> new ConcurrentHashMap<>())).flatMap(tasksByJobId -> {
+            // Bulk loaded tasks are handed over once, as they are not updated by the subsequent store operations
+            List<Either<Task, Throwable>> taskErrorPairs = tasksByJobId.remove(jobId);
+            if (taskErrorPairs == null) {
+                return retrieveTasksForJobOneByOne(jobId);
+            }
+            if (tasksByJobId.isEmpty()) {
+                releaseBulkLoadedTasks(loadedTasks);
+            }
+            return Observable.just(toTasksAndErrors(taskErrorPairs));
+        });
+    }
+
+    private Observable<Pair<List<Task>, Integer>> retrieveTasksForJobOneByOne(String jobId) {
         return Observable.fromCallable(() -> {
             checkIfJobIsActive(jobId);
             return retrieveActiveTaskIdsForJobStatement.bind(jobId).setFetchSize(Integer.MAX_VALUE);
         }).flatMap(retrieveActiveTaskIdsForJob -> execute(retrieveActiveTaskIdsForJob).flatMap(taskIdsResultSet -> {
             List<String> taskIds = taskIdsResultSet.all().stream()
                     .map(row -> row.getString(0))
-                    .flatMap(taskId -> {
-                        if (fitBadDataInjection.isPresent()) {
-                            List<String> effectiveTaskIds = new ArrayList<>();
-                            String effectiveTaskId = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.LostTaskIds.name(), taskId);
-                            if (effectiveTaskId != null) {
-                                effectiveTaskIds.add(effectiveTaskId);
-                            }
-                            String phantomId = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.PhantomTaskIds.name(), taskId);
-                            if (phantomId != null && !phantomId.equals(taskId)) {
-                                effectiveTaskIds.add(phantomId);
-                            }
-                            return effectiveTaskIds.stream();
-                        }
-                        return Stream.of(taskId);
-                    })
+                    .flatMap(taskId -> getEffectiveTaskIds(taskId).stream())
                     .collect(Collectors.toList());
 
             List<Observable<ResultSet>> observables = taskIds.stream().map(retrieveActiveTaskStatement::bind).map(this::execute).collect(Collectors.toList());
@@ -385,39 +734,56 @@ public class CassandraJobStore implements JobStore {
             return Observable.merge(observables, getConcurrencyLimit()).flatMapIterable(tasksResultSet -> {
                 List<Either<Task, Throwable>> tasks = new ArrayList<>();
                 for (Row row : tasksResultSet.all()) {
-                    String value = row.getString(0);
-
-                    String effectiveValue;
-                    if (fitBadDataInjection.isPresent()) {
-                        effectiveValue = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedRawTaskRecords.name(), value);
-                    } else {
-                        effectiveValue = value;
-                    }
-
-                    Task task;
-                    try {
-                        task = ObjectMappers.readValue(mapper, effectiveValue, Task.class);
-
-                        if (!fitBadDataInjection.isPresent()) {
-                            tasks.add(Either.ofValue(task));
-                        } else {
-                            Task effectiveTask = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedTaskRecords.name(), task);
-                            effectiveTask = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.DuplicatedEni.name(), effectiveTask);
-                            effectiveTask = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedTaskPlacementData.name(), effectiveTask);
-                            tasks.add(Either.ofValue(effectiveTask));
-                        }
-                    } catch (Exception e) {
-                        logger.error("Cannot map serialized task data to Task class: {}", effectiveValue, e);
-                        tasks.add(Either.ofError(e));
-                    }
+                    tasks.add(deserializeTask(row.getString(0)));
                 }
                 return tasks;
             });
-        })).toList().map(taskErrorPairs -> {
-            List<Task> tasks = taskErrorPairs.stream().filter(Either::hasValue).map(Either::getValue).collect(Collectors.toList());
-            int errors = (int) taskErrorPairs.stream().filter(Either::hasError).count();
-            return Pair.of(tasks, errors);
-        });
+        })).toList().map(this::toTasksAndErrors);
+    }
+
+    private Pair<List<Task>, Integer> toTasksAndErrors(List<Either<Task, Throwable>> taskErrorPairs) {
+        List<Task> tasks = taskErrorPairs.stream().filter(Either::hasValue).map(Either::getValue).collect(Collectors.toList());
+        int errors = (int) taskErrorPairs.stream().filter(Either::hasError).count();
+        return Pair.of(tasks, errors);
+    }
+
+    private List<String> getEffectiveTaskIds(String taskId) {
+        if (!fitBadDataInjection.isPresent()) {
+            return Collections.singletonList(taskId);
+        }
+        List<String> effectiveTaskIds = new ArrayList<>();
+        String effectiveTaskId = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.LostTaskIds.name(), taskId);
+        if (effectiveTaskId != null) {
+            effectiveTaskIds.add(effectiveTaskId);
+        }
+        String phantomId = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.PhantomTaskIds.name(), taskId);
+        if (phantomId != null && !phantomId.equals(taskId)) {
+            effectiveTaskIds.add(phantomId);
+        }
+        return effectiveTaskIds;
+    }
+
+    private Either<Task, Throwable> deserializeTask(String value) {
+        String effectiveValue;
+        if (fitBadDataInjection.isPresent()) {
+            effectiveValue = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedRawTaskRecords.name(), value);
+        } else {
+            effectiveValue = value;
+        }
+
+        try {
+            Task task = codec.decode(effectiveValue, Task.class);
+            if (!fitBadDataInjection.isPresent()) {
+                return Either.ofValue(task);
+            }
+            Task effectiveTask = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedTaskRecords.name(), task);
+            effectiveTask = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.DuplicatedEni.name(), effectiveTask);
+            effectiveTask = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedTaskPlacementData.name(), effectiveTask);
+            return Either.ofValue(effectiveTask);
+        } catch (Exception e) {
+            logger.error("Cannot map serialized task data to Task class: {}", effectiveValue, e);
+            return Either.ofError(e);
+        }
     }
 
     @Override
@@ -427,7 +793,7 @@ public class CassandraJobStore implements JobStore {
                     Row row = resultSet.one();
                     if (row != null) {
                         String value = row.getString(0);
-                        Task task = ObjectMappers.readValue(mapper, value, Task.class);
+                        Task task = codec.decode(value, Task.class);
                         return Observable.just(task);
                     } else {
                         return Observable.error(JobStoreException.taskDoesNotExist(taskId));
@@ -441,8 +807,9 @@ public class CassandraJobStore implements JobStore {
             String jobId = task.getJobId();
             String taskId = task.getId();
             checkIfJobIsActive(jobId);
-            String taskJsonString = ObjectMappers.writeValueAsString(mapper, task);
-            Statement taskStatement = insertActiveTaskStatement.bind(taskId, taskJsonString);
+            releaseBulkLoadedTasks();
+            String taskRecord = codec.encode(task);
+            Statement taskStatement = insertActiveTaskStatement.bind(taskId, taskRecord);
             Statement taskIdStatement = insertActiveTaskIdStatement.bind(jobId, taskId);
 
             BatchStatement batchStatement = new BatchStatement();
@@ -455,42 +822,55 @@ public class CassandraJobStore implements JobStore {
 
     @Override
     public Completable updateTask(Task task) {
+        if (!taskUpdateCoalescer.isPresent()) {
+            return writeTask(task);
+        }
+        return Completable.fromAction(() -> {
+            checkIfJobIsActive(task.getJobId());
+            releaseBulkLoadedTasks();
+        }).andThen(taskUpdateCoalescer.get().update(task));
+    }
+
+    private Completable writeTask(Task task) {
         return Observable.fromCallable((Callable<Statement>) () -> {
             String jobId = task.getJobId();
             String taskId = task.getId();
             checkIfJobIsActive(jobId);
-            String taskJsonString = ObjectMappers.writeValueAsString(mapper, task);
-            return insertActiveTaskStatement.bind(taskId, taskJsonString);
+            releaseBulkLoadedTasks();
+            String taskRecord = codec.encode(task);
+            return insertActiveTaskStatement.bind(taskId, taskRecord);
         }).flatMap(this::execute).toCompletable();
     }
 
     @Override
     public Completable replaceTask(Task oldTask, Task newTask) {
-        return Observable.fromCallable((Callable<Statement>) () -> {
+        return awaitPendingTaskWrites(oldTask.getId()).andThen(Observable.fromCallable((Callable<Statement>) () -> {
             String jobId = newTask.getJobId();
             checkIfJobIsActive(jobId);
+            releaseBulkLoadedTasks();
             String taskId = newTask.getId();
-            String taskJsonString = ObjectMappers.writeValueAsString(mapper, newTask);
+            String taskRecord = codec.encode(newTask);
 
             BatchStatement batchStatement = getArchiveTaskBatchStatement(oldTask);
 
-            Statement insertTaskStatement = insertActiveTaskStatement.bind(taskId, taskJsonString);
+            Statement insertTaskStatement = insertActiveTaskStatement.bind(taskId, taskRecord);
             Statement insertTaskIdStatement = insertActiveTaskIdStatement.bind(jobId, taskId);
 
             batchStatement.add(insertTaskStatement);
             batchStatement.add(insertTaskIdStatement);
 
             return batchStatement;
-        }).flatMap(this::execute).toCompletable();
+        }).flatMap(this::execute).toCompletable());
     }
 
     @Override
     public Completable deleteTask(Task task) {
-        return Observable.fromCallable((Callable<Statement>) () -> {
+        return awaitPendingTaskWrites(task.getId()).andThen(Observable.fromCallable((Callable<Statement>) () -> {
             String jobId = task.getJobId();
             checkIfJobIsActive(jobId);
+            releaseBulkLoadedTasks();
             return getArchiveTaskBatchStatement(task);
-        }).flatMap(this::execute).toCompletable();
+        }).flatMap(this::execute).toCompletable());
     }
 
     @Override
@@ -502,7 +882,7 @@ public class CassandraJobStore implements JobStore {
                         throw JobStoreException.jobDoesNotExist(jobId);
                     }
                     String value = row.getString(0);
-                    return (Job<?>) ObjectMappers.readValue(mapper, value, Job.class);
+                    return (Job<?>) codec.decode(value, Job.class);
                 }));
     }
 
@@ -514,7 +894,7 @@ public class CassandraJobStore implements JobStore {
                     List<Observable<ResultSet>> observables = taskIds.stream().map(retrieveArchivedTaskStatement::bind).map(this::execute).collect(Collectors.toList());
                     return Observable.merge(observables, getConcurrencyLimit()).flatMapIterable(tasksResultSet -> tasksResultSet.all().stream()
                             .map(row -> row.getString(0))
-                            .map(value -> ObjectMappers.readValue(mapper, value, Task.class))
+                            .map(value -> codec.decode(value, Task.class))
                             .collect(Collectors.toList()));
                 }));
     }
@@ -526,7 +906,7 @@ public class CassandraJobStore implements JobStore {
                     Row row = resultSet.one();
                     if (row != null) {
                         String value = row.getString(0);
-                        Task task = ObjectMappers.readValue(mapper, value, Task.class);
+                        Task task = codec.decode(value, Task.class);
                         return Observable.just(task);
                     } else {
                         return Observable.error(JobStoreException.taskDoesNotExist(taskId));
@@ -541,11 +921,11 @@ public class CassandraJobStore implements JobStore {
     private BatchStatement getArchiveJobBatchStatement(Job job) {
         String jobId = job.getId();
         int bucket = activeJobIdsBucketManager.getItemBucket(jobId);
-        String jobJsonString = ObjectMappers.writeValueAsString(mapper, job);
+        String jobRecord = codec.encode(job);
 
         Statement deleteJobStatement = deleteActiveJobStatement.bind(jobId);
         Statement deleteJobIdStatement = deleteActiveJobIdStatement.bind(bucket, jobId);
-        Statement insertJobStatement = insertArchivedJobStatement.bind(jobId, jobJsonString);
+        Statement insertJobStatement = insertArchivedJobStatement.bind(jobId, jobRecord);
 
         BatchStatement statement = new BatchStatement();
         statement.add(deleteJobStatement);
@@ -558,11 +938,11 @@ public class CassandraJobStore implements JobStore {
     private BatchStatement getArchiveTaskBatchStatement(Task task) {
         String jobId = task.getJobId();
         String taskId = task.getId();
-        String taskJsonString = ObjectMappers.writeValueAsString(mapper, task);
+        String taskRecord = codec.encode(task);
 
         Statement deleteTaskStatement = deleteActiveTaskStatement.bind(taskId);
         Statement deleteTaskIdStatement = deleteActiveTaskIdStatement.bind(jobId, taskId);
-        Statement insertTaskStatement = insertArchivedTaskStatement.bind(taskId, taskJsonString);
+        Statement insertTaskStatement = insertArchivedTaskStatement.bind(taskId, taskRecord);
         Statement insertTaskIdStatement = insertArchivedTaskIdStatement.bind(jobId, taskId);
 
         BatchStatement batchStatement = new BatchStatement();
@@ -601,6 +981,10 @@ public class CassandraJobStore implements JobStore {
         ).doOnError(e -> logger.error("Cassandra operation error: {}", e.getMessage()));
     }
 
+    private Completable awaitPendingTaskWrites(String taskId) {
+        return taskUpdateCoalescer.map(coalescer -> coalescer.awaitPendingWrites(taskId)).orElse(Completable.complete());
+    }
+
     private int getConcurrencyLimit() {
         return Math.max(2, configuration.getConcurrencyLimit());
     }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PagingIterable;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TokenRange;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.titus.api.jobmanager.store.JobStoreException;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.ext.cassandra.executor.FuturePaginatedQuery;
+import com.netflix.titus.ext.cassandra.store.JobStoreSnapshot.VersionedRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+/**
+ * Reads the full content (or only the record versions) of the active job and task tables with paged token range scans. Each token range of the
+ * cluster is split into {@link CassandraStoreConfiguration#getBulkLoadTokenRangeSplits()} sub-ranges, which are
+ * scanned in parallel. The rows are emitted as raw (key, value) pages, so the (expensive) deserialization can be
+ * done by the caller on a separate thread pool.
+ */
+class CassandraJobStoreBulkLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(CassandraJobStoreBulkLoader.class);
+
+    private static final String SCAN_ACTIVE_JOBS_STRING = "SELECT job_id, value FROM active_jobs WHERE token(job_id) > :min AND token(job_id) <= :max;";
+    private static final String SCAN_ACTIVE_TASK_IDS_STRING = "SELECT job_id, task_id FROM active_task_ids WHERE token(job_id) > :min AND token(job_id) <= :max;";
+    private static final String SCAN_ACTIVE_TASKS_STRING = "SELECT task_id, value FROM active_tasks WHERE token(task_id) > :min AND token(task_id) <= :max;";
+    private static final String SCAN_ACTIVE_JOB_RECORDS_STRING = "SELECT job_id, value, WRITETIME(value) FROM active_jobs WHERE token(job_id) > :min AND token(job_id) <= :max;";
+    private static final String SCAN_ACTIVE_TASK_RECORDS_STRING = "SELECT task_id, value, WRITETIME(value) FROM active_tasks WHERE token(task_id) > :min AND token(task_id) <= :max;";
+    private static final String SCAN_ACTIVE_JOB_VERSIONS_STRING = "SELECT job_id, WRITETIME(value) FROM active_jobs WHERE token(job_id) > :min AND token(job_id) <= :max;";
+    private static final String SCAN_ACTIVE_TASK_VERSIONS_STRING = "SELECT task_id, WRITETIME(value) FROM active_tasks WHERE token(task_id) > :min AND token(task_id) <= :max;";
+
+    private final Session session;
+    private final CassandraStoreConfiguration configuration;
+
+    private final PreparedStatement scanActiveJobsStatement;
+    private final PreparedStatement scanActiveTaskIdsStatement;
+    private final PreparedStatement scanActiveTasksStatement;
+    private final PreparedStatement scanActiveJobRecordsStatement;
+    private final PreparedStatement scanActiveTaskRecordsStatement;
+    private final PreparedStatement scanActiveJobVersionsStatement;
+    private final PreparedStatement scanActiveTaskVersionsStatement;
+
+    CassandraJobStoreBulkLoader(Session session, CassandraStoreConfiguration configuration) {
+        this.session = session;
+        this.configuration = configuration;
+
+        this.scanActiveJobsStatement = session.prepare(SCAN_ACTIVE_JOBS_STRING);
+        this.scanActiveTaskIdsStatement = session.prepare(SCAN_ACTIVE_TASK_IDS_STRING);
+        this.scanActiveTasksStatement = session.prepare(SCAN_ACTIVE_TASKS_STRING);
+        this.scanActiveJobRecordsStatement = session.prepare(SCAN_ACTIVE_JOB_RECORDS_STRING);
+        this.scanActiveTaskRecordsStatement = session.prepare(SCAN_ACTIVE_TASK_RECORDS_STRING);
+        this.scanActiveJobVersionsStatement = session.prepare(SCAN_ACTIVE_JOB_VERSIONS_STRING);
+        this.scanActiveTaskVersionsStatement = session.prepare(SCAN_ACTIVE_TASK_VERSIONS_STRING);
+    }
+
+    /**
+     * Emits pages of (job id, serialized job) pairs.
+     */
+    Observable<List<Pair<String, String>>> scanActiveJobs() {
+        return scan(scanActiveJobsStatement, CassandraJobStoreBulkLoader::toKeyValue);
+    }
+
+    /**
+     * Emits pages of (job id, task id) pairs.
+     */
+    Observable<List<Pair<String, String>>> scanActiveTaskIds() {
+        return scan(scanActiveTaskIdsStatement, CassandraJobStoreBulkLoader::toKeyValue);
+    }
+
+    /**
+     * Emits pages of (task id, serialized task) pairs.
+     */
+    Observable<List<Pair<String, String>>> scanActiveTasks() {
+        return scan(scanActiveTasksStatement, CassandraJobStoreBulkLoader::toKeyValue);
+    }
+
+    /**
+     * Emits pages of (job id, serialized job with its write time) pairs.
+     */
+    Observable<List<Pair<String, VersionedRecord>>> scanActiveJobRecords() {
+        return scan(scanActiveJobRecordsStatement, CassandraJobStoreBulkLoader::toVersionedRecord);
+    }
+
+    /**
+     * Emits pages of (task id, serialized task with its write time) pairs.
+     */
+    Observable<List<Pair<String, VersionedRecord>>> scanActiveTaskRecords() {
+        return scan(scanActiveTaskRecordsStatement, CassandraJobStoreBulkLoader::toVersionedRecord);
+    }
+
+    /**
+     * Emits pages of (job id, write time) pairs.
+     */
+    Observable<List<Pair<String, Long>>> scanActiveJobVersions() {
+        return scan(scanActiveJobVersionsStatement, CassandraJobStoreBulkLoader::toKeyWriteTime);
+    }
+
+    /**
+     * Emits pages of (task id, write time) pairs.
+     */
+    Observable<List<Pair<String, Long>>> scanActiveTaskVersions() {
+        return scan(scanActiveTaskVersionsStatement, CassandraJobStoreBulkLoader::toKeyWriteTime);
+    }
+
+    /**
+     * Creates a new executor for record deserialization. It is the caller's responsibility to shut it down
+     * when the load completes.
+     */
+    ExecutorService newDeserializationExecutor() {
+        return Executors.newFixedThreadPool(
+                getDeserializationThreads(),
+                new ThreadFactoryBuilder().setNameFormat("cassandra-bulk-load-%d").setDaemon(true).build()
+        );
+    }
+
+    int getDeserializationThreads() {
+        return Math.max(1, configuration.getBulkLoadDeserializationThreads());
+    }
+
+    private <T> Observable<List<T>> scan(PreparedStatement statement, Function<Row, T> rowMapper) {
+        return Observable.defer(() -> {
+            List<TokenRange> ranges = buildTokenRanges();
+            return Observable.from(ranges).flatMap(range -> scanRange(statement, range, rowMapper), Math.max(2, configuration.getConcurrencyLimit()));
+        });
+    }
+
+    private <T> Observable<List<T>> scanRange(PreparedStatement statement, TokenRange range, Function<Row, T> rowMapper) {
+        BoundStatement boundStatement = statement.bind()
+                .setToken("min", range.getStart())
+                .setToken("max", range.getEnd());
+        boundStatement.setFetchSize(Math.max(1, configuration.getBulkLoadPageSize()));
+
+        return FuturePaginatedQuery.paginatedQuery(
+                () -> session.executeAsync(boundStatement),
+                ResultSet::fetchMoreResults,
+                (resultSet, total) -> Collections.singletonList(readAvailableRows(resultSet, rowMapper)),
+                PagingIterable::isFullyFetched
+        ).onBackpressureBuffer().onErrorResumeNext(e -> Observable.error(JobStoreException.cassandraDriverError(e)));
+    }
+
+    /**
+     * Reads only the rows of the current page. Iterating past them would block the driver callback thread on a
+     * synchronous fetch of the next page.
+     */
+    private static <T> List<T> readAvailableRows(ResultSet resultSet, Function<Row, T> rowMapper) {
+        int available = resultSet.getAvailableWithoutFetching();
+        List<T> page = new ArrayList<>(available);
+        for (int i = 0; i < available; i++) {
+            page.add(rowMapper.apply(resultSet.one()));
+        }
+        return page;
+    }
+
+    private static Pair<String, String> toKeyValue(Row row) {
+        return Pair.of(row.getString(0), row.getString(1));
+    }
+
+    private static Pair<String, VersionedRecord> toVersionedRecord(Row row) {
+        return Pair.of(row.getString(0), new VersionedRecord(row.getString(1), row.getLong(2)));
+    }
+
+    private static Pair<String, Long> toKeyWriteTime(Row row) {
+        return Pair.of(row.getString(0), row.getLong(1));
+    }
+
+    private List<TokenRange> buildTokenRanges() {
+        Metadata metadata = session.getCluster().getMetadata();
+        int splits = Math.max(1, configuration.getBulkLoadTokenRangeSplits());
+        List<TokenRange> result = new ArrayList<>();
+        for (TokenRange range : metadata.getTokenRanges()) {
+            for (TokenRange split : range.splitEvenly(splits)) {
+                result.addAll(split.unwrap());
+            }
+        }
+        logger.info("Bulk load scanning {} token ranges", result.size());
+        return result;
+    }
+}
@@ -41,4 +41,67 @@ public interface CassandraStoreConfiguration {
      */
     @DefaultValue("10")
     int getConcurrencyLimit();
+
+    /**
+     * If enabled, active jobs and tasks are loaded during bootstrap with parallel, paged token range scans of the
+     * active job and task tables, instead of reading each job and task record by its id.
+     */
+    @DefaultValue("false")
+    boolean isBulkLoadEnabled();
+
+    /**
+     * Number of rows fetched in a single page of a bulk load token range scan.
+     */
+    @DefaultValue("500")
+    int getBulkLoadPageSize();
+
+    /**
+     * Each token range owned by a Cassandra node is split into this number of sub-ranges, which are scanned in parallel
+     * (up to {@link #getConcurrencyLimit()} at a time).
+     */
+    @DefaultValue("4")
+    int getBulkLoadTokenRangeSplits();
+
+    /**
+     * Number of threads deserializing job and task records during the bulk load.
+     */
+    @DefaultValue("4")
+    int getBulkLoadDeserializationThreads();
+
+    /**
+     * If enabled, job and task records are written in the compressed format (see {@link StoreRecordCodec}). Records
+     * in both the JSON and the compressed format are readable by this version, but disabling the property does not
+     * convert the compressed records already written; they stay compressed until updated or archived. Before rolling
+     * back to a version, or using a tool, which does not read the compressed format, the property must be disabled,
+     * and all compressed records rewritten.
+     */
+    @DefaultValue("false")
+    boolean isCompressedRecordFormatEnabled();
+
+    /**
+     * Task updates received within this time window are merged, and only the latest version of each task is written
+     * (see {@link TaskUpdateCoalescer}). Set to 0 to write each task update immediately.
+     */
+    @DefaultValue("0")
+    long getTaskUpdateCoalescingWindowMs();
+
+    /**
+     * Path of the job store snapshot file (see {@link JobStoreSnapshot}). If set, and the bulk load mode is enabled,
+     * the leader writes a snapshot of all active job and task records periodically. A new leader still scans the ids
+     * and write times of all active records, and deserializes all of them, but fetches from Cassandra the values of
+     * only the records that changed since the snapshot was taken. This reduces the data read from Cassandra during
+     * the bootstrap, not the number of scanned records. The file is used only by a master which can read it (for
+     * example on a shared volume). Empty value disables snapshots.
+     */
+    @DefaultValue("")
+    String getJobSnapshotFile();
+
+    @DefaultValue("300000")
+    long getJobSnapshotIntervalMs();
+
+    /**
+     * Snapshots older than this are ignored during the bootstrap.
+     */
+    @DefaultValue("86400000")
+    long getJobSnapshotMaxAgeMs();
 }
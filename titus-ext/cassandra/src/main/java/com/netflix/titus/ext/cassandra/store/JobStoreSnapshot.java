@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.google.common.io.CountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local copy of the active job and task records, used to reduce the amount of data read from Cassandra during
+ * the bootstrap of a new leader. Each record is stored together with its Cassandra write time. During the bootstrap,
+ * the ids and write times of all active records are still scanned, and the record value is fetched only if it is
+ * missing in the snapshot, or its write time changed. All records are deserialized as without a snapshot, so
+ * the bootstrap time is reduced only if it is dominated by the transfer of the record values.
+ * <p>
+ * File layout: magic number, format version, creation time, a list of (record type, key, write time, value) entries
+ * terminated by an end marker, and a CRC32 checksum of all the preceding bytes. A snapshot is written to a temporary
+ * file, which atomically replaces the previous snapshot.
+ */
+class JobStoreSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobStoreSnapshot.class);
+
+    private static final int MAGIC = 0x54534e50;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte JOB_RECORD = 1;
+    private static final byte TASK_RECORD = 2;
+    private static final byte END_MARKER = 0;
+
+    private final long createdAt;
+    private final Map<String, VersionedRecord> jobs;
+    private final Map<String, VersionedRecord> tasks;
+
+    private JobStoreSnapshot(long createdAt, Map<String, VersionedRecord> jobs, Map<String, VersionedRecord> tasks) {
+        this.createdAt = createdAt;
+        this.jobs = jobs;
+        this.tasks = tasks;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    Map<String, VersionedRecord> getJobs() {
+        return jobs;
+    }
+
+    Map<String, VersionedRecord> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Reads a snapshot file. Returns {@link Optional#empty()} if the file does not exist, or it is corrupted.
+     */
+    static Optional<JobStoreSnapshot> readFrom(File file) {
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+        long fileLength = file.length();
+        CRC32 checksum = new CRC32();
+        try (CountingInputStream countingInput = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+             DataInputStream input = new DataInputStream(new CheckedInputStream(countingInput, checksum))) {
+            if (input.readInt() != MAGIC) {
+                logger.warn("Not a job store snapshot file: {}", file);
+                return Optional.empty();
+            }
+            int version = input.readInt();
+            if (version != FORMAT_VERSION) {
+                logger.warn("Unsupported job store snapshot format version {}: {}", version, file);
+                return Optional.empty();
+            }
+            long createdAt = input.readLong();
+
+            Map<String, VersionedRecord> jobs = new HashMap<>();
+            Map<String, VersionedRecord> tasks = new HashMap<>();
+            byte recordType;
+            while ((recordType = input.readByte()) != END_MARKER) {
+                String key = readString(input, countingInput, fileLength);
+                long writeTime = input.readLong();
+                String value = readString(input, countingInput, fileLength);
+                Map<String, VersionedRecord> target = recordType == JOB_RECORD ? jobs : tasks;
+                target.put(key, new VersionedRecord(value, writeTime));
+            }
+
+            long expectedChecksum = checksum.getValue();
+            if (input.readLong() != expectedChecksum) {
+                logger.warn("Job store snapshot checksum mismatch: {}", file);
+                return Optional.empty();
+            }
+            return Optional.of(new JobStoreSnapshot(createdAt, jobs, tasks));
+        } catch (Exception e) {
+            logger.warn("Cannot read job store snapshot file {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Creates a new snapshot writer. The snapshot replaces the given file when {@link Writer#commit()} is called.
+     */
+    static Writer newWriter(File file, long createdAt) throws IOException {
+        return new Writer(file, createdAt);
+    }
+
+    /**
+     * The string length is validated against the remaining file size before the buffer is allocated, as the checksum
+     * of a corrupted file is verified only after all records are read.
+     */
+    private static String readString(DataInputStream input, CountingInputStream countingInput, long fileLength) throws IOException {
+        int length = input.readInt();
+        long remainingBytes = fileLength - countingInput.getCount();
+        if (length < 0 || length > remainingBytes) {
+            throw new IOException("Invalid record length " + length + " with " + remainingBytes + " bytes remaining in the file");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class VersionedRecord {
+
+        private final String value;
+        private final long writeTime;
+
+        VersionedRecord(String value, long writeTime) {
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+
+        String getValue() {
+            return value;
+        }
+
+        long getWriteTime() {
+            return writeTime;
+        }
+    }
+
+    static class Writer implements Closeable {
+
+        private final File file;
+        private final File tmpFile;
+        private final CRC32 checksum = new CRC32();
+        private final DataOutputStream output;
+
+        private boolean committed;
+
+        private Writer(File file, long createdAt) throws IOException {
+            this.file = file;
+            this.tmpFile = new File(file.getPath() + ".tmp");
+            this.output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)), checksum));
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(createdAt);
+        }
+
+        void addJob(String jobId, String value, long writeTime) throws IOException {
+            addRecord(JOB_RECORD, jobId, value, writeTime);
+        }
+
+        void addTask(String taskId, String value, long writeTime) throws IOException {
+            addRecord(TASK_RECORD, taskId, value, writeTime);
+        }
+
+        /**
+         * Writes the end marker and the checksum, and atomically replaces the previous snapshot.
+         */
+        void commit() throws IOException {
+            output.writeByte(END_MARKER);
+            output.flush();
+            output.writeLong(checksum.getValue());
+            output.close();
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+            if (!committed) {
+                Files.deleteIfExists(tmpFile.toPath());
+            }
+        }
+
+        private void addRecord(byte recordType, String key, String value, long writeTime) throws IOException {
+            output.writeByte(recordType);
+            writeString(key);
+            output.writeLong(writeTime);
+            writeString(value);
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+}
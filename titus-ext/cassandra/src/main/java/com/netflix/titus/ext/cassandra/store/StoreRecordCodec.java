@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import rx.exceptions.Exceptions;
+
+/**
+ * Encodes records kept in the text value columns of the Cassandra tables. A record is either a plain JSON document
+ * (the original format), or a versioned compressed record, which is the same JSON document deflated and Base64 encoded,
+ * prefixed with {@link #COMPRESSED_V1_PREFIX}. A JSON document produced by the store mapper always starts with '{',
+ * so both formats can be read without any additional metadata. Records are written in the configured format, and
+ * existing records are migrated as they are updated. All readers of the job and task tables must decode the records
+ * with this codec, as a compressed record is not a valid JSON document.
+ */
+public class StoreRecordCodec {
+
+    static final String COMPRESSED_V1_PREFIX = "~1";
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final ObjectMapper mapper;
+    private final boolean compressionEnabled;
+
+    public StoreRecordCodec(ObjectMapper mapper, boolean compressionEnabled) {
+        this.mapper = mapper;
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public String encode(Object value) {
+        try {
+            if (!compressionEnabled) {
+                return mapper.writeValueAsString(value);
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(output, deflater, BUFFER_SIZE)) {
+                mapper.writeValue(deflaterOutput, value);
+            } finally {
+                deflater.end();
+            }
+            return COMPRESSED_V1_PREFIX + Base64.getEncoder().encodeToString(output.toByteArray());
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    public <T> T decode(String record, Class<T> type) {
+        try {
+            if (!isCompressed(record)) {
+                return mapper.readValue(record, type);
+            }
+            byte[] compressed = Base64.getDecoder().decode(record.substring(COMPRESSED_V1_PREFIX.length()));
+            Inflater inflater = new Inflater();
+            try (InputStream input = new InflaterInputStream(new ByteArrayInputStream(compressed), inflater, BUFFER_SIZE)) {
+                return mapper.readValue(input, type);
+            } finally {
+                inflater.end();
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    public static boolean isCompressed(String record) {
+        return record != null && record.startsWith(COMPRESSED_V1_PREFIX);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import rx.Completable;
+import rx.Observable;
+import rx.Scheduler;
+import rx.subjects.AsyncSubject;
+
+/**
+ * Write-behind buffer for task updates. Updates of the same task received within the coalescing window are merged,
+ * and only the latest task version is written. The {@link Completable} of each merged update completes once the
+ * write that includes it is acknowledged by Cassandra.
+ * <p>
+ * Writes of the same task are never executed concurrently, so a newer version cannot be overwritten by an older one.
+ * A task update submitted while a write of the same task is in flight, waits for it, and is written in the next flush.
+ */
+class TaskUpdateCoalescer {
+
+    private final Function<Task, Completable> writer;
+    private final long windowMs;
+    private final int concurrencyLimit;
+    private final Scheduler.Worker worker;
+
+    private final Counter updatesCounter;
+    private final Counter writesCounter;
+
+    private final Object lock = new Object();
+    private final Map<String, PendingWrite> pendingWrites = new HashMap<>();
+    private final Map<String, PendingWrite> inFlightWrites = new HashMap<>();
+    private boolean flushScheduled;
+
+    TaskUpdateCoalescer(Function<Task, Completable> writer,
+                        long windowMs,
+                        int concurrencyLimit,
+                        String metricNameRoot,
+                        Registry registry,
+                        Scheduler scheduler) {
+        this.writer = writer;
+        this.windowMs = windowMs;
+        this.concurrencyLimit = concurrencyLimit;
+        this.worker = scheduler.createWorker();
+        this.updatesCounter = registry.counter(metricNameRoot + ".taskUpdateCoalescer.updates");
+        this.writesCounter = registry.counter(metricNameRoot + ".taskUpdateCoalescer.writes");
+    }
+
+    Completable update(Task task) {
+        return Observable.defer(() -> {
+            synchronized (lock) {
+                updatesCounter.increment();
+                PendingWrite pendingWrite = pendingWrites.computeIfAbsent(task.getId(), id -> new PendingWrite());
+                pendingWrite.task = task;
+                scheduleFlush();
+                return pendingWrite.result;
+            }
+        }).toCompletable();
+    }
+
+    /**
+     * Returns a {@link Completable} which completes when all updates of the given task submitted so far are written
+     * or failed. Must be called before a task is replaced or archived, so a delayed update does not override it.
+     */
+    Completable awaitPendingWrites(String taskId) {
+        return Observable.defer(() -> {
+            List<Observable<Void>> results = new ArrayList<>(2);
+            synchronized (lock) {
+                PendingWrite pending = pendingWrites.get(taskId);
+                if (pending != null) {
+                    results.add(pending.result);
+                }
+                PendingWrite inFlight = inFlightWrites.get(taskId);
+                if (inFlight != null) {
+                    results.add(inFlight.result);
+                }
+            }
+            return Observable.mergeDelayError(Observable.from(results)).onErrorResumeNext(Observable.empty());
+        }).toCompletable();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            worker.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        List<Map.Entry<String, PendingWrite>> batch = new ArrayList<>();
+        synchronized (lock) {
+            flushScheduled = false;
+            for (Iterator<Map.Entry<String, PendingWrite>> it = pendingWrites.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, PendingWrite> entry = it.next();
+                // Tasks with a write in flight are flushed after it completes
+                if (!inFlightWrites.containsKey(entry.getKey())) {
+                    it.remove();
+                    inFlightWrites.put(entry.getKey(), entry.getValue());
+                    batch.add(entry);
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        writesCounter.increment(batch.size());
+        Observable.from(batch)
+                .flatMap(entry -> writer.apply(entry.getValue().task)
+                                .doOnTerminate(() -> onWriteTerminated(entry.getKey()))
+                                .doOnCompleted(() -> entry.getValue().result.onCompleted())
+                                .doOnError(e -> entry.getValue().result.onError(e))
+                                .onErrorComplete()
+                                .toObservable(),
+                        concurrencyLimit
+                )
+                .subscribe();
+    }
+
+    private void onWriteTerminated(String taskId) {
+        synchronized (lock) {
+            inFlightWrites.remove(taskId);
+            if (pendingWrites.containsKey(taskId)) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    private static class PendingWrite {
+        private final AsyncSubject<Void> result = AsyncSubject.create();
+        private volatile Task task;
+    }
+}
@@ -68,6 +68,51 @@ public class TestStoreLoadCommand implements Command {
         public int getConcurrencyLimit() {
             return MAX_RETRIEVE_TASK_CONCURRENCY;
         }
+
+        @Override
+        public boolean isBulkLoadEnabled() {
+            return false;
+        }
+
+        @Override
+        public int getBulkLoadPageSize() {
+            return 500;
+        }
+
+        @Override
+        public int getBulkLoadTokenRangeSplits() {
+            return 4;
+        }
+
+        @Override
+        public int getBulkLoadDeserializationThreads() {
+            return 4;
+        }
+
+        @Override
+        public boolean isCompressedRecordFormatEnabled() {
+            return false;
+        }
+
+        @Override
+        public long getTaskUpdateCoalescingWindowMs() {
+            return 0;
+        }
+
+        @Override
+        public String getJobSnapshotFile() {
+            return "";
+        }
+
+        @Override
+        public long getJobSnapshotIntervalMs() {
+            return 300_000;
+        }
+
+        @Override
+        public long getJobSnapshotMaxAgeMs() {
+            return 86_400_000;
+        }
     };
 
     @Override
@@ -29,14 +29,17 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.base.Preconditions;
+import com.netflix.titus.api.json.ObjectMappers;
 import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.ext.cassandra.store.StoreRecordCodec;
 import com.netflix.titus.ext.cassandra.tool.CassandraSchemas;
 import com.netflix.titus.ext.cassandra.tool.CassandraUtils;
 import rx.Observable;
 
 /**
  * Downloads jobs active data from Cassandra database into set of files. A snapshot can be loaded back into
- * Cassandra using {@link JobSnapshotLoader}.
+ * Cassandra using {@link JobSnapshotLoader}. Job and task records are decoded with {@link StoreRecordCodec}, so
+ * the snapshot files always hold plain JSON documents, irrespective of the record format used in the database.
  */
 public class JobSnapshotDownloader {
 
@@ -47,6 +50,8 @@ public class JobSnapshotDownloader {
         MAPPER.enable(SerializationFeature.INDENT_OUTPUT);
     }
 
+    private static final StoreRecordCodec RECORD_CODEC = new StoreRecordCodec(ObjectMappers.storeMapper(), false);
+
     private final Session session;
     private final boolean includeArchived;
     private final File outputFolder;
@@ -80,8 +85,8 @@ public class JobSnapshotDownloader {
         List<JsonNode> allItems = CassandraUtils.readTwoColumnTable(session, table)
                 .flatMap(p -> {
                     try {
-                        return Observable.just(MAPPER.readTree((String) p.getRight()));
-                    } catch (IOException e) {
+                        return Observable.just(RECORD_CODEC.decode((String) p.getRight(), JsonNode.class));
+                    } catch (Exception e) {
                         return Observable.error(e);
                     }
                 })
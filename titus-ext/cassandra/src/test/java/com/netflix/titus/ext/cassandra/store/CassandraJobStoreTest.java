@@ -16,12 +16,17 @@
 
 package com.netflix.titus.ext.cassandra.store;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
+import com.netflix.spectator.api.Registry;
 import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
 import com.netflix.titus.api.jobmanager.model.job.Job;
 import com.netflix.titus.api.jobmanager.model.job.JobDescriptor;
@@ -36,6 +41,7 @@ import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
 import com.netflix.titus.api.jobmanager.model.job.retry.ExponentialBackoffRetryPolicy;
 import com.netflix.titus.api.jobmanager.store.JobStore;
 import com.netflix.titus.api.json.ObjectMappers;
+import com.netflix.titus.common.runtime.TitusRuntime;
 import com.netflix.titus.common.runtime.TitusRuntimes;
 import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.testkit.junit.category.IntegrationTest;
@@ -46,8 +52,11 @@ import org.cassandraunit.dataset.cql.ClassPathCQLDataSet;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
 import rx.Completable;
 import rx.Observable;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -72,27 +81,83 @@ public class CassandraJobStoreTest {
             STARTUP_TIMEOUT_MS
     );
 
-    private static final CassandraStoreConfiguration CONFIGURATION = new CassandraStoreConfiguration() {
-        @Override
-        public boolean isFailOnInconsistentAgentData() {
-            return true;
-        }
+    private static final long SNAPSHOT_INTERVAL_MS = 100;
 
-        @Override
-        public boolean isFailOnInconsistentLoadBalancerData() {
-            return false;
-        }
+    private static final CassandraStoreConfiguration CONFIGURATION = newConfiguration(false, false, "");
+    private static final CassandraStoreConfiguration BULK_LOAD_CONFIGURATION = newConfiguration(true, false, "");
+    private static final CassandraStoreConfiguration COMPRESSED_RECORD_CONFIGURATION = newConfiguration(false, true, "");
 
-        @Override
-        public boolean isFailOnInconsistentSchedulerData() {
-            return false;
-        }
-
-        @Override
-        public int getConcurrencyLimit() {
-            return 10;
-        }
-    };
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static CassandraStoreConfiguration newConfiguration(boolean bulkLoadEnabled, boolean compressedRecordFormatEnabled, String snapshotFile) {
+        return new CassandraStoreConfiguration() {
+            @Override
+            public boolean isFailOnInconsistentAgentData() {
+                return true;
+            }
+
+            @Override
+            public boolean isFailOnInconsistentLoadBalancerData() {
+                return false;
+            }
+
+            @Override
+            public boolean isFailOnInconsistentSchedulerData() {
+                return false;
+            }
+
+            @Override
+            public int getConcurrencyLimit() {
+                return 10;
+            }
+
+            @Override
+            public boolean isBulkLoadEnabled() {
+                return bulkLoadEnabled;
+            }
+
+            @Override
+            public int getBulkLoadPageSize() {
+                return 2;
+            }
+
+            @Override
+            public int getBulkLoadTokenRangeSplits() {
+                return 1;
+            }
+
+            @Override
+            public int getBulkLoadDeserializationThreads() {
+                return 4;
+            }
+
+            @Override
+            public boolean isCompressedRecordFormatEnabled() {
+                return compressedRecordFormatEnabled;
+            }
+
+            @Override
+            public long getTaskUpdateCoalescingWindowMs() {
+                return 0;
+            }
+
+            @Override
+            public String getJobSnapshotFile() {
+                return snapshotFile;
+            }
+
+            @Override
+            public long getJobSnapshotIntervalMs() {
+                return SNAPSHOT_INTERVAL_MS;
+            }
+
+            @Override
+            public long getJobSnapshotMaxAgeMs() {
+                return 86_400_000;
+            }
+        };
+    }
 
     @Test
     public void testRetrieveJobs() {
@@ -108,6 +173,120 @@ public class CassandraJobStoreTest {
         assertThat(jobsAndErrors.getLeft().get(0)).isEqualTo(job);
     }
 
+    @Test
+    public void testBulkRetrieveJobsAndTasks() {
+        Session session = cassandraCqlUnit.getSession();
+        JobStore bootstrappingStore = getJobStore(session);
+        List<Job<BatchJobExt>> jobs = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Job<BatchJobExt> job = createBatchJobObject();
+            bootstrappingStore.storeJob(job).await();
+            jobs.add(job);
+            for (int t = 0; t < 3; t++) {
+                Task task = createTaskObject(job);
+                bootstrappingStore.storeTask(task).await();
+                tasks.add(task);
+            }
+        }
+
+        JobStore store = getJobStore(session, BULK_LOAD_CONFIGURATION);
+        store.init().await();
+        List<Pair<List<Job<?>>, Integer>> batches = store.retrieveJobs().toList().toBlocking().first();
+        List<Job<?>> loadedJobs = batches.stream().flatMap(batch -> batch.getLeft().stream()).collect(Collectors.toList());
+        assertThat(loadedJobs).hasSize(jobs.size());
+        assertThat(loadedJobs).containsAll(jobs);
+        assertThat(batches.stream().mapToInt(Pair::getRight).sum()).isEqualTo(0);
+
+        for (Job<BatchJobExt> job : jobs) {
+            Pair<List<Task>, Integer> tasksAndErrors = store.retrieveTasksForJob(job.getId()).toBlocking().first();
+            assertThat(tasksAndErrors.getLeft()).hasSize(3);
+            assertThat(tasks).containsAll(tasksAndErrors.getLeft());
+            assertThat(tasksAndErrors.getRight()).isEqualTo(0);
+        }
+
+        // Bulk loaded tasks are handed over once, and next requests read them from the database
+        Pair<List<Task>, Integer> tasksAndErrors = store.retrieveTasksForJob(jobs.get(0).getId()).toBlocking().first();
+        assertThat(tasksAndErrors.getLeft()).hasSize(3);
+    }
+
+    @Test(timeout = 60_000)
+    public void testBulkLoadFromSnapshot() throws Exception {
+        Session session = cassandraCqlUnit.getSession();
+        File snapshotFile = new File(temporaryFolder.getRoot(), "jobStore.snapshot");
+        File snapshotCopyFile = new File(temporaryFolder.getRoot(), "jobStoreCopy.snapshot");
+
+        JobStore bootstrappingStore = getJobStore(session);
+        Job<BatchJobExt> job = createBatchJobObject();
+        Task task = createTaskObject(job);
+        Task otherTask = createTaskObject(job);
+        bootstrappingStore.storeJob(job).await();
+        bootstrappingStore.storeTask(task).await();
+        bootstrappingStore.storeTask(otherTask).await();
+
+        // The leader writes snapshots periodically after the bootstrap
+        TestScheduler testScheduler = Schedulers.test();
+        JobStore leaderStore = new CassandraJobStore(newConfiguration(true, false, snapshotFile.getPath()), session, TitusRuntimes.internal(),
+                ObjectMappers.storeMapper(), INITIAL_BUCKET_COUNT, MAX_BUCKET_SIZE, testScheduler);
+        leaderStore.init().await();
+        leaderStore.retrieveJobs().toList().toBlocking().first();
+        leaderStore.retrieveTasksForJob(job.getId()).toBlocking().first();
+        assertThat(snapshotFile).doesNotExist();
+        testScheduler.advanceTimeBy(SNAPSHOT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        assertThat(snapshotFile).exists();
+
+        // Keep a copy of the snapshot taken before the task update
+        Files.copy(snapshotFile.toPath(), snapshotCopyFile.toPath());
+        Task updatedTask = BatchJobTask.newBuilder((BatchJobTask) task)
+                .withStatus(TaskStatus.newBuilder().withState(TaskState.Launched).build())
+                .build();
+        leaderStore.updateTask(updatedTask).await();
+
+        // New leader gets unchanged records from the snapshot, and reads the updated task from Cassandra
+        TitusRuntime titusRuntime = TitusRuntimes.internal();
+        JobStore newLeaderStore = new CassandraJobStore(newConfiguration(true, false, snapshotCopyFile.getPath()), session, titusRuntime, ObjectMappers.storeMapper(),
+                INITIAL_BUCKET_COUNT, MAX_BUCKET_SIZE);
+        newLeaderStore.init().await();
+        List<Job<?>> jobs = newLeaderStore.retrieveJobs().toList().toBlocking().first().stream()
+                .flatMap(batch -> batch.getLeft().stream())
+                .collect(Collectors.toList());
+        assertThat(jobs).containsExactly(job);
+        assertThat(newLeaderStore.retrieveTasksForJob(job.getId()).toBlocking().first().getLeft()).containsExactlyInAnyOrder(updatedTask, otherTask);
+
+        Registry registry = titusRuntime.getRegistry();
+        assertThat(registry.counter("titusMaster.jobManager.cassandra.bulkLoad.snapshotRecordHits").count()).isEqualTo(2);
+        assertThat(registry.counter("titusMaster.jobManager.cassandra.bulkLoad.snapshotRecordMisses").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testReadRecordsWrittenInDifferentFormats() {
+        Session session = cassandraCqlUnit.getSession();
+        JobStore jsonStore = getJobStore(session);
+        Job<BatchJobExt> jsonJob = createBatchJobObject();
+        Task jsonTask = createTaskObject(jsonJob);
+        jsonStore.storeJob(jsonJob).await();
+        jsonStore.storeTask(jsonTask).await();
+
+        JobStore compressedStore = getJobStore(session, COMPRESSED_RECORD_CONFIGURATION);
+        compressedStore.init().await();
+        Job<BatchJobExt> compressedJob = createBatchJobObject();
+        Task compressedTask = createTaskObject(compressedJob);
+        compressedStore.storeJob(compressedJob).await();
+        compressedStore.storeTask(compressedTask).await();
+
+        ResultSet resultSet = session.execute("SELECT value FROM active_tasks WHERE task_id = ?", compressedTask.getId());
+        assertThat(StoreRecordCodec.isCompressed(resultSet.one().getString(0))).isTrue();
+
+        for (JobStore store : new JobStore[]{getJobStore(session), getJobStore(session, COMPRESSED_RECORD_CONFIGURATION)}) {
+            store.init().await();
+            List<Job<?>> jobs = store.retrieveJobs().toBlocking().first().getLeft();
+            assertThat(jobs).hasSize(2);
+            assertThat(jobs).contains(jsonJob, compressedJob);
+            assertThat(store.retrieveTasksForJob(jsonJob.getId()).toBlocking().first().getLeft()).containsExactly(jsonTask);
+            assertThat(store.retrieveTasksForJob(compressedJob.getId()).toBlocking().first().getLeft()).containsExactly(compressedTask);
+        }
+    }
+
     @Test
     public void testRetrieveBatchJob() {
         doRetrieveJob(createBatchJobObject());
@@ -367,7 +546,11 @@ public class CassandraJobStoreTest {
         if (session == null) {
             session = cassandraCqlUnit.getSession();
         }
-        return new CassandraJobStore(CONFIGURATION, session, TitusRuntimes.internal(), ObjectMappers.storeMapper(),
+        return getJobStore(session, CONFIGURATION);
+    }
+
+    private JobStore getJobStore(Session session, CassandraStoreConfiguration configuration) {
+        return new CassandraJobStore(configuration, session, TitusRuntimes.internal(), ObjectMappers.storeMapper(),
                 INITIAL_BUCKET_COUNT, MAX_BUCKET_SIZE);
     }
 
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JobStoreSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        File file = writeSnapshot();
+
+        Optional<JobStoreSnapshot> snapshotOpt = JobStoreSnapshot.readFrom(file);
+        assertThat(snapshotOpt).isPresent();
+
+        JobStoreSnapshot snapshot = snapshotOpt.get();
+        assertThat(snapshot.getCreatedAt()).isEqualTo(1_000);
+        assertThat(snapshot.getJobs()).containsOnlyKeys("job#1");
+        assertThat(snapshot.getJobs().get("job#1").getValue()).isEqualTo("{\"id\":\"job#1\"}");
+        assertThat(snapshot.getJobs().get("job#1").getWriteTime()).isEqualTo(10);
+        assertThat(snapshot.getTasks()).containsOnlyKeys("task#1", "task#2");
+        assertThat(snapshot.getTasks().get("task#2").getWriteTime()).isEqualTo(30);
+
+        assertThat(new File(file.getPath() + ".tmp")).doesNotExist();
+    }
+
+    @Test
+    public void testCorruptedSnapshotIsIgnored() throws Exception {
+        File file = writeSnapshot();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            // Flip a byte of the first record key
+            randomAccessFile.seek(22);
+            int value = randomAccessFile.read();
+            randomAccessFile.seek(22);
+            randomAccessFile.write(value ^ 0xFF);
+        }
+        assertThat(JobStoreSnapshot.readFrom(file)).isEmpty();
+    }
+
+    @Test
+    public void testCorruptedRecordLengthIsRejectedBeforeAllocation() throws Exception {
+        assertThat(JobStoreSnapshot.readFrom(writeSnapshotWithFirstKeyLength(Integer.MAX_VALUE))).isEmpty();
+        assertThat(JobStoreSnapshot.readFrom(writeSnapshotWithFirstKeyLength(-1))).isEmpty();
+    }
+
+    @Test
+    public void testMissingSnapshot() {
+        assertThat(JobStoreSnapshot.readFrom(new File(temporaryFolder.getRoot(), "missing"))).isEmpty();
+    }
+
+    private File writeSnapshotWithFirstKeyLength(int length) throws Exception {
+        File file = writeSnapshot();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            // The first record key length follows the 16 bytes long header, and the record type byte
+            randomAccessFile.seek(17);
+            randomAccessFile.writeInt(length);
+        }
+        return file;
+    }
+
+    private File writeSnapshot() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "jobStore.snapshot");
+        try (JobStoreSnapshot.Writer writer = JobStoreSnapshot.newWriter(file, 1_000)) {
+            writer.addJob("job#1", "{\"id\":\"job#1\"}", 10);
+            writer.addTask("task#1", "{\"id\":\"task#1\"}", 20);
+            writer.addTask("task#2", "{\"id\":\"task#2\"}", 30);
+            writer.commit();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.api.json.ObjectMappers;
+import com.netflix.titus.testkit.model.job.JobDescriptorGenerator;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StoreRecordCodecTest {
+
+    private final StoreRecordCodec jsonCodec = new StoreRecordCodec(ObjectMappers.storeMapper(), false);
+    private final StoreRecordCodec compressedCodec = new StoreRecordCodec(ObjectMappers.storeMapper(), true);
+
+    private final Job<BatchJobExt> job = JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).getValue();
+    private final BatchJobTask task = JobGenerator.batchTasks(job).getValue();
+
+    @Test
+    public void testJsonFormat() {
+        String record = jsonCodec.encode(task);
+        assertThat(record).isEqualTo(ObjectMappers.writeValueAsString(ObjectMappers.storeMapper(), task));
+        assertThat(StoreRecordCodec.isCompressed(record)).isFalse();
+        assertThat(jsonCodec.decode(record, Task.class)).isEqualTo(task);
+    }
+
+    @Test
+    public void testCompressedFormat() {
+        String record = compressedCodec.encode(job);
+        assertThat(StoreRecordCodec.isCompressed(record)).isTrue();
+        assertThat(record.length()).isLessThan(jsonCodec.encode(job).length());
+        assertThat(compressedCodec.decode(record, Job.class)).isEqualTo(job);
+    }
+
+    @Test
+    public void testCompressedRecordSize() {
+        // Deflate must save more than the 4/3 Base64 expansion costs, or the compressed format is not worth its CPU time
+        assertThat(compressedCodec.encode(job).length()).isLessThan(jsonCodec.encode(job).length() * 3 / 4);
+        assertThat(compressedCodec.encode(task).length()).isLessThan(jsonCodec.encode(task).length() * 3 / 4);
+    }
+
+    @Test
+    public void testBothFormatsAreReadable() {
+        assertThat(compressedCodec.decode(jsonCodec.encode(task), Task.class)).isEqualTo(task);
+        assertThat(jsonCodec.decode(compressedCodec.encode(task), Task.class)).isEqualTo(task);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testCorruptedCompressedRecord() {
+        jsonCodec.decode(StoreRecordCodec.COMPRESSED_V1_PREFIX + "not base64!", Task.class);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import org.junit.Test;
+import rx.Completable;
+import rx.observers.AssertableSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TaskUpdateCoalescerTest {
+
+    private static final long WINDOW_MS = 10;
+
+    private final TestScheduler testScheduler = new TestScheduler();
+
+    private final List<Task> writtenTasks = new ArrayList<>();
+    private final List<PublishSubject<Void>> writeResults = new ArrayList<>();
+
+    private final TaskUpdateCoalescer coalescer = new TaskUpdateCoalescer(
+            task -> {
+                writtenTasks.add(task);
+                PublishSubject<Void> result = PublishSubject.create();
+                writeResults.add(result);
+                return result.toCompletable();
+            },
+            WINDOW_MS,
+            10,
+            "test",
+            new DefaultRegistry(),
+            testScheduler
+    );
+
+    @Test
+    public void testUpdatesOfSameTaskAreMerged() {
+        Task first = newTask("task#1");
+        Task second = newTask("task#1");
+        Task other = newTask("task#2");
+
+        AssertableSubscriber<Void> firstSubscriber = coalescer.update(first).<Void>toObservable().test();
+        AssertableSubscriber<Void> secondSubscriber = coalescer.update(second).<Void>toObservable().test();
+        AssertableSubscriber<Void> otherSubscriber = coalescer.update(other).<Void>toObservable().test();
+        assertThat(writtenTasks).isEmpty();
+
+        testScheduler.advanceTimeBy(WINDOW_MS, TimeUnit.MILLISECONDS);
+        assertThat(writtenTasks).containsExactlyInAnyOrder(second, other);
+        firstSubscriber.assertNotCompleted();
+
+        writeResults.forEach(PublishSubject::onCompleted);
+        firstSubscriber.assertCompleted();
+        secondSubscriber.assertCompleted();
+        otherSubscriber.assertCompleted();
+    }
+
+    @Test
+    public void testUpdateIsNotWrittenWhileWriteOfSameTaskIsInFlight() {
+        Task first = newTask("task#1");
+        Task second = newTask("task#1");
+
+        AssertableSubscriber<Void> firstSubscriber = coalescer.update(first).<Void>toObservable().test();
+        testScheduler.advanceTimeBy(WINDOW_MS, TimeUnit.MILLISECONDS);
+        assertThat(writtenTasks).containsExactly(first);
+
+        AssertableSubscriber<Void> secondSubscriber = coalescer.update(second).<Void>toObservable().test();
+        testScheduler.advanceTimeBy(WINDOW_MS, TimeUnit.MILLISECONDS);
+        assertThat(writtenTasks).containsExactly(first);
+
+        writeResults.get(0).onCompleted();
+        firstSubscriber.assertCompleted();
+        secondSubscriber.assertNotCompleted();
+
+        testScheduler.advanceTimeBy(WINDOW_MS, TimeUnit.MILLISECONDS);
+        assertThat(writtenTasks).containsExactly(first, second);
+        writeResults.get(1).onCompleted();
+        secondSubscriber.assertCompleted();
+    }
+
+    @Test
+    public void testWriteErrorIsPropagatedToAllMergedUpdates() {
+        AssertableSubscriber<Void> firstSubscriber = coalescer.update(newTask("task#1")).<Void>toObservable().test();
+        AssertableSubscriber<Void> secondSubscriber = coalescer.update(newTask("task#1")).<Void>toObservable().test();
+        testScheduler.advanceTimeBy(WINDOW_MS, TimeUnit.MILLISECONDS);
+
+        writeResults.get(0).onError(new RuntimeException("simulated write error"));
+        firstSubscriber.assertError(RuntimeException.class);
+        secondSubscriber.assertError(RuntimeException.class);
+    }
+
+    @Test
+    public void testAwaitPendingWrites() {
+        Completable noPendingWrites = coalescer.awaitPendingWrites("task#1");
+        noPendingWrites.<Void>toObservable().test().assertCompleted();
+
+        coalescer.update(newTask("task#1")).subscribe();
+        AssertableSubscriber<Void> awaitSubscriber = coalescer.awaitPendingWrites("task#1").<Void>toObservable().test();
+        testScheduler.advanceTimeBy(WINDOW_MS, TimeUnit.MILLISECONDS);
+        awaitSubscriber.assertNotCompleted();
+
+        // Failed writes are not reported to the waiting callers
+        writeResults.get(0).onError(new RuntimeException("simulated write error"));
+        awaitSubscriber.assertCompleted();
+        awaitSubscriber.assertNoErrors();
+    }
+
+    private static Task newTask(String taskId) {
+        return BatchJobTask.newBuilder().withId(taskId).withJobId("job#1").build();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.tool.snapshot;
+
+import java.io.File;
+
+import com.datastax.driver.core.Session;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.api.json.ObjectMappers;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.ext.cassandra.store.StoreRecordCodec;
+import com.netflix.titus.ext.cassandra.tool.CassandraSchemas;
+import com.netflix.titus.ext.cassandra.tool.CassandraUtils;
+import com.netflix.titus.testkit.junit.category.IntegrationTest;
+import com.netflix.titus.testkit.model.job.JobDescriptorGenerator;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.cassandraunit.CassandraCQLUnit;
+import org.cassandraunit.dataset.cql.ClassPathCQLDataSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import rx.Observable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Category(IntegrationTest.class)
+public class JobSnapshotDownloaderTest {
+
+    private static final long STARTUP_TIMEOUT_MS = 30_000L;
+
+    private static final String CONFIGURATION_FILE_NAME = "relocated-cassandra.yaml";
+
+    @Rule
+    public CassandraCQLUnit cassandraCqlUnit = new CassandraCQLUnit(
+            new ClassPathCQLDataSet("tables.cql", "titus_integration_tests"),
+            CONFIGURATION_FILE_NAME,
+            STARTUP_TIMEOUT_MS
+    );
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final StoreRecordCodec compressingCodec = new StoreRecordCodec(ObjectMappers.storeMapper(), true);
+
+    @Test
+    public void testCompressedRecordsAreDownloadedAsJson() throws Exception {
+        Session session = cassandraCqlUnit.getSession();
+
+        Job<BatchJobExt> job = JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).getValue();
+        BatchJobTask task = JobGenerator.batchTasks(job).getValue();
+        String jobRecord = compressingCodec.encode(job);
+        assertThat(StoreRecordCodec.isCompressed(jobRecord)).isTrue();
+
+        CassandraUtils.writeIntoTwoColumnTable(session, CassandraSchemas.ACTIVE_JOBS_TABLE, Observable.just(Pair.<Object, Object>of(job.getId(), jobRecord)));
+        CassandraUtils.writeIntoTwoColumnTable(session, CassandraSchemas.ACTIVE_TASKS_TABLE, Observable.just(Pair.<Object, Object>of(task.getId(), compressingCodec.encode(task))));
+
+        File outputFolder = new File(temporaryFolder.getRoot(), "snapshot");
+        new JobSnapshotDownloader(session, false, outputFolder).download();
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode jobs = mapper.readTree(new File(outputFolder, CassandraSchemas.ACTIVE_JOBS_TABLE + ".json"));
+        assertThat(jobs.size()).isEqualTo(1);
+        assertThat(jobs.get(0).get("id").asText()).isEqualTo(job.getId());
+
+        JsonNode tasks = mapper.readTree(new File(outputFolder, CassandraSchemas.ACTIVE_TASKS_TABLE + ".json"));
+        assertThat(tasks.size()).isEqualTo(1);
+        assertThat(tasks.get(0).get("id").asText()).isEqualTo(task.getId());
+    }
+}
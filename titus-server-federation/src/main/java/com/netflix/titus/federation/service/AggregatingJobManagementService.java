@@ -26,6 +26,7 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import com.google.protobuf.Empty;
+import com.netflix.spectator.api.Registry;
 import com.netflix.titus.api.federation.model.Cell;
 import com.netflix.titus.api.service.TitusServiceException;
 import com.netflix.titus.common.util.rx.EmitterWithMultipleSubscriptions;
@@ -56,6 +57,7 @@ import com.netflix.titus.grpc.protogen.TaskKillRequest;
 import com.netflix.titus.grpc.protogen.TaskQuery;
 import com.netflix.titus.grpc.protogen.TaskQueryResult;
 import com.netflix.titus.runtime.jobmanager.JobManagerCursors;
+import com.netflix.titus.runtime.jobmanager.SharedJobChangeStream;
 import com.netflix.titus.runtime.service.JobManagementService;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
@@ -83,6 +85,7 @@ public class AggregatingJobManagementService implements JobManagementService {
     private AggregatingJobManagementServiceHelper jobManagementServiceHelper;
     private final CellRouter router;
     private final CallMetadataResolver callMetadataResolver;
+    private final SharedJobChangeStream sharedJobChangeStream;
 
     @Inject
     public AggregatingJobManagementService(GrpcConfiguration grpcConfiguration,
@@ -91,7 +94,8 @@ public class AggregatingJobManagementService implements JobManagementService {
                                            CellRouter router,
                                            CallMetadataResolver callMetadataResolver,
                                            AggregatingCellClient aggregatingClient,
-                                           AggregatingJobManagementServiceHelper jobManagementServiceHelper) {
+                                           AggregatingJobManagementServiceHelper jobManagementServiceHelper,
+                                           Registry registry) {
 
         this.grpcConfiguration = grpcConfiguration;
         this.federationConfiguration = federationConfiguration;
@@ -100,6 +104,9 @@ public class AggregatingJobManagementService implements JobManagementService {
         this.callMetadataResolver = callMetadataResolver;
         this.aggregatingClient = aggregatingClient;
         this.jobManagementServiceHelper = jobManagementServiceHelper;
+        this.sharedJobChangeStream = federationConfiguration.isSharedJobStreamEnabled()
+                ? new SharedJobChangeStream(this::observeJobsInAllCells, "titusFederation", registry)
+                : null;
     }
 
     @Override
@@ -221,6 +228,13 @@ public class AggregatingJobManagementService implements JobManagementService {
 
     @Override
     public Observable<JobChangeNotification> observeJobs() {
+        if (sharedJobChangeStream != null) {
+            return sharedJobChangeStream.observeJobs();
+        }
+        return observeJobsInAllCells();
+    }
+
+    private Observable<JobChangeNotification> observeJobsInAllCells() {
         final Observable<JobChangeNotification> observable = createRequestObservable(delegate -> {
             Emitter<JobChangeNotification> emitter = new EmitterWithMultipleSubscriptions<>(delegate);
             Map<Cell, JobManagementServiceStub> clients = CellConnectorUtil.stubs(connector, JobManagementServiceGrpc::newStub);
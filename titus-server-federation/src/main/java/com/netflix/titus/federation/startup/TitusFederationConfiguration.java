@@ -30,4 +30,11 @@ public interface TitusFederationConfiguration {
 
     @DefaultValue("cell1=(app1.*|app2.*);cell2=(.*)")
     String getRoutingRules();
+
+    /**
+     * If enabled, all observeJobs subscriptions are served from a single set of cell job event streams.
+     * New subscribers receive a snapshot built locally, followed by the live updates.
+     */
+    @DefaultValue("false")
+    boolean isSharedJobStreamEnabled();
 }
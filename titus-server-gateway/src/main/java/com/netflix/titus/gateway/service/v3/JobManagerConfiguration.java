@@ -31,4 +31,27 @@ public interface JobManagerConfiguration {
 
     @DefaultValue("_none_")
     String getNoncompliantClientWhiteList();
+
+    /**
+     * If enabled, the gateway keeps a local replica of active jobs and tasks, updated from the master job event
+     * stream, and serves job and task queries from it. Queries are forwarded to the master until the replica
+     * receives the initial snapshot.
+     */
+    @DefaultValue("false")
+    boolean isJobReplicaEnabled();
+
+    /**
+     * If enabled, all observeJobs subscriptions are served from a single master job event stream. New subscribers
+     * receive a snapshot built locally by the gateway, followed by the live updates. If the job replica is enabled
+     * as well, it is built from the same stream.
+     */
+    @DefaultValue("false")
+    boolean isSharedJobStreamEnabled();
+
+    /**
+     * Maximum number of live events queued for a single subscriber of the shared job event stream. A subscriber
+     * that falls further behind is terminated with an error. The snapshot is not counted against this limit.
+     */
+    @DefaultValue("10000")
+    int getSharedJobStreamMaxQueueSize();
 }
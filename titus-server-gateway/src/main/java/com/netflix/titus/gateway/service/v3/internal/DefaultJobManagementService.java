@@ -19,6 +19,7 @@ package com.netflix.titus.gateway.service.v3.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -99,6 +100,8 @@ public class DefaultJobManagementService implements JobManagementService {
     private final LogStorageInfo<com.netflix.titus.api.jobmanager.model.job.Task> logStorageInfo;
     private final EntitySanitizer entitySanitizer;
     private final Function<String, Matcher> uncompliantClientMatcher;
+    private final JobReplicaCache jobReplicaCache;
+    private final MasterJobChangeStream masterJobChangeStream;
 
     @Inject
     public DefaultJobManagementService(GrpcClientConfiguration configuration,
@@ -107,7 +110,9 @@ public class DefaultJobManagementService implements JobManagementService {
                                        CallMetadataResolver callMetadataResolver,
                                        JobStore store,
                                        LogStorageInfo<com.netflix.titus.api.jobmanager.model.job.Task> logStorageInfo,
-                                       @Named(JOB_STRICT_SANITIZER) EntitySanitizer entitySanitizer) {
+                                       @Named(JOB_STRICT_SANITIZER) EntitySanitizer entitySanitizer,
+                                       JobReplicaCache jobReplicaCache,
+                                       MasterJobChangeStream masterJobChangeStream) {
         this.configuration = configuration;
         this.jobManagerConfiguration = jobManagerConfiguration;
         this.client = client;
@@ -115,6 +120,8 @@ public class DefaultJobManagementService implements JobManagementService {
         this.store = store;
         this.logStorageInfo = logStorageInfo;
         this.entitySanitizer = entitySanitizer;
+        this.jobReplicaCache = jobReplicaCache;
+        this.masterJobChangeStream = masterJobChangeStream;
         this.uncompliantClientMatcher = RegExpExt.dynamicMatcher(
                 jobManagerConfiguration::getNoncompliantClientWhiteList, "noncompliantClientWhiteList", 0, logger
         );
@@ -184,6 +191,11 @@ public class DefaultJobManagementService implements JobManagementService {
 
     @Override
     public Observable<Job> findJob(String jobId) {
+        Optional<Job> replicatedJob = jobReplicaCache.findJob(jobId);
+        if (replicatedJob.isPresent()) {
+            return Observable.just(replicatedJob.get());
+        }
+
         Observable<Job> observable = createRequestObservable(emitter -> {
             StreamObserver<Job> streamObserver = createSimpleClientResponseObserver(emitter);
             createWrappedStub(client, callMetadataResolver, configuration.getRequestTimeout()).findJob(JobId.newBuilder().setId(jobId).build(), streamObserver);
@@ -201,6 +213,11 @@ public class DefaultJobManagementService implements JobManagementService {
 
     @Override
     public Observable<JobQueryResult> findJobs(JobQuery jobQuery) {
+        Optional<JobQueryResult> replicatedResult = jobReplicaCache.findJobs(jobQuery);
+        if (replicatedResult.isPresent()) {
+            return Observable.just(replicatedResult.get());
+        }
+
         return createRequestObservable(emitter -> {
             StreamObserver<JobQueryResult> streamObserver = createSimpleClientResponseObserver(emitter);
             createWrappedStub(client, callMetadataResolver, configuration.getRequestTimeout()).findJobs(jobQuery, streamObserver);
@@ -217,10 +234,7 @@ public class DefaultJobManagementService implements JobManagementService {
 
     @Override
     public Observable<JobChangeNotification> observeJobs() {
-        return createRequestObservable(emitter -> {
-            StreamObserver<JobChangeNotification> streamObserver = createSimpleClientResponseObserver(emitter);
-            createWrappedStub(client, callMetadataResolver).observeJobs(Empty.getDefaultInstance(), streamObserver);
-        });
+        return masterJobChangeStream.observeJobs();
     }
 
     @Override
@@ -233,6 +247,11 @@ public class DefaultJobManagementService implements JobManagementService {
 
     @Override
     public Observable<Task> findTask(String taskId) {
+        Optional<Task> replicatedTask = jobReplicaCache.findTask(taskId);
+        if (replicatedTask.isPresent()) {
+            return Observable.just(replicatedTask.get());
+        }
+
         Observable<Task> observable = createRequestObservable(emitter -> {
             StreamObserver<Task> streamObserver = createSimpleClientResponseObserver(emitter);
             createWrappedStub(client, callMetadataResolver, configuration.getRequestTimeout()).findTask(TaskId.newBuilder().setId(taskId).build(), streamObserver);
@@ -252,6 +271,11 @@ public class DefaultJobManagementService implements JobManagementService {
 
     @Override
     public Observable<TaskQueryResult> findTasks(TaskQuery taskQuery) {
+        Optional<TaskQueryResult> replicatedResult = jobReplicaCache.findTasks(taskQuery);
+        if (replicatedResult.isPresent()) {
+            return Observable.just(replicatedResult.get());
+        }
+
         Observable<TaskQueryResult> observable = createRequestObservable(emitter -> {
             StreamObserver<TaskQueryResult> streamObserver = createSimpleClientResponseObserver(emitter);
             createWrappedStub(client, callMetadataResolver, configuration.getRequestTimeout()).findTasks(taskQuery, streamObserver);
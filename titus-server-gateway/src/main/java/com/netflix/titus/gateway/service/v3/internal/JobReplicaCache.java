@@ -0,0 +1,385 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.gateway.service.v3.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.netflix.spectator.api.Gauge;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.api.model.Pagination;
+import com.netflix.titus.api.model.PaginationUtil;
+import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.util.ProtobufCopy;
+import com.netflix.titus.common.util.time.Clock;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.gateway.service.v3.JobManagerConfiguration;
+import com.netflix.titus.grpc.protogen.Job;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobDescriptor.JobSpecCase;
+import com.netflix.titus.grpc.protogen.JobQuery;
+import com.netflix.titus.grpc.protogen.JobQueryResult;
+import com.netflix.titus.grpc.protogen.JobStatus;
+import com.netflix.titus.grpc.protogen.Task;
+import com.netflix.titus.grpc.protogen.TaskQuery;
+import com.netflix.titus.grpc.protogen.TaskQueryResult;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
+import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3JobQueryCriteriaEvaluator;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3TaskQueryCriteriaEvaluator;
+import com.netflix.titus.runtime.jobmanager.JobManagerCursors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+
+import static com.netflix.titus.common.util.CollectionsExt.asSet;
+import static com.netflix.titus.runtime.endpoint.common.grpc.CommonGrpcModelConverters.toGrpcPagination;
+import static com.netflix.titus.runtime.endpoint.common.grpc.CommonGrpcModelConverters.toJobQueryCriteria;
+import static com.netflix.titus.runtime.endpoint.common.grpc.CommonGrpcModelConverters.toPage;
+
+/**
+ * Gateway local replica of active jobs and tasks, built from a single master job event stream. Job and task
+ * queries are evaluated in-process, with the same criteria evaluators and cursor pagination as in TitusMaster.
+ * <p>
+ * Until the replica receives the initial snapshot (after startup, or after the event stream is re-established),
+ * all lookup methods return {@link Optional#empty()}, and the caller should forward the request to the master.
+ * Queries that may include finished or archived entities are not answered from the replica, as finished jobs
+ * and tasks are removed from it. In particular, a task query is answered only if it explicitly lists the task states,
+ * not including {@link TaskStatus.TaskState#Finished}, as with no task state filter TitusMaster returns also
+ * the finished tasks of active jobs.
+ */
+@Singleton
+public class JobReplicaCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobReplicaCache.class);
+
+    private static final String METRIC_ROOT = "titusGateway.jobReplica.";
+
+    private static final long RETRY_DELAY_MS = 1_000;
+
+    private static final Set<String> JOB_MINIMUM_FIELD_SET = asSet("id");
+    private static final Set<String> TASK_MINIMUM_FIELD_SET = asSet("id");
+
+    private final TitusRuntime titusRuntime;
+    private final Clock clock;
+    private final Registry registry;
+
+    private final ConcurrentMap<String, JobEntry> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TaskEntry> tasks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> jobTaskIds = new ConcurrentHashMap<>();
+    private volatile boolean inSync;
+
+    private final Gauge inSyncGauge;
+    private final Gauge stalenessGauge;
+    private final Gauge jobCountGauge;
+    private final Gauge taskCountGauge;
+
+    private final Subscription subscription;
+
+    @Inject
+    public JobReplicaCache(JobManagerConfiguration jobManagerConfiguration,
+                           MasterJobChangeStream masterJobChangeStream,
+                           TitusRuntime titusRuntime) {
+        this(jobManagerConfiguration.isJobReplicaEnabled(), masterJobChangeStream::observeJobs, titusRuntime, Schedulers.computation());
+    }
+
+    @VisibleForTesting
+    JobReplicaCache(boolean enabled,
+                    Supplier<Observable<JobChangeNotification>> eventSource,
+                    TitusRuntime titusRuntime,
+                    Scheduler scheduler) {
+        this.titusRuntime = titusRuntime;
+        this.clock = titusRuntime.getClock();
+        this.registry = titusRuntime.getRegistry();
+
+        this.inSyncGauge = registry.gauge(METRIC_ROOT + "inSync");
+        this.stalenessGauge = registry.gauge(METRIC_ROOT + "stalenessMs");
+        this.jobCountGauge = registry.gauge(METRIC_ROOT + "jobs");
+        this.taskCountGauge = registry.gauge(METRIC_ROOT + "tasks");
+
+        if (!enabled) {
+            this.subscription = null;
+            return;
+        }
+        this.subscription = Observable.defer(() -> {
+            reset();
+            return eventSource.get();
+        })
+                .doOnError(e -> {
+                    markOutOfSync();
+                    logger.warn("Job event stream terminated with an error; reconnecting in {}ms: {}", RETRY_DELAY_MS, e.getMessage());
+                })
+                .doOnCompleted(this::markOutOfSync)
+                .retryWhen(errors -> errors.flatMap(e -> Observable.timer(RETRY_DELAY_MS, TimeUnit.MILLISECONDS, scheduler)))
+                .repeatWhen(completions -> completions.flatMap(nothing -> Observable.timer(RETRY_DELAY_MS, TimeUnit.MILLISECONDS, scheduler)))
+                .subscribe(this::onEvent, e -> logger.error("Job replica stopped", e));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (subscription != null) {
+            subscription.unsubscribe();
+        }
+    }
+
+    public boolean isInSync() {
+        return inSync;
+    }
+
+    public Optional<Job> findJob(String jobId) {
+        if (!inSync) {
+            return recordResult("findJob", Optional.empty());
+        }
+        JobEntry entry = jobs.get(jobId);
+        return recordResult("findJob", entry == null ? Optional.empty() : Optional.of(entry.grpcJob));
+    }
+
+    public Optional<Task> findTask(String taskId) {
+        if (!inSync) {
+            return recordResult("findTask", Optional.empty());
+        }
+        TaskEntry entry = tasks.get(taskId);
+        return recordResult("findTask", entry == null ? Optional.empty() : Optional.of(entry.grpcTask));
+    }
+
+    public Optional<JobQueryResult> findJobs(JobQuery jobQuery) {
+        JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria = toJobQueryCriteria(jobQuery);
+        if (!inSync || !isActiveOnlyJobQuery(criteria) || !isValidPage(jobQuery.getPage())) {
+            return recordResult("findJobs", Optional.empty());
+        }
+
+        V3JobQueryCriteriaEvaluator evaluator = new V3JobQueryCriteriaEvaluator(criteria, titusRuntime);
+        List<Job> matchingJobs = new ArrayList<>();
+        for (JobEntry entry : jobs.values()) {
+            if (evaluator.test(Pair.of(entry.coreJob, getCoreTasks(entry.grpcJob.getId())))) {
+                matchingJobs.add(entry.grpcJob);
+            }
+        }
+
+        Pair<List<Job>, Pagination> page = PaginationUtil.takePageWithCursor(
+                toPage(jobQuery.getPage()),
+                matchingJobs,
+                JobManagerCursors.jobCursorOrderComparator(),
+                JobManagerCursors::jobIndexOf,
+                JobManagerCursors::newCursorFrom
+        );
+        List<Job> items = page.getLeft();
+        if (!jobQuery.getFieldsList().isEmpty()) {
+            Set<String> fields = new HashSet<>(jobQuery.getFieldsList());
+            fields.addAll(JOB_MINIMUM_FIELD_SET);
+            items = copyFields(items, fields);
+        }
+        return recordResult("findJobs", Optional.of(JobQueryResult.newBuilder()
+                .addAllItems(items)
+                .setPagination(toGrpcPagination(page.getRight()))
+                .build()
+        ));
+    }
+
+    public Optional<TaskQueryResult> findTasks(TaskQuery taskQuery) {
+        JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria = toJobQueryCriteria(taskQuery);
+        if (!inSync || !isActiveOnlyTaskQuery(criteria) || !isValidPage(taskQuery.getPage())) {
+            return recordResult("findTasks", Optional.empty());
+        }
+
+        V3TaskQueryCriteriaEvaluator evaluator = new V3TaskQueryCriteriaEvaluator(criteria, titusRuntime);
+        List<Task> matchingTasks = new ArrayList<>();
+        for (TaskEntry entry : tasks.values()) {
+            JobEntry jobEntry = jobs.get(entry.grpcTask.getJobId());
+            if (jobEntry != null && evaluator.test(Pair.of(jobEntry.coreJob, entry.coreTask))) {
+                matchingTasks.add(entry.grpcTask);
+            }
+        }
+
+        Pair<List<Task>, Pagination> page = PaginationUtil.takePageWithCursor(
+                toPage(taskQuery.getPage()),
+                matchingTasks,
+                JobManagerCursors.taskCursorOrderComparator(),
+                JobManagerCursors::taskIndexOf,
+                JobManagerCursors::newCursorFrom
+        );
+        List<Task> items = page.getLeft();
+        if (!taskQuery.getFieldsList().isEmpty()) {
+            Set<String> fields = new HashSet<>(taskQuery.getFieldsList());
+            fields.addAll(TASK_MINIMUM_FIELD_SET);
+            items = copyFields(items, fields);
+        }
+        return recordResult("findTasks", Optional.of(TaskQueryResult.newBuilder()
+                .addAllItems(items)
+                .setPagination(toGrpcPagination(page.getRight()))
+                .build()
+        ));
+    }
+
+    private void reset() {
+        markOutOfSync();
+        jobs.clear();
+        tasks.clear();
+        jobTaskIds.clear();
+    }
+
+    /**
+     * Called as soon as the event stream terminates, so no query is answered from the replica during the reconnect
+     * delay. The staleness gauge is reset, as it is updated only when events are received.
+     */
+    private void markOutOfSync() {
+        inSync = false;
+        inSyncGauge.set(0);
+        stalenessGauge.set(Double.NaN);
+    }
+
+    private void onEvent(JobChangeNotification event) {
+        try {
+            switch (event.getNotificationCase()) {
+                case JOBUPDATE:
+                    onJobUpdate(event.getJobUpdate().getJob());
+                    break;
+                case TASKUPDATE:
+                    onTaskUpdate(event.getTaskUpdate().getTask());
+                    break;
+                case SNAPSHOTEND:
+                    inSync = true;
+                    inSyncGauge.set(1);
+                    logger.info("Job replica in sync: jobs={}, tasks={}", jobs.size(), tasks.size());
+                    break;
+            }
+        } catch (Exception e) {
+            // A single bad entity should not break the replication; it is served by the master instead
+            logger.warn("Cannot apply job event to the replica: {}", e.getMessage());
+        }
+        jobCountGauge.set(jobs.size());
+        taskCountGauge.set(tasks.size());
+    }
+
+    private void onJobUpdate(Job job) {
+        updateStaleness(job.getStatus().getTimestamp());
+        if (job.getStatus().getState() == JobStatus.JobState.Finished) {
+            jobs.remove(job.getId());
+            Set<String> taskIds = jobTaskIds.remove(job.getId());
+            if (taskIds != null) {
+                taskIds.forEach(tasks::remove);
+            }
+            return;
+        }
+        jobs.put(job.getId(), new JobEntry(job, V3GrpcModelConverters.toCoreJob(job)));
+    }
+
+    private void onTaskUpdate(Task task) {
+        updateStaleness(task.getStatus().getTimestamp());
+        if (task.getStatus().getState() == TaskStatus.TaskState.Finished) {
+            tasks.remove(task.getId());
+            Set<String> taskIds = jobTaskIds.get(task.getJobId());
+            if (taskIds != null) {
+                taskIds.remove(task.getId());
+            }
+            return;
+        }
+        tasks.put(task.getId(), new TaskEntry(task, V3GrpcModelConverters.toCoreTask(task)));
+        jobTaskIds.computeIfAbsent(task.getJobId(), id -> ConcurrentHashMap.newKeySet()).add(task.getId());
+    }
+
+    /**
+     * Staleness is estimated as the delay between an entity state change in TitusMaster, and the time the change
+     * is applied to the replica. Snapshot events are not included, as they may carry old state change timestamps.
+     */
+    private void updateStaleness(long statusTimestamp) {
+        if (inSync && statusTimestamp > 0) {
+            stalenessGauge.set(Math.max(0, clock.wallTime() - statusTimestamp));
+        }
+    }
+
+    private List<com.netflix.titus.api.jobmanager.model.job.Task> getCoreTasks(String jobId) {
+        Set<String> taskIds = jobTaskIds.get(jobId);
+        if (taskIds == null) {
+            return Collections.emptyList();
+        }
+        List<com.netflix.titus.api.jobmanager.model.job.Task> coreTasks = new ArrayList<>(taskIds.size());
+        for (String taskId : taskIds) {
+            TaskEntry entry = tasks.get(taskId);
+            if (entry != null) {
+                coreTasks.add(entry.coreTask);
+            }
+        }
+        return coreTasks;
+    }
+
+    private <T> Optional<T> recordResult(String operation, Optional<T> result) {
+        registry.counter(METRIC_ROOT + (result.isPresent() ? "hits" : "misses"), "operation", operation).increment();
+        return result;
+    }
+
+    private static boolean isActiveOnlyJobQuery(JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria) {
+        if (criteria.isIncludeArchived() || criteria.getTaskStates().contains(TaskStatus.TaskState.Finished)) {
+            return false;
+        }
+        return !criteria.getJobState().filter(state -> state == JobStatus.JobState.Finished).isPresent();
+    }
+
+    /**
+     * Finished tasks of active jobs are not kept in the replica, so a task query must exclude them explicitly.
+     */
+    private static boolean isActiveOnlyTaskQuery(JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria) {
+        return !criteria.getTaskStates().isEmpty() && isActiveOnlyJobQuery(criteria);
+    }
+
+    private static boolean isValidPage(com.netflix.titus.grpc.protogen.Page page) {
+        return page.getPageSize() > 0 && page.getPageNumber() >= 0;
+    }
+
+    private static <T extends com.google.protobuf.Message> List<T> copyFields(List<T> items, Set<String> fields) {
+        List<T> copies = new ArrayList<>(items.size());
+        items.forEach(item -> copies.add(ProtobufCopy.copy(item, fields)));
+        return copies;
+    }
+
+    private static class JobEntry {
+        private final Job grpcJob;
+        private final com.netflix.titus.api.jobmanager.model.job.Job<?> coreJob;
+
+        private JobEntry(Job grpcJob, com.netflix.titus.api.jobmanager.model.job.Job<?> coreJob) {
+            this.grpcJob = grpcJob;
+            this.coreJob = coreJob;
+        }
+    }
+
+    private static class TaskEntry {
+        private final Task grpcTask;
+        private final com.netflix.titus.api.jobmanager.model.job.Task coreTask;
+
+        private TaskEntry(Task grpcTask, com.netflix.titus.api.jobmanager.model.job.Task coreTask) {
+            this.grpcTask = grpcTask;
+            this.coreTask = coreTask;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.gateway.service.v3.internal;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.protobuf.Empty;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.gateway.service.v3.JobManagerConfiguration;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobManagementServiceGrpc.JobManagementServiceStub;
+import com.netflix.titus.runtime.endpoint.metadata.CallMetadataResolver;
+import com.netflix.titus.runtime.jobmanager.SharedJobChangeStream;
+import io.grpc.stub.StreamObserver;
+import rx.Observable;
+
+import static com.netflix.titus.runtime.endpoint.common.grpc.GrpcUtil.createRequestObservable;
+import static com.netflix.titus.runtime.endpoint.common.grpc.GrpcUtil.createSimpleClientResponseObserver;
+import static com.netflix.titus.runtime.endpoint.common.grpc.GrpcUtil.createWrappedStub;
+
+/**
+ * Source of the master job event stream for the gateway components. If the shared job stream is enabled, all
+ * subscribers (the API clients and the {@link JobReplicaCache}) are served from a single {@link SharedJobChangeStream},
+ * otherwise each subscription opens its own stream to the master.
+ */
+@Singleton
+public class MasterJobChangeStream {
+
+    private final JobManagementServiceStub client;
+    private final CallMetadataResolver callMetadataResolver;
+    private final SharedJobChangeStream sharedJobChangeStream;
+
+    @Inject
+    public MasterJobChangeStream(JobManagerConfiguration jobManagerConfiguration,
+                                 JobManagementServiceStub client,
+                                 CallMetadataResolver callMetadataResolver,
+                                 Registry registry) {
+        this.client = client;
+        this.callMetadataResolver = callMetadataResolver;
+        this.sharedJobChangeStream = jobManagerConfiguration.isSharedJobStreamEnabled()
+                ? new SharedJobChangeStream(this::observeMasterJobs, "titusGateway", registry, jobManagerConfiguration.getSharedJobStreamMaxQueueSize())
+                : null;
+    }
+
+    public Observable<JobChangeNotification> observeJobs() {
+        if (sharedJobChangeStream != null) {
+            return sharedJobChangeStream.observeJobs();
+        }
+        return observeMasterJobs();
+    }
+
+    private Observable<JobChangeNotification> observeMasterJobs() {
+        return createRequestObservable(emitter -> {
+            StreamObserver<JobChangeNotification> streamObserver = createSimpleClientResponseObserver(emitter);
+            createWrappedStub(client, callMetadataResolver).observeJobs(Empty.getDefaultInstance(), streamObserver);
+        });
+    }
+}
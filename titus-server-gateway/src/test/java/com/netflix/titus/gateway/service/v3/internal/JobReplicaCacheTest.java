@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.gateway.service.v3.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.JobFunctions;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.model.job.TaskStatus;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobQuery;
+import com.netflix.titus.grpc.protogen.JobQueryResult;
+import com.netflix.titus.grpc.protogen.Page;
+import com.netflix.titus.grpc.protogen.TaskQuery;
+import com.netflix.titus.grpc.protogen.TaskQueryResult;
+import com.netflix.titus.runtime.endpoint.common.EmptyLogStorageInfo;
+import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
+import com.netflix.titus.runtime.jobmanager.SharedJobChangeStream;
+import com.netflix.titus.testkit.model.job.JobDescriptorGenerator;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JobReplicaCacheTest {
+
+    private static final Page PAGE = Page.newBuilder().setPageSize(10).build();
+
+    private static final JobChangeNotification SNAPSHOT_END = JobChangeNotification.newBuilder()
+            .setSnapshotEnd(JobChangeNotification.SnapshotEnd.newBuilder())
+            .build();
+
+    private final TestScheduler testScheduler = new TestScheduler();
+    private final TitusRuntime titusRuntime = TitusRuntimes.test(testScheduler);
+
+    private final com.netflix.titus.api.jobmanager.model.job.Job<BatchJobExt> job = JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).getValue();
+    private final BatchJobTask task = JobGenerator.batchTasks(job).getValue();
+
+    private PublishSubject<JobChangeNotification> eventSource;
+    private int subscriptionCount;
+    private JobReplicaCache cache;
+
+    @Before
+    public void setUp() {
+        this.cache = new JobReplicaCache(true, () -> {
+            subscriptionCount++;
+            eventSource = PublishSubject.create();
+            return eventSource;
+        }, titusRuntime, testScheduler);
+    }
+
+    @Test
+    public void testQueriesAreServedAfterSnapshot() {
+        eventSource.onNext(toNotification(job));
+        eventSource.onNext(toNotification(task));
+        assertThat(cache.findJob(job.getId())).isEmpty();
+
+        eventSource.onNext(SNAPSHOT_END);
+        assertThat(cache.isInSync()).isTrue();
+        assertThat(cache.findJob(job.getId()).map(com.netflix.titus.grpc.protogen.Job::getId)).contains(job.getId());
+        assertThat(cache.findTask(task.getId()).map(com.netflix.titus.grpc.protogen.Task::getId)).contains(task.getId());
+
+        JobQueryResult jobQueryResult = cache.findJobs(JobQuery.newBuilder().setPage(PAGE).build()).get();
+        assertThat(jobQueryResult.getItemsList()).hasSize(1);
+        TaskQueryResult taskQueryResult = cache.findTasks(TaskQuery.newBuilder()
+                .setPage(PAGE)
+                .putFilteringCriteria("taskStates", task.getStatus().getState().name())
+                .build()
+        ).get();
+        assertThat(taskQueryResult.getItemsList()).hasSize(1);
+
+        Registry registry = titusRuntime.getRegistry();
+        assertThat(registry.counter("titusGateway.jobReplica.hits", "operation", "findJob").count()).isEqualTo(1);
+        assertThat(registry.counter("titusGateway.jobReplica.misses", "operation", "findJob").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFinishedEntitiesAreRemoved() {
+        eventSource.onNext(toNotification(job));
+        eventSource.onNext(toNotification(task));
+        eventSource.onNext(SNAPSHOT_END);
+
+        eventSource.onNext(toNotification(task.toBuilder().withStatus(TaskStatus.newBuilder().withState(TaskState.Finished).build()).build()));
+        assertThat(cache.findTask(task.getId())).isEmpty();
+
+        eventSource.onNext(toNotification(JobFunctions.changeJobStatus(job, com.netflix.titus.api.jobmanager.model.job.JobState.Finished, "test")));
+        assertThat(cache.findJob(job.getId())).isEmpty();
+    }
+
+    @Test
+    public void testQueriesIncludingFinishedEntitiesAreNotServed() {
+        eventSource.onNext(SNAPSHOT_END);
+        TaskQuery finishedTasksQuery = TaskQuery.newBuilder()
+                .setPage(PAGE)
+                .putFilteringCriteria("taskStates", "Finished")
+                .build();
+        assertThat(cache.findTasks(finishedTasksQuery)).isEmpty();
+
+        // With no task state filter, TitusMaster returns also the finished tasks of active jobs
+        assertThat(cache.findTasks(TaskQuery.newBuilder().setPage(PAGE).build())).isEmpty();
+    }
+
+    @Test
+    public void testReplicaIsRebuiltAfterStreamError() {
+        eventSource.onNext(toNotification(job));
+        eventSource.onNext(SNAPSHOT_END);
+        assertThat(cache.isInSync()).isTrue();
+
+        eventSource.onError(new RuntimeException("simulated stream error"));
+
+        // The replica is not used during the reconnect delay
+        assertThat(cache.isInSync()).isFalse();
+        assertThat(cache.findJob(job.getId())).isEmpty();
+        assertThat(titusRuntime.getRegistry().gauge("titusGateway.jobReplica.inSync").value()).isEqualTo(0);
+        assertThat(titusRuntime.getRegistry().gauge("titusGateway.jobReplica.stalenessMs").value()).isNaN();
+
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(subscriptionCount).isEqualTo(2);
+        assertThat(cache.isInSync()).isFalse();
+        assertThat(cache.findJob(job.getId())).isEmpty();
+
+        eventSource.onNext(toNotification(job));
+        eventSource.onNext(SNAPSHOT_END);
+        assertThat(cache.findJob(job.getId())).isPresent();
+    }
+
+    @Test
+    public void testReplicaSharesUpstreamWithOtherSubscribers() {
+        List<PublishSubject<JobChangeNotification>> upstreams = new ArrayList<>();
+        SharedJobChangeStream sharedStream = new SharedJobChangeStream(() -> {
+            PublishSubject<JobChangeNotification> upstream = PublishSubject.create();
+            upstreams.add(upstream);
+            return upstream;
+        }, "test", titusRuntime.getRegistry());
+        JobReplicaCache sharedCache = new JobReplicaCache(true, sharedStream::observeJobs, titusRuntime, testScheduler);
+        try {
+            upstreams.get(0).onNext(toNotification(job));
+            upstreams.get(0).onNext(SNAPSHOT_END);
+            assertThat(sharedCache.findJob(job.getId())).isPresent();
+
+            // A client subscription is served from the same upstream, with the locally built snapshot
+            sharedStream.observeJobs().test().assertValues(toNotification(job), SNAPSHOT_END);
+            assertThat(upstreams).hasSize(1);
+        } finally {
+            sharedCache.shutdown();
+        }
+    }
+
+    private static JobChangeNotification toNotification(com.netflix.titus.api.jobmanager.model.job.Job<?> job) {
+        return JobChangeNotification.newBuilder()
+                .setJobUpdate(JobChangeNotification.JobUpdate.newBuilder().setJob(V3GrpcModelConverters.toGrpcJob(job)))
+                .build();
+    }
+
+    private static JobChangeNotification toNotification(com.netflix.titus.api.jobmanager.model.job.Task task) {
+        return JobChangeNotification.newBuilder()
+                .setTaskUpdate(JobChangeNotification.TaskUpdate.newBuilder().setTask(V3GrpcModelConverters.toGrpcTask(task, EmptyLogStorageInfo.INSTANCE)))
+                .build();
+    }
+}
@@ -18,6 +18,7 @@ package com.netflix.titus.master.agent.service;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,7 +40,7 @@ import com.netflix.titus.master.agent.service.cache.CacheUpdateEvent;
 import com.netflix.titus.master.agent.service.cache.CacheUpdateType;
 
 /**
- * As we get instance group level events from {@link AgentCache}, irrespective of what changed (instance group or instance),
+ * As we get instance group or instance level events from {@link AgentCache}, which do not carry the changed data,
  * we need to generate fine grain events by comparing the previous and the new state. This class encapsulates logic to
  * do that.
  */
@@ -64,16 +65,25 @@ final class AgentEventEmitter {
         }).collect(Collectors.toMap(Pair::getLeft, Pair::getRight));
     }
 
+    private AgentEventEmitter(AgentCache agentCache,
+                              Map<String, AgentInstanceGroup> instanceGroupsById,
+                              Map<String, Map<String, AgentInstance>> instanceGroupInstancesById) {
+        this.agentCache = agentCache;
+        this.instanceGroupsById = instanceGroupsById;
+        this.instanceGroupInstancesById = instanceGroupInstancesById;
+    }
+
     Pair<List<AgentEvent>, AgentEventEmitter> apply(CacheUpdateEvent event) {
         CacheUpdateType type = event.getType();
         if (type != CacheUpdateType.InstanceGroup && type != CacheUpdateType.Instance) {
             return Pair.of(Collections.emptyList(), this);
         }
 
-        AgentEventEmitter newEventEmitter = new AgentEventEmitter(agentCache);
         if (type == CacheUpdateType.InstanceGroup) {
+            AgentEventEmitter newEventEmitter = new AgentEventEmitter(agentCache);
             return Pair.of(compareServerGroup(event.getResourceId(), newEventEmitter), newEventEmitter);
         }
+        AgentEventEmitter newEventEmitter = withRefreshedInstance(event.getResourceId());
         return Pair.of(compareInstance(event.getResourceId(), newEventEmitter), newEventEmitter);
     }
 
@@ -153,6 +163,38 @@ final class AgentEventEmitter {
         return Collections.singletonList(new AgentInstanceUpdateEvent(newInstance));
     }
 
+    /**
+     * Single instance updates are frequent, so instead of loading the full agent cache state, only the instance map of
+     * the affected instance group is copied and updated.
+     */
+    private AgentEventEmitter withRefreshedInstance(String instanceId) {
+        AgentInstance previousInstance = findInstance(instanceId);
+        AgentInstance currentInstance;
+        try {
+            currentInstance = agentCache.getAgentInstance(instanceId);
+        } catch (Exception e) { // instance removed
+            currentInstance = null;
+        }
+
+        Map<String, Map<String, AgentInstance>> newInstanceGroupInstancesById = new HashMap<>(instanceGroupInstancesById);
+        if (previousInstance != null) {
+            newInstanceGroupInstancesById.computeIfPresent(previousInstance.getInstanceGroupId(), (id, instances) -> {
+                Map<String, AgentInstance> newInstances = new HashMap<>(instances);
+                newInstances.remove(instanceId);
+                return newInstances;
+            });
+        }
+        if (currentInstance != null) {
+            AgentInstance instance = currentInstance;
+            newInstanceGroupInstancesById.computeIfPresent(instance.getInstanceGroupId(), (id, instances) -> {
+                Map<String, AgentInstance> newInstances = new HashMap<>(instances);
+                newInstances.put(instanceId, instance);
+                return newInstances;
+            });
+        }
+        return new AgentEventEmitter(agentCache, instanceGroupsById, newInstanceGroupInstancesById);
+    }
+
     private AgentInstance findInstance(String instanceId) {
         for (Map<String, AgentInstance> instanceMap : instanceGroupInstancesById.values()) {
             AgentInstance instance = instanceMap.get(instanceId);
@@ -25,6 +25,15 @@ public interface AgentManagementConfiguration {
     @DefaultValue("60000")
     long getCacheRefreshIntervalMs();
 
+    /**
+     * Instance groups which do not change are refreshed less frequently. Each refresh with no changes doubles the
+     * instance group refresh interval, starting from {@link #getCacheRefreshIntervalMs()}, up to this value. If the value
+     * is not greater than {@link #getCacheRefreshIntervalMs()} (the default), all instance groups are refreshed at the
+     * same fixed interval.
+     */
+    @DefaultValue("60000")
+    long getMaxCacheRefreshIntervalMs();
+
     @DefaultValue("120000")
     long getFullCacheRefreshIntervalMs();
 
@@ -16,11 +16,10 @@
 
 package com.netflix.titus.master.agent.service.cache;
 
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.netflix.spectator.api.BasicTag;
@@ -29,7 +28,6 @@ import com.netflix.spectator.api.Registry;
 import com.netflix.spectator.api.Tag;
 import com.netflix.titus.api.agent.model.AgentInstance;
 import com.netflix.titus.api.agent.model.AgentInstanceGroup;
-import com.netflix.titus.common.util.CollectionsExt;
 import com.netflix.titus.master.MetricConstants;
 
 import static java.util.Arrays.asList;
@@ -45,44 +43,78 @@ class AgentCacheMetrics {
         this.registry = registry;
     }
 
-    void refresh(AgentDataSnapshot snapshot) {
-        refreshInstanceGroupMetrics(snapshot);
-        refreshInstanceMetrics(snapshot);
+    /**
+     * Updates metrics of instance groups and instances that changed between the two snapshots. Instance groups which
+     * were not modified are identified by reference equality, so the cost is proportional to the size of the changed
+     * instance groups only.
+     */
+    void refresh(AgentDataSnapshot previous, AgentDataSnapshot snapshot) {
+        previous.getInstanceGroupIds().forEach(instanceGroupId -> {
+            if (snapshot.getInstanceGroup(instanceGroupId) == null) {
+                removeInstanceGroupMetrics(instanceGroupId);
+                previous.getInstancesById(instanceGroupId).keySet().forEach(this::removeInstanceMetrics);
+            }
+        });
+        snapshot.getInstanceGroupIds().forEach(instanceGroupId -> {
+            AgentInstanceGroup instanceGroup = snapshot.getInstanceGroup(instanceGroupId);
+            AgentInstanceGroup previousInstanceGroup = previous.getInstanceGroup(instanceGroupId);
+            boolean instanceGroupChanged = instanceGroup != previousInstanceGroup;
+            if (instanceGroupChanged) {
+                refreshInstanceGroupMetrics(instanceGroup);
+            }
+
+            Map<String, AgentInstance> instances = snapshot.getInstancesById(instanceGroupId);
+            Map<String, AgentInstance> previousInstances = previousInstanceGroup == null
+                    ? Collections.emptyMap()
+                    : previous.getInstancesById(instanceGroupId);
+            if (instanceGroupChanged || instances != previousInstances) {
+                refreshInstanceMetrics(instanceGroup, instances, previousInstances, instanceGroupChanged);
+            }
+        });
     }
 
-    private void refreshInstanceGroupMetrics(AgentDataSnapshot snapshot) {
-        Set<String> foundIds = new HashSet<>();
-        snapshot.getInstanceGroups().forEach(g -> {
-            foundIds.add(g.getId());
-            InstanceGroupMetrics current = this.instanceGroupMetrics.get(g.getId());
-            if (current == null) {
-                instanceGroupMetrics.put(g.getId(), new InstanceGroupMetrics(g));
-            } else {
-                instanceGroupMetrics.put(g.getId(), current.apply(g));
+    private void refreshInstanceGroupMetrics(AgentInstanceGroup instanceGroup) {
+        InstanceGroupMetrics current = this.instanceGroupMetrics.get(instanceGroup.getId());
+        if (current == null) {
+            instanceGroupMetrics.put(instanceGroup.getId(), new InstanceGroupMetrics(instanceGroup));
+        } else {
+            instanceGroupMetrics.put(instanceGroup.getId(), current.apply(instanceGroup));
+        }
+    }
+
+    private void removeInstanceGroupMetrics(String instanceGroupId) {
+        InstanceGroupMetrics removed = instanceGroupMetrics.remove(instanceGroupId);
+        if (removed != null) {
+            removed.remove();
+        }
+    }
+
+    private void refreshInstanceMetrics(AgentInstanceGroup instanceGroup,
+                                        Map<String, AgentInstance> instances,
+                                        Map<String, AgentInstance> previousInstances,
+                                        boolean instanceGroupChanged) {
+        instances.forEach((instanceId, instance) -> {
+            if (instanceGroupChanged || previousInstances.get(instanceId) != instance) {
+                InstanceMetrics current = this.instanceMetrics.get(instanceId);
+                if (current == null) {
+                    instanceMetrics.put(instanceId, new InstanceMetrics(instanceGroup, instance));
+                } else {
+                    instanceMetrics.put(instanceId, current.apply(instanceGroup, instance));
+                }
+            }
+        });
+        previousInstances.keySet().forEach(instanceId -> {
+            if (!instances.containsKey(instanceId)) {
+                removeInstanceMetrics(instanceId);
             }
         });
-        CollectionsExt.copyAndRemove(instanceGroupMetrics.keySet(), foundIds).forEach(m ->
-                instanceGroupMetrics.remove(m).remove()
-        );
     }
 
-    private void refreshInstanceMetrics(AgentDataSnapshot snapshot) {
-        Set<String> foundIds = new HashSet<>();
-        snapshot.getInstanceGroups().forEach(
-                g -> snapshot.getInstances(g.getId())
-                        .forEach(i -> {
-                            foundIds.add(i.getId());
-                            InstanceMetrics current = this.instanceMetrics.get(i.getId());
-                            if (current == null) {
-                                instanceMetrics.put(i.getId(), new InstanceMetrics(g, i));
-                            } else {
-                                instanceMetrics.put(i.getId(), current.apply(g, i));
-                            }
-                        })
-        );
-        CollectionsExt.copyAndRemove(instanceMetrics.keySet(), foundIds).forEach(m ->
-                instanceMetrics.remove(m).remove()
-        );
+    private void removeInstanceMetrics(String instanceId) {
+        InstanceMetrics removed = instanceMetrics.remove(instanceId);
+        if (removed != null) {
+            removed.remove();
+        }
     }
 
     private class InstanceGroupMetrics {
@@ -16,53 +16,64 @@
 
 package com.netflix.titus.master.agent.service.cache;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import com.netflix.titus.api.agent.model.AgentInstance;
 import com.netflix.titus.api.agent.model.AgentInstanceGroup;
-import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.common.util.collections.PersistentHashMap;
 
+/**
+ * Immutable view of the agent cache state. All indexes are persistent maps, so an update creates a new snapshot
+ * which shares the unchanged parts with the previous one. Changing a single agent instance costs O(log n), and changing
+ * an instance group is proportional to the size of that group only.
+ */
 class AgentDataSnapshot {
 
-    private final Set<String> instanceGroupIds;
-    private final List<AgentInstanceGroup> instanceGroups;
-    private final Map<String, Pair<AgentInstanceGroup, Set<AgentInstance>>> instanceGroupsById;
-    private final Map<String, AgentInstance> agentInstancesById;
+    private final PersistentHashMap<String, InstanceGroupEntry> instanceGroupsById;
+    private final PersistentHashMap<String, AgentInstance> agentInstancesById;
+
+    /**
+     * Built on first access, as most snapshots are replaced before the instance group list is requested.
+     */
+    private volatile List<AgentInstanceGroup> instanceGroups;
 
     AgentDataSnapshot() {
-        this(Collections.emptyMap());
+        this(PersistentHashMap.empty(), PersistentHashMap.empty());
     }
 
-    private AgentDataSnapshot(Map<String, Pair<AgentInstanceGroup, Set<AgentInstance>>> instanceGroupsById) {
-        this.instanceGroupsById = Collections.unmodifiableMap(instanceGroupsById);
-        this.instanceGroupIds = Collections.unmodifiableSet(new HashSet<>(instanceGroupsById.keySet()));
-        this.instanceGroups = Collections.unmodifiableList(new ArrayList<>(instanceGroupsById.values().stream().map(Pair::getLeft).collect(Collectors.toList())));
-        this.agentInstancesById = Collections.unmodifiableMap(instanceGroupsById.values().stream()
-                .flatMap(p -> p.getRight().stream())
-                .collect(Collectors.toMap(AgentInstance::getId, Function.identity()))
-        );
+    private AgentDataSnapshot(PersistentHashMap<String, InstanceGroupEntry> instanceGroupsById,
+                              PersistentHashMap<String, AgentInstance> agentInstancesById) {
+        this.instanceGroupsById = instanceGroupsById;
+        this.agentInstancesById = agentInstancesById;
     }
 
     List<AgentInstanceGroup> getInstanceGroups() {
-        return instanceGroups;
+        List<AgentInstanceGroup> result = instanceGroups;
+        if (result == null) {
+            List<AgentInstanceGroup> all = new ArrayList<>(instanceGroupsById.size());
+            instanceGroupsById.values().forEach(entry -> all.add(entry.getInstanceGroup()));
+            result = Collections.unmodifiableList(all);
+            this.instanceGroups = result;
+        }
+        return result;
     }
 
     AgentInstanceGroup getInstanceGroup(String instanceGroupId) {
-        Pair<AgentInstanceGroup, Set<AgentInstance>> pair = instanceGroupsById.get(instanceGroupId);
-        return pair == null ? null : pair.getLeft();
+        InstanceGroupEntry entry = instanceGroupsById.get(instanceGroupId);
+        return entry == null ? null : entry.getInstanceGroup();
     }
 
     Set<String> getInstanceGroupIds() {
-        return instanceGroupIds;
+        return Collections.unmodifiableSet(instanceGroupsById.keySet());
     }
 
     AgentInstance getInstance(String instanceId) {
@@ -70,72 +81,191 @@ class AgentDataSnapshot {
     }
 
     Set<AgentInstance> getInstances(String instanceGroupId) {
-        Pair<AgentInstanceGroup, Set<AgentInstance>> pair = instanceGroupsById.get(instanceGroupId);
-        return pair == null ? null : pair.getRight();
+        InstanceGroupEntry entry = instanceGroupsById.get(instanceGroupId);
+        return entry == null ? null : entry.getInstanceSet();
     }
 
-    AgentDataSnapshot updateInstanceGroup(AgentInstanceGroup agentInstanceGroup, Set<AgentInstance> agentInstances) {
-        Map<String, Pair<AgentInstanceGroup, Set<AgentInstance>>> newInstanceGroupsById = new HashMap<>(instanceGroupsById);
-        newInstanceGroupsById.put(agentInstanceGroup.getId(), Pair.of(agentInstanceGroup, agentInstances));
-        return new AgentDataSnapshot(newInstanceGroupsById);
+    /**
+     * @return instances of the given instance group keyed by their id, or null if the instance group is not known. Two
+     * snapshots return the same map instance if the instance group members did not change between them.
+     */
+    Map<String, AgentInstance> getInstancesById(String instanceGroupId) {
+        InstanceGroupEntry entry = instanceGroupsById.get(instanceGroupId);
+        return entry == null ? null : entry.getInstances();
+    }
+
+    AgentDataSnapshot updateInstanceGroup(AgentInstanceGroup agentInstanceGroup) {
+        InstanceGroupEntry previous = instanceGroupsById.get(agentInstanceGroup.getId());
+        PersistentHashMap<String, AgentInstance> instances = previous == null ? PersistentHashMap.empty() : previous.getInstances();
+        return new AgentDataSnapshot(
+                instanceGroupsById.plus(agentInstanceGroup.getId(), new InstanceGroupEntry(agentInstanceGroup, instances)),
+                agentInstancesById
+        );
+    }
+
+    AgentDataSnapshot updateInstanceGroup(AgentInstanceGroup agentInstanceGroup, Collection<AgentInstance> agentInstances) {
+        String instanceGroupId = agentInstanceGroup.getId();
+        InstanceGroupEntry previous = instanceGroupsById.get(instanceGroupId);
+        PersistentHashMap<String, AgentInstance> previousInstances = previous == null ? PersistentHashMap.empty() : previous.getInstances();
+
+        PersistentHashMap<String, AgentInstance> newInstances = previousInstances;
+        PersistentHashMap<String, AgentInstance> newAgentInstancesById = agentInstancesById;
+        for (AgentInstance agentInstance : agentInstances) {
+            newInstances = newInstances.plus(agentInstance.getId(), agentInstance);
+            newAgentInstancesById = newAgentInstancesById.plus(agentInstance.getId(), agentInstance);
+        }
+        if (newInstances.size() != agentInstances.size()) {
+            // Some instances were removed from the instance group
+            Set<String> retainedIds = new HashSet<>();
+            agentInstances.forEach(agentInstance -> retainedIds.add(agentInstance.getId()));
+            for (String instanceId : previousInstances.keySet()) {
+                if (!retainedIds.contains(instanceId)) {
+                    newInstances = newInstances.minus(instanceId);
+                    newAgentInstancesById = removeFromIndex(newAgentInstancesById, instanceGroupId, instanceId);
+                }
+            }
+        }
+
+        return new AgentDataSnapshot(
+                instanceGroupsById.plus(instanceGroupId, new InstanceGroupEntry(agentInstanceGroup, newInstances)),
+                newAgentInstancesById
+        );
     }
 
     AgentDataSnapshot updateAgentInstance(AgentInstance agentInstance) {
         String instanceGroupId = agentInstance.getInstanceGroupId();
-        Pair<AgentInstanceGroup, Set<AgentInstance>> previous = instanceGroupsById.get(instanceGroupId);
+        InstanceGroupEntry previous = instanceGroupsById.get(instanceGroupId);
         if (previous == null) {
             return this;
         }
-        Set<AgentInstance> instanceSet = new TreeSet<>(AgentInstance.idComparator());
-        instanceSet.add(agentInstance);
-
-        Map<String, Pair<AgentInstanceGroup, Set<AgentInstance>>> newInstanceGroupsById = new HashMap<>(instanceGroupsById);
-        newInstanceGroupsById.put(instanceGroupId, Pair.of(previous.getLeft(), instanceSet));
-
-        return new AgentDataSnapshot(newInstanceGroupsById);
+        InstanceGroupEntry updated = previous.withInstances(previous.getInstances().plus(agentInstance.getId(), agentInstance));
+        if (updated == previous) {
+            return this;
+        }
+        return new AgentDataSnapshot(
+                instanceGroupsById.plus(instanceGroupId, updated),
+                agentInstancesById.plus(agentInstance.getId(), agentInstance)
+        );
     }
 
     AgentDataSnapshot removeInstanceGroup(String instanceGroupId) {
-        if (!instanceGroupsById.containsKey(instanceGroupId)) {
+        InstanceGroupEntry previous = instanceGroupsById.get(instanceGroupId);
+        if (previous == null) {
             return this;
         }
 
-        Map<String, Pair<AgentInstanceGroup, Set<AgentInstance>>> newInstanceGroupByIds = new HashMap<>(instanceGroupsById);
-        newInstanceGroupByIds.remove(instanceGroupId);
-
-        return new AgentDataSnapshot(newInstanceGroupByIds);
+        PersistentHashMap<String, AgentInstance> newAgentInstancesById = agentInstancesById;
+        for (String instanceId : previous.getInstances().keySet()) {
+            newAgentInstancesById = removeFromIndex(newAgentInstancesById, instanceGroupId, instanceId);
+        }
+        return new AgentDataSnapshot(instanceGroupsById.minus(instanceGroupId), newAgentInstancesById);
     }
 
     AgentDataSnapshot removeInstances(String instanceGroupId, Set<String> agentInstanceIds) {
-        Pair<AgentInstanceGroup, Set<AgentInstance>> existing = instanceGroupsById.get(instanceGroupId);
-        if (existing == null) {
+        InstanceGroupEntry previous = instanceGroupsById.get(instanceGroupId);
+        if (previous == null) {
             return this;
         }
 
-        Map<String, Pair<AgentInstanceGroup, Set<AgentInstance>>> newInstanceGroupsById = new HashMap<>(instanceGroupsById);
-        TreeSet<AgentInstance> newInstanceSet = new TreeSet<>(AgentInstance.idComparator());
-        existing.getRight().forEach(agentInstance -> {
-            if (!agentInstanceIds.contains(agentInstance.getId())) {
-                newInstanceSet.add(agentInstance);
+        PersistentHashMap<String, AgentInstance> newInstances = previous.getInstances();
+        PersistentHashMap<String, AgentInstance> newAgentInstancesById = agentInstancesById;
+        for (String instanceId : agentInstanceIds) {
+            if (newInstances.containsKey(instanceId)) {
+                newInstances = newInstances.minus(instanceId);
+                newAgentInstancesById = removeFromIndex(newAgentInstancesById, instanceGroupId, instanceId);
             }
-        });
-        newInstanceGroupsById.put(instanceGroupId, Pair.of(existing.getLeft(), newInstanceSet));
+        }
+        InstanceGroupEntry updated = previous.withInstances(newInstances);
+        if (updated == previous) {
+            return this;
+        }
+        return new AgentDataSnapshot(instanceGroupsById.plus(instanceGroupId, updated), newAgentInstancesById);
+    }
 
-        return new AgentDataSnapshot(newInstanceGroupsById);
+    /**
+     * Removes an instance from the global index, unless it has been moved in the meantime to another instance group.
+     */
+    private static PersistentHashMap<String, AgentInstance> removeFromIndex(PersistentHashMap<String, AgentInstance> index,
+                                                                            String instanceGroupId,
+                                                                            String instanceId) {
+        AgentInstance indexed = index.get(instanceId);
+        if (indexed != null && indexed.getInstanceGroupId().equals(instanceGroupId)) {
+            return index.minus(instanceId);
+        }
+        return index;
     }
 
     static AgentDataSnapshot initWithStaleDataSnapshot(List<AgentInstanceGroup> persistedInstanceGroups, List<AgentInstance> persistedInstances) {
-        Map<String, Set<AgentInstance>> instancesByInstanceGroup = persistedInstances.stream()
-                .collect(Collectors.groupingBy(AgentInstance::getInstanceGroupId, Collectors.toSet()));
+        Map<String, List<AgentInstance>> instancesByInstanceGroup = new HashMap<>();
+        persistedInstances.forEach(instance ->
+                instancesByInstanceGroup.computeIfAbsent(instance.getInstanceGroupId(), id -> new ArrayList<>()).add(instance)
+        );
+
+        AgentDataSnapshot snapshot = new AgentDataSnapshot();
+        for (AgentInstanceGroup instanceGroup : persistedInstanceGroups) {
+            List<AgentInstance> instances = instancesByInstanceGroup.getOrDefault(instanceGroup.getId(), Collections.emptyList());
+            snapshot = snapshot.updateInstanceGroup(instanceGroup, instances);
+        }
+        return snapshot;
+    }
+
+    private static final class InstanceGroupEntry {
 
-        Map<String, Pair<AgentInstanceGroup, Set<AgentInstance>>> instanceGroupsById = persistedInstanceGroups.stream()
-                .map(sg -> {
-                    Set<AgentInstance> instances = instancesByInstanceGroup.get(sg.getId());
-                    instances = instances == null ? Collections.emptySet() : instances;
-                    return Pair.of(sg, instances);
-                }).collect(Collectors.toMap(p -> p.getLeft().getId(), Function.identity()));
+        private final AgentInstanceGroup instanceGroup;
+        private final PersistentHashMap<String, AgentInstance> instances;
+        private final Set<AgentInstance> instanceSet;
 
+        private InstanceGroupEntry(AgentInstanceGroup instanceGroup, PersistentHashMap<String, AgentInstance> instances) {
+            this.instanceGroup = instanceGroup;
+            this.instances = instances;
+            this.instanceSet = new InstanceSet(instances);
+        }
+
+        private AgentInstanceGroup getInstanceGroup() {
+            return instanceGroup;
+        }
+
+        private PersistentHashMap<String, AgentInstance> getInstances() {
+            return instances;
+        }
+
+        private Set<AgentInstance> getInstanceSet() {
+            return instanceSet;
+        }
 
-        return new AgentDataSnapshot(instanceGroupsById);
+        private InstanceGroupEntry withInstances(PersistentHashMap<String, AgentInstance> newInstances) {
+            return newInstances == instances ? this : new InstanceGroupEntry(instanceGroup, newInstances);
+        }
+    }
+
+    /**
+     * Read only set view of instance group members.
+     */
+    private static final class InstanceSet extends AbstractSet<AgentInstance> {
+
+        private final PersistentHashMap<String, AgentInstance> instances;
+
+        private InstanceSet(PersistentHashMap<String, AgentInstance> instances) {
+            this.instances = instances;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof AgentInstance)) {
+                return false;
+            }
+            AgentInstance agentInstance = (AgentInstance) o;
+            return agentInstance.equals(instances.get(agentInstance.getId()));
+        }
+
+        @Override
+        public Iterator<AgentInstance> iterator() {
+            return Collections.unmodifiableCollection(instances.values()).iterator();
+        }
+
+        @Override
+        public int size() {
+            return instances.size();
+        }
     }
 }
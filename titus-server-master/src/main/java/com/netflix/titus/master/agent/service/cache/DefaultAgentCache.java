@@ -21,7 +21,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -157,7 +156,7 @@ public class DefaultAgentCache implements AgentCache {
                             onEventLoop(() -> updateOnInstanceGroupInstanceCacheEvent(event.getResourceId()));
                             break;
                         case Instance:
-                            // Ignore, as instance group, and its instances are refreshed at the same time
+                            onEventLoop(() -> updateOnInstanceInstanceCacheEvent(event.getResourceId()));
                             break;
                     }
                 },
@@ -199,11 +198,7 @@ public class DefaultAgentCache implements AgentCache {
     public Completable updateInstanceGroupStore(AgentInstanceGroup instanceGroup) {
         return onEventLoopWithSubscription(() -> {
             getInstanceGroup(instanceGroup.getId());
-            Set<AgentInstance> agentInstances = dataSnapshot.getInstances(instanceGroup.getId());
-            if (agentInstances == null) {
-                agentInstances = Collections.emptySet();
-            }
-            setDataSnapshot(dataSnapshot.updateInstanceGroup(instanceGroup, agentInstances));
+            setDataSnapshot(dataSnapshot.updateInstanceGroup(instanceGroup));
             eventSubject.onNext(new CacheUpdateEvent(CacheUpdateType.InstanceGroup, instanceGroup.getId()));
         }).concatWith(agentStore.storeAgentInstanceGroup(instanceGroup));
     }
@@ -224,9 +219,10 @@ public class DefaultAgentCache implements AgentCache {
 
     @Override
     public Completable removeInstances(String instanceGroupId, Set<String> agentInstanceIds) {
-        return onEventLoopWithSubscription(() ->
-                setDataSnapshot(dataSnapshot.removeInstances(instanceGroupId, agentInstanceIds))
-        ).concatWith(agentStore.storeAgentInstanceGroup(dataSnapshot.getInstanceGroup(instanceGroupId)));
+        return onEventLoopWithSubscription(() -> {
+            setDataSnapshot(dataSnapshot.removeInstances(instanceGroupId, agentInstanceIds));
+            instanceCache.resetRefreshPacing(instanceGroupId);
+        }).concatWith(agentStore.storeAgentInstanceGroup(dataSnapshot.getInstanceGroup(instanceGroupId)));
     }
 
     @Override
@@ -271,6 +267,33 @@ public class DefaultAgentCache implements AgentCache {
         }
     }
 
+    /**
+     * Applies a single instance change, without resynchronizing the whole instance group. The instance is removed from
+     * the cache if it is no longer present in {@link InstanceCache}.
+     */
+    private void updateOnInstanceInstanceCacheEvent(String instanceId) {
+        Instance instance = instanceCache.getAgentInstance(instanceId);
+        AgentInstance previous = dataSnapshot.getInstance(instanceId);
+
+        if (instance == null) {
+            if (previous != null) {
+                setDataSnapshot(dataSnapshot.removeInstances(previous.getInstanceGroupId(), Collections.singleton(instanceId)));
+                eventSubject.onNext(new CacheUpdateEvent(CacheUpdateType.Instance, instanceId));
+            }
+            return;
+        }
+
+        AgentInstance agentInstance = previous == null
+                ? DataConverters.toAgentInstance(instance)
+                : DataConverters.updateAgentInstance(previous, instance);
+        if (dataSnapshot.getInstanceGroup(agentInstance.getInstanceGroupId()) == null) {
+            // Instances of a new instance group are added when the instance group itself is synchronized
+            return;
+        }
+        setDataSnapshot(dataSnapshot.updateAgentInstance(agentInstance));
+        eventSubject.onNext(new CacheUpdateEvent(CacheUpdateType.Instance, instanceId));
+    }
+
     private void syncInstanceGroupWithInstanceCache(String instanceGroupId) {
         InstanceGroup instanceGroup = instanceCache.getInstanceGroup(instanceGroupId);
 
@@ -321,11 +344,9 @@ public class DefaultAgentCache implements AgentCache {
                     .filter(Objects::nonNull)
                     .collect(Collectors.toList());
         }
-        TreeSet<AgentInstance> agentInstanceSet = new TreeSet<>(AgentInstance.idComparator());
-        agentInstanceSet.addAll(agentInstances);
-        logger.debug("Creating new agent data snapshot for instance group: {} with instances: {}", instanceGroupId, agentInstanceSet);
+        logger.debug("Creating new agent data snapshot for instance group: {} with instances: {}", instanceGroupId, agentInstances);
 
-        setDataSnapshot(dataSnapshot.updateInstanceGroup(agentInstanceGroup, agentInstanceSet));
+        setDataSnapshot(dataSnapshot.updateInstanceGroup(agentInstanceGroup, agentInstances));
         eventSubject.onNext(new CacheUpdateEvent(CacheUpdateType.InstanceGroup, instanceGroupId));
     }
 
@@ -373,7 +394,8 @@ public class DefaultAgentCache implements AgentCache {
     }
 
     private void setDataSnapshot(AgentDataSnapshot dataSnapshot) {
+        AgentDataSnapshot previous = this.dataSnapshot;
         this.dataSnapshot = dataSnapshot;
-        metrics.refresh(dataSnapshot);
+        metrics.refresh(previous, dataSnapshot);
     }
 }
@@ -18,6 +18,7 @@ package com.netflix.titus.master.agent.service.cache;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -65,9 +66,15 @@ import static java.util.Collections.singletonList;
  * <h1>Periodic data refresh strategy</h1>
  * All data are refresh periodically:
  * <ul>
- * <li>Each known instance group (including instances) is refreshed every {@link AgentManagementConfiguration#getCacheRefreshIntervalMs()}</li>
+ * <li>Each known instance group (including instances) is refreshed every {@link AgentManagementConfiguration#getCacheRefreshIntervalMs()},
+ * or less frequently if it does not change (see {@link InstanceGroupRefreshPacer})</li>
  * <li>List of known instance groups is refreshed every {@link AgentManagementConfiguration#getFullCacheRefreshIntervalMs()} ()}</li>
  * </ul>
+ * <h1>Update events</h1>
+ * Refreshed data are compared with the current cache state, and only the differences are reported. A new, removed
+ * or modified instance group is reported with a {@link CacheUpdateType#InstanceGroup} event. If only instances of an
+ * instance group changed, a {@link CacheUpdateType#Instance} event is emitted for each added, modified or removed instance.
+ * Refreshes that find no changes emit no events.
  */
 class InstanceCache {
 
@@ -84,6 +91,7 @@ class InstanceCache {
     private final InstanceCloudConnector connector;
     private final Registry registry;
     private final InstrumentedEventLoop eventLoop;
+    private final InstanceGroupRefreshPacer refreshPacer;
 
     private volatile InstanceCacheDataSnapshot cacheSnapshot;
 
@@ -105,6 +113,7 @@ class InstanceCache {
         this.registry = registry;
         this.cacheSnapshot = InstanceCacheDataSnapshot.empty();
         this.eventLoop = ObservableExt.createEventLoop(METRIC_AGENT_CACHE + "eventLoop", registry, scheduler);
+        this.refreshPacer = new InstanceGroupRefreshPacer(configuration, scheduler);
 
         List<Tag> tags = Collections.singletonList(new BasicTag("class", InstanceCache.class.getSimpleName()));
         fullInstanceGroupRefreshMetricsTransformer = continuousSubscriptionMetrics(METRIC_AGENT_CACHE + "fullInstanceGroupRefresh", tags, registry);
@@ -163,15 +172,24 @@ class InstanceCache {
 
     /**
      * Trigger refresh request, but without returning {@link Completable} to the caller. Instead subscribe eagerly.
-     * If refresh fails, it will eventually succeed on its regular update cycle.
+     * If refresh fails, it will eventually succeed on its regular update cycle. The instance group refresh pacing is
+     * reset, so the follow-up changes made by the cloud provider are picked up at the base refresh interval.
      */
     void refreshInstanceGroup(String instanceGroupId) {
         InstanceGroup instanceGroup = cacheSnapshot.getInstanceGroup(instanceGroupId);
         if (instanceGroup != null) {
+            refreshPacer.reset(instanceGroupId);
             doInstanceGroupRefresh(instanceGroup).subscribe();
         }
     }
 
+    /**
+     * Called when Titus changes an instance group, to refresh it at the base refresh interval again.
+     */
+    void resetRefreshPacing(String instanceGroupId) {
+        refreshPacer.reset(instanceGroupId);
+    }
+
     Observable<CacheUpdateEvent> events() {
         return eventSubject;
     }
@@ -262,6 +280,7 @@ class InstanceCache {
 
     private Completable doInstanceGroupRefresh() {
         return ObservableExt.fromCallable(() -> cacheSnapshot.getInstanceGroups())
+                .filter(instanceGroup -> refreshPacer.isRefreshDue(instanceGroup.getId()))
                 .flatMap(instanceGroup -> doInstanceGroupRefresh(instanceGroup).toObservable())
                 .toCompletable();
     }
@@ -317,34 +336,51 @@ class InstanceCache {
         if (oldInstanceGroup == null) {
             this.cacheSnapshot = cacheSnapshot.updateInstanceGroup(updatedInstanceGroup);
             this.cacheSnapshot = cacheSnapshot.updateInstances(updatedInstances);
+            refreshPacer.onRefreshed(instanceGroupId, true);
             eventSubject.onNext(new CacheUpdateEvent(CacheUpdateType.InstanceGroup, instanceGroupId));
             return;
         }
 
         InstanceGroup effectiveInstanceGroup = decorate(updatedInstanceGroup, oldInstanceGroup);
-        boolean instanceGroupChanged = !oldInstanceGroup.equals(effectiveInstanceGroup);
-        boolean instancesChanged = oldInstanceGroup.getInstanceIds().size() != updatedInstanceGroup.getInstanceIds().size();
-
-        if (!instancesChanged) {
-            for (Instance newInstance : updatedInstances) {
-                Instance oldInstance = cacheSnapshot.getAgentInstance(newInstance.getId());
-                if (oldInstance == null || !oldInstance.equals(newInstance)) {
-                    instancesChanged = true;
-                    break;
-                }
+
+        // Instance membership changes are reported as instance events, so they are not included in the instance group comparison.
+        boolean instanceGroupChanged = !oldInstanceGroup.equals(
+                effectiveInstanceGroup.toBuilder().withInstanceIds(oldInstanceGroup.getInstanceIds()).build()
+        );
+        boolean membershipChanged = !oldInstanceGroup.getInstanceIds().equals(effectiveInstanceGroup.getInstanceIds());
+
+        List<Instance> changedInstances = new ArrayList<>();
+        Set<String> updatedInstanceIds = new HashSet<>();
+        for (Instance newInstance : updatedInstances) {
+            updatedInstanceIds.add(newInstance.getId());
+            Instance oldInstance = cacheSnapshot.getAgentInstance(newInstance.getId());
+            if (oldInstance == null || !oldInstance.equals(newInstance)) {
+                changedInstances.add(newInstance);
             }
         }
+        List<String> removedInstanceIds = oldInstanceGroup.getInstanceIds().stream()
+                .filter(id -> !updatedInstanceIds.contains(id))
+                .collect(Collectors.toList());
 
-        if (instanceGroupChanged) {
-            logger.info("Refreshed cache state due to instance group: {} update", instanceGroupId);
+        boolean instancesChanged = !changedInstances.isEmpty() || !removedInstanceIds.isEmpty();
+        refreshPacer.onRefreshed(instanceGroupId, instanceGroupChanged || membershipChanged || instancesChanged);
+
+        if (instanceGroupChanged || membershipChanged) {
             this.cacheSnapshot = cacheSnapshot.updateInstanceGroup(effectiveInstanceGroup);
         }
         if (instancesChanged) {
-            logger.info("Refreshed cache state due to instance count/state update in instance group: {}", instanceGroupId);
-            this.cacheSnapshot = cacheSnapshot.updateInstances(updatedInstances);
+            logger.info("Refreshed cache state due to instance update in instance group: {} (changed={}, removed={})",
+                    instanceGroupId, changedInstances.size(), removedInstanceIds.size());
+            this.cacheSnapshot = cacheSnapshot.updateInstances(changedInstances).removeInstances(removedInstanceIds);
         }
-        if (instanceGroupChanged || instancesChanged) {
+
+        if (instanceGroupChanged) {
+            // Instance group update event triggers full instance group resynchronization, including its instances
+            logger.info("Refreshed cache state due to instance group: {} update", instanceGroupId);
             eventSubject.onNext(new CacheUpdateEvent(CacheUpdateType.InstanceGroup, instanceGroupId));
+        } else {
+            changedInstances.forEach(instance -> eventSubject.onNext(new CacheUpdateEvent(CacheUpdateType.Instance, instance.getId())));
+            removedInstanceIds.forEach(instanceId -> eventSubject.onNext(new CacheUpdateEvent(CacheUpdateType.Instance, instanceId)));
         }
     }
 
@@ -368,6 +404,7 @@ class InstanceCache {
 
     private void removeInstanceGroup(String removedInstanceGroupId) {
         this.cacheSnapshot = cacheSnapshot.removeInstanceGroup(removedInstanceGroupId);
+        refreshPacer.remove(removedInstanceGroupId);
         eventSubject.onNext(new CacheUpdateEvent(CacheUpdateType.InstanceGroup, removedInstanceGroupId));
         ContinuousSubscriptionMetrics transformer = instanceGroupRefreshMetricsTransformers.remove(removedInstanceGroupId);
         if (transformer != null) {
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.agent.service.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.netflix.titus.master.agent.service.AgentManagementConfiguration;
+import rx.Scheduler;
+
+/**
+ * Adapts the refresh frequency of each instance group to its observed change rate. An instance group which changed
+ * during its last refresh is refreshed again after {@link AgentManagementConfiguration#getCacheRefreshIntervalMs()}.
+ * Each refresh which finds no changes doubles the interval, up to {@link AgentManagementConfiguration#getMaxCacheRefreshIntervalMs()}.
+ * The interval is also reset to the base value when Titus itself changes the instance group (see {@link #reset(String)}),
+ * as the cloud provider applies the change some time later.
+ */
+class InstanceGroupRefreshPacer {
+
+    private final AgentManagementConfiguration configuration;
+    private final Scheduler scheduler;
+
+    private final ConcurrentMap<String, RefreshState> refreshStates = new ConcurrentHashMap<>();
+
+    InstanceGroupRefreshPacer(AgentManagementConfiguration configuration, Scheduler scheduler) {
+        this.configuration = configuration;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Refresh cycles are triggered every {@link AgentManagementConfiguration#getCacheRefreshIntervalMs()}, and an instance
+     * group refresh completes some time after the cycle start. To not skip a cycle because of that delay, an instance group
+     * is considered due if its next refresh time falls within the first half of the current cycle.
+     */
+    boolean isRefreshDue(String instanceGroupId) {
+        RefreshState state = refreshStates.get(instanceGroupId);
+        if (state == null) {
+            return true;
+        }
+        return scheduler.now() + configuration.getCacheRefreshIntervalMs() / 2 >= state.getNextRefreshTimestamp();
+    }
+
+    void onRefreshed(String instanceGroupId, boolean changed) {
+        long baseIntervalMs = configuration.getCacheRefreshIntervalMs();
+        long maxIntervalMs = Math.max(baseIntervalMs, configuration.getMaxCacheRefreshIntervalMs());
+        long now = scheduler.now();
+
+        refreshStates.compute(instanceGroupId, (id, previous) -> {
+            long intervalMs = changed || previous == null
+                    ? baseIntervalMs
+                    : Math.min(maxIntervalMs, previous.getIntervalMs() * 2);
+            return new RefreshState(intervalMs, now + intervalMs);
+        });
+    }
+
+    /**
+     * Makes the instance group due for refresh, and restarts its refresh interval from the base value.
+     */
+    void reset(String instanceGroupId) {
+        refreshStates.remove(instanceGroupId);
+    }
+
+    void remove(String instanceGroupId) {
+        refreshStates.remove(instanceGroupId);
+    }
+
+    private static class RefreshState {
+
+        private final long intervalMs;
+        private final long nextRefreshTimestamp;
+
+        private RefreshState(long intervalMs, long nextRefreshTimestamp) {
+            this.intervalMs = intervalMs;
+            this.nextRefreshTimestamp = nextRefreshTimestamp;
+        }
+
+        private long getIntervalMs() {
+            return intervalMs;
+        }
+
+        private long getNextRefreshTimestamp() {
+            return nextRefreshTimestamp;
+        }
+    }
+}
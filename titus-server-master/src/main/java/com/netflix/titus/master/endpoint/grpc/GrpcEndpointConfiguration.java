@@ -62,4 +62,42 @@ public interface GrpcEndpointConfiguration {
      */
     @DefaultValue("false")
     boolean isJobSizeValidationEnabled();
+
+    /**
+     * If enabled, observeJobs and observeJob events are sent to the client respecting the gRPC flow control, and the
+     * live events not yet sent are bounded (see {@link #getEventStreamBufferSize()}). If disabled, events are written to
+     * the client as they are emitted, and buffered by the gRPC transport without a bound.
+     */
+    @DefaultValue("false")
+    boolean isEventStreamFlowControlEnabled();
+
+    /**
+     * Maximum number of live events (following the initial snapshot) buffered for a job event stream client, which
+     * cannot keep up with the event rate. The snapshot itself is not counted.
+     */
+    @DefaultValue("100000")
+    int getEventStreamBufferSize();
+
+    /**
+     * Action taken when a job event stream buffer overflows. One of 'conflate' (merge buffered updates of the same
+     * job or task, and disconnect if still overflowing), 'resnapshot' (drop the buffered events and disconnect
+     * with the retryable UNAVAILABLE status, so the client reconnects for a new snapshot), or 'disconnect'.
+     */
+    @DefaultValue("conflate")
+    String getEventStreamSlowConsumerPolicy();
+
+    /**
+     * If enabled, V3 jobs and tasks are kept in memory as pre-built job change notifications, updated from the job
+     * event stream. New observeJobs subscribers get the snapshot from this cache, instead of converting all jobs and
+     * tasks on each subscription.
+     */
+    @DefaultValue("false")
+    boolean isJobsSnapshotCacheEnabled();
+
+    /**
+     * Maximum total serialized size of the cached gRPC job and task objects, converted from the core model. If zero,
+     * each job and task is converted on every request.
+     */
+    @DefaultValue("0")
+    long getGrpcModelConverterCacheMaxSizeBytes();
 }
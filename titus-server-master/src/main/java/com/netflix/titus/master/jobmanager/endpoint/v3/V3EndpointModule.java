@@ -73,8 +73,9 @@ public class V3EndpointModule extends AbstractModule {
                                                        JobSubmitLimiter jobSubmitLimiter,
                                                        LogStorageInfo<Task> v3LogStorage,
                                                        @Named(JOB_STRICT_SANITIZER) EntitySanitizer entitySanitizer,
+                                                       GrpcEndpointConfiguration configuration,
                                                        TitusRuntime titusRuntime) {
-        return new V3GrpcTitusServiceGateway(jobOperations, jobSubmitLimiter, v3LogStorage, entitySanitizer, titusRuntime);
+        return new V3GrpcTitusServiceGateway(jobOperations, jobSubmitLimiter, v3LogStorage, entitySanitizer, configuration, titusRuntime);
     }
 
     @Provides
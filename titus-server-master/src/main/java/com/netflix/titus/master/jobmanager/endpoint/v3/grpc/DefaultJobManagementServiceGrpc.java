@@ -22,11 +22,13 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import com.google.protobuf.Empty;
+import com.netflix.spectator.api.Registry;
 import com.netflix.titus.api.model.Pagination;
 import com.netflix.titus.api.service.TitusServiceException;
 import com.netflix.titus.common.util.ProtobufCopy;
@@ -52,6 +54,8 @@ import com.netflix.titus.grpc.protogen.TaskQuery;
 import com.netflix.titus.grpc.protogen.TaskQueryResult;
 import com.netflix.titus.grpc.protogen.TaskStatus;
 import com.netflix.titus.master.endpoint.TitusServiceGateway;
+import com.netflix.titus.master.endpoint.grpc.GrpcEndpointConfiguration;
+import com.netflix.titus.master.jobmanager.endpoint.v3.grpc.FlowControlledJobEventStream.SlowConsumerPolicy;
 import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
 import com.netflix.titus.runtime.endpoint.metadata.CallMetadata;
 import com.netflix.titus.runtime.endpoint.metadata.CallMetadataResolver;
@@ -81,12 +85,18 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
 
     private final TitusServiceGateway<String, JobDescriptor, JobSpecCase, Job, Task, TaskStatus.TaskState> serviceGateway;
     private final CallMetadataResolver callMetadataResolver;
+    private final GrpcEndpointConfiguration configuration;
+    private final Registry registry;
 
     @Inject
     public DefaultJobManagementServiceGrpc(TitusServiceGateway<String, JobDescriptor, JobSpecCase, Job, Task, TaskStatus.TaskState> serviceGateway,
-                                           CallMetadataResolver callMetadataResolver) {
+                                           CallMetadataResolver callMetadataResolver,
+                                           GrpcEndpointConfiguration configuration,
+                                           Registry registry) {
         this.serviceGateway = serviceGateway;
         this.callMetadataResolver = callMetadataResolver;
+        this.configuration = configuration;
+        this.registry = registry;
     }
 
     @Override
@@ -257,37 +267,42 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
 
     @Override
     public void observeJobs(Empty request, StreamObserver<JobChangeNotification> responseObserver) {
-        Observable<JobChangeNotification> eventStream = serviceGateway.observeJobs();
-        Subscription subscription = eventStream.subscribe(
-                responseObserver::onNext,
-                e -> responseObserver.onError(
-                        new StatusRuntimeException(Status.INTERNAL
-                                .withDescription("All jobs monitoring stream terminated with an error")
-                                .withCause(e))
-                ),
-                responseObserver::onCompleted
-        );
-
-        ServerCallStreamObserver<JobChangeNotification> serverObserver = (ServerCallStreamObserver<JobChangeNotification>) responseObserver;
-        serverObserver.setOnCancelHandler(subscription::unsubscribe);
+        startEventStream("observeJobs", "All jobs monitoring", serviceGateway::observeJobs, responseObserver);
     }
 
     @Override
     public void observeJob(JobId request, StreamObserver<JobChangeNotification> responseObserver) {
         String id = request.getId();
-        Observable<JobChangeNotification> eventStream = serviceGateway.observeJob(id);
-        Subscription subscription = eventStream.subscribe(
-                responseObserver::onNext,
-                e -> responseObserver.onError(
-                        new StatusRuntimeException(Status.INTERNAL
-                                .withDescription(id + " job monitoring stream terminated with an error")
-                                .withCause(e))
-                ),
-                responseObserver::onCompleted
-        );
+        startEventStream("observeJob", id + " job monitoring", () -> serviceGateway.observeJob(id), responseObserver);
+    }
 
+    private void startEventStream(String streamType,
+                                  String streamName,
+                                  Supplier<Observable<JobChangeNotification>> eventStreamFactory,
+                                  StreamObserver<JobChangeNotification> responseObserver) {
         ServerCallStreamObserver<JobChangeNotification> serverObserver = (ServerCallStreamObserver<JobChangeNotification>) responseObserver;
-        serverObserver.setOnCancelHandler(subscription::unsubscribe);
+        if (!configuration.isEventStreamFlowControlEnabled()) {
+            Subscription subscription = eventStreamFactory.get().subscribe(
+                    responseObserver::onNext,
+                    e -> responseObserver.onError(
+                            new StatusRuntimeException(Status.INTERNAL
+                                    .withDescription(streamName + " stream terminated with an error")
+                                    .withCause(e))
+                    ),
+                    responseObserver::onCompleted
+            );
+            serverObserver.setOnCancelHandler(subscription::unsubscribe);
+            return;
+        }
+        FlowControlledJobEventStream.start(
+                streamType,
+                streamName,
+                eventStreamFactory,
+                serverObserver,
+                configuration.getEventStreamBufferSize(),
+                SlowConsumerPolicy.parse(configuration.getEventStreamSlowConsumerPolicy()),
+                registry
+        );
     }
 
     /**
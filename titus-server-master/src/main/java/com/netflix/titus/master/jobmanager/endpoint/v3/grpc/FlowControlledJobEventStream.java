@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.netflix.spectator.api.DistributionSummary;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.master.MetricConstants;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Subscription;
+
+/**
+ * Sends job events to a gRPC client, respecting the gRPC flow control. Events are written to the client only when
+ * the transport is ready ({@link ServerCallStreamObserver#isReady()}), and are kept in a buffer otherwise.
+ * The snapshot (all events up to and including the snapshot end marker) is emitted by the event stream synchronously
+ * on subscription, so it is queued as a whole, and is not counted against the buffer size. Only the live events
+ * that follow it are bounded. When the live event buffer is full, the configured {@link SlowConsumerPolicy} is applied.
+ */
+class FlowControlledJobEventStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlowControlledJobEventStream.class);
+
+    private static final String METRIC_ROOT = MetricConstants.METRIC_ROOT + "jobManager.grpc.eventStream.";
+
+    enum SlowConsumerPolicy {
+        /**
+         * A buffered update of a job or task is dropped when a newer update of the same entity arrives, and the newer
+         * one is queued at the tail, keeping the event order of the source. The buffer overflows only if
+         * the number of distinct entities with pending updates exceeds its size, in which case the client
+         * is disconnected.
+         */
+        Conflate,
+
+        /**
+         * On overflow the buffered events are dropped, and the client is disconnected with the retryable UNAVAILABLE
+         * status, so it reconnects and receives a new snapshot. The snapshot is not re-sent on the same call, as the
+         * client would have no signal to drop the state built from the previous one.
+         */
+        Resnapshot,
+
+        /**
+         * On overflow the client is disconnected with the RESOURCE_EXHAUSTED status.
+         */
+        Disconnect;
+
+        static SlowConsumerPolicy parse(String value) {
+            for (SlowConsumerPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(value)) {
+                    return policy;
+                }
+            }
+            logger.warn("Unknown slow consumer policy {}; using {}", value, Conflate);
+            return Conflate;
+        }
+    }
+
+    private final String streamType;
+    private final String streamName;
+    private final Supplier<Observable<JobChangeNotification>> eventStreamFactory;
+    private final ServerCallStreamObserver<JobChangeNotification> responseObserver;
+    private final int bufferSize;
+    private final SlowConsumerPolicy policy;
+
+    private final Registry registry;
+    private final DistributionSummary bufferDepthSummary;
+
+    private final Object lock = new Object();
+    private final Deque<JobChangeNotification> snapshot = new ArrayDeque<>();
+    private final Map<Object, JobChangeNotification> buffer = new LinkedHashMap<>();
+    private boolean snapshotEndReceived;
+    private long sequence;
+    private long generation;
+    private Subscription subscription;
+    private boolean eventStreamCompleted;
+    private boolean terminated;
+
+    private FlowControlledJobEventStream(String streamType,
+                                         String streamName,
+                                         Supplier<Observable<JobChangeNotification>> eventStreamFactory,
+                                         ServerCallStreamObserver<JobChangeNotification> responseObserver,
+                                         int bufferSize,
+                                         SlowConsumerPolicy policy,
+                                         Registry registry) {
+        this.streamType = streamType;
+        this.streamName = streamName;
+        this.eventStreamFactory = eventStreamFactory;
+        this.responseObserver = responseObserver;
+        this.bufferSize = bufferSize;
+        this.policy = policy;
+        this.registry = registry;
+        this.bufferDepthSummary = registry.distributionSummary(METRIC_ROOT + "bufferDepth", "stream", streamType);
+    }
+
+    /**
+     * Subscribes to the event stream, and sends its events to the client until either side terminates. Must be
+     * called from the gRPC service method, as the ready handler can only be registered there.
+     *
+     * @param streamType a fixed stream type name (the gRPC method name), used to tag the metrics
+     * @param streamName a stream description, which may include request parameters, used in the log and error messages
+     */
+    static void start(String streamType,
+                      String streamName,
+                      Supplier<Observable<JobChangeNotification>> eventStreamFactory,
+                      ServerCallStreamObserver<JobChangeNotification> responseObserver,
+                      int bufferSize,
+                      SlowConsumerPolicy policy,
+                      Registry registry) {
+        FlowControlledJobEventStream stream = new FlowControlledJobEventStream(streamType, streamName, eventStreamFactory, responseObserver, bufferSize, policy, registry);
+        responseObserver.setOnReadyHandler(stream::drain);
+        responseObserver.setOnCancelHandler(stream::cancel);
+        synchronized (stream.lock) {
+            stream.subscribe();
+        }
+    }
+
+    private void subscribe() {
+        long subscriptionGeneration = ++generation;
+        Subscription newSubscription = eventStreamFactory.get().subscribe(
+                event -> onEvent(subscriptionGeneration, event),
+                error -> onError(subscriptionGeneration, error),
+                () -> onCompleted(subscriptionGeneration)
+        );
+        if (subscriptionGeneration == generation) {
+            subscription = newSubscription;
+        } else {
+            // Terminated or cancelled while subscribing
+            newSubscription.unsubscribe();
+        }
+    }
+
+    private void onEvent(long subscriptionGeneration, JobChangeNotification event) {
+        synchronized (lock) {
+            if (subscriptionGeneration != generation) {
+                return;
+            }
+            if (!snapshotEndReceived) {
+                snapshot.add(event);
+                snapshotEndReceived = event.getNotificationCase() == JobChangeNotification.NotificationCase.SNAPSHOTEND;
+                drainLocked();
+                return;
+            }
+            Object key = policy == SlowConsumerPolicy.Conflate ? entityKeyOf(event) : sequence++;
+            // A conflated event is moved to the tail, so the buffered events keep the order of their latest updates,
+            // and a job update is never sent ahead of the updates of its tasks emitted before it
+            buffer.remove(key);
+            buffer.put(key, event);
+            bufferDepthSummary.record(buffer.size());
+            if (buffer.size() > bufferSize) {
+                onOverflow();
+            } else {
+                drainLocked();
+            }
+        }
+    }
+
+    private void onError(long subscriptionGeneration, Throwable error) {
+        synchronized (lock) {
+            if (subscriptionGeneration != generation) {
+                return;
+            }
+            terminate();
+            responseObserver.onError(new StatusRuntimeException(Status.INTERNAL
+                    .withDescription(streamName + " stream terminated with an error")
+                    .withCause(error))
+            );
+        }
+    }
+
+    private void onCompleted(long subscriptionGeneration) {
+        synchronized (lock) {
+            if (subscriptionGeneration != generation) {
+                return;
+            }
+            eventStreamCompleted = true;
+            drainLocked();
+        }
+    }
+
+    private void onOverflow() {
+        registry.counter(METRIC_ROOT + "overflows", "stream", streamType, "policy", policy.name()).increment();
+        if (policy == SlowConsumerPolicy.Resnapshot) {
+            logger.info("{} stream buffer overflow (size={}); dropping buffered events, and asking the client to reconnect", streamName, bufferSize);
+            terminate();
+            responseObserver.onError(new StatusRuntimeException(Status.UNAVAILABLE
+                    .withDescription(streamName + " stream client too slow; buffer size " + bufferSize + " exceeded. Reconnect to receive a new snapshot"))
+            );
+            return;
+        }
+        logger.info("{} stream buffer overflow (size={}); disconnecting the client", streamName, bufferSize);
+        terminate();
+        responseObserver.onError(new StatusRuntimeException(Status.RESOURCE_EXHAUSTED
+                .withDescription(streamName + " stream client too slow; buffer size " + bufferSize + " exceeded"))
+        );
+    }
+
+    private void drain() {
+        synchronized (lock) {
+            drainLocked();
+        }
+    }
+
+    private void drainLocked() {
+        if (terminated) {
+            return;
+        }
+        while (!snapshot.isEmpty() && responseObserver.isReady()) {
+            responseObserver.onNext(snapshot.poll());
+        }
+        if (!snapshot.isEmpty()) {
+            return;
+        }
+        Iterator<JobChangeNotification> it = buffer.values().iterator();
+        while (it.hasNext() && responseObserver.isReady()) {
+            JobChangeNotification event = it.next();
+            it.remove();
+            responseObserver.onNext(event);
+        }
+        if (!buffer.isEmpty()) {
+            return;
+        }
+        if (eventStreamCompleted) {
+            terminate();
+            responseObserver.onCompleted();
+        }
+    }
+
+    private void cancel() {
+        synchronized (lock) {
+            terminate();
+        }
+    }
+
+    private void terminate() {
+        terminated = true;
+        generation++;
+        snapshot.clear();
+        buffer.clear();
+        if (subscription != null) {
+            subscription.unsubscribe();
+            subscription = null;
+        }
+    }
+
+    private Object entityKeyOf(JobChangeNotification event) {
+        switch (event.getNotificationCase()) {
+            case JOBUPDATE:
+                return "job:" + event.getJobUpdate().getJob().getId();
+            case TASKUPDATE:
+                return "task:" + event.getTaskUpdate().getTask().getId();
+            default:
+                // Snapshot markers are never merged
+                return sequence++;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc.gateway;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Gauge;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.JobState;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.event.JobManagerEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.JobUpdateEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.TaskUpdateEvent;
+import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.master.MetricConstants;
+import com.netflix.titus.runtime.endpoint.v3.grpc.GrpcModelConverterCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Emitter;
+import rx.Observable;
+import rx.Subscription;
+
+import static com.netflix.titus.master.jobmanager.endpoint.v3.grpc.gateway.V3GrpcTitusServiceGateway.SNAPSHOT_END_MARKER;
+
+/**
+ * Keeps the {@link JobChangeNotification}s of all active V3 jobs and tasks, updated incrementally from the job
+ * event stream. Each job event is converted to its protobuf form once, and the converted notification is shared
+ * by all subscribers. A new subscriber receives the cached snapshot, without converting the whole job/task set.
+ * Finished tasks are kept until their job finishes, as the job manager keeps them in the snapshot of an active job.
+ * <p>
+ * The cache is initialized by the first subscriber (the job manager is not available before the leader is
+ * activated), and is reset if the job event stream terminates.
+ */
+class JobChangeNotificationSnapshotCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobChangeNotificationSnapshotCache.class);
+
+    private static final String METRIC_ROOT = MetricConstants.METRIC_ROOT + "jobManager.grpc.snapshotCache.";
+
+    private final V3JobOperations jobOperations;
+    private final GrpcModelConverterCache converterCache;
+
+    private final Counter initializationsCounter;
+    private final Counter snapshotsCounter;
+    private final Gauge jobsGauge;
+    private final Gauge tasksGauge;
+
+    private final Object lock = new Object();
+    private final Map<String, JobChangeNotification> jobs = new LinkedHashMap<>();
+    private final Map<String, JobChangeNotification> tasks = new LinkedHashMap<>();
+    private final Map<String, Set<String>> jobTaskIds = new HashMap<>();
+    private final List<Emitter<JobChangeNotification>> subscribers = new ArrayList<>();
+
+    private long generation;
+    private Subscription eventSubscription;
+
+    JobChangeNotificationSnapshotCache(V3JobOperations jobOperations, GrpcModelConverterCache converterCache, Registry registry) {
+        this.jobOperations = jobOperations;
+        this.converterCache = converterCache;
+        this.initializationsCounter = registry.counter(METRIC_ROOT + "initializations");
+        this.snapshotsCounter = registry.counter(METRIC_ROOT + "snapshots");
+        this.jobsGauge = registry.gauge(METRIC_ROOT + "jobs");
+        this.tasksGauge = registry.gauge(METRIC_ROOT + "tasks");
+    }
+
+    /**
+     * Emits the snapshot of all active jobs and tasks followed by the snapshot end marker, and the live updates.
+     */
+    Observable<JobChangeNotification> observeJobs() {
+        return Observable.create(emitter -> {
+            // The cancellation is registered first, so a subscriber which goes away while being added is removed
+            AtomicBoolean cancelled = new AtomicBoolean();
+            emitter.setCancellation(() -> {
+                cancelled.set(true);
+                synchronized (lock) {
+                    subscribers.remove(emitter);
+                }
+            });
+            synchronized (lock) {
+                if (cancelled.get()) {
+                    return;
+                }
+                if (eventSubscription == null) {
+                    initialize();
+                }
+                snapshotsCounter.increment();
+                jobs.values().forEach(emitter::onNext);
+                tasks.values().forEach(emitter::onNext);
+                emitter.onNext(SNAPSHOT_END_MARKER);
+                subscribers.add(emitter);
+            }
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    private void initialize() {
+        long initializationGeneration = ++generation;
+        initializationsCounter.increment();
+
+        // Events emitted while the snapshot is built wait for the lock, and are applied on top of it
+        eventSubscription = jobOperations.observeJobs().subscribe(
+                event -> onEvent(initializationGeneration, event),
+                error -> onTerminated(initializationGeneration, error),
+                () -> onTerminated(initializationGeneration, new IllegalStateException("Job event stream completed"))
+        );
+        for (Job<?> job : jobOperations.getJobs()) {
+            jobs.put(job.getId(), toJobChangeNotification(job));
+        }
+        for (Task task : jobOperations.getTasks()) {
+            putTask(task, toJobChangeNotification(task));
+        }
+        updateGauges();
+    }
+
+    private void onEvent(long eventGeneration, JobManagerEvent<?> event) {
+        JobChangeNotification notification = converterCache.toGrpcJobChangeNotification(event);
+        synchronized (lock) {
+            if (eventGeneration != generation) {
+                return;
+            }
+            if (event instanceof JobUpdateEvent) {
+                Job<?> job = ((JobUpdateEvent) event).getCurrent();
+                if (job.getStatus().getState() == JobState.Finished) {
+                    jobs.remove(job.getId());
+                    Set<String> taskIds = jobTaskIds.remove(job.getId());
+                    if (taskIds != null) {
+                        taskIds.forEach(tasks::remove);
+                    }
+                } else {
+                    jobs.put(job.getId(), notification);
+                }
+            } else if (event instanceof TaskUpdateEvent) {
+                putTask(((TaskUpdateEvent) event).getCurrent(), notification);
+            }
+            updateGauges();
+            subscribers.forEach(subscriber -> subscriber.onNext(notification));
+        }
+    }
+
+    private void onTerminated(long eventGeneration, Throwable error) {
+        List<Emitter<JobChangeNotification>> terminatedSubscribers;
+        synchronized (lock) {
+            if (eventGeneration != generation) {
+                return;
+            }
+            logger.warn("Job event stream terminated; resetting the snapshot cache: {}", error.getMessage());
+            terminatedSubscribers = new ArrayList<>(subscribers);
+            generation++;
+            eventSubscription = null;
+            jobs.clear();
+            tasks.clear();
+            jobTaskIds.clear();
+            subscribers.clear();
+            updateGauges();
+        }
+        terminatedSubscribers.forEach(subscriber -> subscriber.onError(error));
+    }
+
+    private void putTask(Task task, JobChangeNotification notification) {
+        tasks.put(task.getId(), notification);
+        jobTaskIds.computeIfAbsent(task.getJobId(), id -> new HashSet<>()).add(task.getId());
+    }
+
+    private JobChangeNotification toJobChangeNotification(Job<?> job) {
+        return JobChangeNotification.newBuilder()
+                .setJobUpdate(JobChangeNotification.JobUpdate.newBuilder().setJob(converterCache.toGrpcJob(job)))
+                .build();
+    }
+
+    private JobChangeNotification toJobChangeNotification(Task task) {
+        return JobChangeNotification.newBuilder()
+                .setTaskUpdate(JobChangeNotification.TaskUpdate.newBuilder().setTask(converterCache.toGrpcTask(task)))
+                .build();
+    }
+
+    private void updateGauges() {
+        jobsGauge.set(jobs.size());
+        tasksGauge.set(tasks.size());
+    }
+}
@@ -43,10 +43,13 @@ import com.netflix.titus.grpc.protogen.Job;
 import com.netflix.titus.grpc.protogen.JobChangeNotification;
 import com.netflix.titus.grpc.protogen.JobDescriptor;
 import com.netflix.titus.grpc.protogen.TaskStatus;
+import com.netflix.titus.master.MetricConstants;
 import com.netflix.titus.master.endpoint.common.TaskSummary;
+import com.netflix.titus.master.endpoint.grpc.GrpcEndpointConfiguration;
 import com.netflix.titus.master.jobmanager.service.limiter.JobSubmitLimiter;
 import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
 import com.netflix.titus.runtime.endpoint.common.LogStorageInfo;
+import com.netflix.titus.runtime.endpoint.v3.grpc.GrpcModelConverterCache;
 import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
 import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3JobQueryCriteriaEvaluator;
 import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3TaskQueryCriteriaEvaluator;
@@ -69,21 +72,28 @@ public class V3GrpcTitusServiceGateway implements GrpcTitusServiceGateway {
 
     private final V3JobOperations jobOperations;
     private final JobSubmitLimiter jobSubmitLimiter;
-    private final LogStorageInfo<Task> logStorageInfo;
     private final EntitySanitizer entitySanitizer;
     private final TitusRuntime titusRuntime;
+    private final GrpcModelConverterCache converterCache;
+    private final JobChangeNotificationSnapshotCache snapshotCache;
 
     @Inject
     public V3GrpcTitusServiceGateway(V3JobOperations jobOperations,
                                      JobSubmitLimiter jobSubmitLimiter,
                                      LogStorageInfo<Task> logStorageInfo,
                                      @Named(JOB_STRICT_SANITIZER) EntitySanitizer entitySanitizer,
+                                     GrpcEndpointConfiguration configuration,
                                      TitusRuntime titusRuntime) {
         this.jobOperations = jobOperations;
         this.jobSubmitLimiter = jobSubmitLimiter;
-        this.logStorageInfo = logStorageInfo;
         this.entitySanitizer = entitySanitizer;
         this.titusRuntime = titusRuntime;
+        this.converterCache = new GrpcModelConverterCache(
+                logStorageInfo, configuration.getGrpcModelConverterCacheMaxSizeBytes(), MetricConstants.METRIC_ROOT + "jobManager", titusRuntime.getRegistry()
+        );
+        this.snapshotCache = configuration.isJobsSnapshotCacheEnabled()
+                ? new JobChangeNotificationSnapshotCache(jobOperations, converterCache, titusRuntime.getRegistry())
+                : null;
     }
 
     @Override
@@ -124,7 +134,7 @@ public class V3GrpcTitusServiceGateway implements GrpcTitusServiceGateway {
     @Override
     public Observable<Job> findJobById(String jobId, boolean includeArchivedTasks, Set<TaskStatus.TaskState> taskStates) {
         return jobOperations.getJob(jobId)
-                .map(j -> Observable.just(V3GrpcModelConverters.toGrpcJob(j)))
+                .map(j -> Observable.just(converterCache.toGrpcJob(j)))
                 .orElseGet(() -> Observable.error(JobManagerException.jobNotFound(jobId)));
     }
 
@@ -144,7 +154,7 @@ public class V3GrpcTitusServiceGateway implements GrpcTitusServiceGateway {
         boolean hasMore = queryResult.size() > page.getPageSize();
         List<com.netflix.titus.api.jobmanager.model.job.Job<?>> pageResult = hasMore ? queryResult.subList(0, page.getPageSize()) : queryResult;
 
-        List<Job> jobs = pageResult.stream().map(V3GrpcModelConverters::toGrpcJob).collect(Collectors.toList());
+        List<Job> jobs = pageResult.stream().map(converterCache::toGrpcJob).collect(Collectors.toList());
         //TODO the pagination model here is not semantically correct since the total is not even known
         return Pair.of(jobs, new Pagination(page, false, 1, jobs.size(), "", 0));
     }
@@ -166,7 +176,7 @@ public class V3GrpcTitusServiceGateway implements GrpcTitusServiceGateway {
         List<Pair<com.netflix.titus.api.jobmanager.model.job.Job<?>, Task>> pageResult = hasMore ? queryResult.subList(0, page.getPageSize()) : queryResult;
 
         List<com.netflix.titus.grpc.protogen.Task> tasks = pageResult.stream().map(jobTaskPair ->
-                V3GrpcModelConverters.toGrpcTask(jobTaskPair.getRight(), logStorageInfo)
+                converterCache.toGrpcTask(jobTaskPair.getRight())
         ).collect(Collectors.toList());
         //TODO the pagination model here is not semantically correct since the total is not even known
         return Pair.of(tasks, new Pagination(page, false, 1, tasks.size(), "", 0));
@@ -177,7 +187,7 @@ public class V3GrpcTitusServiceGateway implements GrpcTitusServiceGateway {
         return jobOperations.findTaskById(taskId)
                 .map(p -> {
                     Task task = p.getRight();
-                    return Observable.just(V3GrpcModelConverters.toGrpcTask(task, logStorageInfo));
+                    return Observable.just(converterCache.toGrpcTask(task));
                 })
                 .orElseGet(() -> Observable.error(JobManagerException.taskNotFound(taskId)));
     }
@@ -216,7 +226,10 @@ public class V3GrpcTitusServiceGateway implements GrpcTitusServiceGateway {
 
     @Override
     public Observable<JobChangeNotification> observeJobs() {
-        return jobOperations.observeJobs().map(event -> V3GrpcModelConverters.toGrpcJobChangeNotification(event, logStorageInfo))
+        if (snapshotCache != null) {
+            return snapshotCache.observeJobs().doOnError(e -> logger.error("Unexpected error in jobs event stream", e));
+        }
+        return jobOperations.observeJobs().map(converterCache::toGrpcJobChangeNotification)
                 .compose(ObservableExt.head(() -> {
                     List<JobChangeNotification> snapshot = createJobsSnapshot();
                     snapshot.add(SNAPSHOT_END_MARKER);
@@ -227,7 +240,7 @@ public class V3GrpcTitusServiceGateway implements GrpcTitusServiceGateway {
 
     @Override
     public Observable<JobChangeNotification> observeJob(String jobId) {
-        return jobOperations.observeJob(jobId).map(event -> V3GrpcModelConverters.toGrpcJobChangeNotification(event, logStorageInfo))
+        return jobOperations.observeJob(jobId).map(converterCache::toGrpcJobChangeNotification)
                 .compose(ObservableExt.head(() -> {
                     List<JobChangeNotification> snapshot = createJobSnapshot(jobId);
                     snapshot.add(SNAPSHOT_END_MARKER);
@@ -261,14 +274,14 @@ public class V3GrpcTitusServiceGateway implements GrpcTitusServiceGateway {
     }
 
     private JobChangeNotification toJobChangeNotification(com.netflix.titus.api.jobmanager.model.job.Job<?> coreJob) {
-        Job grpcJob = V3GrpcModelConverters.toGrpcJob(coreJob);
+        Job grpcJob = converterCache.toGrpcJob(coreJob);
         return JobChangeNotification.newBuilder()
                 .setJobUpdate(JobChangeNotification.JobUpdate.newBuilder().setJob(grpcJob))
                 .build();
     }
 
     private JobChangeNotification toJobChangeNotification(Task coreTask) {
-        com.netflix.titus.grpc.protogen.Task grpcTask = V3GrpcModelConverters.toGrpcTask(coreTask, logStorageInfo);
+        com.netflix.titus.grpc.protogen.Task grpcTask = converterCache.toGrpcTask(coreTask);
         return JobChangeNotification.newBuilder()
                 .setTaskUpdate(JobChangeNotification.TaskUpdate.newBuilder().setTask(grpcTask))
                 .build();
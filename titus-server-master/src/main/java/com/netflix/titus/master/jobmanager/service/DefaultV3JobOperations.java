@@ -16,9 +16,16 @@
 
 package com.netflix.titus.master.jobmanager.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -70,6 +77,8 @@ import org.slf4j.LoggerFactory;
 import rx.Completable;
 import rx.Observable;
 import rx.Subscription;
+import rx.subjects.PublishSubject;
+import rx.subjects.Subject;
 
 @Singleton
 @ProxyConfiguration(types = ProxyType.ActiveGuard)
@@ -282,6 +291,90 @@ public class DefaultV3JobOperations implements V3JobOperations {
         return engine.changeReferenceModel(changeAction).toCompletable();
     }
 
+    @Override
+    public Observable<Pair<String, Optional<Throwable>>> recordTaskPlacements(Map<String, Function<Task, Task>> changeFunctions) {
+        List<Pair<String, Optional<Throwable>>> notFound = new ArrayList<>();
+        Map<ReconciliationEngine<JobManagerReconcilerEvent>, Map<String, Function<Task, Task>>> changeFunctionsByEngine = new HashMap<>();
+        changeFunctions.forEach((taskId, changeFunction) -> {
+            Optional<ReconciliationEngine<JobManagerReconcilerEvent>> engineOpt = reconciliationFramework.findEngineByChildId(taskId).map(Pair::getLeft);
+            if (engineOpt.isPresent()) {
+                changeFunctionsByEngine.computeIfAbsent(engineOpt.get(), engine -> new HashMap<>()).put(taskId, changeFunction);
+            } else {
+                notFound.add(Pair.of(taskId, Optional.of(JobManagerException.taskNotFound(taskId))));
+            }
+        });
+
+        List<Observable<Pair<String, Optional<Throwable>>>> results = new ArrayList<>();
+        results.add(Observable.from(notFound));
+        changeFunctionsByEngine.forEach((engine, jobChangeFunctions) -> results.add(recordJobTaskPlacements(engine, jobChangeFunctions)));
+        return Observable.merge(results);
+    }
+
+    /**
+     * Records placements of tasks belonging to the same job in a single change action, so they do not wait for each
+     * other in the engine's change action queue. The store updates run concurrently. The result of each task is
+     * emitted, and its model update is applied by the engine, as soon as its own store update completes, so no task
+     * waits for the slowest store update of its job.
+     */
+    private Observable<Pair<String, Optional<Throwable>>> recordJobTaskPlacements(ReconciliationEngine<JobManagerReconcilerEvent> engine,
+                                                                                   Map<String, Function<Task, Task>> changeFunctions) {
+        Subject<Pair<String, Optional<Throwable>>, Pair<String, Optional<Throwable>>> taskResults = PublishSubject.<Pair<String, Optional<Throwable>>>create().toSerialized();
+        Set<String> reportedTaskIds = ConcurrentHashMap.newKeySet();
+        BiConsumer<String, Optional<Throwable>> reporter = (taskId, error) -> {
+            if (reportedTaskIds.add(taskId)) {
+                taskResults.onNext(Pair.of(taskId, error));
+            }
+        };
+
+        TitusChangeAction changeAction = TitusChangeAction.newAction("recordTaskPlacements")
+                .id(engine.getReferenceView().getId())
+                .trigger(Trigger.Scheduler)
+                .summary("Scheduler assigned " + changeFunctions.size() + " task(s) to agents")
+                .changeWithModelUpdates(self -> {
+                    List<Observable<List<ModelActionHolder>>> taskUpdates = new ArrayList<>();
+                    changeFunctions.forEach((taskId, changeFunction) -> {
+                        Optional<Task> taskOpt = JobEntityHolders.expectTask(engine, taskId, titusRuntime);
+                        if (!taskOpt.isPresent()) {
+                            reporter.accept(taskId, Optional.of(JobManagerException.taskNotFound(taskId)));
+                            return;
+                        }
+
+                        Task newTask;
+                        try {
+                            newTask = changeFunction.apply(taskOpt.get());
+                        } catch (Exception e) {
+                            reporter.accept(taskId, Optional.of(e));
+                            return;
+                        }
+
+                        TitusModelAction modelUpdate = TitusModelAction.newModelUpdate(self).taskUpdate(newTask);
+                        taskUpdates.add(store.updateTask(newTask)
+                                .andThen(Observable.fromCallable(() -> {
+                                    reporter.accept(taskId, Optional.empty());
+                                    return ModelActionHolder.allModels(modelUpdate);
+                                }))
+                                .onErrorResumeNext(e -> {
+                                    reporter.accept(taskId, Optional.of(e));
+                                    return Observable.empty();
+                                })
+                        );
+                    });
+                    // The engine expects at least one model update list from a change action
+                    return Observable.merge(taskUpdates).defaultIfEmpty(Collections.emptyList());
+                });
+
+        // Tasks with no result yet when the change action fails (for example if it is rejected by the engine) fail with its error
+        Observable<Pair<String, Optional<Throwable>>> actionCompletion = engine.changeReferenceModel(changeAction)
+                .toCompletable()
+                .onErrorComplete(e -> {
+                    changeFunctions.keySet().forEach(taskId -> reporter.accept(taskId, Optional.of(e)));
+                    return true;
+                })
+                .doOnCompleted(taskResults::onCompleted)
+                .toObservable();
+        return Observable.merge(taskResults, actionCompletion);
+    }
+
     @Override
     public Observable<Void> updateJobCapacity(String jobId, Capacity capacity) {
         return inServiceJob(jobId).flatMap(engine -> {
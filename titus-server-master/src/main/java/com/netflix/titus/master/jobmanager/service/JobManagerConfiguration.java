@@ -30,6 +30,20 @@ public interface JobManagerConfiguration {
     @DefaultValue("50")
     long getReconcilerActiveTimeoutMs();
 
+    /**
+     * Number of reconciliation event loops. Jobs are partitioned between the loops by their id. With the default
+     * value of 1, all jobs are processed by a single event loop.
+     */
+    @DefaultValue("1")
+    int getReconcilerShardCount();
+
+    /**
+     * Maximum amount of time a job difference resolution may be skipped, if the job model did not change since the last
+     * evaluation. Bounds the reaction time to time-driven rules, like retry delays or task timeouts.
+     */
+    @DefaultValue("1000")
+    long getReconcilerForcedResolveIntervalMs();
+
     /**
      * How many active tasks in the transient state (in other words not Started and not Finished) are allowed in a job.
      * If the number of active tasks in the transient state goes above this limit, no new tasks are created.
@@ -88,4 +102,11 @@ public interface JobManagerConfiguration {
      */
     @DefaultValue("false")
     boolean isFailOnDataValidation();
+
+    /**
+     * Number of threads validating jobs and tasks loaded from the store during bootstrap. If set to 1, the validation
+     * runs on the bootstrap thread.
+     */
+    @DefaultValue("4")
+    int getBootstrapValidationParallelism();
 }
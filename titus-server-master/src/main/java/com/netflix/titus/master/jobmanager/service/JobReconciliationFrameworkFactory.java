@@ -26,7 +26,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -56,6 +60,7 @@ import com.netflix.titus.common.framework.reconciler.ReconciliationEngine.Differ
 import com.netflix.titus.common.framework.reconciler.ReconciliationFramework;
 import com.netflix.titus.common.framework.reconciler.internal.DefaultReconciliationEngine;
 import com.netflix.titus.common.framework.reconciler.internal.DefaultReconciliationFramework;
+import com.netflix.titus.common.framework.reconciler.internal.ShardedReconciliationFramework;
 import com.netflix.titus.common.model.sanitizer.EntitySanitizer;
 import com.netflix.titus.common.model.sanitizer.EntitySanitizerUtil;
 import com.netflix.titus.common.runtime.TitusRuntime;
@@ -189,7 +194,22 @@ public class JobReconciliationFrameworkFactory {
     }
 
     ReconciliationFramework<JobManagerReconcilerEvent> newInstance() {
-        List<Pair<Job, List<Task>>> jobsAndTasks = checkGlobalConsistency(loadJobsAndTasksFromStore(errorCollector));
+        int validationParallelism = jobManagerConfiguration.getBootstrapValidationParallelism();
+        ForkJoinPool validationPool = validationParallelism > 1 ? new ForkJoinPool(validationParallelism) : null;
+        try {
+            return newInstance(validationPool);
+        } finally {
+            if (validationPool != null) {
+                validationPool.shutdown();
+            }
+        }
+    }
+
+    private ReconciliationFramework<JobManagerReconcilerEvent> newInstance(ForkJoinPool validationPool) {
+        List<Pair<Job, List<Task>>> jobsAndTasks = checkGlobalConsistency(loadJobsAndTasksFromStore(errorCollector, validationPool));
+
+        List<Task> allTasks = jobsAndTasks.stream().flatMap(p -> p.getRight().stream()).collect(Collectors.toList());
+        Set<String> invalidTaskIds = findInvalidEntityIds(allTasks, Task::getId, this::validateTask, validationPool);
 
         // initialize fenzo with running tasks
         List<ReconciliationEngine<JobManagerReconcilerEvent>> engines = new ArrayList<>();
@@ -199,8 +219,7 @@ public class JobReconciliationFrameworkFactory {
             ReconciliationEngine<JobManagerReconcilerEvent> engine = newRestoredEngine(job, tasks);
             engines.add(engine);
             for (Task task : tasks) {
-                Optional<Task> validatedTask = validateTask(task);
-                if (validatedTask.isPresent()) {
+                if (!invalidTaskIds.contains(task.getId())) {
                     TaskFenzoCheck check = addTaskToFenzo(engine, job, task);
                     if (check == TaskFenzoCheck.FenzoAddError) {
                         errorCollector.taskAddToFenzoError(task.getId());
@@ -215,6 +234,19 @@ public class JobReconciliationFrameworkFactory {
 
         errorCollector.failIfTooManyBadRecords();
 
+        int shardCount = jobManagerConfiguration.getReconcilerShardCount();
+        if (shardCount > 1) {
+            return new ShardedReconciliationFramework<>(
+                    shardCount,
+                    engines,
+                    bootstrapModel -> newEngine(bootstrapModel, true),
+                    jobManagerConfiguration.getReconcilerIdleTimeoutMs(),
+                    jobManagerConfiguration.getReconcilerActiveTimeoutMs(),
+                    INDEX_COMPARATORS,
+                    registry,
+                    optionalScheduler
+            );
+        }
         return new DefaultReconciliationFramework<>(
                 engines,
                 bootstrapModel -> newEngine(bootstrapModel, true),
@@ -244,6 +276,7 @@ public class JobReconciliationFrameworkFactory {
                 JOB_EVENT_FACTORY,
                 this::extraChangeActionTags,
                 this::extraModelActionTags,
+                jobManagerConfiguration.getReconcilerForcedResolveIntervalMs(),
                 titusRuntime
         );
     }
@@ -341,7 +374,7 @@ public class JobReconciliationFrameworkFactory {
         return true;
     }
 
-    private List<Pair<Job, List<Task>>> loadJobsAndTasksFromStore(InitializationErrorCollector errorCollector) {
+    private List<Pair<Job, List<Task>>> loadJobsAndTasksFromStore(InitializationErrorCollector errorCollector, ForkJoinPool validationPool) {
         long startTime = clock.wallTime();
 
         // load all job/task pairs
@@ -350,20 +383,22 @@ public class JobReconciliationFrameworkFactory {
             jobTasksPairs = store.init().andThen(store.retrieveJobs().flatMap(retrievedJobsAndErrors -> {
                 errorCollector.corruptedJobRecords(retrievedJobsAndErrors.getRight());
 
-                List<Job<?>> retrievedJobs = retrievedJobsAndErrors.getLeft();
-                List<Observable<Pair<Job, Pair<List<Task>, Integer>>>> retrieveTasksObservables = new ArrayList<>();
-                for (Job job : retrievedJobs) {
-
+                List<Job> activeJobs = new ArrayList<>();
+                for (Job job : retrievedJobsAndErrors.getLeft()) {
                     // TODO Finished jobs that were not archived immediately should be moved by background archive process
                     if (job.getStatus().getState() == JobState.Finished) {
                         logger.info("Not loading finished job: {}", job.getId());
-                        continue;
+                    } else {
+                        activeJobs.add(job);
                     }
+                }
+                Set<String> invalidJobIds = findInvalidEntityIds(activeJobs, Job::getId, this::validateJob, validationPool);
 
-                    Optional<Job> validatedJob = validateJob(job);
-                    if (validatedJob.isPresent()) {
+                List<Observable<Pair<Job, Pair<List<Task>, Integer>>>> retrieveTasksObservables = new ArrayList<>();
+                for (Job job : activeJobs) {
+                    if (!invalidJobIds.contains(job.getId())) {
                         Observable<Pair<Job, Pair<List<Task>, Integer>>> retrieveTasksObservable = store.retrieveTasksForJob(job.getId())
-                                .map(taskList -> new Pair<>(validatedJob.get(), taskList));
+                                .map(taskList -> new Pair<>(job, taskList));
                         retrieveTasksObservables.add(retrieveTasksObservable);
                     } else {
                         errorCollector.invalidJob(job.getId());
@@ -389,6 +424,32 @@ public class JobReconciliationFrameworkFactory {
         return jobTasksPairs.stream().map(p -> Pair.of(p.getLeft(), p.getRight().getLeft())).collect(Collectors.toList());
     }
 
+    /**
+     * Validates entities in the given pool, or on the calling thread if the pool is not set.
+     *
+     * @return ids of entities that did not pass the validation
+     */
+    private <T> Set<String> findInvalidEntityIds(List<T> entities,
+                                                 Function<T, String> idOf,
+                                                 Function<T, Optional<T>> validator,
+                                                 ForkJoinPool validationPool) {
+        if (validationPool == null) {
+            return findInvalidEntityIds(entities.stream(), idOf, validator);
+        }
+        try {
+            return validationPool.submit(() -> findInvalidEntityIds(entities.parallelStream(), idOf, validator)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during job/task validation", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Job/task validation failure", e.getCause());
+        }
+    }
+
+    private <T> Set<String> findInvalidEntityIds(Stream<T> entities, Function<T, String> idOf, Function<T, Optional<T>> validator) {
+        return entities.filter(entity -> !validator.apply(entity).isPresent()).map(idOf).collect(Collectors.toSet());
+    }
+
     private Optional<Job> validateJob(Job job) {
         // Perform strict validation for reporting purposes
         Set<ConstraintViolation<Job>> strictViolations = strictEntitySanitizer.validate(job);
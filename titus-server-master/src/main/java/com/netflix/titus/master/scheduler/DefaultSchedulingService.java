@@ -22,7 +22,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -100,6 +99,7 @@ import com.netflix.titus.master.model.job.TitusQueuableTask;
 import com.netflix.titus.master.scheduler.constraint.ConstraintEvaluatorTransformer;
 import com.netflix.titus.master.scheduler.constraint.SystemHardConstraint;
 import com.netflix.titus.master.scheduler.constraint.SystemSoftConstraint;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex;
 import com.netflix.titus.master.scheduler.fitness.TitusFitnessCalculator;
 import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCache;
 import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheUpdater;
@@ -124,6 +124,7 @@ public class DefaultSchedulingService implements SchedulingService {
 
     private static final String METRIC_SLA_UPDATES = METRIC_SCHEDULING_SERVICE + "slaUpdates";
     private static final long STORE_UPDATE_TIMEOUT_MS = 5_000;
+    private static final long TASK_LAUNCH_STAGE_SHUTDOWN_TIMEOUT_MS = 5_000;
     private static final long vmCurrentStatesCheckIntervalMillis = 10_000L;
     private static final long MAX_DELAY_MILLIS_BETWEEN_SCHEDULING_ITERATIONS = 5_000L;
 
@@ -144,6 +145,7 @@ public class DefaultSchedulingService implements SchedulingService {
 
     private final ConstraintEvaluatorTransformer<JobConstraints> v2ConstraintEvaluatorTransformer;
     private final TaskToClusterMapper taskToClusterMapper = new TaskToClusterMapper();
+    private final AgentTaskSignatureIndex taskSignatureIndex = new AgentTaskSignatureIndex();
 
     private final AtomicLong totalTasksPerIteration;
     private final AtomicLong assignedTasksPerIteration;
@@ -171,6 +173,9 @@ public class DefaultSchedulingService implements SchedulingService {
     private final AtomicLong totalAllocatedNetworkInterfaces;
 
     private final Timer schedulingIterationLatency;
+    private final Timer taskPlacementRecordLatency;
+
+    private final TaskLaunchStage<Collection<VMAssignmentResult>> taskLaunchStage;
 
     private final ConcurrentMap<Integer, List<VirtualMachineCurrentState>> vmCurrentStatesMap;
     private final SystemSoftConstraint systemSoftConstraint;
@@ -282,7 +287,7 @@ public class DefaultSchedulingService implements SchedulingService {
         TaskScheduler.Builder schedulerBuilder = new TaskScheduler.Builder()
                 .withLeaseRejectAction(virtualMachineService::rejectLease)
                 .withLeaseOfferExpirySecs(masterConfiguration.getMesosLeaseOfferExpirySecs())
-                .withFitnessCalculator(new TitusFitnessCalculator(schedulerConfiguration, agentResourceCache))
+                .withFitnessCalculator(new TitusFitnessCalculator(schedulerConfiguration, agentResourceCache, taskSignatureIndex))
                 .withFitnessGoodEnoughFunction(TitusFitnessCalculator.fitnessGoodEnoughFunction)
                 .withAutoScaleByAttributeName(masterConfiguration.getAutoscaleByAttributeName())
                 .withScaleDownOrderEvaluator(scaleDownOrderEvaluator)
@@ -344,6 +349,15 @@ public class DefaultSchedulingService implements SchedulingService {
         PolledMeter.using(registry).withName(METRIC_SCHEDULING_SERVICE + "totalAllocatedNetworkInterfaces").monitorValue(totalAllocatedNetworkInterfaces);
 
         schedulingIterationLatency = registry.timer(METRIC_SCHEDULING_SERVICE + "schedulingIterationLatency");
+        taskPlacementRecordLatency = registry.timer(METRIC_SCHEDULING_SERVICE + "taskPlacementRecordLatency");
+
+        taskLaunchStage = new TaskLaunchStage<>(
+                schedulerConfiguration.getTaskLaunchQueueSize(),
+                this::launchTasks,
+                METRIC_SCHEDULING_SERVICE,
+                registry,
+                titusRuntime.getClock()
+        );
 
         vmCurrentStatesMap = new ConcurrentHashMap<>();
     }
@@ -493,6 +507,7 @@ public class DefaultSchedulingService implements SchedulingService {
                                     verifyAndReportResourceUsageMetrics(states);
                                     checkInactiveVMs(states);
                                     vmOps.setAgentInfos(states);
+                                    taskSignatureIndex.reconcile(states);
                                 }
                         );
                     } catch (TaskQueueException e) {
@@ -593,11 +608,15 @@ public class DefaultSchedulingService implements SchedulingService {
         int failedTasksDuringSchedulingResult = 0;
 
         Map<String, VMAssignmentResult> assignmentResultMap = schedulingResult.getResultMap();
-        for (Map.Entry<String, VMAssignmentResult> aResult : assignmentResultMap.entrySet()) {
-            Set<TaskAssignmentResult> tasksAssigned = aResult.getValue().getTasksAssigned();
-            launchTasks(tasksAssigned, aResult.getValue().getLeasesUsed());
-            assignedDuringSchedulingResult += tasksAssigned.size();
+        for (VMAssignmentResult vmAssignmentResult : assignmentResultMap.values()) {
+            assignedDuringSchedulingResult += vmAssignmentResult.getTasksAssigned().size();
+            for (TaskAssignmentResult assignedTask : vmAssignmentResult.getTasksAssigned()) {
+                taskSignatureIndex.addTask(assignedTask.getRequest(), vmAssignmentResult.getHostname());
+            }
         }
+        // Tasks assigned by Fenzo stay in the assigned state in Fenzo while they wait for the launch stage, so the next
+        // scheduling iteration does not place them again, nor uses the resources allocated to them.
+        taskLaunchStage.submit(new ArrayList<>(assignmentResultMap.values()));
 
         List<Map<String, com.netflix.fenzo.functions.Action1<List<TaskAssignmentResult>>>> failActions = new ArrayList<>();
         taskFailuresActions.drainTo(failActions);
@@ -630,110 +649,96 @@ public class DefaultSchedulingService implements SchedulingService {
         schedulingIterationLatency.record(schedulingResult.getRuntime(), TimeUnit.MILLISECONDS);
     }
 
-    private void launchTasks(Collection<TaskAssignmentResult> requests, List<VirtualMachineLease> leases) {
-        final List<Protos.TaskInfo> taskInfoList = new LinkedList<>();
-
-        long recordStartTime = System.currentTimeMillis();
-        try {
-            for (TaskAssignmentResult assignmentResult : requests) {
-                List<ConsumeResult> consumeResults = assignmentResult.getrSets();
-                TitusQueuableTask task = (TitusQueuableTask) assignmentResult.getRequest();
-
-                boolean taskFound;
-                ConsumeResult consumeResult = consumeResults.get(0);
-                if (JobFunctions.isV2Task(task.getId())) {
-                    final JobMgr jobMgr = v2JobOperations.getJobMgrFromTaskId(task.getId());
-                    taskFound = jobMgr != null;
-                    if (taskFound) {
-                        final VirtualMachineLease lease = leases.get(0);
-                        try {
-                            taskInfoList.add(jobMgr.setLaunchedAndCreateTaskInfo(task, lease.hostname(), getAttributesMap(lease), lease.getOffer().getSlaveId(),
-                                    consumeResult, assignmentResult.getAssignedPorts()));
-                        } catch (InvalidJobStateChangeException | InvalidJobException e) {
-                            logger.warn("Not launching task due to error setting state to launched for " + task.getId() + " - " +
-                                    e.getMessage());
-                        } catch (Exception e) {
-                            // unexpected error creating task info
-                            String msg = "fatal error creating taskInfo for " + task.getId() + ": " + e.getMessage();
-                            logger.warn("Killing job " + jobMgr.getJobId() + ": " + msg, e);
-                            jobMgr.killJob("SYSTEM", msg);
-                        }
-                    }
-                } else { // V3 task
-                    Optional<Pair<Job<?>, Task>> v3JobAndTask = v3JobOperations.findTaskById(task.getId());
-                    taskFound = v3JobAndTask.isPresent();
-                    if (taskFound) {
-                        Job v3Job = v3JobAndTask.get().getLeft();
-                        Task v3Task = v3JobAndTask.get().getRight();
-                        final VirtualMachineLease lease = leases.get(0);
-                        try {
-                            Map<String, String> attributesMap = getAttributesMap(lease);
-
-                            fitInjection.ifPresent(i -> i.beforeImmediate("storeLaunchConfiguration"));
-                            boolean completedInTime = false;
-                            Throwable recordTaskError = null;
-                            Optional<String> executorUriOverrideOpt = JobManagerUtil.getExecutorUriOverride(config, attributesMap);
-                            try {
-                                completedInTime = v3JobOperations.recordTaskPlacement(
-                                        task.getId(),
-                                        oldTask -> JobManagerUtil.newTaskLaunchConfigurationUpdater(
-                                                masterConfiguration.getHostZoneAttributeName(), lease, consumeResult,
-                                                executorUriOverrideOpt, attributesMap
-                                        ).apply(oldTask)
-                                ).await(STORE_UPDATE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-                            } catch (Exception e) {
-                                recordTaskError = ExceptionExt.unpackRuntimeException(e);
-                            }
-
-                            Protos.TaskInfo taskInfo = v3TaskInfoFactory.newTaskInfo(
-                                    task, v3Job, v3Task, lease.hostname(), attributesMap, lease.getOffer().getSlaveId(),
-                                    consumeResult, executorUriOverrideOpt);
-
-                            fitInjection.ifPresent(i -> i.afterImmediate("storeLaunchConfiguration"));
-
-                            if (recordTaskError != null) {
-                                if (JobManagerException.hasErrorCode(recordTaskError, JobManagerException.ErrorCode.UnexpectedTaskState)) {
-                                    logger.info("Not launching task, as it is no longer in Accepted state (probably killed): {}", v3Task.getId());
-                                } else {
-                                    logger.info("Not launching task due to model update failure: {}", v3Task.getId(), recordTaskError);
-                                    killBrokenTask(task, "model update error: " + recordTaskError.getMessage());
-                                }
-                            } else if (completedInTime) {
-                                taskInfoList.add(taskInfo);
-                            } else {
-                                killBrokenTask(task, "store update timeout");
-                                logger.error("Timed out during writing task {} (job {}) status update to the store", task.getId(), v3Job.getId());
-                            }
-                        } catch (Exception e) {
-                            killBrokenTask(task, e.toString());
-                            logger.error("Fatal error when creating TaskInfo for task: {}", task.getId(), e);
-                        }
-                    }
-                }
-                if (!taskFound) {
-                    // job must have been terminated, remove task from Fenzo
-                    logger.warn("Rejecting assignment and removing task after not finding jobMgr for task: " + task.getId());
-                    schedulingService.removeTask(task.getId(), task.getQAttributes(), assignmentResult.getHostname());
-                }
+    /**
+     * Prepares launch of all tasks assigned in a scheduling iteration. Placements of all V3 tasks are recorded in the
+     * job manager with a single batch request, and the tasks of each agent are launched from this thread as soon as
+     * the placements on that agent are recorded.
+     */
+    private void launchTasks(Collection<VMAssignmentResult> vmAssignmentResults) {
+        TaskLaunchBatch launchBatch = new TaskLaunchBatch(virtualMachineService, this::killBrokenTask, titusRuntime.getClock());
+        for (VMAssignmentResult vmAssignmentResult : vmAssignmentResults) {
+            TaskLaunchBatch.AgentLaunch agentLaunch = launchBatch.newAgentLaunch(vmAssignmentResult.getLeasesUsed());
+            for (TaskAssignmentResult assignmentResult : vmAssignmentResult.getTasksAssigned()) {
+                prepareTaskLaunch(assignmentResult, launchBatch, agentLaunch);
             }
-        } finally {
-            logger.info("Recorded task placement decisions in JobManager in {}ms: tasks={}, offers={}", titusRuntime.getClock().wallTime() - recordStartTime, requests.size(), leases.size());
         }
 
-        long mesosStartTime = titusRuntime.getClock().wallTime();
-        if (taskInfoList.isEmpty()) {
+        if (launchBatch.hasPendingPlacements()) {
+            long recordStartTime = titusRuntime.getClock().wallTime();
             try {
-                leases.forEach(virtualMachineService::rejectLease);
+                fitInjection.ifPresent(i -> i.beforeImmediate("storeLaunchConfiguration"));
+                launchBatch.recordPlacementsAndLaunch(v3JobOperations, STORE_UPDATE_TIMEOUT_MS);
+                fitInjection.ifPresent(i -> i.afterImmediate("storeLaunchConfiguration"));
+            } catch (Exception e) {
+                logger.error("Fatal error when recording task placements in JobManager", e);
+                launchBatch.failPendingPlacements(e.toString());
             } finally {
-                logger.info("Rejected offers as no task effectively placed on the agent in {}ms: offers={}", titusRuntime.getClock().wallTime() - mesosStartTime, leases.size());
+                long recordTime = titusRuntime.getClock().wallTime() - recordStartTime;
+                taskPlacementRecordLatency.record(recordTime, TimeUnit.MILLISECONDS);
+                logger.info("Recorded task placement decisions in JobManager, and launched tasks in {}ms: tasks={}, agents={}",
+                        recordTime, launchBatch.getPlacementCount(), launchBatch.getAgentCount());
             }
-        } else {
-            try {
-                virtualMachineService.launchTasks(taskInfoList, leases);
-            } finally {
-                logger.info("Launched tasks on Mesos in {}ms: tasks={}, offers={}", titusRuntime.getClock().wallTime() - mesosStartTime, taskInfoList.size(), leases.size());
+        }
+
+        launchBatch.launch();
+    }
+
+    private void prepareTaskLaunch(TaskAssignmentResult assignmentResult, TaskLaunchBatch launchBatch, TaskLaunchBatch.AgentLaunch agentLaunch) {
+        List<ConsumeResult> consumeResults = assignmentResult.getrSets();
+        TitusQueuableTask task = (TitusQueuableTask) assignmentResult.getRequest();
+        List<VirtualMachineLease> leases = agentLaunch.getLeases();
+
+        boolean taskFound;
+        ConsumeResult consumeResult = consumeResults.get(0);
+        if (JobFunctions.isV2Task(task.getId())) {
+            final JobMgr jobMgr = v2JobOperations.getJobMgrFromTaskId(task.getId());
+            taskFound = jobMgr != null;
+            if (taskFound) {
+                final VirtualMachineLease lease = leases.get(0);
+                try {
+                    agentLaunch.addTaskInfo(jobMgr.setLaunchedAndCreateTaskInfo(task, lease.hostname(), getAttributesMap(lease), lease.getOffer().getSlaveId(),
+                            consumeResult, assignmentResult.getAssignedPorts()));
+                } catch (InvalidJobStateChangeException | InvalidJobException e) {
+                    logger.warn("Not launching task due to error setting state to launched for " + task.getId() + " - " +
+                            e.getMessage());
+                } catch (Exception e) {
+                    // unexpected error creating task info
+                    String msg = "fatal error creating taskInfo for " + task.getId() + ": " + e.getMessage();
+                    logger.warn("Killing job " + jobMgr.getJobId() + ": " + msg, e);
+                    jobMgr.killJob("SYSTEM", msg);
+                }
+            }
+        } else { // V3 task
+            Optional<Pair<Job<?>, Task>> v3JobAndTask = v3JobOperations.findTaskById(task.getId());
+            taskFound = v3JobAndTask.isPresent();
+            if (taskFound) {
+                Job v3Job = v3JobAndTask.get().getLeft();
+                Task v3Task = v3JobAndTask.get().getRight();
+                final VirtualMachineLease lease = leases.get(0);
+                try {
+                    Map<String, String> attributesMap = getAttributesMap(lease);
+                    Optional<String> executorUriOverrideOpt = JobManagerUtil.getExecutorUriOverride(config, attributesMap);
+
+                    Protos.TaskInfo taskInfo = v3TaskInfoFactory.newTaskInfo(
+                            task, v3Job, v3Task, lease.hostname(), attributesMap, lease.getOffer().getSlaveId(),
+                            consumeResult, executorUriOverrideOpt);
+
+                    launchBatch.addPendingPlacement(agentLaunch, task, taskInfo, JobManagerUtil.newTaskLaunchConfigurationUpdater(
+                            masterConfiguration.getHostZoneAttributeName(), lease, consumeResult,
+                            executorUriOverrideOpt, attributesMap
+                    ));
+                } catch (Exception e) {
+                    killBrokenTask(task, e.toString());
+                    logger.error("Fatal error when creating TaskInfo for task: {}", task.getId(), e);
+                }
             }
         }
+        if (!taskFound) {
+            // job must have been terminated, remove task from Fenzo
+            logger.warn("Rejecting assignment and removing task after not finding jobMgr for task: " + task.getId());
+            schedulingService.removeTask(task.getId(), task.getQAttributes(), assignmentResult.getHostname());
+            taskSignatureIndex.removeTask(task.getId());
+        }
     }
 
     private void killBrokenTask(TitusQueuableTask task, String reason) {
@@ -778,11 +783,13 @@ public class DefaultSchedulingService implements SchedulingService {
     public void removeTask(String taskId, QAttributes qAttributes, String hostname) {
         logger.info("Removing task from Fenzo: taskId={}, qAttributes={}, hostname={}", taskId, qAttributes, hostname);
         schedulingService.removeTask(taskId, qAttributes, hostname);
+        taskSignatureIndex.removeTask(taskId);
     }
 
     @Override
     public void initRunningTask(QueuableTask task, String hostname) {
         schedulingService.initializeRunningTask(task, hostname);
+        taskSignatureIndex.addTask(task, hostname);
         agentResourceCacheUpdater.createOrUpdateAgentResourceCacheForTask(task, hostname);
     }
 
@@ -882,6 +889,7 @@ public class DefaultSchedulingService implements SchedulingService {
                             final JobMgr jobMgr = v2JobOperations.getJobMgrFromTaskId(t.getId());
                             if (jobMgr == null || !jobMgr.isTaskValid(t.getId())) {
                                 schedulingService.removeTask(task.getId(), task.getQAttributes(), state.getHostname());
+                                taskSignatureIndex.removeTask(task.getId());
                             } else {
                                 usedCpu += t.getCPUs();
                                 totalCpu += t.getCPUs();
@@ -962,6 +970,7 @@ public class DefaultSchedulingService implements SchedulingService {
         schedulingService.shutdown();
         agentResourceCacheUpdater.shutdown();
         agentResourceCache.shutdown();
+        taskLaunchStage.shutdown(TASK_LAUNCH_STAGE_SHUTDOWN_TIMEOUT_MS);
     }
 
     @Override
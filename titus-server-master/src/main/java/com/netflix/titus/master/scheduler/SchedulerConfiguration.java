@@ -38,6 +38,15 @@ public interface SchedulerConfiguration {
     @DefaultValue("8")
     int getSchedulerMaxConcurrent();
 
+    /**
+     * @return the maximum number of scheduling iteration results waiting for the task launch stage. If greater than 0,
+     * task placements are recorded and tasks launched on Mesos by a separate thread, so the next scheduling iteration
+     * does not wait for them. The scheduling loop blocks if the launch queue is full. If set to 0, tasks are launched
+     * by the scheduling loop thread
+     */
+    @DefaultValue("0")
+    int getTaskLaunchQueueSize();
+
     /**
      * @return whether or not to limit concurrent task launches on a node
      */
@@ -74,6 +83,13 @@ public interface SchedulerConfiguration {
     @DefaultValue("false")
     boolean isSystemSelectorsEnabled();
 
+    /**
+     * @return whether or not to evaluate system selector expressions with the built-in expression compiler. Expressions
+     * not supported by the compiler are always evaluated by the script engine.
+     */
+    @DefaultValue("true")
+    boolean isSystemSelectorNativeEvaluationEnabled();
+
     @DefaultValue("true")
     boolean isExitUponFenzoSchedulingErrorEnabled();
 
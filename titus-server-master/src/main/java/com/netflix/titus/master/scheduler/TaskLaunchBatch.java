@@ -0,0 +1,338 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.netflix.fenzo.VirtualMachineLease;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.service.JobManagerException;
+import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.common.util.ExceptionExt;
+import com.netflix.titus.common.util.time.Clock;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.master.VirtualMachineMasterService;
+import com.netflix.titus.master.model.job.TitusQueuableTask;
+import org.apache.mesos.Protos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscription;
+
+/**
+ * Tasks assigned in a single scheduling iteration, grouped by agent. Placements of all V3 tasks are recorded in the
+ * job manager with a single batch request. The tasks placed on an agent are launched on Mesos with a single request
+ * as soon as all placements on that agent are recorded, without waiting for the other agents. The offers of agents
+ * with no task effectively placed are rejected.
+ * <p>
+ * Not thread safe. The placement results are handed over to the thread that executes the batch (the scheduling loop
+ * thread, or the task launch stage thread if enabled), so task launches and offer rejections never run on the job
+ * manager or store callback threads. Only the results arriving after the launch timeout are handled on the callback
+ * threads, and these never launch a task.
+ */
+class TaskLaunchBatch {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskLaunchBatch.class);
+
+    private static final Pair<String, Optional<Throwable>> END_OF_RESULTS = Pair.of("", Optional.empty());
+
+    private final VirtualMachineMasterService virtualMachineService;
+    private final BiConsumer<TitusQueuableTask, String> brokenTaskHandler;
+    private final Clock clock;
+
+    private final List<AgentLaunch> agentLaunches = new ArrayList<>();
+    private final Map<String, AgentLaunch> agentLaunchByTaskId = new HashMap<>();
+    private final Map<String, Function<Task, Task>> placements = new HashMap<>();
+
+    /**
+     * Tasks not launched as their placement results did not arrive within the timeout, while their store updates may
+     * still be in flight. Accessed by the job manager callback threads.
+     */
+    private final Map<String, TitusQueuableTask> abandonedPlacements = new ConcurrentHashMap<>();
+
+    /**
+     * @param brokenTaskHandler called with a task, and the reason, if its placement could not be recorded
+     */
+    TaskLaunchBatch(VirtualMachineMasterService virtualMachineService,
+                    BiConsumer<TitusQueuableTask, String> brokenTaskHandler,
+                    Clock clock) {
+        this.virtualMachineService = virtualMachineService;
+        this.brokenTaskHandler = brokenTaskHandler;
+        this.clock = clock;
+    }
+
+    AgentLaunch newAgentLaunch(List<VirtualMachineLease> leases) {
+        AgentLaunch agentLaunch = new AgentLaunch(leases);
+        agentLaunches.add(agentLaunch);
+        return agentLaunch;
+    }
+
+    void addPendingPlacement(AgentLaunch agentLaunch, TitusQueuableTask task, Protos.TaskInfo taskInfo, Function<Task, Task> placement) {
+        agentLaunch.pendingPlacements.put(task.getId(), Pair.of(task, taskInfo));
+        agentLaunchByTaskId.put(task.getId(), agentLaunch);
+        placements.put(task.getId(), placement);
+    }
+
+    boolean hasPendingPlacements() {
+        return !placements.isEmpty();
+    }
+
+    int getPlacementCount() {
+        return placements.size();
+    }
+
+    int getAgentCount() {
+        return agentLaunches.size();
+    }
+
+    /**
+     * Records all pending placements in the job manager, and launches the tasks of each agent as soon as all its
+     * placements are recorded. Blocks until all agents are launched, or the timeout passes. Agents with placements
+     * still not recorded by then are launched with the tasks recorded so far. Their remaining tasks are not launched,
+     * but are not killed either, as their store updates may still succeed (a task recorded as launched, but never sent
+     * to Mesos, is timed out by the job manager). Placements failing after the timeout are killed as usual.
+     */
+    void recordPlacementsAndLaunch(V3JobOperations v3JobOperations, long timeoutMs) {
+        if (placements.isEmpty()) {
+            return;
+        }
+        long deadline = clock.wallTime() + timeoutMs;
+
+        ResultCollector collector = new ResultCollector();
+        Subscription subscription = v3JobOperations.recordTaskPlacements(placements).subscribe(
+                collector::onResult,
+                collector::onError,
+                collector::onCompleted
+        );
+
+        // Agents with V2 tasks only do not wait for the placement results
+        agentLaunches.stream().filter(a -> a.pendingPlacements.isEmpty()).forEach(AgentLaunch::launch);
+        boolean resultsCompleted = false;
+        try {
+            while (hasPendingAgentPlacements()) {
+                long remainingMs = deadline - clock.wallTime();
+                Pair<String, Optional<Throwable>> result = remainingMs > 0 ? collector.results.poll(remainingMs, TimeUnit.MILLISECONDS) : null;
+                if (result == null) {
+                    break;
+                }
+                if (result == END_OF_RESULTS) {
+                    resultsCompleted = true;
+                    break;
+                }
+                onResult(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (collector.error != null) {
+            logger.error("Fatal error when recording task placements in JobManager", collector.error);
+            subscription.unsubscribe();
+            collector.stopCollecting().forEach(this::onResult);
+            failPendingPlacements(collector.error.toString());
+        } else if (resultsCompleted) {
+            // No store update is in flight, so placements with no result will never be recorded
+            failPendingPlacements("no task placement result");
+        } else {
+            // Placements are abandoned before the collector is stopped, so their later results are handled by onLateResult
+            agentLaunches.forEach(AgentLaunch::abandonPendingPlacements);
+            collector.stopCollecting().forEach(this::onLateResult);
+        }
+        launch();
+    }
+
+    private boolean hasPendingAgentPlacements() {
+        return agentLaunches.stream().anyMatch(a -> !a.pendingPlacements.isEmpty());
+    }
+
+    private void onResult(Pair<String, Optional<Throwable>> result) {
+        if (result == END_OF_RESULTS) {
+            return;
+        }
+        AgentLaunch agentLaunch = agentLaunchByTaskId.get(result.getLeft());
+        if (agentLaunch != null) {
+            agentLaunch.placementRecorded(result.getLeft(), result.getRight());
+            if (agentLaunch.pendingPlacements.isEmpty()) {
+                agentLaunch.launch();
+            }
+        }
+    }
+
+    /**
+     * Called for a placement result arriving after the launch timeout, usually on a job manager callback thread.
+     */
+    private void onLateResult(Pair<String, Optional<Throwable>> result) {
+        if (result == END_OF_RESULTS) {
+            return;
+        }
+        TitusQueuableTask task = abandonedPlacements.remove(result.getLeft());
+        if (task == null) {
+            return;
+        }
+        if (result.getRight().isPresent()) {
+            handlePlacementError(task, result.getRight().get());
+        } else {
+            logger.warn("Task placement recorded after the launch timeout; the task was not launched, and will time out in Launched state: {}", task.getId());
+        }
+    }
+
+    private void handlePlacementError(TitusQueuableTask task, Throwable error) {
+        Throwable recordTaskError = ExceptionExt.unpackRuntimeException(error);
+        if (JobManagerException.hasErrorCode(recordTaskError, JobManagerException.ErrorCode.UnexpectedTaskState)) {
+            logger.info("Not launching task, as it is no longer in Accepted state (probably killed): {}", task.getId());
+        } else {
+            logger.info("Not launching task due to model update failure: {}", task.getId(), recordTaskError);
+            brokenTaskHandler.accept(task, "model update error: " + recordTaskError.getMessage());
+        }
+    }
+
+    void failPendingPlacements(String reason) {
+        agentLaunches.forEach(agentLaunch -> agentLaunch.failPendingPlacements(reason));
+    }
+
+    /**
+     * Launches the tasks on all agents not launched yet. Placements never submitted to the job manager are failed.
+     */
+    void launch() {
+        for (AgentLaunch agentLaunch : agentLaunches) {
+            agentLaunch.failPendingPlacements("task placement not recorded");
+            agentLaunch.launch();
+        }
+    }
+
+    /**
+     * Hands over the placement results from the job manager callback threads to the thread executing the batch, until
+     * it stops collecting. Results arriving later are handled on the callback thread by {@link #onLateResult}.
+     */
+    private class ResultCollector {
+
+        private final BlockingQueue<Pair<String, Optional<Throwable>>> results = new LinkedBlockingQueue<>();
+        private volatile Throwable error;
+        private boolean collecting = true;
+
+        private synchronized void onResult(Pair<String, Optional<Throwable>> result) {
+            if (collecting) {
+                results.add(result);
+            } else {
+                onLateResult(result);
+            }
+        }
+
+        private synchronized void onError(Throwable error) {
+            this.error = error;
+            if (collecting) {
+                results.add(END_OF_RESULTS);
+            } else {
+                abandonedPlacements.keySet().forEach(taskId -> onLateResult(Pair.of(taskId, Optional.of(error))));
+            }
+        }
+
+        private void onCompleted() {
+            onResult(END_OF_RESULTS);
+        }
+
+        /**
+         * Returns the results not consumed yet, which are handled by the batch thread as well.
+         */
+        private synchronized List<Pair<String, Optional<Throwable>>> stopCollecting() {
+            collecting = false;
+            List<Pair<String, Optional<Throwable>>> remaining = new ArrayList<>();
+            results.drainTo(remaining);
+            return remaining;
+        }
+    }
+
+    /**
+     * Tasks assigned to a single agent, launched on Mesos with a single request.
+     */
+    class AgentLaunch {
+
+        private final List<VirtualMachineLease> leases;
+        private final List<Protos.TaskInfo> taskInfoList = new ArrayList<>();
+        private final Map<String, Pair<TitusQueuableTask, Protos.TaskInfo>> pendingPlacements = new HashMap<>();
+
+        private boolean launched;
+
+        private AgentLaunch(List<VirtualMachineLease> leases) {
+            this.leases = leases;
+        }
+
+        List<VirtualMachineLease> getLeases() {
+            return leases;
+        }
+
+        void addTaskInfo(Protos.TaskInfo taskInfo) {
+            taskInfoList.add(taskInfo);
+        }
+
+        private void placementRecorded(String taskId, Optional<Throwable> error) {
+            Pair<TitusQueuableTask, Protos.TaskInfo> pending = pendingPlacements.remove(taskId);
+            if (pending == null) {
+                return;
+            }
+            if (error.isPresent()) {
+                handlePlacementError(pending.getLeft(), error.get());
+            } else {
+                taskInfoList.add(pending.getRight());
+            }
+        }
+
+        private void abandonPendingPlacements() {
+            pendingPlacements.forEach((taskId, pending) -> {
+                logger.error("Timed out during writing task {} status update to the store; not launching it", taskId);
+                abandonedPlacements.put(taskId, pending.getLeft());
+            });
+            pendingPlacements.clear();
+        }
+
+        private void failPendingPlacements(String reason) {
+            pendingPlacements.values().forEach(pending -> brokenTaskHandler.accept(pending.getLeft(), reason));
+            pendingPlacements.clear();
+        }
+
+        private void launch() {
+            if (launched) {
+                return;
+            }
+            launched = true;
+
+            long mesosStartTime = clock.wallTime();
+            if (taskInfoList.isEmpty()) {
+                try {
+                    leases.forEach(virtualMachineService::rejectLease);
+                } finally {
+                    logger.info("Rejected offers as no task effectively placed on the agent in {}ms: offers={}", clock.wallTime() - mesosStartTime, leases.size());
+                }
+            } else {
+                try {
+                    virtualMachineService.launchTasks(taskInfoList, leases);
+                } finally {
+                    logger.info("Launched tasks on Mesos in {}ms: tasks={}, offers={}", clock.wallTime() - mesosStartTime, taskInfoList.size(), leases.size());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.Timer;
+import com.netflix.spectator.api.patterns.PolledMeter;
+import com.netflix.titus.common.util.time.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Launches tasks assigned in the scheduling iterations. If the queue size is greater than 0, the launch batches are
+ * handed over to a single "TitusTaskLauncher" thread, which processes them in the scheduling iteration order. If the
+ * queue is full, the scheduling loop thread is blocked until the launch thread catches up. If the queue size is 0,
+ * the batches are launched by the submitting thread.
+ * <p>
+ * A batch accepted by {@link #submit(Object)} is never dropped. Batches queued when the stage is shut down are
+ * launched before {@link #shutdown(long)} returns (or times out), and batches submitted after the shutdown are
+ * launched by the submitting thread.
+ */
+class TaskLaunchStage<BATCH> {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskLaunchStage.class);
+
+    static final String THREAD_NAME = "TitusTaskLauncher";
+
+    private final Consumer<BATCH> launcher;
+    private final Clock clock;
+
+    private final Timer queueLatency;
+    private final Timer launchLatency;
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    private final Optional<ThreadPoolExecutor> executor;
+
+    TaskLaunchStage(int queueSize, Consumer<BATCH> launcher, String metricRoot, Registry registry, Clock clock) {
+        this.launcher = launcher;
+        this.clock = clock;
+
+        this.queueLatency = registry.timer(metricRoot + "taskLaunchQueueLatency");
+        this.launchLatency = registry.timer(metricRoot + "taskLaunchLatency");
+        PolledMeter.using(registry).withName(metricRoot + "taskLaunchQueueDepth").monitorValue(queueDepth);
+
+        this.executor = queueSize > 0 ? Optional.of(newExecutor(queueSize)) : Optional.empty();
+    }
+
+    /**
+     * Number of batches submitted, and not yet taken by the launch thread, including the batches of scheduling
+     * threads blocked on a full queue.
+     */
+    long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    void submit(BATCH batch) {
+        if (!executor.isPresent()) {
+            launch(batch);
+            return;
+        }
+        long submitTime = clock.wallTime();
+        queueDepth.incrementAndGet();
+        executor.get().execute(() -> {
+            queueDepth.decrementAndGet();
+            queueLatency.record(clock.wallTime() - submitTime, TimeUnit.MILLISECONDS);
+            launch(batch);
+        });
+    }
+
+    /**
+     * Stops accepting new batches into the queue, and waits until all queued batches are launched.
+     *
+     * @return true if all queued batches were launched within the timeout
+     */
+    boolean shutdown(long timeoutMs) {
+        if (!executor.isPresent()) {
+            return true;
+        }
+        executor.get().shutdown();
+        try {
+            if (executor.get().awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.warn("Task launch stage not terminated in {}ms: queuedBatches={}", timeoutMs, queueDepth.get());
+        return false;
+    }
+
+    private void launch(BATCH batch) {
+        long startTime = clock.wallTime();
+        try {
+            launcher.accept(batch);
+        } catch (Exception e) {
+            logger.error("Unexpected error in the task launch stage", e);
+        } finally {
+            launchLatency.record(clock.wallTime() - startTime, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(int queueSize) {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        runnable.run();
+                        return;
+                    }
+                    try {
+                        executor.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        runnable.run();
+                        return;
+                    }
+                    // The launch thread may have terminated while we were waiting for the queue space
+                    if (executor.isShutdown() && executor.getQueue().remove(runnable)) {
+                        runnable.run();
+                    }
+                }
+        );
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler.fitness;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.netflix.fenzo.TaskRequest;
+import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheFunctions;
+import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per agent multiset of the task attributes used by the spreading fitness calculators (image, security groups and
+ * job type). The index is updated incrementally when tasks are assigned to or removed from an agent, so the
+ * fitness calculators can count matching running tasks with a single lookup, instead of recomputing attributes
+ * of all tasks on the agent for each evaluated task/agent pair.
+ * <p>
+ * The index is driven by the same task assignment and removal events that the scheduling service sends to Fenzo, and
+ * is never rebuilt during the fitness evaluation. Fenzo applies these events asynchronously, so its running task list
+ * may lag behind the index. As a safety net, {@link #reconcile(Collection)} periodically compares the task ids in the
+ * index with the ones reported by Fenzo, and corrects only the differences that persist across two checks.
+ */
+public class AgentTaskSignatureIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentTaskSignatureIndex.class);
+
+    private static final AgentSignatures EMPTY_AGENT = new AgentSignatures(Collections.emptyMap());
+
+    private final ConcurrentMap<String, AgentSignatures> agentSignatures = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> taskHostnames = new ConcurrentHashMap<>();
+
+    /**
+     * Fenzo evaluates the same task request against many agents in a row, so the last computed signature is cached
+     * for each scheduler thread.
+     */
+    private final ThreadLocal<TaskSignature> lastRequestSignature = new ThreadLocal<>();
+
+    /**
+     * Ids of tasks placed differently in the index and in Fenzo, found by the last {@link #reconcile(Collection)} call.
+     */
+    private volatile Set<String> lastDifferences = Collections.emptySet();
+
+    public void addTask(TaskRequest taskRequest, String hostname) {
+        if (hostname == null) {
+            return;
+        }
+        TaskSignature signature = TaskSignature.of(taskRequest);
+        String previousHostname = taskHostnames.put(taskRequest.getId(), hostname);
+        if (previousHostname != null && !previousHostname.equals(hostname)) {
+            removeFromAgent(taskRequest.getId(), previousHostname);
+        }
+        agentSignatures.compute(hostname, (h, current) -> (current == null ? EMPTY_AGENT : current).add(taskRequest.getId(), signature));
+    }
+
+    public void removeTask(String taskId) {
+        String hostname = taskHostnames.remove(taskId);
+        if (hostname != null) {
+            removeFromAgent(taskId, hostname);
+        }
+    }
+
+    /**
+     * @return signatures of tasks running on the given agent (excluding tasks assigned in the current scheduling iteration)
+     */
+    public AgentSignatures getAgentSignatures(VirtualMachineCurrentState targetVM) {
+        return agentSignatures.getOrDefault(targetVM.getHostname(), EMPTY_AGENT);
+    }
+
+    /**
+     * Compares task ids in the index with the running tasks reported by Fenzo. A task that is placed differently in
+     * the index and in Fenzo in two consecutive checks is updated in the index to match Fenzo. A single difference
+     * is expected, as Fenzo applies task assignments and removals asynchronously. Must not be called concurrently
+     * with itself, and is not intended for the fitness evaluation path.
+     */
+    public void reconcile(Collection<VirtualMachineCurrentState> vmStates) {
+        Map<String, TaskRequest> fenzoTasks = new HashMap<>();
+        Map<String, String> fenzoTaskHostnames = new HashMap<>();
+        for (VirtualMachineCurrentState vmState : vmStates) {
+            for (TaskRequest taskRequest : vmState.getRunningTasks()) {
+                fenzoTasks.put(taskRequest.getId(), taskRequest);
+                fenzoTaskHostnames.put(taskRequest.getId(), vmState.getHostname());
+            }
+        }
+
+        Set<String> previousDifferences = lastDifferences;
+        Set<String> differences = new HashSet<>();
+        int corrected = 0;
+        for (Map.Entry<String, String> entry : fenzoTaskHostnames.entrySet()) {
+            String taskId = entry.getKey();
+            String hostname = entry.getValue();
+            if (!hostname.equals(taskHostnames.get(taskId))) {
+                if (previousDifferences.contains(taskId)) {
+                    addTask(fenzoTasks.get(taskId), hostname);
+                    corrected++;
+                } else {
+                    differences.add(taskId);
+                }
+            }
+        }
+        for (String taskId : new ArrayList<>(taskHostnames.keySet())) {
+            if (!fenzoTaskHostnames.containsKey(taskId)) {
+                if (previousDifferences.contains(taskId)) {
+                    removeTask(taskId);
+                    corrected++;
+                } else {
+                    differences.add(taskId);
+                }
+            }
+        }
+        lastDifferences = differences;
+
+        if (corrected > 0) {
+            logger.warn("Corrected {} task signature index entries to match the Fenzo state", corrected);
+        }
+    }
+
+    /**
+     * @return signature of a task request being scheduled
+     */
+    public TaskSignature getSignature(TaskRequest taskRequest) {
+        TaskSignature last = lastRequestSignature.get();
+        if (last != null && last.taskRequest == taskRequest) {
+            return last;
+        }
+        TaskSignature signature = TaskSignature.of(taskRequest);
+        lastRequestSignature.set(signature);
+        return signature;
+    }
+
+    private void removeFromAgent(String taskId, String hostname) {
+        agentSignatures.computeIfPresent(hostname, (h, current) -> {
+            AgentSignatures updated = current.remove(taskId);
+            return updated.getTaskCount() == 0 ? null : updated;
+        });
+    }
+
+    public enum JobType {Batch, Service}
+
+    /**
+     * Task attributes relevant for spreading.
+     */
+    public static class TaskSignature {
+
+        private final TaskRequest taskRequest;
+        private final AgentResourceCacheImage image;
+        private final String joinedSecurityGroupIds;
+        private final JobType jobType;
+
+        private TaskSignature(TaskRequest taskRequest) {
+            this.taskRequest = taskRequest;
+            this.image = AgentResourceCacheFunctions.getImage(taskRequest);
+            this.joinedSecurityGroupIds = FitnessCalculatorFunctions.getJoinedSecurityGroupIds(taskRequest);
+            this.jobType = FitnessCalculatorFunctions.isServiceJob(taskRequest) ? JobType.Service : JobType.Batch;
+        }
+
+        public AgentResourceCacheImage getImage() {
+            return image;
+        }
+
+        public String getJoinedSecurityGroupIds() {
+            return joinedSecurityGroupIds;
+        }
+
+        public JobType getJobType() {
+            return jobType;
+        }
+
+        public static TaskSignature of(TaskRequest taskRequest) {
+            return new TaskSignature(taskRequest);
+        }
+    }
+
+    /**
+     * Immutable multiset of signatures of tasks running on an agent.
+     */
+    public static class AgentSignatures {
+
+        private final Map<String, TaskSignature> tasks;
+        private final Map<AgentResourceCacheImage, Integer> imageCounts = new HashMap<>();
+        private final Map<String, Integer> securityGroupCounts = new HashMap<>();
+        private final int serviceTaskCount;
+
+        private AgentSignatures(Map<String, TaskSignature> tasks) {
+            this.tasks = tasks;
+            int serviceTasks = 0;
+            for (TaskSignature signature : tasks.values()) {
+                imageCounts.merge(signature.getImage(), 1, Integer::sum);
+                securityGroupCounts.merge(signature.getJoinedSecurityGroupIds(), 1, Integer::sum);
+                if (signature.getJobType() == JobType.Service) {
+                    serviceTasks++;
+                }
+            }
+            this.serviceTaskCount = serviceTasks;
+        }
+
+        public int getTaskCount() {
+            return tasks.size();
+        }
+
+        public int countImage(AgentResourceCacheImage image) {
+            return imageCounts.getOrDefault(image, 0);
+        }
+
+        public int countSecurityGroups(String joinedSecurityGroupIds) {
+            return securityGroupCounts.getOrDefault(joinedSecurityGroupIds, 0);
+        }
+
+        public int countJobType(JobType jobType) {
+            return jobType == JobType.Service ? serviceTaskCount : tasks.size() - serviceTaskCount;
+        }
+
+        private AgentSignatures add(String taskId, TaskSignature signature) {
+            Map<String, TaskSignature> updated = new HashMap<>(tasks);
+            updated.put(taskId, signature);
+            return new AgentSignatures(updated);
+        }
+
+        private AgentSignatures remove(String taskId) {
+            if (!tasks.containsKey(taskId)) {
+                return this;
+            }
+            Map<String, TaskSignature> updated = new HashMap<>(tasks);
+            updated.remove(taskId);
+            return new AgentSignatures(updated);
+        }
+    }
+}
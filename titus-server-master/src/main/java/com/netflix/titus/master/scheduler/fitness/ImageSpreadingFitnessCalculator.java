@@ -16,13 +16,12 @@
 
 package com.netflix.titus.master.scheduler.fitness;
 
-import java.util.List;
-
+import com.netflix.fenzo.TaskAssignmentResult;
 import com.netflix.fenzo.TaskRequest;
 import com.netflix.fenzo.TaskTrackerState;
 import com.netflix.fenzo.VMTaskFitnessCalculator;
 import com.netflix.fenzo.VirtualMachineCurrentState;
-import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheFunctions;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex.TaskSignature;
 import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheImage;
 
 /**
@@ -33,6 +32,12 @@ public class ImageSpreadingFitnessCalculator implements VMTaskFitnessCalculator
     private static final double MATCHING_TASK_SCORE = 0.5;
     private static final double NO_MATCHING_TASK_SCORE = 1.0;
 
+    private final AgentTaskSignatureIndex signatureIndex;
+
+    public ImageSpreadingFitnessCalculator(AgentTaskSignatureIndex signatureIndex) {
+        this.signatureIndex = signatureIndex;
+    }
+
     @Override
     public String getName() {
         return "Image Spreading Fitness Calculator";
@@ -40,12 +45,13 @@ public class ImageSpreadingFitnessCalculator implements VMTaskFitnessCalculator
 
     @Override
     public double calculateFitness(TaskRequest taskRequest, VirtualMachineCurrentState targetVM, TaskTrackerState taskTrackerState) {
-        List<TaskRequest> allTasksOnAgent = FitnessCalculatorFunctions.getAllTasksOnAgent(targetVM);
-        AgentResourceCacheImage taskRequestImage = AgentResourceCacheFunctions.getImage(taskRequest);
-        long matchingTaskCount = FitnessCalculatorFunctions.countMatchingTasks(allTasksOnAgent, taskOnAgent -> {
-            AgentResourceCacheImage taskOnAgentImage = AgentResourceCacheFunctions.getImage(taskOnAgent);
-            return taskRequestImage.equals(taskOnAgentImage);
-        });
+        AgentResourceCacheImage taskRequestImage = signatureIndex.getSignature(taskRequest).getImage();
+        long matchingTaskCount = signatureIndex.getAgentSignatures(targetVM).countImage(taskRequestImage);
+        for (TaskAssignmentResult assignedTask : targetVM.getTasksCurrentlyAssigned()) {
+            if (taskRequestImage.equals(TaskSignature.of(assignedTask.getRequest()).getImage())) {
+                matchingTaskCount++;
+            }
+        }
 
         if (matchingTaskCount == 0) {
             return NO_MATCHING_TASK_SCORE;
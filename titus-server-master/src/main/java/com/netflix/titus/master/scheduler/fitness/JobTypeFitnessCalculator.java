@@ -21,12 +21,9 @@ import com.netflix.fenzo.TaskRequest;
 import com.netflix.fenzo.TaskTrackerState;
 import com.netflix.fenzo.VMTaskFitnessCalculator;
 import com.netflix.fenzo.VirtualMachineCurrentState;
-import com.netflix.titus.api.jobmanager.model.job.JobDescriptor;
-import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
-import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
-import com.netflix.titus.api.model.v2.parameter.Parameters;
-import com.netflix.titus.master.jobmanager.service.common.V3QueueableTask;
-import com.netflix.titus.master.scheduler.ScheduledRequest;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex.AgentSignatures;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex.JobType;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex.TaskSignature;
 
 /**
  * A fitness calculator that will prefer task placement on agents with the same job type.
@@ -36,7 +33,11 @@ public class JobTypeFitnessCalculator implements VMTaskFitnessCalculator {
     private static final double EMPTY_HOST_SCORE = 0.7;
     private static final double ZERO_SAME_JOB_TASKS_SCORE = 0.01;
 
-    private enum JobType {Batch, Service}
+    private final AgentTaskSignatureIndex signatureIndex;
+
+    public JobTypeFitnessCalculator(AgentTaskSignatureIndex signatureIndex) {
+        this.signatureIndex = signatureIndex;
+    }
 
     @Override
     public String getName() {
@@ -45,18 +46,14 @@ public class JobTypeFitnessCalculator implements VMTaskFitnessCalculator {
 
     @Override
     public double calculateFitness(TaskRequest taskRequest, VirtualMachineCurrentState targetVM, TaskTrackerState taskTrackerState) {
-        int totalTasks = 0;
-        int totalSameJobTasks = 0;
+        JobType jobType = signatureIndex.getSignature(taskRequest).getJobType();
+        AgentSignatures agentSignatures = signatureIndex.getAgentSignatures(targetVM);
 
-        for (TaskRequest request : targetVM.getRunningTasks()) {
-            totalTasks++;
-            if (isSameJobType(taskRequest, request)) {
-                totalSameJobTasks++;
-            }
-        }
+        int totalTasks = agentSignatures.getTaskCount();
+        int totalSameJobTasks = agentSignatures.countJobType(jobType);
         for (TaskAssignmentResult result : targetVM.getTasksCurrentlyAssigned()) {
             totalTasks++;
-            if (isSameJobType(taskRequest, result.getRequest())) {
+            if (TaskSignature.of(result.getRequest()).getJobType() == jobType) {
                 totalSameJobTasks++;
             }
         }
@@ -67,27 +64,4 @@ public class JobTypeFitnessCalculator implements VMTaskFitnessCalculator {
         }
         return (double) totalSameJobTasks / (double) totalTasks;
     }
-
-    private boolean isSameJobType(TaskRequest first, TaskRequest second) {
-        return getJobType(first) == getJobType(second);
-    }
-
-    private JobType getJobType(TaskRequest taskRequest) {
-        if (taskRequest instanceof ScheduledRequest) {
-            Parameters.JobType jobType = Parameters.getJobType(((ScheduledRequest) taskRequest).getJob().getParameters());
-            if (jobType == Parameters.JobType.Batch) {
-                return JobType.Batch;
-            } else if (jobType == Parameters.JobType.Service) {
-                return JobType.Service;
-            }
-        } else if (taskRequest instanceof V3QueueableTask) {
-            JobDescriptor.JobDescriptorExt jobDescriptorExt = ((V3QueueableTask) taskRequest).getJob().getJobDescriptor().getExtensions();
-            if (jobDescriptorExt instanceof BatchJobExt) {
-                return JobType.Batch;
-            } else if (jobDescriptorExt instanceof ServiceJobExt) {
-                return JobType.Service;
-            }
-        }
-        return JobType.Batch;
-    }
 }
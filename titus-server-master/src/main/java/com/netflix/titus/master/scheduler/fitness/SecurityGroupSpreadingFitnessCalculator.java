@@ -16,12 +16,12 @@
 
 package com.netflix.titus.master.scheduler.fitness;
 
-import java.util.List;
-
+import com.netflix.fenzo.TaskAssignmentResult;
 import com.netflix.fenzo.TaskRequest;
 import com.netflix.fenzo.TaskTrackerState;
 import com.netflix.fenzo.VMTaskFitnessCalculator;
 import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex.TaskSignature;
 
 /**
  * A fitness calculator that will prefer placing tasks on agents that do not have a task with the same security groups.
@@ -31,6 +31,12 @@ public class SecurityGroupSpreadingFitnessCalculator implements VMTaskFitnessCal
     private static final double MATCHING_TASK_SCORE = 0.5;
     private static final double NO_MATCHING_TASK_SCORE = 1.0;
 
+    private final AgentTaskSignatureIndex signatureIndex;
+
+    public SecurityGroupSpreadingFitnessCalculator(AgentTaskSignatureIndex signatureIndex) {
+        this.signatureIndex = signatureIndex;
+    }
+
     @Override
     public String getName() {
         return "Security Group Spreading Fitness Calculator";
@@ -38,12 +44,13 @@ public class SecurityGroupSpreadingFitnessCalculator implements VMTaskFitnessCal
 
     @Override
     public double calculateFitness(TaskRequest taskRequest, VirtualMachineCurrentState targetVM, TaskTrackerState taskTrackerState) {
-        List<TaskRequest> allTasksOnAgent = FitnessCalculatorFunctions.getAllTasksOnAgent(targetVM);
-        String currentTaskRequestJoinedSecurityGroupIds = FitnessCalculatorFunctions.getJoinedSecurityGroupIds(taskRequest);
-        long matchingTaskCount = FitnessCalculatorFunctions.countMatchingTasks(allTasksOnAgent, taskOnAgent -> {
-            String taskOnAgentJoinedSecurityGroupIds = FitnessCalculatorFunctions.getJoinedSecurityGroupIds(taskOnAgent);
-            return currentTaskRequestJoinedSecurityGroupIds.equals(taskOnAgentJoinedSecurityGroupIds);
-        });
+        String currentTaskRequestJoinedSecurityGroupIds = signatureIndex.getSignature(taskRequest).getJoinedSecurityGroupIds();
+        long matchingTaskCount = signatureIndex.getAgentSignatures(targetVM).countSecurityGroups(currentTaskRequestJoinedSecurityGroupIds);
+        for (TaskAssignmentResult assignedTask : targetVM.getTasksCurrentlyAssigned()) {
+            if (currentTaskRequestJoinedSecurityGroupIds.equals(TaskSignature.of(assignedTask.getRequest()).getJoinedSecurityGroupIds())) {
+                matchingTaskCount++;
+            }
+        }
 
         if (matchingTaskCount == 0) {
             return NO_MATCHING_TASK_SCORE;
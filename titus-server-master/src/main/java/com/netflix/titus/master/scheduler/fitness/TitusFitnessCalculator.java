@@ -42,11 +42,13 @@ public class TitusFitnessCalculator implements VMTaskFitnessCalculator {
     public static final com.netflix.fenzo.functions.Func1<Double, Boolean> fitnessGoodEnoughFunction =
             f -> f > 0.9;
 
-    public TitusFitnessCalculator(SchedulerConfiguration configuration, AgentResourceCache agentResourceCache) {
+    public TitusFitnessCalculator(SchedulerConfiguration configuration,
+                                  AgentResourceCache agentResourceCache,
+                                  AgentTaskSignatureIndex signatureIndex) {
         this.configuration = configuration;
-        this.criticalServiceJobSpreader = criticalServiceJobSpreader();
-        this.criticalServiceJobBinPacker = criticalServiceJobBinPacker(agentResourceCache);
-        this.defaultFitnessCalculator = defaultFitnessCalculator(agentResourceCache);
+        this.criticalServiceJobSpreader = criticalServiceJobSpreader(signatureIndex);
+        this.criticalServiceJobBinPacker = criticalServiceJobBinPacker(agentResourceCache, signatureIndex);
+        this.defaultFitnessCalculator = defaultFitnessCalculator(agentResourceCache, signatureIndex);
     }
 
     @Override
@@ -66,28 +68,28 @@ public class TitusFitnessCalculator implements VMTaskFitnessCalculator {
         return defaultFitnessCalculator.calculateFitness(taskRequest, targetVM, taskTrackerState);
     }
 
-    private VMTaskFitnessCalculator criticalServiceJobSpreader() {
+    private VMTaskFitnessCalculator criticalServiceJobSpreader(AgentTaskSignatureIndex signatureIndex) {
         List<WeightedFitnessCalculator> calculators = new ArrayList<>();
         calculators.add(new WeightedFitnessCalculator(BinPackingFitnessCalculators.cpuMemBinPacker, 0.1));
-        calculators.add(new WeightedFitnessCalculator(new JobTypeFitnessCalculator(), 0.1));
-        calculators.add(new WeightedFitnessCalculator(new ImageSpreadingFitnessCalculator(), 0.2));
-        calculators.add(new WeightedFitnessCalculator(new SecurityGroupSpreadingFitnessCalculator(), 0.6));
+        calculators.add(new WeightedFitnessCalculator(new JobTypeFitnessCalculator(signatureIndex), 0.1));
+        calculators.add(new WeightedFitnessCalculator(new ImageSpreadingFitnessCalculator(signatureIndex), 0.2));
+        calculators.add(new WeightedFitnessCalculator(new SecurityGroupSpreadingFitnessCalculator(signatureIndex), 0.6));
         return new WeightedAverageFitnessCalculator(calculators);
     }
 
-    private VMTaskFitnessCalculator criticalServiceJobBinPacker(AgentResourceCache agentResourceCache) {
+    private VMTaskFitnessCalculator criticalServiceJobBinPacker(AgentResourceCache agentResourceCache, AgentTaskSignatureIndex signatureIndex) {
         List<WeightedFitnessCalculator> calculators = new ArrayList<>();
-        calculators.add(new WeightedFitnessCalculator(new JobTypeFitnessCalculator(), 0.1));
+        calculators.add(new WeightedFitnessCalculator(new JobTypeFitnessCalculator(signatureIndex), 0.1));
         calculators.add(new WeightedFitnessCalculator(BinPackingFitnessCalculators.cpuMemBinPacker, 0.2));
         calculators.add(new WeightedFitnessCalculator(new CachedImageFitnessCalculator(agentResourceCache), 0.3));
         calculators.add(new WeightedFitnessCalculator(new CachedSecurityGroupFitnessCalculator(agentResourceCache), 0.4));
         return new WeightedAverageFitnessCalculator(calculators);
     }
 
-    private VMTaskFitnessCalculator defaultFitnessCalculator(AgentResourceCache agentResourceCache) {
+    private VMTaskFitnessCalculator defaultFitnessCalculator(AgentResourceCache agentResourceCache, AgentTaskSignatureIndex signatureIndex) {
         List<WeightedFitnessCalculator> calculators = new ArrayList<>();
         calculators.add(new WeightedFitnessCalculator(BinPackingFitnessCalculators.cpuMemBinPacker, 0.2));
-        calculators.add(new WeightedFitnessCalculator(new JobTypeFitnessCalculator(), 0.2));
+        calculators.add(new WeightedFitnessCalculator(new JobTypeFitnessCalculator(signatureIndex), 0.2));
         calculators.add(new WeightedFitnessCalculator(new CachedImageFitnessCalculator(agentResourceCache), 0.3));
         calculators.add(new WeightedFitnessCalculator(new CachedSecurityGroupFitnessCalculator(agentResourceCache), 0.3));
         return new WeightedAverageFitnessCalculator(calculators);
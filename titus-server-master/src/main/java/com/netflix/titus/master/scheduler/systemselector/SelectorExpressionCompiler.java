@@ -0,0 +1,580 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler.systemselector;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.netflix.titus.api.scheduler.service.SchedulerException;
+
+/**
+ * Compiles system selector expressions written in a subset of JavaScript into a tree of Java lambdas, so they can be
+ * evaluated without a script engine. The supported subset covers the typical selector predicates:
+ * <ul>
+ * <li>string (single or double quoted), number, boolean and null literals</li>
+ * <li>context variables and property paths (<tt>job.jobDescriptor.applicationName</tt>), resolved with Java bean getters
+ * or map lookups</li>
+ * <li>method calls (<tt>task.getId().startsWith('abc')</tt>) and indexed map access (<tt>instance.attributes['zone']</tt>)</li>
+ * <li>comparison operators (<tt>==, ===, !=, !==, &lt;, &lt;=, &gt;, &gt;=</tt>), logical operators (<tt>&amp;&amp;, ||, !</tt>)
+ * and parentheses</li>
+ * </ul>
+ * Getters and methods are resolved once per expression node and runtime class. Expressions using any other language
+ * construct are not compiled, and must be evaluated by a script engine.
+ */
+final class SelectorExpressionCompiler {
+
+    /**
+     * Compiled expression node.
+     */
+    @FunctionalInterface
+    interface CompiledExpression {
+        Object evaluate(Map<String, Object> context);
+    }
+
+    private SelectorExpressionCompiler() {
+    }
+
+    /**
+     * @return compiled expression or {@link Optional#empty()} if the expression uses a construct not supported by the compiler
+     */
+    static Optional<CompiledExpression> compile(String expression) {
+        try {
+            Parser parser = new Parser(tokenize(expression));
+            CompiledExpression result = parser.parseExpression();
+            parser.expectEnd();
+            return Optional.of(result);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Evaluates the compiled expression as a predicate. Only the boolean value true is treated as a match.
+     */
+    static boolean test(CompiledExpression expression, Map<String, Object> context) {
+        return Boolean.TRUE.equals(expression.evaluate(context));
+    }
+
+    /*
+     * Tokenizer
+     */
+
+    private enum TokenType {
+        Identifier,
+        Number,
+        String,
+        Symbol,
+        End
+    }
+
+    private static final class Token {
+
+        private final TokenType type;
+        private final String text;
+
+        private Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        private boolean is(String symbol) {
+            return type == TokenType.Symbol && text.equals(symbol);
+        }
+    }
+
+    private static final String[] SYMBOLS = {"===", "!==", "==", "!=", "<=", ">=", "&&", "||", "<", ">", "!", "(", ")", ".", ",", "[", "]"};
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int pos = 0;
+        int length = expression.length();
+        while (pos < length) {
+            char c = expression.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = pos;
+                while (pos < length && Character.isJavaIdentifierPart(expression.charAt(pos))) {
+                    pos++;
+                }
+                tokens.add(new Token(TokenType.Identifier, expression.substring(start, pos)));
+            } else if (Character.isDigit(c)) {
+                int start = pos;
+                while (pos < length && (Character.isDigit(expression.charAt(pos)) || expression.charAt(pos) == '.')) {
+                    pos++;
+                }
+                tokens.add(new Token(TokenType.Number, expression.substring(start, pos)));
+            } else if (c == '\'' || c == '"') {
+                StringBuilder sb = new StringBuilder();
+                pos++;
+                while (pos < length && expression.charAt(pos) != c) {
+                    char next = expression.charAt(pos);
+                    if (next == '\\') {
+                        if (pos + 1 >= length) {
+                            throw new IllegalArgumentException("Unterminated string literal");
+                        }
+                        next = expression.charAt(++pos);
+                    }
+                    sb.append(next);
+                    pos++;
+                }
+                if (pos >= length) {
+                    throw new IllegalArgumentException("Unterminated string literal");
+                }
+                pos++;
+                tokens.add(new Token(TokenType.String, sb.toString()));
+            } else {
+                String symbol = null;
+                for (String candidate : SYMBOLS) {
+                    if (expression.startsWith(candidate, pos)) {
+                        symbol = candidate;
+                        break;
+                    }
+                }
+                if (symbol == null) {
+                    throw new IllegalArgumentException("Unsupported character '" + c + "' at position " + pos);
+                }
+                tokens.add(new Token(TokenType.Symbol, symbol));
+                pos += symbol.length();
+            }
+        }
+        tokens.add(new Token(TokenType.End, ""));
+        return tokens;
+    }
+
+    /*
+     * Recursive descent parser, which produces the compiled expression tree directly.
+     */
+
+    private static final class Parser {
+
+        private final List<Token> tokens;
+        private int pos;
+
+        private Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        private Token peek() {
+            return tokens.get(pos);
+        }
+
+        private Token next() {
+            return tokens.get(pos++);
+        }
+
+        private boolean accept(String symbol) {
+            if (peek().is(symbol)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String symbol) {
+            if (!accept(symbol)) {
+                throw new IllegalArgumentException("Expected '" + symbol + "', but found '" + peek().text + '\'');
+            }
+        }
+
+        private void expectEnd() {
+            if (peek().type != TokenType.End) {
+                throw new IllegalArgumentException("Unexpected token '" + peek().text + '\'');
+            }
+        }
+
+        private CompiledExpression parseExpression() {
+            return parseOr();
+        }
+
+        private CompiledExpression parseOr() {
+            CompiledExpression left = parseAnd();
+            while (accept("||")) {
+                CompiledExpression first = left;
+                CompiledExpression second = parseAnd();
+                left = context -> isTrue(first.evaluate(context)) || isTrue(second.evaluate(context));
+            }
+            return left;
+        }
+
+        private CompiledExpression parseAnd() {
+            CompiledExpression left = parseNot();
+            while (accept("&&")) {
+                CompiledExpression first = left;
+                CompiledExpression second = parseNot();
+                left = context -> isTrue(first.evaluate(context)) && isTrue(second.evaluate(context));
+            }
+            return left;
+        }
+
+        private CompiledExpression parseNot() {
+            if (accept("!")) {
+                CompiledExpression operand = parseNot();
+                return context -> !isTrue(operand.evaluate(context));
+            }
+            return parseComparison();
+        }
+
+        private CompiledExpression parseComparison() {
+            CompiledExpression left = parseOperand();
+            Token token = peek();
+            if (token.type != TokenType.Symbol) {
+                return left;
+            }
+            switch (token.text) {
+                case "==":
+                    next();
+                    return equality(left, parseOperand(), SelectorExpressionCompiler::looseEquals, false);
+                case "===":
+                    next();
+                    return equality(left, parseOperand(), SelectorExpressionCompiler::strictEquals, false);
+                case "!=":
+                    next();
+                    return equality(left, parseOperand(), SelectorExpressionCompiler::looseEquals, true);
+                case "!==":
+                    next();
+                    return equality(left, parseOperand(), SelectorExpressionCompiler::strictEquals, true);
+                case "<":
+                    next();
+                    return relational(left, parseOperand(), result -> result < 0);
+                case "<=":
+                    next();
+                    return relational(left, parseOperand(), result -> result <= 0);
+                case ">":
+                    next();
+                    return relational(left, parseOperand(), result -> result > 0);
+                case ">=":
+                    next();
+                    return relational(left, parseOperand(), result -> result >= 0);
+                default:
+                    return left;
+            }
+        }
+
+        private CompiledExpression parseOperand() {
+            Token token = next();
+            switch (token.type) {
+                case String:
+                    String stringValue = token.text;
+                    return context -> stringValue;
+                case Number:
+                    Double numberValue;
+                    try {
+                        numberValue = Double.valueOf(token.text);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number " + token.text);
+                    }
+                    return context -> numberValue;
+                case Identifier:
+                    return parsePath(token.text);
+                case Symbol:
+                    if (token.is("(")) {
+                        CompiledExpression inner = parseExpression();
+                        expect(")");
+                        return inner;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            throw new IllegalArgumentException("Unexpected token '" + token.text + '\'');
+        }
+
+        private CompiledExpression parsePath(String root) {
+            CompiledExpression current;
+            switch (root) {
+                case "true":
+                    return context -> Boolean.TRUE;
+                case "false":
+                    return context -> Boolean.FALSE;
+                case "null":
+                case "undefined":
+                    return context -> null;
+                default:
+                    current = context -> context.get(root);
+            }
+            while (true) {
+                if (accept(".")) {
+                    Token name = next();
+                    if (name.type != TokenType.Identifier) {
+                        throw new IllegalArgumentException("Expected property name, but found '" + name.text + '\'');
+                    }
+                    if (accept("(")) {
+                        current = methodCall(current, name.text, parseArguments());
+                    } else {
+                        current = property(current, name.text);
+                    }
+                } else if (accept("[")) {
+                    Token key = next();
+                    if (key.type != TokenType.String) {
+                        throw new IllegalArgumentException("Only string literal keys are supported");
+                    }
+                    expect("]");
+                    current = property(current, key.text);
+                } else {
+                    return current;
+                }
+            }
+        }
+
+        private List<CompiledExpression> parseArguments() {
+            if (accept(")")) {
+                return Collections.emptyList();
+            }
+            List<CompiledExpression> arguments = new ArrayList<>();
+            do {
+                arguments.add(parseExpression());
+            } while (accept(","));
+            expect(")");
+            return arguments;
+        }
+    }
+
+    /*
+     * Expression nodes
+     */
+
+    private interface IntPredicate {
+        boolean test(int value);
+    }
+
+    private interface EqualityFunction {
+        boolean test(Object first, Object second);
+    }
+
+    private static CompiledExpression equality(CompiledExpression left, CompiledExpression right, EqualityFunction equalityFunction, boolean negate) {
+        return context -> equalityFunction.test(left.evaluate(context), right.evaluate(context)) != negate;
+    }
+
+    private static CompiledExpression relational(CompiledExpression left, CompiledExpression right, IntPredicate predicate) {
+        return context -> {
+            Object first = left.evaluate(context);
+            Object second = right.evaluate(context);
+            if (first == null || second == null) {
+                return false;
+            }
+            if (first instanceof Number || second instanceof Number) {
+                Double firstNumber = toNumber(first);
+                Double secondNumber = toNumber(second);
+                return firstNumber != null && secondNumber != null
+                        && !firstNumber.isNaN() && !secondNumber.isNaN()
+                        && predicate.test(Double.compare(firstNumber, secondNumber));
+            }
+            return predicate.test(first.toString().compareTo(second.toString()));
+        };
+    }
+
+    private static CompiledExpression property(CompiledExpression target, String name) {
+        ClassValue<Optional<Method>> getters = new ClassValue<Optional<Method>>() {
+            @Override
+            protected Optional<Method> computeValue(Class<?> type) {
+                return findGetter(type, name);
+            }
+        };
+        return context -> {
+            Object value = target.evaluate(context);
+            if (value == null) {
+                throw SchedulerException.systemSelectorEvaluationError("Cannot read property '%s' of null", null, name);
+            }
+            if (value instanceof Map) {
+                return ((Map<?, ?>) value).get(name);
+            }
+            Optional<Method> getter = getters.get(value.getClass());
+            return getter.isPresent() ? invoke(getter.get(), value, new Object[0]) : null;
+        };
+    }
+
+    private static CompiledExpression methodCall(CompiledExpression target, String name, List<CompiledExpression> arguments) {
+        int argumentCount = arguments.size();
+        ClassValue<List<Method>> candidates = new ClassValue<List<Method>>() {
+            @Override
+            protected List<Method> computeValue(Class<?> type) {
+                return findMethods(type, name, argumentCount);
+            }
+        };
+        return context -> {
+            Object value = target.evaluate(context);
+            if (value == null) {
+                throw SchedulerException.systemSelectorEvaluationError("Cannot call method '%s' of null", null, name);
+            }
+            Object[] argumentValues = new Object[argumentCount];
+            for (int i = 0; i < argumentCount; i++) {
+                argumentValues[i] = arguments.get(i).evaluate(context);
+            }
+            for (Method method : candidates.get(value.getClass())) {
+                Object[] converted = convertArguments(method.getParameterTypes(), argumentValues);
+                if (converted != null) {
+                    return invoke(method, value, converted);
+                }
+            }
+            throw SchedulerException.systemSelectorEvaluationError("No method %s with %s argument(s) in %s", null, name, argumentCount, value.getClass().getName());
+        };
+    }
+
+    /*
+     * Helper functions
+     */
+
+    private static boolean isTrue(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return number != 0 && !Double.isNaN(number);
+        }
+        if (value instanceof String) {
+            return !((String) value).isEmpty();
+        }
+        return true;
+    }
+
+    /**
+     * Approximates JavaScript loose equality for Java objects: numbers are compared by value (NaN is not equal to
+     * anything), an object compared with a string is converted to its string representation (for example an enum value),
+     * and two other Java objects are equal only if they are the same object.
+     */
+    private static boolean looseEquals(Object first, Object second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        if (first instanceof Number || second instanceof Number) {
+            Double firstNumber = toNumber(first);
+            Double secondNumber = toNumber(second);
+            return firstNumber != null && secondNumber != null && firstNumber.doubleValue() == secondNumber.doubleValue();
+        }
+        if (first instanceof String || second instanceof String) {
+            return first.toString().equals(second.toString());
+        }
+        if (first instanceof Boolean && second instanceof Boolean) {
+            return first.equals(second);
+        }
+        return first == second;
+    }
+
+    /**
+     * JavaScript strict equality for Java objects: values of different JavaScript types (number, string, boolean or
+     * object) are never equal, so no conversion is made. Numbers, strings and booleans are compared by value (NaN is
+     * not equal to anything), and other Java objects are equal only if they are the same object. Null and undefined are
+     * not distinguished.
+     */
+    private static boolean strictEquals(Object first, Object second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        if (first instanceof Number && second instanceof Number) {
+            return ((Number) first).doubleValue() == ((Number) second).doubleValue();
+        }
+        if ((first instanceof String && second instanceof String) || (first instanceof Boolean && second instanceof Boolean)) {
+            return first.equals(second);
+        }
+        return first == second;
+    }
+
+    private static Double toNumber(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            String text = ((String) value).trim();
+            // As in JavaScript, an empty string converts to 0
+            if (text.isEmpty()) {
+                return 0.0;
+            }
+            try {
+                return Double.valueOf(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1.0 : 0.0;
+        }
+        return null;
+    }
+
+    private static Optional<Method> findGetter(Class<?> type, String name) {
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (String methodName : new String[]{"get" + suffix, "is" + suffix}) {
+            List<Method> methods = findMethods(type, methodName, 0);
+            if (!methods.isEmpty()) {
+                return Optional.of(methods.get(0));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static List<Method> findMethods(Class<?> type, String name, int parameterCount) {
+        List<Method> result = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == parameterCount && !Modifier.isStatic(method.getModifiers())) {
+                if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                    try {
+                        method.setAccessible(true);
+                    } catch (SecurityException e) {
+                        continue;
+                    }
+                }
+                result.add(method);
+            }
+        }
+        return result;
+    }
+
+    private static Object[] convertArguments(Class<?>[] parameterTypes, Object[] arguments) {
+        Object[] converted = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            Object argument = arguments[i];
+            Class<?> parameterType = parameterTypes[i];
+            if (argument == null) {
+                if (parameterType.isPrimitive()) {
+                    return null;
+                }
+                converted[i] = null;
+            } else if (argument instanceof Number && (parameterType == int.class || parameterType == Integer.class)) {
+                converted[i] = ((Number) argument).intValue();
+            } else if (argument instanceof Number && (parameterType == long.class || parameterType == Long.class)) {
+                converted[i] = ((Number) argument).longValue();
+            } else if (argument instanceof Number && (parameterType == double.class || parameterType == Double.class)) {
+                converted[i] = ((Number) argument).doubleValue();
+            } else if (argument instanceof Boolean && parameterType == boolean.class) {
+                converted[i] = argument;
+            } else if (parameterType.isInstance(argument)) {
+                converted[i] = argument;
+            } else {
+                return null;
+            }
+        }
+        return converted;
+    }
+
+    private static Object invoke(Method method, Object target, Object[] arguments) {
+        try {
+            return method.invoke(target, arguments);
+        } catch (Exception e) {
+            throw SchedulerException.systemSelectorEvaluationError("Method %s invocation failure", e, method.getName());
+        }
+    }
+}
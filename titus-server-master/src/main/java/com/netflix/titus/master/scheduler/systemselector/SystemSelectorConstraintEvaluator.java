@@ -66,9 +66,12 @@ public class SystemSelectorConstraintEvaluator implements GlobalConstraintEvalua
     @Override
     public Result evaluate(TaskRequest taskRequest, VirtualMachineCurrentState targetVM, TaskTrackerState taskTrackerState) {
         List<Match> matches = systemSelectorService.getMustMatchesForEvaluation();
+        if (matches.isEmpty()) {
+            return new Result(true, "");
+        }
+        Map<String, Object> context = createContext(taskRequest, targetVM, agentManagementService, schedulerConfiguration);
         for (Match match : matches) {
             String selectExpression = match.getSelectExpression();
-            Map<String, Object> context = createContext(taskRequest, targetVM, agentManagementService, schedulerConfiguration);
             boolean selectResult = false;
             try {
                 logger.debug("Evaluating select expression: {} for taskRequest: {} on targetVM: {}", selectExpression, taskRequest, targetVM);
@@ -17,6 +17,7 @@
 package com.netflix.titus.master.scheduler.systemselector;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import javax.inject.Inject;
@@ -28,18 +29,23 @@ import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Registry;
 import com.netflix.titus.api.scheduler.service.SchedulerException;
 import com.netflix.titus.common.runtime.TitusRuntime;
 import com.netflix.titus.common.util.cache.Cache;
 import com.netflix.titus.common.util.cache.Caches;
 import com.netflix.titus.master.scheduler.SchedulerConfiguration;
+import com.netflix.titus.master.scheduler.systemselector.SelectorExpressionCompiler.CompiledExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.netflix.titus.master.MetricConstants.METRIC_SCHEDULING_SERVICE;
 
 /**
- * Evaluates system selector expressions based on an expression statement and the context.
+ * Evaluates system selector expressions based on an expression statement and the context. Expressions are compiled
+ * once by {@link SelectorExpressionCompiler}, and evaluated directly against the context objects. The script engine
+ * is used only for expressions the compiler does not support.
  */
 @Singleton
 public class SystemSelectorEvaluator {
@@ -47,15 +53,30 @@ public class SystemSelectorEvaluator {
     private static final Logger logger = LoggerFactory.getLogger(SystemSelectorEvaluator.class);
     private static final String SCRIPT_ENGINE_NAME = "nashorn";
     private static final String METRIC_SCRIPT_ENGINE_EVALUATORS = "systemSelectorEvaluator.scriptEngineEvaluators";
+    private static final String METRIC_EVALUATIONS = "systemSelectorEvaluator.evaluations";
+
+    private final boolean nativeEvaluationEnabled;
     private final Cache<Long, ScriptEngineEvaluator> scriptEngineEvaluators;
     private final ScriptEngine validatorScriptEngine;
 
+    private final ConcurrentMap<String, Optional<CompiledExpression>> compiledExpressions = new ConcurrentHashMap<>();
+
+    private final Counter nativeEvaluationsCounter;
+    private final Counter scriptEngineEvaluationsCounter;
+
     @Inject
     public SystemSelectorEvaluator(SchedulerConfiguration configuration, TitusRuntime titusRuntime) {
-        scriptEngineEvaluators = Caches.instrumentedCacheWithMaxSize(
-                configuration.getSchedulerMaxConcurrent(), METRIC_SCHEDULING_SERVICE + METRIC_SCRIPT_ENGINE_EVALUATORS, titusRuntime.getRegistry()
+        this(configuration.getSchedulerMaxConcurrent(), configuration.isSystemSelectorNativeEvaluationEnabled(), titusRuntime.getRegistry());
+    }
+
+    public SystemSelectorEvaluator(int maxScriptEngines, boolean nativeEvaluationEnabled, Registry registry) {
+        this.nativeEvaluationEnabled = nativeEvaluationEnabled;
+        this.scriptEngineEvaluators = Caches.instrumentedCacheWithMaxSize(
+                maxScriptEngines, METRIC_SCHEDULING_SERVICE + METRIC_SCRIPT_ENGINE_EVALUATORS, registry
         );
-        validatorScriptEngine = new ScriptEngineManager().getEngineByName(SCRIPT_ENGINE_NAME);
+        this.validatorScriptEngine = new ScriptEngineManager().getEngineByName(SCRIPT_ENGINE_NAME);
+        this.nativeEvaluationsCounter = registry.counter(METRIC_SCHEDULING_SERVICE + METRIC_EVALUATIONS, "evaluator", "native");
+        this.scriptEngineEvaluationsCounter = registry.counter(METRIC_SCHEDULING_SERVICE + METRIC_EVALUATIONS, "evaluator", "scriptEngine");
     }
 
     public void validate(String expression, Map<String, Object> context) {
@@ -75,6 +96,21 @@ public class SystemSelectorEvaluator {
     }
 
     public boolean evaluate(String expression, Map<String, Object> context) {
+        if (nativeEvaluationEnabled) {
+            Optional<CompiledExpression> compiled = compiledExpressions.computeIfAbsent(expression, e -> {
+                Optional<CompiledExpression> result = SelectorExpressionCompiler.compile(e);
+                if (!result.isPresent()) {
+                    logger.info("Expression not supported by the native compiler, using script engine: {}", e);
+                }
+                return result;
+            });
+            if (compiled.isPresent()) {
+                nativeEvaluationsCounter.increment();
+                return SelectorExpressionCompiler.test(compiled.get(), context);
+            }
+        }
+        scriptEngineEvaluationsCounter.increment();
+
         // Create a script engine per scheduler thread in order to reduce contention
         long threadId = Thread.currentThread().getId();
         ScriptEngineEvaluator scriptEngineEvaluator = scriptEngineEvaluators.get(threadId, t -> new ScriptEngineEvaluator());
@@ -105,7 +141,7 @@ public class SystemSelectorEvaluator {
                 }
                 try {
                     logger.debug("Evaluating expression: {}", expression);
-                    Object result = scriptEngine.eval(expression, scriptContext);
+                    Object result = compiledScript.eval(scriptContext);
                     logger.debug("Evaluated expression: {} and got result: {}", expression, result);
                     if (result == Boolean.TRUE) {
                         return true;
@@ -67,11 +67,14 @@ public class SystemSelectorFitnessCalculator implements VMTaskFitnessCalculator
     @Override
     public double calculateFitness(TaskRequest taskRequest, VirtualMachineCurrentState targetVM, TaskTrackerState taskTrackerState) {
         List<Match> matches = systemSelectorService.getShouldMatchesForEvaluation();
+        if (matches.isEmpty()) {
+            return NO_MATCH_SCORE;
+        }
+        Map<String, Object> context = createContext(taskRequest, targetVM, agentManagementService, schedulerConfiguration);
         double totalMatchEvaluations = 0;
         double totalMatches = 0;
         for (Match match : matches) {
             String selectExpression = match.getSelectExpression();
-            Map<String, Object> context = createContext(taskRequest, targetVM, agentManagementService, schedulerConfiguration);
             boolean selectResult = false;
             try {
                 logger.debug("Evaluating select expression: {} for taskRequest: {} on targetVM: {}", selectExpression, taskRequest, targetVM);
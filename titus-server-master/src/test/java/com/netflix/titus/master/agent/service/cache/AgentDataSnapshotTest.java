@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.agent.service.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.netflix.titus.api.agent.model.AgentInstance;
+import com.netflix.titus.api.agent.model.AgentInstanceGroup;
+import com.netflix.titus.testkit.model.agent.AgentGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AgentDataSnapshotTest {
+
+    private AgentInstanceGroup instanceGroup1;
+    private AgentInstanceGroup instanceGroup2;
+    private List<AgentInstance> instances1;
+    private List<AgentInstance> instances2;
+
+    private AgentDataSnapshot snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        List<AgentInstanceGroup> instanceGroups = AgentGenerator.agentServerGroups().toList(2);
+        this.instanceGroup1 = instanceGroups.get(0);
+        this.instanceGroup2 = instanceGroups.get(1);
+        this.instances1 = AgentGenerator.agentInstances(instanceGroup1).toList(3);
+        this.instances2 = AgentGenerator.agentInstances(instanceGroup2).toList(2);
+
+        this.snapshot = new AgentDataSnapshot()
+                .updateInstanceGroup(instanceGroup1, instances1)
+                .updateInstanceGroup(instanceGroup2, instances2);
+    }
+
+    @Test
+    public void testInitialState() throws Exception {
+        assertThat(snapshot.getInstanceGroupIds()).containsOnly(instanceGroup1.getId(), instanceGroup2.getId());
+        assertThat(snapshot.getInstanceGroups()).containsOnly(instanceGroup1, instanceGroup2);
+        assertThat(snapshot.getInstances(instanceGroup1.getId())).containsOnlyElementsOf(instances1);
+        assertThat(snapshot.getInstance(instances2.get(0).getId())).isEqualTo(instances2.get(0));
+    }
+
+    @Test
+    public void testUpdateAgentInstanceKeepsOtherInstances() throws Exception {
+        AgentInstance updated = instances1.get(0).toBuilder().withHostname("updatedHost").build();
+        AgentDataSnapshot newSnapshot = snapshot.updateAgentInstance(updated);
+
+        assertThat(newSnapshot.getInstance(updated.getId())).isEqualTo(updated);
+        assertThat(newSnapshot.getInstances(instanceGroup1.getId())).containsOnly(updated, instances1.get(1), instances1.get(2));
+
+        // Other instance groups and the original snapshot are not affected
+        assertThat(newSnapshot.getInstancesById(instanceGroup2.getId())).isSameAs(snapshot.getInstancesById(instanceGroup2.getId()));
+        assertThat(snapshot.getInstance(updated.getId())).isEqualTo(instances1.get(0));
+    }
+
+    @Test
+    public void testUpdateInstanceGroupWithInstances() throws Exception {
+        AgentInstance added = AgentGenerator.agentInstances(instanceGroup1).toList(instances1.size() + 1).get(instances1.size());
+        AgentDataSnapshot newSnapshot = snapshot.updateInstanceGroup(instanceGroup1, asList(instances1.get(1), added));
+
+        assertThat(newSnapshot.getInstances(instanceGroup1.getId())).containsOnly(instances1.get(1), added);
+        assertThat(newSnapshot.getInstance(added.getId())).isEqualTo(added);
+        assertThat(newSnapshot.getInstance(instances1.get(0).getId())).isNull();
+        assertThat(newSnapshot.getInstance(instances1.get(2).getId())).isNull();
+    }
+
+    @Test
+    public void testUpdateInstanceGroupOnly() throws Exception {
+        AgentInstanceGroup updated = instanceGroup1.toBuilder().withMax(instanceGroup1.getMax() + 1).build();
+        AgentDataSnapshot newSnapshot = snapshot.updateInstanceGroup(updated);
+
+        assertThat(newSnapshot.getInstanceGroup(updated.getId())).isEqualTo(updated);
+        assertThat(newSnapshot.getInstancesById(updated.getId())).isSameAs(snapshot.getInstancesById(updated.getId()));
+    }
+
+    @Test
+    public void testRemoveInstances() throws Exception {
+        AgentDataSnapshot newSnapshot = snapshot.removeInstances(instanceGroup1.getId(), Collections.singleton(instances1.get(0).getId()));
+
+        assertThat(newSnapshot.getInstances(instanceGroup1.getId())).containsOnly(instances1.get(1), instances1.get(2));
+        assertThat(newSnapshot.getInstance(instances1.get(0).getId())).isNull();
+        assertThat(newSnapshot.removeInstances(instanceGroup1.getId(), Collections.singleton("unknown"))).isSameAs(newSnapshot);
+    }
+
+    @Test
+    public void testRemoveInstanceGroup() throws Exception {
+        AgentDataSnapshot newSnapshot = snapshot.removeInstanceGroup(instanceGroup1.getId());
+
+        assertThat(newSnapshot.getInstanceGroupIds()).containsOnly(instanceGroup2.getId());
+        assertThat(newSnapshot.getInstances(instanceGroup1.getId())).isNull();
+        instances1.forEach(instance -> assertThat(newSnapshot.getInstance(instance.getId())).isNull());
+        assertThat(newSnapshot.getInstance(instances2.get(0).getId())).isEqualTo(instances2.get(0));
+    }
+
+    @Test
+    public void testInitWithStaleDataSnapshot() throws Exception {
+        List<AgentInstance> allInstances = new ArrayList<>(instances1);
+        allInstances.addAll(instances2);
+        AgentDataSnapshot initial = AgentDataSnapshot.initWithStaleDataSnapshot(asList(instanceGroup1, instanceGroup2), allInstances);
+
+        assertThat(initial.getInstances(instanceGroup1.getId())).containsOnlyElementsOf(instances1);
+        assertThat(initial.getInstances(instanceGroup2.getId())).containsOnlyElementsOf(instances2);
+    }
+}
@@ -162,11 +162,13 @@ public class DefaultAgentCacheTest {
         String instanceGroupId = testConnector.takeInstanceGroup(0).getId();
         int initialCount = cache.getAgentInstances(instanceGroupId).size();
 
+        Instance addedInstance = instanceGenerator1.getValue();
         instanceGenerator1 = instanceGenerator1.apply(testConnector::addInstance);
         testScheduler.advanceTimeBy(CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
 
         assertThat(cache.getAgentInstances(instanceGroupId).size()).isEqualTo(initialCount + 1);
-        expectInstanceGroupUpdateEvent(eventSubscriber, instanceGroupId);
+        assertThat(cache.getAgentInstance(addedInstance.getId())).isNotNull();
+        expectInstanceUpdateEvent(eventSubscriber, addedInstance.getId());
     }
 
     @Test
@@ -178,7 +180,8 @@ public class DefaultAgentCacheTest {
 
         testScheduler.advanceTimeBy(CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
         assertThat(cache.getAgentInstance(updatedInstance.getId()).getLifecycleStatus().getState()).isEqualTo(InstanceLifecycleState.Stopped);
-        expectInstanceGroupUpdateEvent(eventSubscriber, testConnector.takeInstanceGroup(0).getId());
+        assertThat(cache.getAgentInstances(testConnector.takeInstanceGroup(0).getId())).hasSize(testConnector.takeInstances(0).size());
+        expectInstanceUpdateEvent(eventSubscriber, updatedInstance.getId());
     }
 
     @Test
@@ -199,10 +202,11 @@ public class DefaultAgentCacheTest {
         String instanceGroupId = testConnector.takeInstanceGroup(0).getId();
         int initialCount = cache.getAgentInstances(instanceGroupId).size();
 
-        testConnector.removeInstance(testConnector.takeInstance(0, 0).getId());
+        String removedInstanceId = testConnector.takeInstance(0, 0).getId();
+        testConnector.removeInstance(removedInstanceId);
         testScheduler.advanceTimeBy(CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
 
         assertThat(cache.getAgentInstances(instanceGroupId).size()).isEqualTo(initialCount - 1);
-        expectInstanceGroupUpdateEvent(eventSubscriber, instanceGroupId);
+        expectInstanceUpdateEvent(eventSubscriber, removedInstanceId);
     }
 }
\ No newline at end of file
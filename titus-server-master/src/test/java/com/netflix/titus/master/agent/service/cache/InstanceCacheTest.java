@@ -39,8 +39,10 @@ import rx.schedulers.TestScheduler;
 import static com.netflix.titus.master.agent.service.cache.InstanceTestUtils.CACHE_REFRESH_INTERVAL_MS;
 import static com.netflix.titus.master.agent.service.cache.InstanceTestUtils.FULL_CACHE_REFRESH_INTERVAL_MS;
 import static com.netflix.titus.master.agent.service.cache.InstanceTestUtils.expectInstanceGroupUpdateEvent;
+import static com.netflix.titus.master.agent.service.cache.InstanceTestUtils.expectInstanceUpdateEvent;
 import static com.netflix.titus.master.agent.service.cache.InstanceTestUtils.mockedAgentManagementConfiguration;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
 
 public class InstanceCacheTest {
 
@@ -126,11 +128,14 @@ public class InstanceCacheTest {
         String instanceGroupId = testConnector.takeInstanceGroup(0).getId();
         int initialCount = cache.getInstanceGroup(instanceGroupId).getInstanceIds().size();
 
+        Instance addedInstance = instanceGenerator1.getValue();
         instanceGenerator1 = instanceGenerator1.apply(testConnector::addInstance);
         testScheduler.advanceTimeBy(CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
 
         assertThat(cache.getInstanceGroup(instanceGroupId).getInstanceIds().size()).isEqualTo(initialCount + 1);
-        expectInstanceGroupUpdateEvent(eventSubscriber, instanceGroupId);
+        assertThat(cache.getAgentInstance(addedInstance.getId())).isNotNull();
+        expectInstanceUpdateEvent(eventSubscriber, addedInstance.getId());
+        assertThat(eventSubscriber.takeNext()).isNull();
     }
 
     @Test
@@ -142,7 +147,8 @@ public class InstanceCacheTest {
 
         testScheduler.advanceTimeBy(CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
         assertThat(cache.getAgentInstance(updatedInstance.getId()).getInstanceState()).isEqualTo(Instance.InstanceState.Terminated);
-        expectInstanceGroupUpdateEvent(eventSubscriber, testConnector.takeInstanceGroup(0).getId());
+        expectInstanceUpdateEvent(eventSubscriber, updatedInstance.getId());
+        assertThat(eventSubscriber.takeNext()).isNull();
     }
 
     @Test
@@ -150,11 +156,52 @@ public class InstanceCacheTest {
         String instanceGroupId = testConnector.takeInstanceGroup(0).getId();
         int initialCount = cache.getInstanceGroup(instanceGroupId).getInstanceIds().size();
 
-        testConnector.removeInstance(testConnector.takeInstance(0, 0).getId());
+        String removedInstanceId = testConnector.takeInstance(0, 0).getId();
+        testConnector.removeInstance(removedInstanceId);
         testScheduler.advanceTimeBy(CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
 
         assertThat(cache.getInstanceGroup(instanceGroupId).getInstanceIds().size()).isEqualTo(initialCount - 1);
+        assertThat(cache.getAgentInstance(removedInstanceId)).isNull();
+        expectInstanceUpdateEvent(eventSubscriber, removedInstanceId);
+    }
+
+    @Test
+    public void testUnchangedInstanceGroupRefreshIsPacedDown() throws Exception {
+        when(configuration.getMaxCacheRefreshIntervalMs()).thenReturn(4 * CACHE_REFRESH_INTERVAL_MS);
+        String instanceGroupId = testConnector.takeInstanceGroup(0).getId();
+
+        // No changes, so the refresh interval grows to 2x, and next to 4x of the base interval
+        testScheduler.advanceTimeBy(3 * CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        InstanceGroup updated = testConnector.takeInstanceGroup(0).toBuilder().withMax(100).build();
+        testConnector.addInstanceGroup(updated);
+
+        // The change is not visible until the next paced refresh
+        testScheduler.advanceTimeBy(3 * CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        assertThat(eventSubscriber.takeNext()).isNull();
+
+        testScheduler.advanceTimeBy(CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        expectInstanceGroupUpdateEvent(eventSubscriber, instanceGroupId);
+        assertThat(cache.getInstanceGroup(instanceGroupId).getMax()).isEqualTo(100);
+    }
+
+    @Test
+    public void testRefreshPacingIsResetWhenTitusChangesInstanceGroup() throws Exception {
+        when(configuration.getMaxCacheRefreshIntervalMs()).thenReturn(4 * CACHE_REFRESH_INTERVAL_MS);
+        String instanceGroupId = testConnector.takeInstanceGroup(0).getId();
+
+        // Pace the instance group refresh down to 4x of the base interval
+        testScheduler.advanceTimeBy(3 * CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        // Titus changes the instance group, and the cloud provider applies it only after the immediate refresh
+        cache.refreshInstanceGroup(instanceGroupId);
+        testScheduler.triggerActions();
+        InstanceGroup updated = testConnector.takeInstanceGroup(0).toBuilder().withMax(100).build();
+        testConnector.addInstanceGroup(updated);
+
+        testScheduler.advanceTimeBy(CACHE_REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
         expectInstanceGroupUpdateEvent(eventSubscriber, instanceGroupId);
+        assertThat(cache.getInstanceGroup(instanceGroupId).getMax()).isEqualTo(100);
     }
 
     private static List<String> instanceGroupIds(Collection<InstanceGroup> instanceGroups) {
@@ -19,6 +19,7 @@ package com.netflix.titus.master.jobmanager.endpoint.v3.grpc;
 import java.util.Optional;
 
 import com.google.protobuf.Empty;
+import com.netflix.spectator.api.DefaultRegistry;
 import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.grpc.protogen.Capacity;
 import com.netflix.titus.grpc.protogen.Job;
@@ -32,6 +33,7 @@ import com.netflix.titus.grpc.protogen.JobQueryResult;
 import com.netflix.titus.grpc.protogen.Page;
 import com.netflix.titus.grpc.protogen.Pagination;
 import com.netflix.titus.grpc.protogen.ServiceJobSpec;
+import com.netflix.titus.master.endpoint.grpc.GrpcEndpointConfiguration;
 import com.netflix.titus.master.jobmanager.endpoint.v3.grpc.gateway.GrpcTitusServiceGateway;
 import com.netflix.titus.runtime.endpoint.metadata.CallMetadata;
 import com.netflix.titus.runtime.endpoint.metadata.CallMetadataResolver;
@@ -66,11 +68,15 @@ public class DefaultJobManagementServiceGrpcTest {
 
     private final CallMetadataResolver callMetadataResolver = mock(CallMetadataResolver.class);
 
-    private final DefaultJobManagementServiceGrpc service = new DefaultJobManagementServiceGrpc(gateway, callMetadataResolver);
+    private final GrpcEndpointConfiguration configuration = mock(GrpcEndpointConfiguration.class);
+
+    private final DefaultJobManagementServiceGrpc service = new DefaultJobManagementServiceGrpc(gateway, callMetadataResolver, configuration, new DefaultRegistry());
 
     @Before
     public void setUp() throws Exception {
         when(callMetadataResolver.resolve()).thenReturn(Optional.of(CALL_METADATA));
+        when(configuration.getEventStreamBufferSize()).thenReturn(100);
+        when(configuration.getEventStreamSlowConsumerPolicy()).thenReturn("conflate");
     }
 
     @Test
@@ -152,6 +158,18 @@ public class DefaultJobManagementServiceGrpcTest {
         emitJobUpdateAndDisconnect(eventSubject, response);
     }
 
+    @Test
+    public void testObserveJobsWithFlowControl() throws Exception {
+        when(configuration.isEventStreamFlowControlEnabled()).thenReturn(true);
+        PublishSubject<JobChangeNotification> eventSubject = PublishSubject.create();
+        when(gateway.observeJobs()).thenReturn(eventSubject);
+
+        TestStreamObserver<JobChangeNotification> response = new TestStreamObserver<>();
+        service.observeJobs(Empty.getDefaultInstance(), response);
+
+        emitJobUpdateAndDisconnect(eventSubject, response);
+    }
+
     private void emitJobUpdateAndDisconnect(PublishSubject<JobChangeNotification> eventSubject, TestStreamObserver<JobChangeNotification> response) {
         eventSubject.onNext(createJobFinishedUpdate());
         assertThat(response.takeNext().getNotificationCase()).isEqualTo(JobChangeNotification.NotificationCase.JOBUPDATE);
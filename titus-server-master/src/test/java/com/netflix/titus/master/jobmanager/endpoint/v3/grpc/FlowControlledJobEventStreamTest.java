@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.grpc.protogen.Job;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobChangeNotification.JobUpdate;
+import com.netflix.titus.grpc.protogen.JobChangeNotification.SnapshotEnd;
+import com.netflix.titus.grpc.protogen.JobChangeNotification.TaskUpdate;
+import com.netflix.titus.grpc.protogen.JobStatus;
+import com.netflix.titus.grpc.protogen.Task;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import com.netflix.titus.master.jobmanager.endpoint.v3.grpc.FlowControlledJobEventStream.SlowConsumerPolicy;
+import com.netflix.titus.testkit.grpc.TestStreamObserver;
+import io.grpc.Status;
+import org.junit.Test;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlowControlledJobEventStreamTest {
+
+    private static final int BUFFER_SIZE = 3;
+
+    private static final JobChangeNotification SNAPSHOT_END = JobChangeNotification.newBuilder()
+            .setSnapshotEnd(SnapshotEnd.newBuilder())
+            .build();
+
+    private final List<PublishSubject<JobChangeNotification>> eventStreams = new ArrayList<>();
+
+    private final Registry registry = new DefaultRegistry();
+
+    private final FlowControlledStreamObserver responseObserver = new FlowControlledStreamObserver();
+
+    @Test
+    public void testEventsAreBufferedUntilClientIsReady() {
+        start(SlowConsumerPolicy.Disconnect);
+        PublishSubject<JobChangeNotification> eventStream = eventStreams.get(0);
+
+        eventStream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        assertThat(responseObserver.getEmittedItems()).hasSize(1);
+
+        responseObserver.ready = false;
+        eventStream.onNext(jobUpdate("job#2", JobStatus.JobState.Accepted));
+        eventStream.onNext(SNAPSHOT_END);
+        assertThat(responseObserver.getEmittedItems()).hasSize(1);
+
+        responseObserver.becomeReady();
+        assertThat(responseObserver.getEmittedItems()).containsExactly(
+                jobUpdate("job#1", JobStatus.JobState.Accepted),
+                jobUpdate("job#2", JobStatus.JobState.Accepted),
+                SNAPSHOT_END
+        );
+    }
+
+    @Test
+    public void testCompletionIsSentAfterBufferedEvents() {
+        start(SlowConsumerPolicy.Disconnect);
+        PublishSubject<JobChangeNotification> eventStream = eventStreams.get(0);
+
+        responseObserver.ready = false;
+        eventStream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        eventStream.onCompleted();
+        assertThat(responseObserver.isCompleted()).isFalse();
+
+        responseObserver.becomeReady();
+        assertThat(responseObserver.getEmittedItems()).hasSize(1);
+        assertThat(responseObserver.isCompleted()).isTrue();
+    }
+
+    @Test
+    public void testSnapshotIsNotCountedAgainstBufferSize() {
+        start(SlowConsumerPolicy.Disconnect);
+        PublishSubject<JobChangeNotification> eventStream = eventStreams.get(0);
+
+        responseObserver.ready = false;
+        for (int i = 0; i < 2 * BUFFER_SIZE; i++) {
+            eventStream.onNext(jobUpdate("job#" + i, JobStatus.JobState.Accepted));
+        }
+        eventStream.onNext(SNAPSHOT_END);
+        eventStream.onNext(jobUpdate("job#0", JobStatus.JobState.KillInitiated));
+        assertThat(responseObserver.isTerminated()).isFalse();
+
+        // Live events are sent only after the whole snapshot
+        responseObserver.becomeReady();
+        assertThat(responseObserver.getEmittedItems()).hasSize(2 * BUFFER_SIZE + 2);
+        assertThat(responseObserver.getEmittedItems().get(2 * BUFFER_SIZE)).isEqualTo(SNAPSHOT_END);
+        assertThat(responseObserver.getEmittedItems().get(2 * BUFFER_SIZE + 1)).isEqualTo(jobUpdate("job#0", JobStatus.JobState.KillInitiated));
+    }
+
+    @Test
+    public void testConflatePolicyMergesUpdatesOfSameEntity() {
+        start(SlowConsumerPolicy.Conflate);
+        PublishSubject<JobChangeNotification> eventStream = eventStreams.get(0);
+        eventStream.onNext(SNAPSHOT_END);
+
+        responseObserver.ready = false;
+        for (int i = 0; i < 10; i++) {
+            eventStream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+            eventStream.onNext(jobUpdate("job#2", JobStatus.JobState.Accepted));
+        }
+        eventStream.onNext(jobUpdate("job#1", JobStatus.JobState.KillInitiated));
+
+        responseObserver.becomeReady();
+        assertThat(responseObserver.getEmittedItems()).containsExactly(
+                SNAPSHOT_END,
+                jobUpdate("job#2", JobStatus.JobState.Accepted),
+                jobUpdate("job#1", JobStatus.JobState.KillInitiated)
+        );
+        assertThat(responseObserver.isTerminated()).isFalse();
+    }
+
+    @Test
+    public void testConflatedJobUpdateIsNotSentAheadOfItsTaskUpdates() {
+        start(SlowConsumerPolicy.Conflate);
+        PublishSubject<JobChangeNotification> eventStream = eventStreams.get(0);
+        eventStream.onNext(SNAPSHOT_END);
+
+        responseObserver.ready = false;
+        eventStream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        eventStream.onNext(taskUpdate("job#1", "task#1", TaskStatus.TaskState.Started));
+        eventStream.onNext(taskUpdate("job#1", "task#1", TaskStatus.TaskState.Finished));
+        eventStream.onNext(jobUpdate("job#1", JobStatus.JobState.Finished));
+
+        responseObserver.becomeReady();
+        assertThat(responseObserver.getEmittedItems()).containsExactly(
+                SNAPSHOT_END,
+                taskUpdate("job#1", "task#1", TaskStatus.TaskState.Finished),
+                jobUpdate("job#1", JobStatus.JobState.Finished)
+        );
+    }
+
+    @Test
+    public void testResnapshotPolicy() {
+        start(SlowConsumerPolicy.Resnapshot);
+        eventStreams.get(0).onNext(SNAPSHOT_END);
+
+        responseObserver.ready = false;
+        for (int i = 0; i <= BUFFER_SIZE; i++) {
+            eventStreams.get(0).onNext(jobUpdate("job#" + i, JobStatus.JobState.Accepted));
+        }
+        assertThat(eventStreams.get(0).hasObservers()).isFalse();
+        assertThat(responseObserver.hasError()).isTrue();
+        assertThat(Status.fromThrowable(responseObserver.getError()).getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+
+        // The snapshot is not re-sent on the same call
+        responseObserver.becomeReady();
+        assertThat(eventStreams).hasSize(1);
+        assertThat(responseObserver.getEmittedItems()).containsExactly(SNAPSHOT_END);
+    }
+
+    @Test
+    public void testDisconnectPolicy() {
+        start(SlowConsumerPolicy.Disconnect);
+        eventStreams.get(0).onNext(SNAPSHOT_END);
+
+        responseObserver.ready = false;
+        for (int i = 0; i <= BUFFER_SIZE; i++) {
+            eventStreams.get(0).onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        }
+        assertThat(eventStreams.get(0).hasObservers()).isFalse();
+        assertThat(responseObserver.hasError()).isTrue();
+        assertThat(Status.fromThrowable(responseObserver.getError()).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+
+        // Metrics are tagged with the stream type, and not with the request parameters
+        assertThat(registry.counter("titusMaster.jobManager.grpc.eventStream.overflows", "stream", "observeJob", "policy", "Disconnect").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testClientCancel() {
+        start(SlowConsumerPolicy.Conflate);
+        assertThat(eventStreams.get(0).hasObservers()).isTrue();
+        responseObserver.cancel();
+        assertThat(eventStreams.get(0).hasObservers()).isFalse();
+    }
+
+    private void start(SlowConsumerPolicy policy) {
+        FlowControlledJobEventStream.start(
+                "observeJob",
+                "job#1 job monitoring",
+                () -> {
+                    PublishSubject<JobChangeNotification> eventStream = PublishSubject.create();
+                    eventStreams.add(eventStream);
+                    return eventStream;
+                },
+                responseObserver,
+                BUFFER_SIZE,
+                policy,
+                registry
+        );
+    }
+
+    private static JobChangeNotification jobUpdate(String jobId, JobStatus.JobState state) {
+        return JobChangeNotification.newBuilder()
+                .setJobUpdate(JobUpdate.newBuilder().setJob(Job.newBuilder()
+                        .setId(jobId)
+                        .setStatus(JobStatus.newBuilder().setState(state))
+                ))
+                .build();
+    }
+
+    private static JobChangeNotification taskUpdate(String jobId, String taskId, TaskStatus.TaskState state) {
+        return JobChangeNotification.newBuilder()
+                .setTaskUpdate(TaskUpdate.newBuilder().setTask(Task.newBuilder()
+                        .setId(taskId)
+                        .setJobId(jobId)
+                        .setStatus(TaskStatus.newBuilder().setState(state))
+                ))
+                .build();
+    }
+
+    private static class FlowControlledStreamObserver extends TestStreamObserver<JobChangeNotification> {
+
+        private volatile boolean ready = true;
+        private Runnable onReadyHandler;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        private void becomeReady() {
+            ready = true;
+            onReadyHandler.run();
+        }
+    }
+}
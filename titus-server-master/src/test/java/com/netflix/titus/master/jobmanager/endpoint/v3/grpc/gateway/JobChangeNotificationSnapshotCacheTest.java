@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc.gateway;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.JobFunctions;
+import com.netflix.titus.api.jobmanager.model.job.JobState;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.model.job.event.JobManagerEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.JobUpdateEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.TaskUpdateEvent;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.common.model.sanitizer.EntitySanitizer;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobChangeNotification.NotificationCase;
+import com.netflix.titus.master.endpoint.grpc.GrpcEndpointConfiguration;
+import com.netflix.titus.master.jobmanager.service.limiter.JobSubmitLimiter;
+import com.netflix.titus.runtime.endpoint.common.EmptyLogStorageInfo;
+import com.netflix.titus.runtime.endpoint.v3.grpc.GrpcModelConverterCache;
+import com.netflix.titus.testkit.model.job.JobDescriptorGenerator;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import rx.observers.AssertableSubscriber;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JobChangeNotificationSnapshotCacheTest {
+
+    private final Job<BatchJobExt> job = JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).getValue();
+    private final BatchJobTask task = JobGenerator.batchTasks(job).getValue();
+
+    private final V3JobOperations jobOperations = mock(V3JobOperations.class);
+    private final PublishSubject<JobManagerEvent<?>> jobEvents = PublishSubject.create();
+
+    private final JobChangeNotificationSnapshotCache cache = new JobChangeNotificationSnapshotCache(
+            jobOperations, new GrpcModelConverterCache(EmptyLogStorageInfo.INSTANCE, 0, "test", new DefaultRegistry()), new DefaultRegistry()
+    );
+
+    @Before
+    public void setUp() {
+        when(jobOperations.observeJobs()).thenReturn(jobEvents);
+        when(jobOperations.getJobs()).thenReturn(Collections.singletonList(job));
+        when(jobOperations.getTasks()).thenReturn(Collections.singletonList(task));
+    }
+
+    @Test
+    public void testSnapshotIsBuiltOnceAndUpdatedFromEvents() {
+        AssertableSubscriber<JobChangeNotification> first = cache.observeJobs().test();
+        assertThat(notificationCases(first)).containsExactly(NotificationCase.JOBUPDATE, NotificationCase.TASKUPDATE, NotificationCase.SNAPSHOTEND);
+
+        Job<BatchJobExt> newJob = JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).getValue();
+        jobEvents.onNext(JobUpdateEvent.newJob(newJob));
+        assertThat(first.getOnNextEvents()).last().matches(n -> n.getJobUpdate().getJob().getId().equals(newJob.getId()));
+
+        Task finishedTask = JobFunctions.changeTaskStatus(task, TaskState.Finished, "test", "test");
+        jobEvents.onNext(TaskUpdateEvent.taskChange(job, finishedTask, task));
+
+        // The finished task is kept, as its job is still active
+        AssertableSubscriber<JobChangeNotification> second = cache.observeJobs().test();
+        assertThat(notificationCases(second)).containsExactly(
+                NotificationCase.JOBUPDATE, NotificationCase.JOBUPDATE, NotificationCase.TASKUPDATE, NotificationCase.SNAPSHOTEND
+        );
+        assertThat(second.getOnNextEvents().get(1).getJobUpdate().getJob().getId()).isEqualTo(newJob.getId());
+        assertThat(second.getOnNextEvents().get(2).getTaskUpdate().getTask().getStatus().getState())
+                .isEqualTo(com.netflix.titus.grpc.protogen.TaskStatus.TaskState.Finished);
+
+        // The snapshot is loaded from the job manager only once
+        verify(jobOperations, times(1)).getJobs();
+        verify(jobOperations, times(1)).getTasks();
+        verify(jobOperations, times(1)).observeJobs();
+    }
+
+    @Test
+    public void testFinishedJobIsRemovedFromSnapshotWithItsTasks() {
+        cache.observeJobs().test();
+        jobEvents.onNext(JobUpdateEvent.jobChange(JobFunctions.changeJobStatus(job, JobState.Finished, "test"), job));
+
+        assertThat(notificationCases(cache.observeJobs().test())).containsExactly(NotificationCase.SNAPSHOTEND);
+    }
+
+    @Test
+    public void testCachedSnapshotMatchesUncachedSnapshot() {
+        cache.observeJobs().test();
+
+        Job<BatchJobExt> newJob = JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).getValue();
+        BatchJobTask newJobTask = JobGenerator.batchTasks(newJob).getValue();
+        Task finishedTask = JobFunctions.changeTaskStatus(task, TaskState.Finished, "test", "test");
+        jobEvents.onNext(JobUpdateEvent.newJob(newJob));
+        jobEvents.onNext(TaskUpdateEvent.newTask(newJob, newJobTask));
+        jobEvents.onNext(TaskUpdateEvent.taskChange(job, finishedTask, task));
+
+        // The job manager keeps the finished task until its job finishes
+        when(jobOperations.getJobs()).thenReturn(Arrays.asList(job, newJob));
+        when(jobOperations.getTasks()).thenReturn(Arrays.asList(finishedTask, newJobTask));
+        assertThat(cache.observeJobs().test().getOnNextEvents()).containsExactlyElementsOf(uncachedSnapshot());
+
+        jobEvents.onNext(JobUpdateEvent.jobChange(JobFunctions.changeJobStatus(job, JobState.Finished, "test"), job));
+
+        when(jobOperations.getJobs()).thenReturn(Collections.singletonList(newJob));
+        when(jobOperations.getTasks()).thenReturn(Collections.singletonList(newJobTask));
+        assertThat(cache.observeJobs().test().getOnNextEvents()).containsExactlyElementsOf(uncachedSnapshot());
+    }
+
+    @Test
+    public void testCacheIsResetWhenEventStreamFails() {
+        AssertableSubscriber<JobChangeNotification> subscriber = cache.observeJobs().test();
+        jobEvents.onError(new RuntimeException("simulated error"));
+        subscriber.assertError(RuntimeException.class);
+
+        PublishSubject<JobManagerEvent<?>> newJobEvents = PublishSubject.create();
+        when(jobOperations.observeJobs()).thenReturn(newJobEvents);
+        cache.observeJobs().test().assertValueCount(3);
+        assertThat(newJobEvents.hasObservers()).isTrue();
+        verify(jobOperations, times(2)).getJobs();
+    }
+
+    private List<JobChangeNotification> uncachedSnapshot() {
+        V3GrpcTitusServiceGateway gateway = new V3GrpcTitusServiceGateway(
+                jobOperations,
+                mock(JobSubmitLimiter.class),
+                EmptyLogStorageInfo.INSTANCE,
+                mock(EntitySanitizer.class),
+                mock(GrpcEndpointConfiguration.class),
+                TitusRuntimes.test()
+        );
+        return gateway.observeJobs().test().getOnNextEvents();
+    }
+
+    private static NotificationCase[] notificationCases(AssertableSubscriber<JobChangeNotification> subscriber) {
+        return subscriber.getOnNextEvents().stream().map(JobChangeNotification::getNotificationCase).toArray(NotificationCase[]::new);
+    }
+}
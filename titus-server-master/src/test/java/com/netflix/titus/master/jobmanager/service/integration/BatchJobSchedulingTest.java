@@ -68,6 +68,42 @@ public class BatchJobSchedulingTest {
         );
     }
 
+    /**
+     * Record placements of all tasks of a job with a single batch request.
+     */
+    @Test
+    public void testBatchedTaskPlacement() {
+        JobDescriptor<BatchJobExt> twoTaskJob = changeBatchJobSize(oneTaskBatchJobDescriptor(), 2);
+        jobsScenarioBuilder.scheduleJob(twoTaskJob, jobScenario -> jobScenario
+                .expectJobEvent()
+                .advance()
+                .inActiveTasks((taskIdx, resubmit) -> ScenarioTemplates.acceptTask(taskIdx, resubmit))
+                .triggerSchedulerLaunchEvents(0, 0, 1)
+                .expectTaskInActiveState(0, 0, TaskState.Launched)
+                .expectTaskInActiveState(1, 0, TaskState.Launched)
+        );
+    }
+
+    /**
+     * A failed store update of one task in a batch fails the placement of this task only.
+     */
+    @Test
+    public void testBatchedTaskPlacementWithPartialStoreFailure() {
+        JobDescriptor<BatchJobExt> twoTaskJob = changeBatchJobSize(oneTaskBatchJobDescriptor(), 2);
+        jobsScenarioBuilder.scheduleJob(twoTaskJob, jobScenario -> jobScenario
+                .expectJobEvent()
+                .advance()
+                .inActiveTasks((taskIdx, resubmit) -> ScenarioTemplates.acceptTask(taskIdx, resubmit))
+                .failTaskStoreUpdates(1, 0)
+                .triggerSchedulerLaunchEvents(0, new int[]{0, 1}, results -> {
+                    assertThat(results.get(0)).isEmpty();
+                    assertThat(results.get(1)).isPresent();
+                })
+                .expectTaskInActiveState(0, 0, TaskState.Launched)
+                .expectTaskInActiveState(1, 0, TaskState.Accepted)
+        );
+    }
+
     /**
      * Check that containers terminating with exit code 0 are not restarted.
      */
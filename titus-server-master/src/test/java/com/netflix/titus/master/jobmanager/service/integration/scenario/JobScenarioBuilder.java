@@ -18,8 +18,10 @@ package com.netflix.titus.master.jobmanager.service.integration.scenario;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
@@ -434,6 +436,56 @@ public class JobScenarioBuilder<E extends JobDescriptor.JobDescriptorExt> {
         return this;
     }
 
+    public JobScenarioBuilder<E> triggerSchedulerLaunchEvents(int resubmit, int... taskIdxs) {
+        return triggerSchedulerLaunchEvents(resubmit, taskIdxs, results -> results.values().forEach(error -> {
+            if (error.isPresent()) {
+                ExceptionExt.rethrow(error.get());
+            }
+        }));
+    }
+
+    /**
+     * Records placements of the given tasks with a single batch request.
+     *
+     * @param assertFun called with the placement result (error, if the placement failed) for each task index
+     */
+    public JobScenarioBuilder<E> triggerSchedulerLaunchEvents(int resubmit, int[] taskIdxs, Consumer<Map<Integer, Optional<Throwable>>> assertFun) {
+        Map<String, Integer> taskIdxsById = new HashMap<>();
+        Map<String, Function<Task, Task>> changeFunctions = new HashMap<>();
+        for (int taskIdx : taskIdxs) {
+            Task task = findTaskInActiveState(taskIdx, resubmit);
+            taskIdxsById.put(task.getId(), taskIdx);
+            changeFunctions.put(task.getId(), JobManagerUtil.newTaskLaunchConfigurationUpdater(
+                    "zone",
+                    vmService.buildLease(task.getId()),
+                    vmService.buildConsumeResult(task.getId()),
+                    Optional.empty(),
+                    vmService.buildAttributesMap(task.getId())
+            ));
+        }
+
+        List<Pair<String, Optional<Throwable>>> results = new ArrayList<>();
+        AtomicReference<Throwable> failed = new AtomicReference<>();
+        jobOperations.recordTaskPlacements(changeFunctions).subscribe(results::add, failed::set);
+        advance();
+        if (failed.get() != null) {
+            ExceptionExt.rethrow(failed.get());
+        }
+        assertThat(results).hasSize(taskIdxs.length);
+        assertThat(results.stream().map(Pair::getLeft)).containsOnlyElementsOf(changeFunctions.keySet());
+
+        Map<Integer, Optional<Throwable>> resultsByTaskIdx = new HashMap<>();
+        results.forEach(result -> resultsByTaskIdx.put(taskIdxsById.get(result.getLeft()), result.getRight()));
+        assertFun.accept(resultsByTaskIdx);
+
+        return this;
+    }
+
+    public JobScenarioBuilder<E> failTaskStoreUpdates(int taskIdx, int resubmit) {
+        jobStore.failTaskUpdates(findTaskInActiveState(taskIdx, resubmit).getId());
+        return this;
+    }
+
     public JobScenarioBuilder<E> triggerFailingSchedulerLaunchEvent(int taskIdx, int resubmit, Consumer<Throwable> assertFun) {
         Task task = findTaskInActiveState(taskIdx, resubmit);
 
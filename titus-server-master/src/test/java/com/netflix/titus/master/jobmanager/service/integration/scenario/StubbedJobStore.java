@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -65,6 +66,15 @@ class StubbedJobStore implements JobStore {
 
     private final ConcurrentMap<String, ServiceTaskIndex> jobToServiceTaskIndex = new ConcurrentHashMap<>();
 
+    private final Set<String> failingTaskUpdates = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Make all subsequent updates of the given task fail.
+     */
+    public void failTaskUpdates(String taskId) {
+        failingTaskUpdates.add(taskId);
+    }
+
     public Observable<Pair<StoreEvent, ?>> events() {
         return eventSubject;
     }
@@ -277,6 +287,9 @@ class StubbedJobStore implements JobStore {
     @Override
     public Completable updateTask(Task task) {
         return Completable.fromAction(() -> {
+            if (failingTaskUpdates.contains(task.getId())) {
+                throw new IllegalStateException("Simulated store update error for task " + task.getId());
+            }
             if (jobs.get(task.getJobId()) != null) {
                 tasks.put(task.getId(), task);
                 eventSubject.onNext(Pair.of(StoreEvent.TaskUpdated, task));
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import com.netflix.fenzo.VirtualMachineLease;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.service.JobManagerException;
+import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.common.util.time.Clocks;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.master.VirtualMachineMasterService;
+import com.netflix.titus.master.model.job.TitusQueuableTask;
+import com.netflix.titus.testkit.model.job.JobDescriptorGenerator;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.apache.mesos.Protos;
+import org.junit.Test;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TaskLaunchBatchTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+    private static final long SHORT_TIMEOUT_MS = 100;
+
+    private final VirtualMachineMasterService virtualMachineService = mock(VirtualMachineMasterService.class);
+    private final V3JobOperations v3JobOperations = mock(V3JobOperations.class);
+
+    private final List<String> brokenTasks = new ArrayList<>();
+
+    private final TaskLaunchBatch launchBatch = new TaskLaunchBatch(
+            virtualMachineService,
+            (task, reason) -> brokenTasks.add(task.getId()),
+            Clocks.system()
+    );
+
+    @Test
+    public void testEachAgentIsLaunchedWithItsRecordedPlacements() {
+        VirtualMachineLease lease1 = mock(VirtualMachineLease.class);
+        VirtualMachineLease lease2 = mock(VirtualMachineLease.class);
+        TaskLaunchBatch.AgentLaunch agent1 = launchBatch.newAgentLaunch(Collections.singletonList(lease1));
+        TaskLaunchBatch.AgentLaunch agent2 = launchBatch.newAgentLaunch(Collections.singletonList(lease2));
+        addPlacement(agent1, "task1");
+        addPlacement(agent1, "task2");
+        addPlacement(agent2, "task3");
+
+        recordPlacementResults(
+                Pair.of("task1", Optional.empty()),
+                Pair.of("task2", Optional.empty()),
+                Pair.of("task3", Optional.empty())
+        );
+
+        verify(virtualMachineService).launchTasks(Arrays.asList(taskInfo("task1"), taskInfo("task2")), Collections.singletonList(lease1));
+        verify(virtualMachineService).launchTasks(Collections.singletonList(taskInfo("task3")), Collections.singletonList(lease2));
+        verify(virtualMachineService, never()).rejectLease(any());
+        assertThat(brokenTasks).isEmpty();
+    }
+
+    @Test
+    public void testPartialStoreFailure() {
+        VirtualMachineLease lease1 = mock(VirtualMachineLease.class);
+        VirtualMachineLease lease2 = mock(VirtualMachineLease.class);
+        TaskLaunchBatch.AgentLaunch agent1 = launchBatch.newAgentLaunch(Collections.singletonList(lease1));
+        TaskLaunchBatch.AgentLaunch agent2 = launchBatch.newAgentLaunch(Collections.singletonList(lease2));
+        addPlacement(agent1, "task1");
+        addPlacement(agent1, "task2");
+        addPlacement(agent2, "task3");
+
+        recordPlacementResults(
+                Pair.of("task1", Optional.empty()),
+                Pair.of("task2", Optional.of(new RuntimeException("simulated store error"))),
+                Pair.of("task3", Optional.of(JobManagerException.unexpectedTaskState(newTask(), TaskState.Accepted)))
+        );
+
+        // Only the task with the recorded placement is launched on the first agent, and the offer of the second one is rejected
+        verify(virtualMachineService).launchTasks(Collections.singletonList(taskInfo("task1")), Collections.singletonList(lease1));
+        verify(virtualMachineService).rejectLease(lease2);
+
+        // Tasks which are no longer in the Accepted state are not killed
+        assertThat(brokenTasks).containsExactly("task2");
+    }
+
+    @Test
+    public void testPlacementsWithoutResultAreFailed() {
+        VirtualMachineLease lease = mock(VirtualMachineLease.class);
+        TaskLaunchBatch.AgentLaunch agent = launchBatch.newAgentLaunch(Collections.singletonList(lease));
+        addPlacement(agent, "task1");
+        addPlacement(agent, "task2");
+
+        recordPlacementResults(Pair.of("task1", Optional.empty()));
+
+        verify(virtualMachineService).launchTasks(Collections.singletonList(taskInfo("task1")), Collections.singletonList(lease));
+        assertThat(brokenTasks).containsExactly("task2");
+    }
+
+    @Test
+    public void testAgentIsLaunchedWithoutWaitingForOtherAgents() {
+        VirtualMachineLease lease1 = mock(VirtualMachineLease.class);
+        VirtualMachineLease lease2 = mock(VirtualMachineLease.class);
+        addPlacement(launchBatch.newAgentLaunch(Collections.singletonList(lease1)), "task1");
+        addPlacement(launchBatch.newAgentLaunch(Collections.singletonList(lease2)), "task2");
+
+        // The result of task2 is available only once the first agent is launched
+        PublishSubject<Pair<String, Optional<Throwable>>> task2Result = PublishSubject.create();
+        doAnswer(invocation -> {
+            task2Result.onNext(Pair.of("task2", Optional.empty()));
+            task2Result.onCompleted();
+            return null;
+        }).when(virtualMachineService).launchTasks(anyList(), eq(Collections.singletonList(lease1)));
+        when(v3JobOperations.recordTaskPlacements(any())).thenReturn(
+                Observable.just(Pair.<String, Optional<Throwable>>of("task1", Optional.empty())).concatWith(task2Result)
+        );
+
+        launchBatch.recordPlacementsAndLaunch(v3JobOperations, TIMEOUT_MS);
+
+        verify(virtualMachineService).launchTasks(Collections.singletonList(taskInfo("task1")), Collections.singletonList(lease1));
+        verify(virtualMachineService).launchTasks(Collections.singletonList(taskInfo("task2")), Collections.singletonList(lease2));
+    }
+
+    @Test
+    public void testTimedOutPlacementsAreNotKilledWhileInFlight() {
+        VirtualMachineLease lease1 = mock(VirtualMachineLease.class);
+        VirtualMachineLease lease2 = mock(VirtualMachineLease.class);
+        addPlacement(launchBatch.newAgentLaunch(Collections.singletonList(lease1)), "task1");
+        TaskLaunchBatch.AgentLaunch agent2 = launchBatch.newAgentLaunch(Collections.singletonList(lease2));
+        addPlacement(agent2, "task2");
+        addPlacement(agent2, "task3");
+
+        PublishSubject<Pair<String, Optional<Throwable>>> lateResults = PublishSubject.create();
+        when(v3JobOperations.recordTaskPlacements(any())).thenReturn(
+                Observable.just(
+                        Pair.<String, Optional<Throwable>>of("task1", Optional.empty()),
+                        Pair.<String, Optional<Throwable>>of("task2", Optional.empty())
+                ).concatWith(lateResults)
+        );
+        launchBatch.recordPlacementsAndLaunch(v3JobOperations, SHORT_TIMEOUT_MS);
+
+        // The second agent is launched with the tasks recorded within the timeout
+        verify(virtualMachineService).launchTasks(Collections.singletonList(taskInfo("task1")), Collections.singletonList(lease1));
+        verify(virtualMachineService).launchTasks(Collections.singletonList(taskInfo("task2")), Collections.singletonList(lease2));
+        assertThat(brokenTasks).isEmpty();
+
+        // A placement failing after the timeout is killed, but never launched
+        lateResults.onNext(Pair.of("task3", Optional.of(new RuntimeException("simulated store error"))));
+        assertThat(brokenTasks).containsExactly("task3");
+        verify(virtualMachineService, never()).launchTasks(eq(Collections.singletonList(taskInfo("task3"))), anyList());
+    }
+
+    @Test
+    public void testLaunchRunsOnCallingThread() {
+        VirtualMachineLease lease = mock(VirtualMachineLease.class);
+        TaskLaunchBatch.AgentLaunch agent = launchBatch.newAgentLaunch(Collections.singletonList(lease));
+        addPlacement(agent, "task1");
+
+        // Results are emitted from another thread, as it happens for job manager and store callbacks
+        List<Thread> launchThreads = new ArrayList<>();
+        doAnswer(invocation -> {
+            launchThreads.add(Thread.currentThread());
+            return null;
+        }).when(virtualMachineService).launchTasks(anyList(), anyList());
+        when(v3JobOperations.recordTaskPlacements(any())).thenReturn(
+                Observable.just(Pair.<String, Optional<Throwable>>of("task1", Optional.empty())).subscribeOn(Schedulers.computation())
+        );
+
+        launchBatch.recordPlacementsAndLaunch(v3JobOperations, TIMEOUT_MS);
+        assertThat(launchThreads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    public void testAgentWithNoPlacementsIsLaunchedWithoutRecording() {
+        VirtualMachineLease lease = mock(VirtualMachineLease.class);
+        TaskLaunchBatch.AgentLaunch agent = launchBatch.newAgentLaunch(Collections.singletonList(lease));
+        agent.addTaskInfo(taskInfo("v2Task"));
+
+        assertThat(launchBatch.hasPendingPlacements()).isFalse();
+        launchBatch.recordPlacementsAndLaunch(v3JobOperations, TIMEOUT_MS);
+        launchBatch.launch();
+
+        verify(v3JobOperations, never()).recordTaskPlacements(any());
+        verify(virtualMachineService).launchTasks(Collections.singletonList(taskInfo("v2Task")), Collections.singletonList(lease));
+    }
+
+    private void addPlacement(TaskLaunchBatch.AgentLaunch agentLaunch, String taskId) {
+        TitusQueuableTask task = mock(TitusQueuableTask.class);
+        when(task.getId()).thenReturn(taskId);
+        launchBatch.addPendingPlacement(agentLaunch, task, taskInfo(taskId), Function.<Task>identity());
+    }
+
+    @SafeVarargs
+    private final void recordPlacementResults(Pair<String, Optional<Throwable>>... results) {
+        when(v3JobOperations.recordTaskPlacements(any())).thenReturn(Observable.from(results));
+        launchBatch.recordPlacementsAndLaunch(v3JobOperations, TIMEOUT_MS);
+    }
+
+    private static Task newTask() {
+        return JobGenerator.batchTasks(JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).getValue()).getValue();
+    }
+
+    private static Protos.TaskInfo taskInfo(String taskId) {
+        return Protos.TaskInfo.newBuilder()
+                .setName(taskId)
+                .setTaskId(Protos.TaskID.newBuilder().setValue(taskId))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue("agent"))
+                .build();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.common.util.time.Clocks;
+import com.netflix.titus.common.util.time.TestClock;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TaskLaunchStageTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+    private static final long SHORT_TIMEOUT_MS = 100;
+
+    private static final String METRIC_ROOT = "test.";
+
+    private final Registry registry = new DefaultRegistry();
+    private final TestClock testClock = Clocks.test();
+
+    private final List<Integer> launched = new CopyOnWriteArrayList<>();
+    private final List<String> launchThreads = new CopyOnWriteArrayList<>();
+
+    /**
+     * Batches are launched only after this latch is released, so the tests control when the launch thread is busy.
+     */
+    private final CountDownLatch launchBlocker = new CountDownLatch(1);
+
+    private TaskLaunchStage<Integer> stage;
+
+    @After
+    public void tearDown() {
+        launchBlocker.countDown();
+        if (stage != null) {
+            stage.shutdown(TIMEOUT_MS);
+        }
+    }
+
+    @Test
+    public void testBatchesAreLaunchedInSubmitOrder() throws Exception {
+        stage = newStage(100);
+        launchBlocker.countDown();
+
+        for (int i = 0; i < 50; i++) {
+            stage.submit(i);
+        }
+        assertThat(stage.shutdown(TIMEOUT_MS)).isTrue();
+
+        assertThat(launched).hasSize(50).isSorted();
+        assertThat(launchThreads).containsOnly(TaskLaunchStage.THREAD_NAME);
+    }
+
+    @Test
+    public void testInlineLaunchIfQueueSizeIsZero() {
+        stage = newStage(0);
+        launchBlocker.countDown();
+
+        stage.submit(1);
+
+        assertThat(launched).containsExactly(1);
+        assertThat(launchThreads).containsExactly(Thread.currentThread().getName());
+        assertThat(registry.timer(METRIC_ROOT + "taskLaunchQueueLatency").count()).isEqualTo(0);
+        assertThat(registry.timer(METRIC_ROOT + "taskLaunchLatency").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSubmitBlocksWhenQueueIsFull() throws Exception {
+        stage = newStage(1);
+
+        stage.submit(1); // Taken by the launch thread, which is blocked
+        awaitQueueDepth(0);
+        stage.submit(2); // Fills the queue
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread schedulingThread = new Thread(() -> {
+            stage.submit(3);
+            submitted.countDown();
+        });
+        schedulingThread.start();
+
+        assertThat(submitted.await(SHORT_TIMEOUT_MS, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(stage.getQueueDepth()).isEqualTo(2);
+
+        launchBlocker.countDown();
+        assertThat(submitted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(stage.shutdown(TIMEOUT_MS)).isTrue();
+        assertThat(launched).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void testQueueMetrics() throws Exception {
+        stage = newStage(10);
+
+        stage.submit(1);
+        awaitQueueDepth(0);
+        stage.submit(2);
+        stage.submit(3);
+        assertThat(stage.getQueueDepth()).isEqualTo(2);
+
+        testClock.advanceTime(50, TimeUnit.MILLISECONDS);
+        launchBlocker.countDown();
+        assertThat(stage.shutdown(TIMEOUT_MS)).isTrue();
+
+        assertThat(stage.getQueueDepth()).isEqualTo(0);
+        assertThat(registry.timer(METRIC_ROOT + "taskLaunchQueueLatency").count()).isEqualTo(3);
+        assertThat(registry.timer(METRIC_ROOT + "taskLaunchQueueLatency").totalTime())
+                .isGreaterThanOrEqualTo(2 * TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(registry.timer(METRIC_ROOT + "taskLaunchLatency").count()).isEqualTo(3);
+    }
+
+    @Test
+    public void testQueuedBatchesAreLaunchedOnShutdown() throws Exception {
+        stage = newStage(10);
+
+        for (int i = 0; i < 5; i++) {
+            stage.submit(i);
+        }
+
+        CountDownLatch shutdownCompleted = new CountDownLatch(1);
+        new Thread(() -> {
+            stage.shutdown(TIMEOUT_MS);
+            shutdownCompleted.countDown();
+        }).start();
+        assertThat(shutdownCompleted.await(SHORT_TIMEOUT_MS, TimeUnit.MILLISECONDS)).isFalse();
+
+        launchBlocker.countDown();
+        assertThat(shutdownCompleted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(launched).containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    public void testBatchSubmittedAfterShutdownIsLaunchedInline() {
+        stage = newStage(10);
+        launchBlocker.countDown();
+        assertThat(stage.shutdown(TIMEOUT_MS)).isTrue();
+
+        stage.submit(1);
+
+        assertThat(launched).containsExactly(1);
+        assertThat(launchThreads).containsExactly(Thread.currentThread().getName());
+    }
+
+    private TaskLaunchStage<Integer> newStage(int queueSize) {
+        return new TaskLaunchStage<>(queueSize, this::launch, METRIC_ROOT, registry, testClock);
+    }
+
+    private void launch(Integer batch) {
+        try {
+            launchBlocker.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        launched.add(batch);
+        launchThreads.add(Thread.currentThread().getName());
+    }
+
+    private void awaitQueueDepth(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (stage.getQueueDepth() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(stage.getQueueDepth()).isEqualTo(expected);
+    }
+}
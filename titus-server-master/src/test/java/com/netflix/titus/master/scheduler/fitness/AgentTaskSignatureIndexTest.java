@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler.fitness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.netflix.fenzo.TaskRequest;
+import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.master.jobmanager.service.common.V3QueueableTask;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex.AgentSignatures;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex.JobType;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskSignatureIndex.TaskSignature;
+import org.junit.Test;
+
+import static com.netflix.titus.testkit.model.job.JobDescriptorGenerator.oneTaskBatchJobDescriptor;
+import static com.netflix.titus.testkit.model.job.JobDescriptorGenerator.oneTaskServiceJobDescriptor;
+import static com.netflix.titus.testkit.model.job.JobGenerator.batchJobs;
+import static com.netflix.titus.testkit.model.job.JobGenerator.serviceJobs;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AgentTaskSignatureIndexTest {
+
+    private static final String HOSTNAME = "agent1";
+
+    private final Job<?> batchJob = batchJobs(oneTaskBatchJobDescriptor()).getValue();
+    private final Job<?> serviceJob = serviceJobs(oneTaskServiceJobDescriptor()).getValue();
+
+    private final AgentTaskSignatureIndex index = new AgentTaskSignatureIndex();
+
+    private final List<TaskRequest> runningTasks = new ArrayList<>();
+    private final VirtualMachineCurrentState targetVM = newVirtualMachine();
+
+    @Test
+    public void testIncrementalUpdates() {
+        TaskRequest batchTask = addRunningTask("task1", batchJob);
+        TaskRequest serviceTask = addRunningTask("task2", serviceJob);
+        index.addTask(batchTask, HOSTNAME);
+        index.addTask(serviceTask, HOSTNAME);
+
+        AgentSignatures signatures = index.getAgentSignatures(targetVM);
+        assertThat(signatures.getTaskCount()).isEqualTo(2);
+        assertThat(signatures.countJobType(JobType.Batch)).isEqualTo(1);
+        assertThat(signatures.countJobType(JobType.Service)).isEqualTo(1);
+
+        TaskSignature batchSignature = TaskSignature.of(batchTask);
+        assertThat(signatures.countImage(batchSignature.getImage())).isGreaterThanOrEqualTo(1);
+        assertThat(signatures.countSecurityGroups(batchSignature.getJoinedSecurityGroupIds())).isGreaterThanOrEqualTo(1);
+
+        runningTasks.remove(batchTask);
+        index.removeTask("task1");
+        signatures = index.getAgentSignatures(targetVM);
+        assertThat(signatures.getTaskCount()).isEqualTo(1);
+        assertThat(signatures.countJobType(JobType.Batch)).isEqualTo(0);
+        assertThat(signatures.countJobType(JobType.Service)).isEqualTo(1);
+    }
+
+    @Test
+    public void testRemovedTaskStillReportedByFenzoIsNotReAdded() {
+        TaskRequest task1 = addRunningTask("task1", batchJob);
+        TaskRequest task2 = addRunningTask("task2", batchJob);
+        index.addTask(task1, HOSTNAME);
+        index.addTask(task2, HOSTNAME);
+
+        // Fenzo applies the removal asynchronously, so it still reports the task as running
+        index.removeTask("task1");
+        assertThat(index.getAgentSignatures(targetVM).getTaskCount()).isEqualTo(1);
+        index.reconcile(Collections.singletonList(targetVM));
+        assertThat(index.getAgentSignatures(targetVM).getTaskCount()).isEqualTo(1);
+
+        // Fenzo catches up, and the task is not left behind in the index
+        runningTasks.remove(task1);
+        index.reconcile(Collections.singletonList(targetVM));
+        index.reconcile(Collections.singletonList(targetVM));
+        assertThat(index.getAgentSignatures(targetVM).getTaskCount()).isEqualTo(1);
+
+        // Same task count, but a different task set, is not served as an up to date entry
+        index.removeTask("task2");
+        runningTasks.remove(task2);
+        TaskRequest task3 = addRunningTask("task3", serviceJob);
+        index.addTask(task3, HOSTNAME);
+        AgentSignatures signatures = index.getAgentSignatures(targetVM);
+        assertThat(signatures.countJobType(JobType.Batch)).isEqualTo(0);
+        assertThat(signatures.countJobType(JobType.Service)).isEqualTo(1);
+    }
+
+    @Test
+    public void testReconcileCorrectsPersistentDifferences() {
+        TaskRequest task1 = addRunningTask("task1", batchJob);
+        addRunningTask("task2", serviceJob);
+        index.addTask(task1, HOSTNAME);
+        index.addTask(newTaskRequest("staleTask", batchJob), HOSTNAME);
+
+        // The first difference is tolerated, as Fenzo may not have applied the latest updates yet
+        index.reconcile(Collections.singletonList(targetVM));
+        AgentSignatures signatures = index.getAgentSignatures(targetVM);
+        assertThat(signatures.getTaskCount()).isEqualTo(2);
+        assertThat(signatures.countJobType(JobType.Service)).isEqualTo(0);
+
+        // The same difference in the next check is corrected
+        index.reconcile(Collections.singletonList(targetVM));
+        signatures = index.getAgentSignatures(targetVM);
+        assertThat(signatures.getTaskCount()).isEqualTo(2);
+        assertThat(signatures.countJobType(JobType.Batch)).isEqualTo(1);
+        assertThat(signatures.countJobType(JobType.Service)).isEqualTo(1);
+    }
+
+    @Test
+    public void testRequestSignatureIsCached() {
+        TaskRequest taskRequest = newTaskRequest("task1", serviceJob);
+        TaskSignature signature = index.getSignature(taskRequest);
+        assertThat(index.getSignature(taskRequest)).isSameAs(signature);
+        assertThat(signature.getJobType()).isEqualTo(JobType.Service);
+    }
+
+    private TaskRequest addRunningTask(String taskId, Job<?> job) {
+        TaskRequest taskRequest = newTaskRequest(taskId, job);
+        runningTasks.add(taskRequest);
+        return taskRequest;
+    }
+
+    private TaskRequest newTaskRequest(String taskId, Job<?> job) {
+        V3QueueableTask taskRequest = mock(V3QueueableTask.class);
+        when(taskRequest.getId()).thenReturn(taskId);
+        when(taskRequest.getJob()).thenReturn(job);
+        return taskRequest;
+    }
+
+    private VirtualMachineCurrentState newVirtualMachine() {
+        VirtualMachineCurrentState vm = mock(VirtualMachineCurrentState.class);
+        when(vm.getHostname()).thenReturn(HOSTNAME);
+        when(vm.getRunningTasks()).thenReturn(runningTasks);
+        when(vm.getTasksCurrentlyAssigned()).thenReturn(Collections.emptyList());
+        return vm;
+    }
+}
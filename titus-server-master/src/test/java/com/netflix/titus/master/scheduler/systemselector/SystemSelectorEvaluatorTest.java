@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler.systemselector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.api.scheduler.service.SchedulerException;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SystemSelectorEvaluatorTest {
+
+    private static final String[] EXPRESSIONS = {
+            "job.applicationName == 'myApp'",
+            "job.applicationName === \"otherApp\"",
+            "job.applicationName != 'myApp' || job.capacity > 5",
+            "job.capacity >= 10 && job.capacity < 11",
+            "!(job.capacity <= 3)",
+            "job.getApplicationName().startsWith('my')",
+            "job.service && job.tier == 'Critical'",
+            "instance.attributes['zone'] == 'zoneA'",
+            "instance.attributes.zone != 'zoneB'",
+            "instance.attributes.missing == null",
+            "instanceGroup == null"
+    };
+
+    /**
+     * Expressions, where JavaScript strict and loose equality give different results, or Java and JavaScript
+     * conversions differ.
+     */
+    private static final String[] EQUALITY_EXPRESSIONS = {
+            "job.capacity === 10",
+            "job.capacity !== 10",
+            "job.tier == 'Critical'",
+            "job.tier === 'Critical'",
+            "job.tier !== 'Critical'",
+            "job.tier === job.tier",
+            "job.service === true",
+            "job.service == 1",
+            "job.service === 1",
+            "one == '1'",
+            "one === '1'",
+            "one != '1'",
+            "one !== '1'",
+            "one === 1",
+            "emptyString == 0",
+            "emptyString === 0",
+            "notANumber == notANumber",
+            "notANumber === notANumber",
+            "notANumber != notANumber",
+            "notANumber !== notANumber",
+            "notANumber > 1",
+            "notANumber <= 1"
+    };
+
+    private final Registry registry = new DefaultRegistry();
+
+    private final SystemSelectorEvaluator nativeEvaluator = new SystemSelectorEvaluator(1, true, registry);
+    private final SystemSelectorEvaluator scriptEngineEvaluator = new SystemSelectorEvaluator(1, false, registry);
+
+    private final Map<String, Object> context = newContext();
+
+    @Test
+    public void testCompiledExpressionsMatchScriptEngine() {
+        for (String expression : EXPRESSIONS) {
+            assertThat(SelectorExpressionCompiler.compile(expression)).describedAs(expression).isPresent();
+            assertThat(nativeEvaluator.evaluate(expression, context))
+                    .describedAs(expression)
+                    .isEqualTo(scriptEngineEvaluator.evaluate(expression, context));
+        }
+    }
+
+    @Test
+    public void testCompiledEqualityOperatorsMatchScriptEngine() {
+        for (String expression : EQUALITY_EXPRESSIONS) {
+            assertThat(SelectorExpressionCompiler.compile(expression)).describedAs(expression).isPresent();
+            assertThat(nativeEvaluator.evaluate(expression, context))
+                    .describedAs(expression)
+                    .isEqualTo(scriptEngineEvaluator.evaluate(expression, context));
+        }
+    }
+
+    @Test
+    public void testStrictEqualityDoesNotConvertTypes() {
+        assertThat(nativeEvaluator.evaluate("one == '1'", context)).isTrue();
+        assertThat(nativeEvaluator.evaluate("one === '1'", context)).isFalse();
+        assertThat(nativeEvaluator.evaluate("job.tier == 'Critical'", context)).isTrue();
+        assertThat(nativeEvaluator.evaluate("job.tier === 'Critical'", context)).isFalse();
+        assertThat(nativeEvaluator.evaluate("job.tier !== 'Critical'", context)).isTrue();
+        assertThat(nativeEvaluator.evaluate("emptyString == 0", context)).isTrue();
+        assertThat(nativeEvaluator.evaluate("notANumber == notANumber", context)).isFalse();
+    }
+
+    @Test
+    public void testCompiledExpressionResults() {
+        assertThat(nativeEvaluator.evaluate("job.applicationName == 'myApp'", context)).isTrue();
+        assertThat(nativeEvaluator.evaluate("job.applicationName == 'otherApp'", context)).isFalse();
+        assertThat(nativeEvaluator.evaluate("job.capacity == 10", context)).isTrue();
+        assertThat(nativeEvaluator.evaluate("job.tier == 'Critical' && instance.attributes['zone'] == 'zoneA'", context)).isTrue();
+        // Non boolean results are not a match
+        assertThat(nativeEvaluator.evaluate("job.applicationName", context)).isFalse();
+    }
+
+    @Test
+    public void testUnsupportedExpressionFallsBackToScriptEngine() {
+        String expression = "['a', 'b'].indexOf(job.applicationName) < 0";
+        assertThat(SelectorExpressionCompiler.compile(expression)).isEmpty();
+        assertThat(nativeEvaluator.evaluate(expression, context)).isTrue();
+        assertThat(registry.counter("titusMaster.scheduler.systemSelectorEvaluator.evaluations", "evaluator", "scriptEngine").count()).isEqualTo(1);
+    }
+
+    @Test(expected = SchedulerException.class)
+    public void testPropertyOfNullFails() {
+        nativeEvaluator.evaluate("instanceGroup.id == 'abc'", context);
+    }
+
+    private static Map<String, Object> newContext() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("job", new TestJob("myApp", 10, true, TestTier.Critical));
+        context.put("instance", ImmutableMap.of("attributes", ImmutableMap.of("zone", "zoneA")));
+        context.put("instanceGroup", null);
+        context.put("one", 1);
+        context.put("emptyString", "");
+        context.put("notANumber", Double.NaN);
+        return context;
+    }
+
+    public enum TestTier {
+        Critical,
+        Flex
+    }
+
+    public static class TestJob {
+
+        private final String applicationName;
+        private final int capacity;
+        private final boolean service;
+        private final TestTier tier;
+
+        public TestJob(String applicationName, int capacity, boolean service, TestTier tier) {
+            this.applicationName = applicationName;
+            this.capacity = capacity;
+            this.service = service;
+            this.tier = tier;
+        }
+
+        public String getApplicationName() {
+            return applicationName;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public boolean isService() {
+            return service;
+        }
+
+        public TestTier getTier() {
+            return tier;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.runtime.endpoint.v3.grpc;
+
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.MessageLite;
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.event.JobManagerEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.JobUpdateEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.TaskUpdateEvent;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.runtime.endpoint.common.LogStorageInfo;
+
+/**
+ * Memoizing wrapper around the {@link V3GrpcModelConverters} job and task converters. The core model entities are
+ * immutable, and each change creates a new instance, so the entity instance identifies its version. A converted
+ * protobuf object is reused for as long as the same core entity instance is converted again.
+ * <p>
+ * Cache keys are compared by identity, and held by weak references, so entries of replaced entity versions are
+ * released together with them. The cache is bounded by the total serialized size of the cached protobuf objects.
+ * If the maximum size is zero, caching is disabled.
+ */
+public class GrpcModelConverterCache {
+
+    private final LogStorageInfo<Task> logStorageInfo;
+    private final Cache<Object, MessageLite> cache;
+
+    private final EntityMetrics jobMetrics;
+    private final EntityMetrics taskMetrics;
+
+    public GrpcModelConverterCache(LogStorageInfo<Task> logStorageInfo, long maxSizeBytes, String metricNameRoot, Registry registry) {
+        this.logStorageInfo = logStorageInfo;
+        this.cache = maxSizeBytes <= 0
+                ? null
+                : Caffeine.newBuilder()
+                .weakKeys()
+                .maximumWeight(maxSizeBytes)
+                .<Object, MessageLite>weigher((key, value) -> value.getSerializedSize())
+                .build();
+        this.jobMetrics = new EntityMetrics(metricNameRoot, "job", registry);
+        this.taskMetrics = new EntityMetrics(metricNameRoot, "task", registry);
+    }
+
+    public com.netflix.titus.grpc.protogen.Job toGrpcJob(Job<?> coreJob) {
+        return convert(coreJob, V3GrpcModelConverters::toGrpcJob, jobMetrics);
+    }
+
+    public com.netflix.titus.grpc.protogen.Task toGrpcTask(Task coreTask) {
+        return convert(coreTask, task -> V3GrpcModelConverters.toGrpcTask(task, logStorageInfo), taskMetrics);
+    }
+
+    public JobChangeNotification toGrpcJobChangeNotification(JobManagerEvent<?> event) {
+        if (event instanceof JobUpdateEvent) {
+            return JobChangeNotification.newBuilder()
+                    .setJobUpdate(JobChangeNotification.JobUpdate.newBuilder().setJob(toGrpcJob(((JobUpdateEvent) event).getCurrent())))
+                    .build();
+        }
+        return JobChangeNotification.newBuilder()
+                .setTaskUpdate(JobChangeNotification.TaskUpdate.newBuilder().setTask(toGrpcTask(((TaskUpdateEvent) event).getCurrent())))
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <C, G extends MessageLite> G convert(C coreEntity, Function<C, G> converter, EntityMetrics metrics) {
+        if (cache == null) {
+            return converter.apply(coreEntity);
+        }
+        G cached = (G) cache.getIfPresent(coreEntity);
+        if (cached != null) {
+            metrics.hits.increment();
+            metrics.bytesSaved.increment(cached.getSerializedSize());
+            return cached;
+        }
+        metrics.misses.increment();
+        G converted = converter.apply(coreEntity);
+        cache.put(coreEntity, converted);
+        return converted;
+    }
+
+    private static class EntityMetrics {
+
+        private final Counter hits;
+        private final Counter misses;
+        private final Counter bytesSaved;
+
+        private EntityMetrics(String metricNameRoot, String entityType, Registry registry) {
+            String prefix = metricNameRoot + ".grpcModelConverterCache.";
+            this.hits = registry.counter(prefix + "hits", "type", entityType);
+            this.misses = registry.counter(prefix + "misses", "type", entityType);
+            this.bytesSaved = registry.counter(prefix + "bytesSaved", "type", entityType);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.runtime.jobmanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Gauge;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobStatus;
+import com.netflix.titus.grpc.protogen.Task;
+import io.grpc.Context;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.internal.operators.BackpressureUtils;
+
+/**
+ * Multiplexes a single upstream job event stream (as returned by the observeJobs call) to many subscribers.
+ * The latest notification of each active job and task is kept in memory, so a new subscriber receives a locally
+ * built snapshot followed by the snapshot end marker, and the live updates after it. The upstream stream is opened
+ * by the first subscriber, and closed when the last subscriber unsubscribes.
+ * <p>
+ * The local snapshot mirrors the upstream one: finished jobs are removed together with their tasks, but finished
+ * tasks of active jobs are kept, as the upstream snapshot includes them until their job finishes.
+ * <p>
+ * The shared state is updated under a lock, but no subscriber is called while holding it. A new subscriber gets
+ * a copy of the snapshot, and each subscriber has its own queue of live events, which is drained according to its
+ * requests. The snapshot is not counted against the queue limit, but a subscriber which falls behind the live
+ * updates by more than the configured number of events is terminated with an error.
+ * <p>
+ * The upstream stream is shared by all subscribers, so it is opened outside of the caller's gRPC context. It is not
+ * cancelled when the subscriber that opened it goes away, and it is not associated with that subscriber's
+ * call metadata. An upstream error or completion is propagated to all subscribers, after their queued events.
+ */
+public class SharedJobChangeStream {
+
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 10_000;
+
+    private static final JobChangeNotification SNAPSHOT_END_MARKER = JobChangeNotification.newBuilder()
+            .setSnapshotEnd(JobChangeNotification.SnapshotEnd.newBuilder())
+            .build();
+
+    private final Supplier<Observable<JobChangeNotification>> upstreamFactory;
+    private final int maxQueueSize;
+
+    private final Counter upstreamSubscriptionsCounter;
+    private final Counter localSnapshotsCounter;
+    private final Counter overflowsCounter;
+    private final Gauge subscribersGauge;
+
+    private final Object lock = new Object();
+
+    private final Map<String, JobChangeNotification> jobs = new LinkedHashMap<>();
+    private final Map<String, JobChangeNotification> tasks = new LinkedHashMap<>();
+    private final Map<String, Set<String>> jobTaskIds = new HashMap<>();
+
+    private final List<SubscriberHandler> awaitingSnapshot = new ArrayList<>();
+    private final List<SubscriberHandler> liveSubscribers = new ArrayList<>();
+
+    private boolean inSync;
+    private long generation;
+    private Subscription upstreamSubscription;
+
+    public SharedJobChangeStream(Supplier<Observable<JobChangeNotification>> upstreamFactory,
+                                 String metricNameRoot,
+                                 Registry registry) {
+        this(upstreamFactory, metricNameRoot, registry, DEFAULT_MAX_QUEUE_SIZE);
+    }
+
+    public SharedJobChangeStream(Supplier<Observable<JobChangeNotification>> upstreamFactory,
+                                 String metricNameRoot,
+                                 Registry registry,
+                                 int maxQueueSize) {
+        this.upstreamFactory = upstreamFactory;
+        this.maxQueueSize = maxQueueSize;
+        this.upstreamSubscriptionsCounter = registry.counter(metricNameRoot + ".sharedJobStream.upstreamSubscriptions");
+        this.localSnapshotsCounter = registry.counter(metricNameRoot + ".sharedJobStream.localSnapshots");
+        this.overflowsCounter = registry.counter(metricNameRoot + ".sharedJobStream.overflows");
+        this.subscribersGauge = registry.gauge(metricNameRoot + ".sharedJobStream.subscribers");
+    }
+
+    public Observable<JobChangeNotification> observeJobs() {
+        return Observable.create(subscriber -> {
+            // The handler registers its cleanup hook first, so a subscriber which goes away while being added is removed
+            SubscriberHandler handler = new SubscriberHandler(subscriber);
+            synchronized (lock) {
+                if (handler.isUnsubscribed()) {
+                    return;
+                }
+                if (inSync) {
+                    handler.setSnapshot(copySnapshot());
+                    liveSubscribers.add(handler);
+                } else {
+                    awaitingSnapshot.add(handler);
+                }
+                updateSubscribersGauge();
+                if (upstreamSubscription == null) {
+                    connect();
+                }
+            }
+            handler.drain();
+        });
+    }
+
+    private void connect() {
+        long connectionGeneration = ++generation;
+        upstreamSubscriptionsCounter.increment();
+
+        Subscription[] subscriptionHolder = new Subscription[1];
+        Context.ROOT.run(() -> subscriptionHolder[0] = upstreamFactory.get().subscribe(
+                event -> onUpstreamEvent(connectionGeneration, event),
+                error -> onUpstreamTerminated(connectionGeneration, error),
+                () -> onUpstreamTerminated(connectionGeneration, null)
+        ));
+
+        // The upstream may terminate before subscribe returns
+        if (generation == connectionGeneration) {
+            upstreamSubscription = subscriptionHolder[0];
+        }
+    }
+
+    private void onUpstreamEvent(long connectionGeneration, JobChangeNotification event) {
+        List<SubscriberHandler> receivers;
+        Subscription toUnsubscribe = null;
+        synchronized (lock) {
+            if (connectionGeneration != generation) {
+                return;
+            }
+            if (event.getNotificationCase() == JobChangeNotification.NotificationCase.SNAPSHOTEND) {
+                inSync = true;
+                receivers = releaseAwaitingSnapshot();
+            } else {
+                updateSnapshotState(event);
+                if (!inSync) {
+                    return;
+                }
+                receivers = enqueueLiveEvent(event);
+                toUnsubscribe = disconnectIfNoSubscribers();
+            }
+        }
+        if (toUnsubscribe != null) {
+            toUnsubscribe.unsubscribe();
+        }
+        receivers.forEach(SubscriberHandler::drain);
+    }
+
+    private void updateSnapshotState(JobChangeNotification event) {
+        switch (event.getNotificationCase()) {
+            case JOBUPDATE:
+                String jobId = event.getJobUpdate().getJob().getId();
+                if (event.getJobUpdate().getJob().getStatus().getState() == JobStatus.JobState.Finished) {
+                    jobs.remove(jobId);
+                    Set<String> taskIds = jobTaskIds.remove(jobId);
+                    if (taskIds != null) {
+                        taskIds.forEach(tasks::remove);
+                    }
+                } else {
+                    jobs.put(jobId, event);
+                }
+                break;
+            case TASKUPDATE:
+                Task task = event.getTaskUpdate().getTask();
+                tasks.put(task.getId(), event);
+                jobTaskIds.computeIfAbsent(task.getJobId(), id -> new HashSet<>()).add(task.getId());
+                break;
+        }
+    }
+
+    private List<SubscriberHandler> releaseAwaitingSnapshot() {
+        if (awaitingSnapshot.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // All subscribers awaiting the snapshot share the same copy, as it is never modified
+        List<JobChangeNotification> snapshot = copySnapshot();
+        awaitingSnapshot.forEach(handler -> handler.setSnapshot(snapshot));
+        List<SubscriberHandler> released = new ArrayList<>(awaitingSnapshot);
+        liveSubscribers.addAll(awaitingSnapshot);
+        awaitingSnapshot.clear();
+        return released;
+    }
+
+    /**
+     * Queues the event for all live subscribers. The subscribers whose queue overflows are removed, and terminated
+     * with an error when drained.
+     */
+    private List<SubscriberHandler> enqueueLiveEvent(JobChangeNotification event) {
+        List<SubscriberHandler> receivers = new ArrayList<>(liveSubscribers);
+        for (Iterator<SubscriberHandler> it = liveSubscribers.iterator(); it.hasNext(); ) {
+            if (!it.next().enqueue(event)) {
+                it.remove();
+                overflowsCounter.increment();
+            }
+        }
+        updateSubscribersGauge();
+        return receivers;
+    }
+
+    private void onUpstreamTerminated(long connectionGeneration, Throwable error) {
+        List<SubscriberHandler> subscribers;
+        synchronized (lock) {
+            if (connectionGeneration != generation) {
+                return;
+            }
+            subscribers = new ArrayList<>(liveSubscribers);
+            subscribers.addAll(awaitingSnapshot);
+            disconnect();
+        }
+        subscribers.forEach(subscriber -> subscriber.close(error));
+    }
+
+    private void removeSubscriber(SubscriberHandler handler) {
+        Subscription toUnsubscribe;
+        synchronized (lock) {
+            liveSubscribers.remove(handler);
+            awaitingSnapshot.remove(handler);
+            updateSubscribersGauge();
+            toUnsubscribe = disconnectIfNoSubscribers();
+        }
+        if (toUnsubscribe != null) {
+            toUnsubscribe.unsubscribe();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock. Returns the upstream subscription to be cancelled, if the last
+     * subscriber is gone.
+     */
+    private Subscription disconnectIfNoSubscribers() {
+        if (liveSubscribers.isEmpty() && awaitingSnapshot.isEmpty() && upstreamSubscription != null) {
+            Subscription subscription = upstreamSubscription;
+            disconnect();
+            return subscription;
+        }
+        return null;
+    }
+
+    private void disconnect() {
+        generation++;
+        upstreamSubscription = null;
+        inSync = false;
+        jobs.clear();
+        tasks.clear();
+        jobTaskIds.clear();
+        liveSubscribers.clear();
+        awaitingSnapshot.clear();
+        updateSubscribersGauge();
+    }
+
+    private List<JobChangeNotification> copySnapshot() {
+        localSnapshotsCounter.increment();
+        // Jobs go first, so a task is never emitted before its job
+        List<JobChangeNotification> snapshot = new ArrayList<>(jobs.size() + tasks.size() + 1);
+        snapshot.addAll(jobs.values());
+        snapshot.addAll(tasks.values());
+        snapshot.add(SNAPSHOT_END_MARKER);
+        return snapshot;
+    }
+
+    private void updateSubscribersGauge() {
+        subscribersGauge.set(liveSubscribers.size() + awaitingSnapshot.size());
+    }
+
+    /**
+     * Drain method implementation based on RxJava guidelines
+     * (see https://github.com/ReactiveX/RxJava/wiki/Implementing-custom-operators-(draft)).
+     * The snapshot is emitted first, followed by the live events queued after it was taken.
+     */
+    private class SubscriberHandler implements Subscription, Producer {
+
+        private final Subscriber<? super JobChangeNotification> subscriber;
+
+        private final Queue<JobChangeNotification> eventQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queueSize = new AtomicInteger();
+
+        // mutual exclusion
+        private final AtomicInteger counter = new AtomicInteger();
+        // tracks the downstream request amount
+        private final AtomicLong requested = new AtomicLong();
+
+        // set once, before any live event is queued; accessed by the drain loop only afterwards
+        private volatile List<JobChangeNotification> snapshot;
+        private int snapshotIndex;
+
+        // the subscriber fell behind the live updates, so the queued events are dropped
+        private volatile boolean overflow;
+
+        // no more values expected from upstream
+        private volatile boolean done;
+
+        // the upstream error
+        private volatile Throwable error;
+
+        private SubscriberHandler(Subscriber<? super JobChangeNotification> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.add(this);
+            subscriber.setProducer(this);
+        }
+
+        private void setSnapshot(List<JobChangeNotification> snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Returns false if the queue limit is exceeded.
+         */
+        private boolean enqueue(JobChangeNotification event) {
+            if (queueSize.incrementAndGet() > maxQueueSize) {
+                overflow = true;
+                return false;
+            }
+            eventQueue.add(event);
+            return true;
+        }
+
+        private void close(Throwable error) {
+            this.error = error;
+            this.done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n > 0) {
+                BackpressureUtils.getAndAddRequest(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            removeSubscriber(this);
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return subscriber.isUnsubscribed();
+        }
+
+        private void drain() {
+            if (counter.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            for (; ; ) {
+                long requests = requested.get();
+                long emission = 0L;
+
+                while (emission != requests) { // don't emit more than requested
+                    if (subscriber.isUnsubscribed()) {
+                        return;
+                    }
+                    if (overflow) {
+                        subscriber.onError(new IllegalStateException("Job event stream queue overflow (limit " + maxQueueSize + ")"));
+                        return;
+                    }
+
+                    boolean stop = done;  // order matters here!
+                    JobChangeNotification event = poll();
+
+                    // if no more values, emit completion event
+                    if (stop && event == null) {
+                        terminate();
+                        return;
+                    }
+                    // the upstream hasn't stopped yet but we don't have a value available
+                    if (event == null) {
+                        break;
+                    }
+
+                    subscriber.onNext(event);
+                    emission++;
+                }
+
+                // if we are at a request boundary, a terminal event can be still emitted without requests
+                if (emission == requests) {
+                    if (subscriber.isUnsubscribed()) {
+                        return;
+                    }
+                    if (overflow) {
+                        subscriber.onError(new IllegalStateException("Job event stream queue overflow (limit " + maxQueueSize + ")"));
+                        return;
+                    }
+
+                    boolean stop = done;  // order matters here!
+                    if (stop && isEmpty()) {
+                        terminate();
+                        return;
+                    }
+                }
+
+                // decrement the current request amount by the emission count
+                if (emission != 0L && requests != Long.MAX_VALUE) {
+                    BackpressureUtils.produced(requested, emission);
+                }
+
+                // indicate that we have performed the outstanding amount of work
+                missed = counter.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+                // if a concurrent getAndIncrement() happened, we loop back and continue
+            }
+        }
+
+        private JobChangeNotification poll() {
+            List<JobChangeNotification> currentSnapshot = snapshot;
+            if (currentSnapshot != null) {
+                if (snapshotIndex < currentSnapshot.size()) {
+                    return currentSnapshot.get(snapshotIndex++);
+                }
+                snapshot = null;
+            }
+            JobChangeNotification event = eventQueue.poll();
+            if (event != null) {
+                queueSize.decrementAndGet();
+            }
+            return event;
+        }
+
+        private boolean isEmpty() {
+            List<JobChangeNotification> currentSnapshot = snapshot;
+            return (currentSnapshot == null || snapshotIndex >= currentSnapshot.size()) && eventQueue.isEmpty();
+        }
+
+        private void terminate() {
+            Throwable ex = error;
+            if (ex != null) {
+                subscriber.onError(ex);
+            } else {
+                subscriber.onCompleted();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.runtime.endpoint.v3.grpc;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.JobFunctions;
+import com.netflix.titus.api.jobmanager.model.job.JobState;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.runtime.endpoint.common.EmptyLogStorageInfo;
+import com.netflix.titus.testkit.model.job.JobDescriptorGenerator;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GrpcModelConverterCacheTest {
+
+    private final Registry registry = new DefaultRegistry();
+
+    private final Job<BatchJobExt> job = JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).getValue();
+    private final BatchJobTask task = JobGenerator.batchTasks(job).getValue();
+
+    @Test
+    public void testSameEntityVersionIsConvertedOnce() {
+        GrpcModelConverterCache cache = new GrpcModelConverterCache(EmptyLogStorageInfo.INSTANCE, 1024 * 1024, "test", registry);
+
+        com.netflix.titus.grpc.protogen.Job grpcJob = cache.toGrpcJob(job);
+        assertThat(grpcJob).isEqualTo(V3GrpcModelConverters.toGrpcJob(job));
+        assertThat(cache.toGrpcJob(job)).isSameAs(grpcJob);
+
+        com.netflix.titus.grpc.protogen.Task grpcTask = cache.toGrpcTask(task);
+        assertThat(grpcTask).isEqualTo(V3GrpcModelConverters.toGrpcTask(task, EmptyLogStorageInfo.INSTANCE));
+        assertThat(cache.toGrpcTask(task)).isSameAs(grpcTask);
+
+        assertThat(counterValue("hits", "job")).isEqualTo(1);
+        assertThat(counterValue("misses", "job")).isEqualTo(1);
+        assertThat(counterValue("bytesSaved", "job")).isEqualTo(grpcJob.getSerializedSize());
+        assertThat(counterValue("hits", "task")).isEqualTo(1);
+    }
+
+    @Test
+    public void testNewEntityVersionIsConvertedAgain() {
+        GrpcModelConverterCache cache = new GrpcModelConverterCache(EmptyLogStorageInfo.INSTANCE, 1024 * 1024, "test", registry);
+
+        com.netflix.titus.grpc.protogen.Job grpcJob = cache.toGrpcJob(job);
+        Job<?> updatedJob = JobFunctions.changeJobStatus(job, JobState.KillInitiated, "test");
+        com.netflix.titus.grpc.protogen.Job updatedGrpcJob = cache.toGrpcJob(updatedJob);
+        assertThat(updatedGrpcJob).isNotSameAs(grpcJob);
+        assertThat(updatedGrpcJob.getStatus().getState()).isEqualTo(com.netflix.titus.grpc.protogen.JobStatus.JobState.KillInitiated);
+
+        Task updatedTask = JobFunctions.changeTaskStatus(task, TaskState.Started, "test", "test");
+        assertThat(cache.toGrpcTask(updatedTask)).isNotSameAs(cache.toGrpcTask(task));
+        assertThat(counterValue("hits", "job")).isEqualTo(0);
+    }
+
+    @Test
+    public void testCachingDisabled() {
+        GrpcModelConverterCache cache = new GrpcModelConverterCache(EmptyLogStorageInfo.INSTANCE, 0, "test", registry);
+        assertThat(cache.toGrpcJob(job)).isNotSameAs(cache.toGrpcJob(job));
+        assertThat(counterValue("hits", "job")).isEqualTo(0);
+    }
+
+    private long counterValue(String name, String type) {
+        return registry.counter("test.grpcModelConverterCache." + name, "type", type).count();
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.runtime.jobmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.grpc.protogen.Job;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobChangeNotification.JobUpdate;
+import com.netflix.titus.grpc.protogen.JobChangeNotification.SnapshotEnd;
+import com.netflix.titus.grpc.protogen.JobChangeNotification.TaskUpdate;
+import com.netflix.titus.grpc.protogen.JobStatus;
+import com.netflix.titus.grpc.protogen.Task;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import org.junit.Test;
+import rx.observers.AssertableSubscriber;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SharedJobChangeStreamTest {
+
+    private static final JobChangeNotification SNAPSHOT_END = JobChangeNotification.newBuilder()
+            .setSnapshotEnd(SnapshotEnd.newBuilder())
+            .build();
+
+    private final List<PublishSubject<JobChangeNotification>> upstreams = new ArrayList<>();
+
+    private final Registry registry = new DefaultRegistry();
+
+    private final SharedJobChangeStream stream = new SharedJobChangeStream(
+            () -> {
+                PublishSubject<JobChangeNotification> upstream = PublishSubject.create();
+                upstreams.add(upstream);
+                return upstream;
+            },
+            "test",
+            registry
+    );
+
+    @Test
+    public void testLateSubscriberReceivesLocalSnapshot() {
+        AssertableSubscriber<JobChangeNotification> first = stream.observeJobs().test();
+        assertThat(upstreams).hasSize(1);
+
+        PublishSubject<JobChangeNotification> upstream = upstreams.get(0);
+        upstream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        upstream.onNext(taskUpdate("job#1", "task#1", TaskStatus.TaskState.Started));
+        first.assertNoValues();
+
+        upstream.onNext(SNAPSHOT_END);
+        first.assertValues(jobUpdate("job#1", JobStatus.JobState.Accepted), taskUpdate("job#1", "task#1", TaskStatus.TaskState.Started), SNAPSHOT_END);
+
+        upstream.onNext(jobUpdate("job#2", JobStatus.JobState.Accepted));
+        upstream.onNext(taskUpdate("job#1", "task#1", TaskStatus.TaskState.KillInitiated));
+        assertThat(first.getValueCount()).isEqualTo(5);
+
+        AssertableSubscriber<JobChangeNotification> second = stream.observeJobs().test();
+        assertThat(upstreams).hasSize(1);
+        second.assertValues(
+                jobUpdate("job#1", JobStatus.JobState.Accepted),
+                jobUpdate("job#2", JobStatus.JobState.Accepted),
+                taskUpdate("job#1", "task#1", TaskStatus.TaskState.KillInitiated),
+                SNAPSHOT_END
+        );
+
+        upstream.onNext(jobUpdate("job#3", JobStatus.JobState.Accepted));
+        assertThat(first.getOnNextEvents()).last().isEqualTo(jobUpdate("job#3", JobStatus.JobState.Accepted));
+        assertThat(second.getOnNextEvents()).last().isEqualTo(jobUpdate("job#3", JobStatus.JobState.Accepted));
+    }
+
+    @Test
+    public void testFinishedTasksAreKeptUntilTheirJobFinishes() {
+        AssertableSubscriber<JobChangeNotification> first = stream.observeJobs().test();
+        PublishSubject<JobChangeNotification> upstream = upstreams.get(0);
+        upstream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        upstream.onNext(taskUpdate("job#1", "task#1", TaskStatus.TaskState.Started));
+        upstream.onNext(SNAPSHOT_END);
+
+        // The upstream snapshot includes finished tasks of active jobs, and so does the local one
+        upstream.onNext(taskUpdate("job#1", "task#1", TaskStatus.TaskState.Finished));
+        stream.observeJobs().test().assertValues(
+                jobUpdate("job#1", JobStatus.JobState.Accepted),
+                taskUpdate("job#1", "task#1", TaskStatus.TaskState.Finished),
+                SNAPSHOT_END
+        );
+
+        upstream.onNext(jobUpdate("job#1", JobStatus.JobState.Finished));
+        assertThat(first.getOnNextEvents()).last().isEqualTo(jobUpdate("job#1", JobStatus.JobState.Finished));
+
+        stream.observeJobs().test().assertValues(SNAPSHOT_END);
+    }
+
+    @Test
+    public void testUpstreamIsClosedWhenLastSubscriberUnsubscribes() {
+        AssertableSubscriber<JobChangeNotification> first = stream.observeJobs().test();
+        AssertableSubscriber<JobChangeNotification> second = stream.observeJobs().test();
+        PublishSubject<JobChangeNotification> upstream = upstreams.get(0);
+        upstream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        upstream.onNext(SNAPSHOT_END);
+
+        first.unsubscribe();
+        assertThat(upstream.hasObservers()).isTrue();
+        second.unsubscribe();
+        assertThat(upstream.hasObservers()).isFalse();
+
+        // A new subscriber opens a new upstream stream, and waits for its snapshot
+        AssertableSubscriber<JobChangeNotification> third = stream.observeJobs().test();
+        assertThat(upstreams).hasSize(2);
+        third.assertNoValues();
+    }
+
+    @Test
+    public void testSubscriberUnsubscribedBeforeBeingAddedIsNotKept() {
+        TestSubscriber<JobChangeNotification> subscriber = new TestSubscriber<>();
+        subscriber.unsubscribe();
+        stream.observeJobs().subscribe(subscriber);
+
+        assertThat(upstreams).isEmpty();
+
+        stream.observeJobs().test();
+        upstreams.get(0).onNext(SNAPSHOT_END);
+        subscriber.assertNoValues();
+        assertThat(registry.gauge("test.sharedJobStream.subscribers").value()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUpstreamErrorIsPropagatedToAllSubscribers() {
+        AssertableSubscriber<JobChangeNotification> first = stream.observeJobs().test();
+        upstreams.get(0).onNext(SNAPSHOT_END);
+        AssertableSubscriber<JobChangeNotification> second = stream.observeJobs().test();
+
+        upstreams.get(0).onError(new RuntimeException("simulated upstream error"));
+        first.assertError(RuntimeException.class);
+        second.assertError(RuntimeException.class);
+
+        stream.observeJobs().test();
+        assertThat(upstreams).hasSize(2);
+    }
+
+    @Test
+    public void testSubscriberRequestsAreHonored() {
+        stream.observeJobs().test();
+        PublishSubject<JobChangeNotification> upstream = upstreams.get(0);
+        upstream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        upstream.onNext(SNAPSHOT_END);
+
+        TestSubscriber<JobChangeNotification> subscriber = new TestSubscriber<>(1);
+        stream.observeJobs().subscribe(subscriber);
+        subscriber.assertValues(jobUpdate("job#1", JobStatus.JobState.Accepted));
+
+        upstream.onNext(jobUpdate("job#2", JobStatus.JobState.Accepted));
+        subscriber.requestMore(2);
+        subscriber.assertValues(jobUpdate("job#1", JobStatus.JobState.Accepted), SNAPSHOT_END, jobUpdate("job#2", JobStatus.JobState.Accepted));
+    }
+
+    @Test
+    public void testSlowSubscriberIsTerminatedOnQueueOverflow() {
+        SharedJobChangeStream boundedStream = new SharedJobChangeStream(() -> {
+            PublishSubject<JobChangeNotification> upstream = PublishSubject.create();
+            upstreams.add(upstream);
+            return upstream;
+        }, "test", registry, 2);
+
+        AssertableSubscriber<JobChangeNotification> fast = boundedStream.observeJobs().test();
+        TestSubscriber<JobChangeNotification> slow = new TestSubscriber<>(0);
+        boundedStream.observeJobs().subscribe(slow);
+
+        // The snapshot is not counted against the queue limit
+        PublishSubject<JobChangeNotification> upstream = upstreams.get(0);
+        upstream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        upstream.onNext(jobUpdate("job#2", JobStatus.JobState.Accepted));
+        upstream.onNext(jobUpdate("job#3", JobStatus.JobState.Accepted));
+        upstream.onNext(SNAPSHOT_END);
+        slow.assertNoTerminalEvent();
+
+        upstream.onNext(jobUpdate("job#4", JobStatus.JobState.Accepted));
+        upstream.onNext(jobUpdate("job#5", JobStatus.JobState.Accepted));
+        slow.assertNoTerminalEvent();
+
+        upstream.onNext(jobUpdate("job#6", JobStatus.JobState.Accepted));
+        slow.assertError(IllegalStateException.class);
+        assertThat(registry.counter("test.sharedJobStream.overflows").count()).isEqualTo(1);
+
+        // Other subscribers are not affected
+        fast.assertNoErrors();
+        assertThat(fast.getValueCount()).isEqualTo(7);
+        assertThat(upstream.hasObservers()).isTrue();
+    }
+
+    @Test
+    public void testSnapshotIsEmittedOutsideOfTheLock() throws Exception {
+        stream.observeJobs().test();
+        PublishSubject<JobChangeNotification> upstream = upstreams.get(0);
+        upstream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        upstream.onNext(SNAPSHOT_END);
+
+        // Subscribing from another thread while a snapshot is being emitted would deadlock if the lock was held
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<JobChangeNotification> otherSnapshot = new ArrayList<>();
+            stream.observeJobs().take(1).subscribe(event -> {
+                try {
+                    executor.submit(() -> otherSnapshot.addAll(stream.observeJobs().take(2).toList().toBlocking().first()))
+                            .get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertThat(otherSnapshot).containsExactly(jobUpdate("job#1", JobStatus.JobState.Accepted), SNAPSHOT_END);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testQueuedEventsAreDeliveredBeforeUpstreamCompletion() {
+        stream.observeJobs().test();
+        PublishSubject<JobChangeNotification> upstream = upstreams.get(0);
+        upstream.onNext(SNAPSHOT_END);
+
+        TestSubscriber<JobChangeNotification> subscriber = new TestSubscriber<>(0);
+        stream.observeJobs().subscribe(subscriber);
+        upstream.onNext(jobUpdate("job#1", JobStatus.JobState.Accepted));
+        upstream.onCompleted();
+        subscriber.assertNoTerminalEvent();
+
+        subscriber.requestMore(2);
+        subscriber.assertValues(SNAPSHOT_END, jobUpdate("job#1", JobStatus.JobState.Accepted));
+        subscriber.assertCompleted();
+    }
+
+    private static JobChangeNotification jobUpdate(String jobId, JobStatus.JobState state) {
+        return JobChangeNotification.newBuilder()
+                .setJobUpdate(JobUpdate.newBuilder().setJob(Job.newBuilder()
+                        .setId(jobId)
+                        .setStatus(JobStatus.newBuilder().setState(state))
+                ))
+                .build();
+    }
+
+    private static JobChangeNotification taskUpdate(String jobId, String taskId, TaskStatus.TaskState state) {
+        return JobChangeNotification.newBuilder()
+                .setTaskUpdate(TaskUpdate.newBuilder().setTask(Task.newBuilder()
+                        .setId(taskId)
+                        .setJobId(jobId)
+                        .setStatus(TaskStatus.newBuilder().setState(state))
+                ))
+                .build();
+    }
+}